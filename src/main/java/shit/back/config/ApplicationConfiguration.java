@@ -13,7 +13,8 @@ import org.springframework.context.annotation.Configuration;
         PaymentConfigurationProperties.class,
         SecurityProperties.class,
         SystemConfigurationProperties.class,
-        MetricsConfigurationProperties.class
+        MetricsConfigurationProperties.class,
+        DataSourceRoutingProperties.class
 })
 public class ApplicationConfiguration {
     // Класс служит только для регистрации ConfigurationProperties
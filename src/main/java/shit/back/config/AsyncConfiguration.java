@@ -7,6 +7,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Конфигурация асинхронного выполнения для оптимизации производительности
@@ -102,6 +103,35 @@ public class AsyncConfiguration {
         return executor;
     }
 
+    /**
+     * Executor воркеров inbox callback'ов платежных систем
+     *
+     * Одна задача обрабатывает все callback'и одного платежа последовательно.
+     * При переполнении задача выполняется в потоке опроса, что притормаживает
+     * захват новых callback'ов вместо их потери.
+     */
+    @Bean(name = "paymentCallbackExecutor")
+    public Executor paymentCallbackExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(500);
+        executor.setKeepAliveSeconds(60);
+
+        executor.setThreadNamePrefix("payment-callback-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.initialize();
+
+        log.info("💳 PaymentCallbackExecutor создан (core={}, max={}, queue={})",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+
     /**
      * НОВЫЙ: Executor для кэш операций
      */
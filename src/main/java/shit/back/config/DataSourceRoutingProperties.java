@@ -0,0 +1,86 @@
+package shit.back.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Конфигурация read/write маршрутизации DataSource
+ *
+ * Пустые url/username/password реплики означают "как у основного пула" -
+ * так маршрутизацию можно проверить локально на одной БД с разными
+ * настройками пулов.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.routing")
+@Validated
+public class DataSourceRoutingProperties {
+
+    /**
+     * Включить отдельный пул для read-only транзакций
+     */
+    private boolean enabled = false;
+
+    @Valid
+    private final Replica replica = new Replica();
+
+    @Valid
+    private final LagCheck lagCheck = new LagCheck();
+
+    @Data
+    public static class Replica {
+        /**
+         * JDBC URL реплики (по умолчанию - URL основной БД)
+         */
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        @Min(1)
+        @Max(200)
+        private int maximumPoolSize = 15;
+
+        @Min(0)
+        @Max(200)
+        private int minimumIdle = 2;
+
+        @NotNull
+        private Duration connectionTimeout = Duration.ofSeconds(3);
+
+        @NotNull
+        private Duration idleTimeout = Duration.ofMinutes(5);
+
+        @NotNull
+        private Duration maxLifetime = Duration.ofMinutes(20);
+    }
+
+    @Data
+    public static class LagCheck {
+        /**
+         * Проверять отставание реплики и переключать чтение на primary
+         */
+        private boolean enabled = true;
+
+        /**
+         * Максимально допустимое отставание реплики
+         */
+        @NotNull
+        private Duration maxReplicationLag = Duration.ofSeconds(5);
+
+        /**
+         * Запрос, возвращающий отставание реплики в секундах
+         * (на primary pg_is_in_recovery() = false, поэтому лаг = 0)
+         */
+        private String query = "SELECT CASE WHEN pg_is_in_recovery() "
+                + "THEN COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())), 0) "
+                + "ELSE 0 END";
+    }
+}
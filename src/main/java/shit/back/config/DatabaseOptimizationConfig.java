@@ -258,7 +258,7 @@ public class DatabaseOptimizationConfig {
             log.info("   🎯 Цель: Время SQL запросов < 50ms");
             log.info("   🎯 Цель: Batch операции < 30ms");
             log.info("   🎯 Цель: Connection acquisition < 10ms");
-            log.info("   📈 Метрики логируются в OptimizedUserActivityLoggingService");
+            log.info("   📈 Метрики записи журнала активности в ActivityLogIngestionPipeline");
             log.info("   📈 Метрики логируются в OptimizedUserSessionService");
         }
     }
@@ -5,6 +5,7 @@ import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -88,4 +89,36 @@ public class HttpClientConfig {
         
         return new RestTemplate(factory);
     }
+
+    /**
+     * RestTemplate для Fragment API: отдельный пул под параллельные покупки
+     * (FragmentPurchaseClient держит в полете не больше max-in-flight запросов)
+     * и короткий таймаут ответа, после которого запрос повторяется
+     */
+    @Bean("fragmentRestTemplate")
+    public RestTemplate fragmentRestTemplate(
+            @Value("${app.fragment.purchase.max-in-flight:16}") int maxInFlight,
+            @Value("${app.fragment.purchase.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${app.fragment.purchase.response-timeout-ms:10000}") long responseTimeoutMs) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxInFlight);
+        connectionManager.setDefaultMaxPerRoute(maxInFlight); // Fragment - единственный маршрут
+        connectionManager.setValidateAfterInactivity(Timeout.of(10, TimeUnit.SECONDS));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(5, TimeUnit.SECONDS))
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableAutomaticRetries() // Повторы с jitter делает FragmentPurchaseClient
+                .evictExpiredConnections()
+                .evictIdleConnections(Timeout.of(30, TimeUnit.SECONDS))
+                .build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
 }
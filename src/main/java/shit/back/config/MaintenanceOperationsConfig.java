@@ -0,0 +1,81 @@
+package shit.back.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import shit.back.repository.ChunkedOperation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Массовые операции обслуживания, выполняемые ChunkedMaintenanceEngine
+ *
+ * Операции журнала активности и сессий запускают их владельцы
+ * (ActivityLogPartitionManager, UserSessionUnifiedService); деактивация
+ * устаревших балансов - только по расписанию, если оно задано, или из админки.
+ *
+ * Порог операции задан в ней самой, а не вызывающим кодом: прерванный проход
+ * продолжается по позиции из maintenance_jobs, и условие должно быть тем же.
+ * Поэтому плановая деактивация сессий и деактивация из админки с другим
+ * порогом - разные операции со своими строками maintenance_jobs.
+ */
+@Configuration
+public class MaintenanceOperationsConfig {
+
+    public static final String ACTIVITY_LOG_RETENTION = "activity-log-retention";
+    public static final String USER_SESSION_EXPIRY = "user-session-expiry";
+    public static final String USER_SESSION_EXPIRY_ADMIN = "user-session-expiry-admin";
+    public static final String STALE_BALANCE_DEACTIVATION = "stale-balance-deactivation";
+
+    @Value("${app.activity.partitioning.retention-days:90}")
+    private int activityRetentionDays;
+
+    @Value("${app.maintenance.session-expiry.hours:48}")
+    private int sessionExpiryHours;
+
+    @Value("${app.maintenance.session-expiry.admin-hours:24}")
+    private int adminSessionExpiryHours;
+
+    @Value("${app.maintenance.balance-deactivation.stale-days:365}")
+    private int balanceStaleDays;
+
+    /**
+     * 0 - автоматический запуск выключен
+     */
+    @Value("${app.maintenance.balance-deactivation.interval-ms:0}")
+    private long balanceDeactivationIntervalMs;
+
+    @Bean
+    public ChunkedOperation activityLogRetentionOperation() {
+        return ChunkedOperation.delete(ACTIVITY_LOG_RETENTION, "user_activity_logs", "id", "timestamp < ?",
+                () -> new Object[] { LocalDateTime.now().minusDays(activityRetentionDays) }, null);
+    }
+
+    @Bean
+    public ChunkedOperation userSessionExpiryOperation() {
+        return sessionExpiry(USER_SESSION_EXPIRY, sessionExpiryHours);
+    }
+
+    /**
+     * Профилактика из админки (AdminMaintenanceService): более короткий порог
+     */
+    @Bean
+    public ChunkedOperation adminUserSessionExpiryOperation() {
+        return sessionExpiry(USER_SESSION_EXPIRY_ADMIN, adminSessionExpiryHours);
+    }
+
+    @Bean
+    public ChunkedOperation staleBalanceDeactivationOperation() {
+        return ChunkedOperation.update(STALE_BALANCE_DEACTIVATION, "user_balances", "id", "is_active = false",
+                "is_active = true AND last_updated < ?",
+                () -> new Object[] { LocalDateTime.now().minusDays(balanceStaleDays) },
+                balanceDeactivationIntervalMs > 0 ? Duration.ofMillis(balanceDeactivationIntervalMs) : null);
+    }
+
+    private static ChunkedOperation sessionExpiry(String name, int hours) {
+        return ChunkedOperation.update(name, "user_sessions", "id",
+                "is_active = false, state = 'EXPIRED'", "is_active = true AND last_activity < ?",
+                () -> new Object[] { LocalDateTime.now().minusHours(hours) }, null);
+    }
+}
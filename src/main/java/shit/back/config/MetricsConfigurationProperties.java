@@ -124,6 +124,19 @@ public class MetricsConfigurationProperties {
          * Включить автоматическую очистку dead connections
          */
         private boolean autoCleanupEnabled = true;
+
+        /**
+         * Сколько последних снимков метрик хранить для переподключения по Last-Event-ID
+         */
+        @Min(1)
+        @Max(10000)
+        private int replayCapacity = 240;
+
+        /**
+         * Снимки старше не досылаются при переподключении
+         */
+        @NotNull
+        private Duration replayMaxAge = Duration.ofHours(1);
     }
 
     @Data
@@ -0,0 +1,66 @@
+package shit.back.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import shit.back.repository.OrderJpaRepository;
+import shit.back.util.OrderIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Настройка генератора ID заказов для этого инстанса
+ *
+ * Каждому инстансу нужен свой app.order-id.node-id (0-7). При старте
+ * логические часы генератора продолжаются с наибольшего order_id в БД,
+ * поэтому рестарт после всплеска не выдает уже использованные ID. При
+ * остановке дополнительно ждем, пока системные часы догонят логические,
+ * чтобы следующий старт не начинал с долга.
+ */
+@Slf4j
+@Configuration
+public class OrderIdConfig {
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Value("${app.order-id.node-id:0}")
+    private int nodeId;
+
+    @Value("${app.order-id.shutdown-wait-ms:5000}")
+    private long shutdownWaitMs;
+
+    @PostConstruct
+    public void init() {
+        OrderIdGenerator generator = new OrderIdGenerator(nodeId);
+        orderRepository.findMaxGeneratedOrderId().ifPresent(maxId -> {
+            generator.advancePast(maxId);
+            if (generator.getDriftSeconds() > 0) {
+                log.warn("⚠️ ORDER ID: Последний ID {} опережает системные часы, узел продолжит с долгом {} с",
+                        maxId, generator.getDriftSeconds());
+            }
+        });
+        OrderIdGenerator.setDefault(generator);
+        log.info("🆔 ORDER ID: Генератор ID заказов настроен, узел {}", nodeId);
+    }
+
+    @PreDestroy
+    public void awaitClock() {
+        OrderIdGenerator generator = OrderIdGenerator.getDefault();
+        long deadline = System.currentTimeMillis() + shutdownWaitMs;
+        try {
+            while (generator.getDriftSeconds() > 0 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (generator.getDriftSeconds() > 0) {
+            log.warn("⚠️ ORDER ID: Логические часы генератора опережают системные на {} с при остановке",
+                    generator.getDriftSeconds());
+        }
+    }
+}
@@ -194,6 +194,11 @@ public class PaymentConfigurationProperties {
          */
         private String token = "${FRAGMENT_API_TOKEN:}";
 
+        /**
+         * Предыдущий токен, принимается на время ротации
+         */
+        private String previousToken;
+
         /**
          * URL для Telegram Fragment API
          */
@@ -257,6 +262,11 @@ public class PaymentConfigurationProperties {
          */
         private String secretKey = "${UZS_SECRET_KEY:}";
 
+        /**
+         * Предыдущий секретный ключ, принимается на время ротации
+         */
+        private String previousSecretKey;
+
         /**
          * URL для API UZS платежей
          */
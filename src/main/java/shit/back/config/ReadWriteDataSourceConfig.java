@@ -0,0 +1,98 @@
+package shit.back.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import shit.back.infrastructure.datasource.ReadWriteRoutingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Read/write маршрутизация соединений
+ *
+ * Методы с @Transactional(readOnly = true) (OrderQueryService,
+ * StarPackageService, UserActivityStatisticsService, finders
+ * BalanceAggregateRepositoryImpl и т.д.) получают соединения из отдельного
+ * пула реплики и больше не конкурируют с пишущим путем бота за основной пул.
+ *
+ * Включается через app.datasource.routing.enabled=true. При выключенной
+ * маршрутизации работает стандартный DataSource Spring Boot.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadWriteDataSourceConfig {
+
+    /**
+     * Основной пул: настройки берутся из spring.datasource.hikari.*
+     */
+    @Bean("primaryPoolDataSource")
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryPoolDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary-pool");
+        return dataSource;
+    }
+
+    /**
+     * Пул реплики: собственный размер и таймауты из app.datasource.routing.replica.*
+     */
+    @Bean("replicaPoolDataSource")
+    public HikariDataSource replicaPoolDataSource(DataSourceProperties dataSourceProperties,
+            DataSourceRoutingProperties routingProperties) {
+        DataSourceRoutingProperties.Replica replica = routingProperties.getReplica();
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica-pool");
+        dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        dataSource.setJdbcUrl(StringUtils.hasText(replica.getUrl())
+                ? replica.getUrl()
+                : dataSourceProperties.determineUrl());
+        dataSource.setUsername(StringUtils.hasText(replica.getUsername())
+                ? replica.getUsername()
+                : dataSourceProperties.determineUsername());
+        dataSource.setPassword(StringUtils.hasText(replica.getPassword())
+                ? replica.getPassword()
+                : dataSourceProperties.determinePassword());
+        dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+        dataSource.setMinimumIdle(Math.min(replica.getMinimumIdle(), replica.getMaximumPoolSize()));
+        dataSource.setConnectionTimeout(replica.getConnectionTimeout().toMillis());
+        dataSource.setIdleTimeout(replica.getIdleTimeout().toMillis());
+        dataSource.setMaxLifetime(replica.getMaxLifetime().toMillis());
+        dataSource.setReadOnly(true);
+        dataSource.setRegisterMbeans(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            @Qualifier("primaryPoolDataSource") HikariDataSource primaryPool,
+            @Qualifier("replicaPoolDataSource") HikariDataSource replicaPool) {
+        return new ReadWriteRoutingDataSource(primaryPool, replicaPool);
+    }
+
+    /**
+     * Основной DataSource приложения (JPA, JdbcTemplate, TransactionManager)
+     *
+     * LazyConnectionDataSourceProxy откладывает выбор маршрута до первого
+     * SQL-запроса, когда readOnly флаг транзакции уже выставлен.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        log.info("🚀 DB ROUTING: Включена read/write маршрутизация (primary={}, replica={})",
+                routingDataSource.getPrimaryPool().getMaximumPoolSize(),
+                routingDataSource.getReplicaPool().getMaximumPoolSize());
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
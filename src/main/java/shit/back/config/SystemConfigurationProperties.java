@@ -77,8 +77,8 @@ public class SystemConfigurationProperties {
          * Максимальное количество заказов в batch операции
          */
         @Min(1)
-        @Max(100)
-        private int maxBatchOrderSize = 50;
+        @Max(10000)
+        private int maxBatchOrderSize = 5000;
 
         /**
          * Максимальная длина заметок администратора
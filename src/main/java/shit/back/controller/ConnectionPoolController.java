@@ -7,7 +7,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import shit.back.service.ConnectionPoolMonitoringService;
+import shit.back.service.monitoring.ReplicaLagMonitoringService;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -21,6 +23,9 @@ public class ConnectionPoolController {
     @Autowired
     private ConnectionPoolMonitoringService connectionPoolMonitoringService;
 
+    @Autowired(required = false)
+    private ReplicaLagMonitoringService replicaLagMonitoringService;
+
     /**
      * Получение статистики connection pools
      */
@@ -36,6 +41,25 @@ public class ConnectionPoolController {
         }
     }
 
+    /**
+     * Статистика read/write маршрутизации по пулам primary/replica
+     */
+    @GetMapping("/connection-pools/routing")
+    public ResponseEntity<Map<String, Object>> getRoutingStats() {
+        if (replicaLagMonitoringService == null) {
+            return ResponseEntity.ok(Map.of("enabled", false));
+        }
+        try {
+            Map<String, Object> stats = new HashMap<>(replicaLagMonitoringService.getRoutingStatistics());
+            stats.put("enabled", true);
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            log.error("❌ Ошибка при получении статистики маршрутизации: {}", e.getMessage());
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Проверка health состояния connection pools
      */
@@ -2,40 +2,42 @@ package shit.back.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import shit.back.config.PaymentConfigurationProperties;
-import shit.back.entity.PaymentEntity;
+import shit.back.dto.payment.PaymentStatusView;
 import shit.back.entity.PaymentStatus;
 import shit.back.service.PaymentService;
 import shit.back.service.TestPaymentService;
+import shit.back.service.payment.PaymentCallbackInboxService;
+import shit.back.service.payment.PaymentStatusHub;
 import shit.back.security.SecurityValidator;
+import shit.back.security.signature.CallbackSignatureVerifier;
+import shit.back.security.signature.CallbackSignatureVerifier.CallbackProvider;
 
 import jakarta.servlet.http.HttpServletRequest;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Контроллер для обработки callback'ов от платежных систем
  * 
- * Обрабатывает уведомления о статусе платежей от различных платежных систем
- * и автоматически обновляет баланс пользователей
+ * Обрабатывает уведомления о статусе платежей от различных платежных систем.
+ * После проверки подписи callback сохраняется в PaymentCallbackInboxService
+ * и сразу подтверждается; статус платежа и баланс обновляются воркерами inbox.
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/payment/callback")
 public class PaymentCallbackController {
 
+    private static final int MAX_STATUS_WAIT_SECONDS = 60;
+
     @Autowired
     private PaymentService paymentService;
 
@@ -45,12 +47,18 @@ public class PaymentCallbackController {
     @Autowired
     private SecurityValidator securityValidator;
 
+    @Autowired
+    private PaymentCallbackInboxService callbackInboxService;
+
+    @Autowired
+    private CallbackSignatureVerifier signatureVerifier;
+
+    @Autowired
+    private PaymentStatusHub paymentStatusHub;
+
     @Autowired(required = false)
     private TestPaymentService testPaymentService;
 
-    @Value("${TON_WEBHOOK_SECRET:}")
-    private String tonWebhookSecret;
-
     /**
      * Callback от TON Wallet
      */
@@ -84,16 +92,8 @@ public class PaymentCallbackController {
                 return createErrorResponse("Неверная подпись", HttpStatus.UNAUTHORIZED);
             }
 
-            // Обрабатываем callback
-            boolean success = paymentService.verifyPaymentCallback(paymentId, params);
-
-            if (success) {
-                log.info("✅ TON callback успешно обработан для платежа: {}", paymentId);
-                return createSuccessResponse("OK");
-            } else {
-                log.warn("❌ Ошибка при обработке TON callback для платежа: {}", paymentId);
-                return createErrorResponse("Ошибка обработки", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
+            // Сохраняем callback в inbox, обработка и зачисление выполняются асинхронно
+            return acceptCallback("TON", paymentId, params);
 
         } catch (Exception e) {
             log.error("❌ Исключение при обработке TON callback: {}", e.getMessage(), e);
@@ -134,16 +134,8 @@ public class PaymentCallbackController {
                 return createErrorResponse("Неверная подпись", HttpStatus.UNAUTHORIZED);
             }
 
-            // Обрабатываем callback
-            boolean success = paymentService.verifyPaymentCallback(paymentId, params);
-
-            if (success) {
-                log.info("✅ YooKassa callback успешно обработан для платежа: {}", paymentId);
-                return createSuccessResponse("OK");
-            } else {
-                log.warn("❌ Ошибка при обработке YooKassa callback для платежа: {}", paymentId);
-                return createErrorResponse("Ошибка обработки", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
+            // Сохраняем callback в inbox, обработка и зачисление выполняются асинхронно
+            return acceptCallback("YOOKASSA", paymentId, params);
 
         } catch (Exception e) {
             log.error("❌ Исключение при обработке YooKassa callback: {}", e.getMessage(), e);
@@ -184,16 +176,8 @@ public class PaymentCallbackController {
                 return createErrorResponse("Неверная подпись", HttpStatus.UNAUTHORIZED);
             }
 
-            // Обрабатываем callback
-            boolean success = paymentService.verifyPaymentCallback(paymentId, params);
-
-            if (success) {
-                log.info("✅ Fragment callback успешно обработан для платежа: {}", paymentId);
-                return createSuccessResponse("OK");
-            } else {
-                log.warn("❌ Ошибка при обработке Fragment callback для платежа: {}", paymentId);
-                return createErrorResponse("Ошибка обработки", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
+            // Сохраняем callback в inbox, обработка и зачисление выполняются асинхронно
+            return acceptCallback("FRAGMENT", paymentId, params);
 
         } catch (Exception e) {
             log.error("❌ Исключение при обработке Fragment callback: {}", e.getMessage(), e);
@@ -234,16 +218,8 @@ public class PaymentCallbackController {
                 return createErrorResponse("Неверная подпись", HttpStatus.UNAUTHORIZED);
             }
 
-            // Обрабатываем callback
-            boolean success = paymentService.verifyPaymentCallback(paymentId, params);
-
-            if (success) {
-                log.info("✅ UZS callback успешно обработан для платежа: {}", paymentId);
-                return createSuccessResponse("OK");
-            } else {
-                log.warn("❌ Ошибка при обработке UZS callback для платежа: {}", paymentId);
-                return createErrorResponse("Ошибка обработки", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
+            // Сохраняем callback в inbox, обработка и зачисление выполняются асинхронно
+            return acceptCallback("UZS", paymentId, params);
 
         } catch (Exception e) {
             log.error("❌ Исключение при обработке UZS callback: {}", e.getMessage(), e);
@@ -253,44 +229,23 @@ public class PaymentCallbackController {
 
     /**
      * Универсальный endpoint для проверки статуса платежа
+     * Статус отдается из PaymentStatusHub, БД читается только при промахе кэша
      */
     @GetMapping("/status/{paymentId}")
     public ResponseEntity<Map<String, Object>> getPaymentStatus(@PathVariable String paymentId) {
-        log.info("🔍 Запрос статуса платежа: {}", paymentId);
+        log.debug("🔍 Запрос статуса платежа: {}", paymentId);
 
         try {
-            // Валидация payment ID
-            if (paymentId == null || paymentId.trim().isEmpty() || paymentId.length() > 50) {
+            if (!isValidPaymentId(paymentId)) {
                 return createErrorResponse("Некорректный ID платежа", HttpStatus.BAD_REQUEST);
             }
 
-            Optional<PaymentEntity> paymentOpt = paymentService.getPayment(paymentId);
-
-            if (paymentOpt.isEmpty()) {
+            Optional<PaymentStatusView> status = paymentStatusHub.getStatus(paymentId);
+            if (status.isEmpty()) {
                 return createErrorResponse("Платеж не найден", HttpStatus.NOT_FOUND);
             }
 
-            PaymentEntity payment = paymentOpt.get();
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("payment_id", payment.getPaymentId());
-            response.put("status", payment.getStatus().name());
-            response.put("status_display", payment.getFormattedStatus());
-            response.put("amount", payment.getFormattedAmount());
-            response.put("payment_method", payment.getPaymentMethod());
-            response.put("created_at", payment.getCreatedAt());
-            response.put("updated_at", payment.getUpdatedAt());
-
-            if (payment.getCompletedAt() != null) {
-                response.put("completed_at", payment.getCompletedAt());
-            }
-
-            if (payment.getErrorMessage() != null) {
-                response.put("error_message", payment.getErrorMessage());
-            }
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(status.get().toResponse());
 
         } catch (Exception e) {
             log.error("❌ Ошибка при получении статуса платежа {}: {}", paymentId, e.getMessage(), e);
@@ -298,6 +253,58 @@ public class PaymentCallbackController {
         }
     }
 
+    /**
+     * Long-poll ожидание изменения статуса
+     *
+     * Ответ приходит сразу, если статус отличается от known (или known не
+     * передан), иначе после изменения статуса или через timeout секунд.
+     * Поле changed в ответе показывает, изменился ли статус.
+     */
+    @GetMapping("/status/{paymentId}/wait")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> waitForPaymentStatus(
+            @PathVariable String paymentId,
+            @RequestParam(required = false) String known,
+            @RequestParam(defaultValue = "25") int timeout) {
+
+        if (!isValidPaymentId(paymentId)) {
+            DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>();
+            result.setResult(createErrorResponse("Некорректный ID платежа", HttpStatus.BAD_REQUEST));
+            return result;
+        }
+
+        int timeoutSeconds = Math.max(1, Math.min(timeout, MAX_STATUS_WAIT_SECONDS));
+        return paymentStatusHub.awaitChange(paymentId, parseStatus(known), timeoutSeconds * 1000L);
+    }
+
+    /**
+     * SSE поток статуса платежа (событие "status"), закрывается после финального статуса
+     */
+    @GetMapping(value = "/status/{paymentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPaymentStatus(@PathVariable String paymentId) {
+        if (!isValidPaymentId(paymentId)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return paymentStatusHub.subscribe(paymentId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private boolean isValidPaymentId(String paymentId) {
+        return paymentId != null && !paymentId.trim().isEmpty() && paymentId.length() <= 50;
+    }
+
+    private PaymentStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return PaymentStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     // ===== МЕТОДЫ ИЗВЛЕЧЕНИЯ ПАРАМЕТРОВ =====
 
     private Map<String, String> extractTonParams(Map<String, Object> payload) {
@@ -360,124 +367,13 @@ public class PaymentCallbackController {
      * @return true если подпись корректна, false в противном случае
      */
     private boolean verifyTonSignature(Map<String, String> params, Map<String, String> headers) {
-        try {
-            // Получаем секретный ключ из переменных окружения
-            if (tonWebhookSecret == null || tonWebhookSecret.trim().isEmpty()) {
-                log.error("🔒 TON webhook secret не настроен в переменных окружения");
-                return false;
-            }
-
-            // Извлекаем подпись из заголовков
-            String providedSignature = headers.get("x-signature");
-            if (providedSignature == null) {
-                providedSignature = headers.get("X-Signature");
-            }
-            if (providedSignature == null) {
-                providedSignature = headers.get("signature");
-            }
-
-            if (providedSignature == null || providedSignature.trim().isEmpty()) {
-                log.warn("⚠️ TON callback: Отсутствует подпись в заголовках");
-                return false;
-            }
-
-            // Удаляем префикс "sha256=" если присутствует
-            if (providedSignature.startsWith("sha256=")) {
-                providedSignature = providedSignature.substring(7);
-            }
-
-            // Строим строку для подписи из параметров
-            String signatureString = buildTonSignatureString(params);
-            log.debug("🔍 TON signature string: {}", signatureString);
-
-            // Вычисляем HMAC-SHA256
-            String computedSignature = computeHmacSha256(signatureString, tonWebhookSecret.trim());
-
-            // Безопасное сравнение подписей (constant-time)
-            boolean isValid = constantTimeEquals(providedSignature, computedSignature);
-
-            if (isValid) {
-                log.info("✅ TON webhook signature успешно верифицирована для платежа: {}",
-                        params.get("payment_id"));
-            } else {
-                log.warn("❌ TON webhook signature не прошла верификацию. Payment ID: {}, " +
-                        "Expected: {}, Provided: {}",
-                        params.get("payment_id"), computedSignature, providedSignature);
-            }
-
-            return isValid;
-
-        } catch (Exception e) {
-            log.error("💥 Ошибка при верификации TON подписи для платежа {}: {}",
-                    params.get("payment_id"), e.getMessage(), e);
+        String providedSignature = firstHeader(headers, "x-signature", "X-Signature", "signature");
+        if (providedSignature == null) {
+            log.warn("⚠️ TON callback: Отсутствует подпись в заголовках");
             return false;
         }
-    }
-
-    /**
-     * Строит строку для подписи из параметров TON callback'а
-     * согласно спецификации TON Wallet API
-     */
-    private String buildTonSignatureString(Map<String, String> params) {
-        // Сортируем параметры по ключу и объединяем в строку
-        // Формат: key1=value1&key2=value2&...
-        return params.entrySet()
-                .stream()
-                .filter(entry -> entry.getKey() != null && entry.getValue() != null)
-                .sorted(Map.Entry.comparingByKey())
-                .map(entry -> entry.getKey() + "=" + entry.getValue())
-                .collect(Collectors.joining("&"));
-    }
-
-    /**
-     * Вычисляет HMAC-SHA256 подпись
-     *
-     * @param data данные для подписи
-     * @param key  секретный ключ
-     * @return HEX представление HMAC-SHA256
-     */
-    private String computeHmacSha256(String data, String key) throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        mac.init(keySpec);
-
-        byte[] hmacBytes = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-        // Конвертируем в HEX
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hmacBytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-
-        return hexString.toString();
-    }
-
-    /**
-     * Безопасное сравнение строк для предотвращения timing attacks
-     *
-     * @param a первая строка
-     * @param b вторая строка
-     * @return true если строки идентичны
-     */
-    private boolean constantTimeEquals(String a, String b) {
-        if (a == null || b == null) {
-            return a == b;
-        }
-
-        if (a.length() != b.length()) {
-            return false;
-        }
-
-        int result = 0;
-        for (int i = 0; i < a.length(); i++) {
-            result |= a.charAt(i) ^ b.charAt(i);
-        }
-
-        return result == 0;
+        return logVerification(CallbackProvider.TON, params,
+                signatureVerifier.verify(CallbackProvider.TON, params, providedSignature));
     }
 
     private boolean verifyYooKassaSignature(Map<String, String> params, Map<String, String> headers) {
@@ -487,89 +383,63 @@ public class PaymentCallbackController {
     }
 
     private boolean verifyFragmentSignature(Map<String, String> params, Map<String, String> headers) {
-        try {
-            String fragmentToken = paymentConfig.getFragment().getToken();
-            if (fragmentToken == null || fragmentToken.trim().isEmpty()) {
-                log.error("🔒 Fragment API token не настроен");
-                return false;
-            }
-
-            String providedSignature = headers.get("x-telegram-bot-api-secret-token");
-            if (providedSignature == null) {
-                providedSignature = headers.get("X-Telegram-Bot-Api-Secret-Token");
-            }
-
-            if (providedSignature == null || providedSignature.trim().isEmpty()) {
-                log.warn("⚠️ Fragment callback: Отсутствует подпись в заголовках");
-                return false;
-            }
-
-            // Telegram Fragment использует простое сравнение токенов
-            boolean isValid = constantTimeEquals(providedSignature, fragmentToken);
-
-            if (isValid) {
-                log.info("✅ Fragment signature успешно верифицирована для платежа: {}", params.get("payment_id"));
-            } else {
-                log.warn("❌ Fragment signature не прошла верификацию для платежа: {}", params.get("payment_id"));
-            }
-
-            return isValid;
-
-        } catch (Exception e) {
-            log.error("💥 Ошибка при верификации Fragment подписи: {}", e.getMessage(), e);
+        String providedSignature = firstHeader(headers,
+                "x-telegram-bot-api-secret-token", "X-Telegram-Bot-Api-Secret-Token");
+        if (providedSignature == null) {
+            log.warn("⚠️ Fragment callback: Отсутствует подпись в заголовках");
             return false;
         }
+        // Telegram Fragment передает секретный токен, а не HMAC
+        return logVerification(CallbackProvider.FRAGMENT, params,
+                signatureVerifier.verify(CallbackProvider.FRAGMENT, params, providedSignature));
     }
 
     private boolean verifyUzsSignature(Map<String, String> params, Map<String, String> headers) {
-        try {
-            String uzsSecret = paymentConfig.getUzsPayment().getSecretKey();
-            if (uzsSecret == null || uzsSecret.trim().isEmpty()) {
-                log.error("🔒 UZS secret key не настроен");
-                return false;
-            }
-
-            String providedSignature = headers.get("x-signature");
-            if (providedSignature == null) {
-                providedSignature = headers.get("signature");
-            }
-
-            if (providedSignature == null || providedSignature.trim().isEmpty()) {
-                log.warn("⚠️ UZS callback: Отсутствует подпись в заголовках");
-                return false;
-            }
-
-            // Строим строку для подписи из параметров UZS
-            String signatureString = buildUzsSignatureString(params);
-            String computedSignature = computeHmacSha256(signatureString, uzsSecret);
-
-            boolean isValid = constantTimeEquals(providedSignature, computedSignature);
+        String providedSignature = firstHeader(headers, "x-signature", "signature");
+        if (providedSignature == null) {
+            log.warn("⚠️ UZS callback: Отсутствует подпись в заголовках");
+            return false;
+        }
+        return logVerification(CallbackProvider.UZS, params,
+                signatureVerifier.verify(CallbackProvider.UZS, params, providedSignature));
+    }
 
-            if (isValid) {
-                log.info("✅ UZS signature успешно верифицирована для платежа: {}", params.get("payment_id"));
-            } else {
-                log.warn("❌ UZS signature не прошла верификацию для платежа: {}", params.get("payment_id"));
+    private String firstHeader(Map<String, String> headers, String... names) {
+        for (String name : names) {
+            String value = headers.get(name);
+            if (value != null && !value.trim().isEmpty()) {
+                return value;
             }
-
-            return isValid;
-
-        } catch (Exception e) {
-            log.error("💥 Ошибка при верификации UZS подписи: {}", e.getMessage(), e);
-            return false;
         }
+        return null;
     }
 
-    private String buildUzsSignatureString(Map<String, String> params) {
-        return params.entrySet()
-                .stream()
-                .filter(entry -> entry.getKey() != null && entry.getValue() != null)
-                .sorted(Map.Entry.comparingByKey())
-                .map(entry -> entry.getKey() + "=" + entry.getValue())
-                .collect(Collectors.joining("&"));
+    private boolean logVerification(CallbackProvider provider, Map<String, String> params, boolean isValid) {
+        if (isValid) {
+            log.info("✅ {} signature успешно верифицирована для платежа: {}", provider, params.get("payment_id"));
+        } else {
+            log.warn("❌ {} signature не прошла верификацию для платежа: {}", provider, params.get("payment_id"));
+        }
+        return isValid;
     }
 
     // ===== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ =====
 
+    /**
+     * Подтверждение провайдеру после сохранения callback'а в inbox
+     *
+     * Повторная доставка того же callback'а тоже подтверждается, чтобы
+     * провайдер прекратил ретраи.
+     */
+    private ResponseEntity<Map<String, Object>> acceptCallback(String provider, String paymentId,
+            Map<String, String> params) {
+        PaymentCallbackInboxService.EnqueueResult result = callbackInboxService.enqueue(provider, paymentId, params);
+        log.info("📥 {} callback для платежа {} принят в обработку: {}", provider, paymentId, result);
+        return createSuccessResponse(result == PaymentCallbackInboxService.EnqueueResult.DUPLICATE
+                ? "DUPLICATE"
+                : "ACCEPTED");
+    }
+
     private ResponseEntity<Map<String, Object>> createSuccessResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
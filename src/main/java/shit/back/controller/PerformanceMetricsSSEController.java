@@ -41,6 +41,8 @@ public class PerformanceMetricsSSEController {
         @GetMapping(value = "/stream", produces = "text/event-stream")
         public SseEmitter streamPerformanceMetrics(
                         @RequestParam(value = "timeout", defaultValue = "300000") Long timeoutMs,
+                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                        @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
                         jakarta.servlet.http.HttpServletResponse response) {
 
                 long connectionId = totalConnections.incrementAndGet();
@@ -70,7 +72,8 @@ public class PerformanceMetricsSSEController {
                         // Регистрируем emitter в background service
                         log.info("📡 ДИАГНОСТИКА SSE: Registering emitter #{} in BackgroundMetricsService",
                                         connectionId);
-                        backgroundMetricsService.addSSEConnection(emitter);
+                        backgroundMetricsService.addSSEConnection(emitter,
+                                        parseLastEventId(lastEventIdHeader, lastEventIdParam));
                         log.info("🔍 ДИАГНОСТИКА SSE: Emitter registration completed for connection #{}", connectionId);
 
                         // Настройка callbacks для статистики
@@ -175,6 +178,7 @@ public class PerformanceMetricsSSEController {
                                                 "lastDuration", serviceStats.getLastCollectionDuration() + "ms",
                                                 "lastSuccessful", serviceStats.getLastSuccessfulCollection(),
                                                 "isHealthy", serviceStats.getIsHealthy()),
+                                "replay", backgroundMetricsService.getReplayStatistics(),
                                 "performance", Map.of(
                                                 "avgCollectionTime", serviceStats.getLastCollectionDuration() + "ms",
                                                 "collectionsPerMinute", serviceStats.getTotalCollections() > 0 ? 6 : 0, // 10
@@ -195,6 +199,24 @@ public class PerformanceMetricsSSEController {
 
         // ==================== HELPER METHODS ====================
 
+        /**
+         * Номер последнего полученного снимка: заголовок Last-Event-ID при
+         * автоматическом переподключении EventSource или параметр lastEventId,
+         * когда страница пересоздает EventSource сама
+         */
+        private Long parseLastEventId(String header, String param) {
+                String value = header != null && !header.isBlank() ? header : param;
+                if (value == null || value.isBlank()) {
+                        return null;
+                }
+                try {
+                        return Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                        log.warn("⚠️ SSE: Invalid Last-Event-ID '{}', sending latest metrics", value);
+                        return null;
+                }
+        }
+
         /**
          * Настройка callbacks для SSE emitter
          */
@@ -3,13 +3,13 @@ package shit.back.controller.admin.api;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
 import shit.back.service.UserActivityLogService;
 import shit.back.service.activity.UserActivityStatisticsService;
 import shit.back.service.admin.shared.AdminAuthenticationService;
@@ -17,6 +17,8 @@ import shit.back.service.admin.shared.AdminSecurityHelper;
 import shit.back.entity.UserActivityLogEntity;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -46,6 +48,8 @@ public class AdminActivityStreamController {
     @GetMapping(value = "/activity-stream-categorized", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter getActivityStreamCategorized(
             @RequestParam(value = "category", required = false) String categoryParam,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
             HttpServletRequest request) {
 
         long startTime = System.currentTimeMillis();
@@ -85,7 +89,8 @@ public class AdminActivityStreamController {
                     "Подключение к категоризированному потоку активности: " + clientId + ", категория: "
                             + categoryParam);
 
-            SseEmitter emitter = userActivityLogService.createSseConnection(clientId, category);
+            SseEmitter emitter = userActivityLogService.createSseConnection(clientId, category,
+                    parseLastEventId(lastEventIdHeader, lastEventIdParam));
 
             long setupTime = System.currentTimeMillis() - startTime;
             log.info("🔧 DEBUG: SSE connection setup completed in {}ms for client: {}", setupTime, clientId);
@@ -108,7 +113,10 @@ public class AdminActivityStreamController {
      * ИСПРАВЛЕНИЕ: Базовый SSE endpoint без категорий
      */
     @GetMapping(value = "/activity-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter getActivityStream(HttpServletRequest request) {
+    public SseEmitter getActivityStream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+            HttpServletRequest request) {
 
         log.info("🔧 DEBUG: Basic SSE connection request received - URL: {}", request.getRequestURL());
 
@@ -131,7 +139,8 @@ public class AdminActivityStreamController {
             adminSecurityHelper.logAdminActivity(request, "API_SSE_CONNECT",
                     "Подключение к потоку активности через SSE: " + clientId);
 
-            return userActivityLogService.createSseConnection(clientId);
+            return userActivityLogService.createSseConnection(clientId, null,
+                    parseLastEventId(lastEventIdHeader, lastEventIdParam));
 
         } catch (Exception e) {
             log.error("🔧 DEBUG: Error creating activity stream SSE connection", e);
@@ -215,17 +224,21 @@ public class AdminActivityStreamController {
     }
 
     /**
-     * ИСПРАВЛЕНИЕ: Получение логов активности по категориям
+     * Логи активности по категориям, постранично по курсору
+     *
+     * Первая страница запрашивается без cursor и дополнительно возвращает
+     * примерное количество записей (оценка планировщика, null вне
+     * PostgreSQL); следующая - с nextCursor из предыдущего ответа.
      */
     @GetMapping(value = "/activity-logs-by-category", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Object> getActivityLogsByCategory(
             @RequestParam(value = "category", required = false) String categoryParam,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(value = "cursor", required = false) String cursor,
             @RequestParam(defaultValue = "20") int size,
             HttpServletRequest request) {
         try {
-            log.info("🔧 DEBUG: Activity logs by category request - category: {}, page: {}, size: {}",
-                    categoryParam, page, size);
+            log.info("🔧 DEBUG: Activity logs by category request - category: {}, cursor: {}, size: {}",
+                    categoryParam, cursor, size);
 
             // Аутентификация
             if (!adminAuthenticationService.validateApiRequest(request)) {
@@ -234,35 +247,44 @@ public class AdminActivityStreamController {
                         .body(Map.of("error", "Unauthorized access"));
             }
 
-            Pageable pageable = PageRequest.of(page, size);
-            Page<UserActivityLogEntity> activities;
+            ActivityLogSearchCriteria.ActivityLogSearchCriteriaBuilder criteria = ActivityLogSearchCriteria.builder()
+                    .limit(size)
+                    .cursor(cursor)
+                    .includeApproximateTotal(cursor == null);
 
             if (categoryParam != null && !"ALL".equals(categoryParam)) {
                 try {
-                    UserActivityLogEntity.LogCategory category = UserActivityLogEntity.LogCategory
-                            .valueOf(categoryParam);
-                    activities = userActivityLogService.getActivitiesByCategory(category, pageable);
-                    log.debug("🔧 DEBUG: Retrieved {} activities for category {}", activities.getSize(), category);
+                    criteria.logCategories(List.of(UserActivityLogEntity.LogCategory.valueOf(categoryParam)));
                 } catch (IllegalArgumentException e) {
                     log.warn("🔧 DEBUG: Invalid category: {}, returning all activities", categoryParam);
-                    activities = userActivityLogService.getAllActivities(pageable);
                 }
-            } else {
-                activities = userActivityLogService.getAllActivities(pageable);
-                log.debug("🔧 DEBUG: Retrieved {} activities for ALL categories", activities.getSize());
             }
 
+            ActivityLogSearchResult activities;
+            try {
+                activities = userActivityLogService.searchActivities(criteria.build());
+            } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+                // прокси репозитория оборачивает IllegalArgumentException в InvalidDataAccessApiUsageException
+                log.warn("🔧 DEBUG: Invalid activity logs cursor: {}", cursor);
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid cursor", "message", e.getMessage()));
+            }
+            log.debug("🔧 DEBUG: Retrieved {} activities for category {}",
+                    activities.getActivities().size(), categoryParam);
+
             adminSecurityHelper.logAdminActivity(request, "API_ACTIVITY_LOGS_BY_CATEGORY",
                     "Получение логов активности по категории: " + categoryParam);
 
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "activities", activities.getContent(),
-                    "totalElements", activities.getTotalElements(),
-                    "totalPages", activities.getTotalPages(),
-                    "size", activities.getSize(),
-                    "number", activities.getNumber(),
-                    "category", categoryParam != null ? categoryParam : "ALL"));
+            // HashMap: nextCursor и approximateTotal бывают null
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("activities", activities.getActivities());
+            response.put("nextCursor", activities.getNextCursor());
+            response.put("hasNext", activities.isHasNext());
+            response.put("approximateTotal", activities.getApproximateTotal());
+            response.put("size", size);
+            response.put("category", categoryParam != null ? categoryParam : "ALL");
+            return ResponseEntity.ok(response);
 
         } catch (Exception e) {
             log.error("🔧 DEBUG: Error getting activity logs by category", e);
@@ -270,4 +292,22 @@ public class AdminActivityStreamController {
                     .body(Map.of("error", "Failed to get activity logs", "message", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Позиция для продолжения потока: заголовок Last-Event-ID (автоматическое
+     * переподключение EventSource) или параметр lastEventId (страница
+     * пересоздает EventSource сама, и браузер заголовок не передает)
+     */
+    private Long parseLastEventId(String header, String param) {
+        String value = header != null && !header.isBlank() ? header : param;
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid Last-Event-ID '{}', starting a fresh activity stream", value);
+            return null;
+        }
+    }
+}
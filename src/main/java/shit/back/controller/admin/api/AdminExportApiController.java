@@ -0,0 +1,288 @@
+package shit.back.controller.admin.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import shit.back.entity.OrderEntity.OrderStatus;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.service.export.AdminDataExportService;
+import shit.back.service.export.BalanceHistoryExportService;
+import shit.back.service.export.ExportFormat;
+import shit.back.service.export.ExportPermits;
+import shit.back.web.controller.admin.AdminBaseController;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * API выгрузок для администраторов
+ *
+ * Файлы не собираются в памяти: строки из курсора БД пишутся прямо в
+ * ответ (chunked transfer encoding). Разрешение ExportPermits берется до
+ * начала ответа, поэтому при превышении лимита клиент получает 429, а не
+ * оборванный файл.
+ *
+ * Заказы и журнал активности выгружаются в NDJSON или CSV (gzip=true
+ * отдает .gz), фильтры дат - включительно, в формате YYYY-MM-DD,
+ * фильтры статусов и категорий - списком через запятую.
+ */
+@RestController
+@RequestMapping("/admin/api/exports")
+public class AdminExportApiController extends AdminBaseController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminExportApiController.class);
+
+    @Autowired
+    private BalanceHistoryExportService balanceHistoryExportService;
+
+    @Autowired
+    private AdminDataExportService adminDataExportService;
+
+    @Autowired
+    private ExportPermits exportPermits;
+
+    /**
+     * История баланса пользователя в CSV или XLSX
+     */
+    @GetMapping("/balance-history/{userId}")
+    public ResponseEntity<?> exportBalanceHistory(@PathVariable Long userId,
+            @RequestParam(value = "format", required = false) String formatParam,
+            HttpServletRequest request) {
+        if (!validateApiAuthentication(request)) {
+            return ResponseEntity.status(401)
+                    .body(createErrorResponse("Unauthorized access", null));
+        }
+
+        ExportFormat format;
+        try {
+            format = ExportFormat.parse(formatParam);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Unsupported export format: " + formatParam, null));
+        }
+
+        ExportPermits.Permit permit = exportPermits.tryAcquire();
+        if (permit == null) {
+            return ResponseEntity.status(429)
+                    .body(createErrorResponse("Too many concurrent exports, retry later", null));
+        }
+
+        logAdminActivity(request, "EXPORT_BALANCE_HISTORY", "Выгрузка истории баланса пользователя " + userId);
+
+        StreamingResponseBody body = output -> {
+            try (permit) {
+                long rows = balanceHistoryExportService.writeHistory(userId, format, output);
+                log.info("📤 EXPORT: История баланса пользователя {} выгружена администратором ({} строк, {})",
+                        userId, rows, format);
+            } catch (Exception e) {
+                log.error("❌ EXPORT: Ошибка выгрузки истории баланса пользователя {}: {}", userId, e.getMessage());
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(BalanceHistoryExportService.fileName(userId, format))
+                        .build().toString())
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * Все заказы за период: ?format=ndjson|csv&status=COMPLETED,FAILED&startDate=&endDate=&gzip=true
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam(value = "format", defaultValue = "ndjson") String formatParam,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        if (!validateApiAuthentication(request)) {
+            return ResponseEntity.status(401)
+                    .body(createErrorResponse("Unauthorized access", null));
+        }
+
+        ExportFormat format;
+        List<OrderStatus> statuses;
+        LocalDateTime from;
+        LocalDateTime to;
+        try {
+            format = parseStreamingFormat(formatParam);
+            statuses = parseEnumList(status, OrderStatus.class);
+            from = parseStartDate(startDate);
+            to = parseEndDate(endDate);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Invalid export filter: " + e.getMessage(), null));
+        }
+
+        ExportPermits.Permit permit = exportPermits.tryAcquire();
+        if (permit == null) {
+            return ResponseEntity.status(429)
+                    .body(createErrorResponse("Too many concurrent exports, retry later", null));
+        }
+
+        logAdminActivity(request, "EXPORT_ORDERS",
+                "Выгрузка заказов " + startDate + " - " + endDate + ", статусы " + statuses);
+
+        StreamingResponseBody body = output -> {
+            try (permit) {
+                long started = System.currentTimeMillis();
+                long rows = adminDataExportService.writeOrders(from, to, statuses, format, gzip, output);
+                log.info("📤 EXPORT: Выгружено {} заказов ({}, gzip={}) за {} мс",
+                        rows, format, gzip, System.currentTimeMillis() - started);
+            } catch (Exception e) {
+                log.error("❌ EXPORT: Ошибка выгрузки заказов: {}", e.getMessage());
+                throw e;
+            }
+        };
+        return streamingResponse("orders", format, gzip, body);
+    }
+
+    /**
+     * Журнал активности за период: ?format=ndjson|csv&category=TELEGRAM_BOT&actionType=ORDER_CREATED&startDate=&endDate=&gzip=true
+     */
+    @GetMapping("/activity-logs")
+    public ResponseEntity<?> exportActivityLogs(
+            @RequestParam(value = "format", defaultValue = "ndjson") String formatParam,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String actionType,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        if (!validateApiAuthentication(request)) {
+            return ResponseEntity.status(401)
+                    .body(createErrorResponse("Unauthorized access", null));
+        }
+
+        ExportFormat format;
+        List<LogCategory> categories;
+        List<ActionType> actionTypes;
+        LocalDateTime from;
+        LocalDateTime to;
+        try {
+            format = parseStreamingFormat(formatParam);
+            categories = parseEnumList(category, LogCategory.class);
+            actionTypes = parseEnumList(actionType, ActionType.class);
+            from = parseStartDate(startDate);
+            to = parseEndDate(endDate);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Invalid export filter: " + e.getMessage(), null));
+        }
+
+        ExportPermits.Permit permit = exportPermits.tryAcquire();
+        if (permit == null) {
+            return ResponseEntity.status(429)
+                    .body(createErrorResponse("Too many concurrent exports, retry later", null));
+        }
+
+        logAdminActivity(request, "EXPORT_ACTIVITY_LOGS",
+                "Выгрузка журнала активности " + startDate + " - " + endDate + ", категории " + categories);
+
+        StreamingResponseBody body = output -> {
+            try (permit) {
+                long started = System.currentTimeMillis();
+                long rows = adminDataExportService.writeActivityLogs(from, to, categories, actionTypes,
+                        format, gzip, output);
+                log.info("📤 EXPORT: Выгружено {} записей журнала активности ({}, gzip={}) за {} мс",
+                        rows, format, gzip, System.currentTimeMillis() - started);
+            } catch (Exception e) {
+                log.error("❌ EXPORT: Ошибка выгрузки журнала активности: {}", e.getMessage());
+                throw e;
+            }
+        };
+        return streamingResponse("activity-logs", format, gzip, body);
+    }
+
+    /**
+     * Статистика выгрузок: активные, отклоненные по лимиту, выгруженные строки
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getExportStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(balanceHistoryExportService.getStatistics());
+            response.putAll(adminDataExportService.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики выгрузок", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get export stats", e));
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(String name, ExportFormat format, boolean gzip,
+            StreamingResponseBody body) {
+        String fileName = name + "-" + LocalDate.now() + "." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName)
+                        .build().toString())
+                .contentType(gzip
+                        ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(format.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * Для полных выгрузок только построчные форматы: в XLSX не больше 1 048 576 строк
+     */
+    private ExportFormat parseStreamingFormat(String value) {
+        ExportFormat format = ExportFormat.parse(value);
+        if (format == ExportFormat.XLSX) {
+            throw new IllegalArgumentException("XLSX is not supported for full exports, use ndjson or csv");
+        }
+        return format;
+    }
+
+    /**
+     * Список значений через запятую; неизвестное значение - ошибка, а не
+     * пропуск фильтра, иначе опечатка выгрузит всю таблицу
+     */
+    private static <E extends Enum<E>> List<E> parseEnumList(String value, Class<E> type) {
+        List<E> result = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                result.add(Enum.valueOf(type, item.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return result;
+    }
+
+    private static LocalDateTime parseStartDate(String value) {
+        return value == null || value.isBlank() ? null : LocalDate.parse(value.trim()).atStartOfDay();
+    }
+
+    // конечная дата включительно: верхняя граница - начало следующего дня
+    private static LocalDateTime parseEndDate(String value) {
+        return value == null || value.isBlank() ? null : LocalDate.parse(value.trim()).plusDays(1).atStartOfDay();
+    }
+}
@@ -16,11 +16,30 @@ import shit.back.dto.monitoring.PerformanceMetrics;
 import shit.back.service.admin.shared.AdminAuthenticationService;
 import shit.back.service.admin.shared.AdminSecurityHelper;
 import shit.back.service.metrics.CacheMetricsService;
+import shit.back.service.payment.PaymentCallbackInboxService;
+import shit.back.service.payment.PaymentExpirySweeper;
+import shit.back.service.payment.PaymentStatusHub;
+import shit.back.service.catalog.StarPackageCatalog;
+import shit.back.service.catalog.StarPackageSalesCounter;
+import shit.back.infrastructure.fragment.FragmentPurchaseClient;
+import shit.back.service.purchase.StarPurchaseSagaOrchestrator;
+import shit.back.service.activity.ActivityLogIngestionPipeline;
+import shit.back.service.activity.ActivityLogPartitionManager;
+import shit.back.service.activity.ActivityHeavyHittersService;
+import shit.back.service.activity.ActivityHeavyHittersService.Metric;
+import shit.back.service.activity.ActivityHeavyHittersService.Window;
+import shit.back.service.activity.ActivityRollupService;
+import shit.back.service.activity.SlidingTopK.HeavyHitter;
+import shit.back.service.activity.UserActivitySSEService;
+import shit.back.service.analytics.DistinctUserSketchService;
+import shit.back.service.maintenance.ChunkedMaintenanceEngine;
+import shit.back.security.signature.CallbackSignatureVerifier;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -56,6 +75,51 @@ public class AdminMonitoringApiController extends AdminBaseController {
     @Autowired
     private CacheMetricsService cacheMetricsService;
 
+    @Autowired
+    private PaymentCallbackInboxService paymentCallbackInboxService;
+
+    @Autowired
+    private PaymentExpirySweeper paymentExpirySweeper;
+
+    @Autowired
+    private PaymentStatusHub paymentStatusHub;
+
+    @Autowired
+    private StarPackageCatalog starPackageCatalog;
+
+    @Autowired
+    private StarPackageSalesCounter starPackageSalesCounter;
+
+    @Autowired
+    private FragmentPurchaseClient fragmentPurchaseClient;
+
+    @Autowired
+    private StarPurchaseSagaOrchestrator starPurchaseSagaOrchestrator;
+
+    @Autowired
+    private CallbackSignatureVerifier callbackSignatureVerifier;
+
+    @Autowired
+    private ActivityLogIngestionPipeline activityLogIngestionPipeline;
+
+    @Autowired
+    private ActivityLogPartitionManager activityLogPartitionManager;
+
+    @Autowired
+    private ActivityRollupService activityRollupService;
+
+    @Autowired
+    private ActivityHeavyHittersService heavyHittersService;
+
+    @Autowired
+    private DistinctUserSketchService distinctUserSketchService;
+
+    @Autowired
+    private UserActivitySSEService userActivitySSEService;
+
+    @Autowired
+    private ChunkedMaintenanceEngine chunkedMaintenanceEngine;
+
     private final LocalDateTime startTime = LocalDateTime.now();
 
     /**
@@ -184,6 +248,318 @@ public class AdminMonitoringApiController extends AdminBaseController {
         }
     }
 
+    /**
+     * Статистика inbox callback'ов платежных систем: глубина очереди,
+     * исходы обработки, задержка от приема до завершения и проверка подписей
+     */
+    @GetMapping(value = "/payment-callbacks/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getPaymentCallbackStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(paymentCallbackInboxService.getStatistics());
+            response.put("signatureVerification", callbackSignatureVerifier.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики payment callback inbox", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get payment callback stats", e));
+        }
+    }
+
+    /**
+     * Статистика очистки просроченных платежей: пропускная способность
+     * и количество просроченных, но еще не обработанных платежей
+     */
+    @GetMapping(value = "/payment-expiry/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getPaymentExpiryStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(paymentExpirySweeper.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики очистки просроченных платежей", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get payment expiry stats", e));
+        }
+    }
+
+    /**
+     * Статистика доставки статусов платежей: кэш, long-poll/SSE ожидания
+     * и чтения БД, сэкономленные на завершенный платеж
+     */
+    @GetMapping(value = "/payment-status-push/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getPaymentStatusPushStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(paymentStatusHub.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики доставки статусов платежей", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get payment status push stats", e));
+        }
+    }
+
+    /**
+     * Статистика каталога пакетов звезд: версия снимка, обновления
+     * и накопленные, еще не записанные продажи
+     */
+    @GetMapping(value = "/package-catalog/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getPackageCatalogStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("catalog", starPackageCatalog.getStatistics());
+            response.put("sales", starPackageSalesCounter.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики каталога пакетов", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get package catalog stats", e));
+        }
+    }
+
+    /**
+     * Статистика клиента покупок Fragment: запросы, повторы, состояние
+     * circuit breaker и незавершенные транзакции
+     */
+    @GetMapping(value = "/fragment-client/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getFragmentClientStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(fragmentPurchaseClient.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики клиента Fragment", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get Fragment client stats", e));
+        }
+    }
+
+    /**
+     * Статистика saga покупок звезд: покупки в работе, таймауты,
+     * возвраты и перцентили времени завершения
+     */
+    @GetMapping(value = "/star-purchase-saga/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getStarPurchaseSagaStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(starPurchaseSagaOrchestrator.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики saga покупок звезд", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get star purchase saga stats", e));
+        }
+    }
+
+    /**
+     * Статистика приема журнала активности: заполнение буфера, отброшенные
+     * события, размер batch и время записи, секции таблицы, счетчики в памяти,
+     * рассылка live-ленты с отставанием каждого подписчика
+     */
+    @GetMapping(value = "/activity-ingest/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getActivityIngestStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(activityLogIngestionPipeline.getStatistics());
+            response.put("partitioning", activityLogPartitionManager.getStatistics());
+            response.put("rollups", activityRollupService.getStatistics());
+            response.put("heavyHitters", heavyHittersService.getStatistics());
+            response.put("liveFeed", userActivitySSEService.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики приема журнала активности", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get activity ingest stats", e));
+        }
+    }
+
+    /**
+     * Top-K активных пользователей, покупателей и пакетов за окно HOUR, DAY
+     * или WEEK из памяти; maxError - граница погрешности оценки
+     */
+    @GetMapping(value = "/activity/top", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getActivityTop(
+            @RequestParam(defaultValue = "DAY") String window,
+            @RequestParam(defaultValue = "10") int limit,
+            HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Window topWindow;
+            try {
+                topWindow = Window.valueOf(window.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(createErrorResponse("Unknown window: " + window, null));
+            }
+            int topLimit = Math.max(1, Math.min(limit, 100));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("window", topWindow.name());
+            response.put("ready", heavyHittersService.isReady());
+            response.put("activeUsers", heavyHittersService.top(Metric.ACTIVE_USERS, topWindow, topLimit).stream()
+                    .map(hitter -> topEntry("userId", hitter, hitter.count(), hitter.maxError()))
+                    .toList());
+            response.put("spenders", heavyHittersService.top(Metric.SPENDERS, topWindow, topLimit).stream()
+                    .map(hitter -> topEntry("userId", hitter,
+                            ActivityHeavyHittersService.fromKopecks(hitter.count()),
+                            ActivityHeavyHittersService.fromKopecks(hitter.maxError())))
+                    .toList());
+            response.put("packages", heavyHittersService.top(Metric.PACKAGES, topWindow, topLimit).stream()
+                    .map(hitter -> topEntry("stars", hitter, hitter.count(), hitter.maxError()))
+                    .toList());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения top-K активности", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get activity top", e));
+        }
+    }
+
+    private Map<String, Object> topEntry(String keyName, HeavyHitter<Long> hitter, Object value, Object maxError) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(keyName, hitter.key());
+        entry.put("label", hitter.label());
+        entry.put("value", value);
+        entry.put("maxError", maxError);
+        return entry;
+    }
+
+    /**
+     * DAU/WAU/MAU по HyperLogLog-скетчам: точность, загрузка и сохранение
+     * дневных скетчей, занимаемая память
+     */
+    @GetMapping(value = "/analytics/distinct-users/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getDistinctUsersStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(distinctUserSketchService.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики скетчей пользователей", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get distinct users stats", e));
+        }
+    }
+
+    /**
+     * Статистика массовых операций обслуживания: строк в секунду, оставшаяся
+     * очередь, размер порции и пауза, владелец аренды и позиция прохода
+     */
+    @GetMapping(value = "/maintenance/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getMaintenanceStats(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> response = new HashMap<>(chunkedMaintenanceEngine.getStatistics());
+            response.put("success", true);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка получения статистики операций обслуживания", e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to get maintenance stats", e));
+        }
+    }
+
+    /**
+     * Ручной запуск операции обслуживания в фоне; ход выполнения - в /maintenance/stats
+     */
+    @PostMapping(value = "/maintenance/{operation}/run", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> runMaintenanceOperation(@PathVariable String operation,
+            HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(401)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+            if (!chunkedMaintenanceEngine.hasOperation(operation)) {
+                return ResponseEntity.status(404)
+                        .body(createErrorResponse("Unknown maintenance operation: " + operation, null));
+            }
+
+            chunkedMaintenanceEngine.runAsync(operation);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("operation", operation);
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.accepted().body(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка запуска операции обслуживания {}", operation, e);
+            return ResponseEntity.status(500)
+                    .body(createErrorResponse("Failed to start maintenance operation", e));
+        }
+    }
+
     /**
      * Дополнительный endpoint: Получение статуса системы
      */
@@ -2,6 +2,7 @@ package shit.back.controller.admin.api;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,11 +14,15 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import shit.back.web.controller.admin.AdminBaseController;
 import shit.back.web.controller.admin.AdminDashboardOperations;
+import shit.back.dto.order.BatchUpdateResult;
 import shit.back.entity.OrderEntity;
 import shit.back.entity.UserActivityLogEntity.ActionType;
 import shit.back.service.OrderService;
+import shit.back.dto.order.OrderSearchCriteria;
+import shit.back.dto.order.OrderSearchResult;
 import shit.back.dto.order.OrderStatistics;
 import shit.back.service.UserActivityLogService;
+import shit.back.service.analytics.OrderAnalyticsRollupService;
 import shit.back.service.admin.shared.AdminAuthenticationService;
 import shit.back.service.admin.shared.AdminValidationService;
 
@@ -49,6 +54,9 @@ public class AdminOrdersApiController extends AdminBaseController {
     @Autowired
     private AdminValidationService adminValidationService;
 
+    @Autowired
+    private OrderAnalyticsRollupService rollupService;
+
     /**
      * Получение заказов с фильтрами (JSON API)
      */
@@ -109,6 +117,67 @@ public class AdminOrdersApiController extends AdminBaseController {
         }
     }
 
+    /**
+     * Поиск заказов с keyset пагинацией (JSON API)
+     * Возвращает облегченные проекции и курсор следующей страницы без подсчета total
+     */
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> searchOrders(
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            HttpServletRequest request) {
+
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("Unauthorized access", null));
+            }
+
+            Map<String, Object> validationResult = adminValidationService.validatePaginationParams(0, size);
+            if (!(Boolean) validationResult.get("valid")) {
+                return ResponseEntity.badRequest()
+                        .body(createErrorResponse("Invalid parameters", null));
+            }
+
+            OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                    .searchText(search)
+                    .status(adminValidationService.parseOrderStatus(status))
+                    .fromDate(adminValidationService.parseFilterDate(startDate, false))
+                    .toDate(adminValidationService.parseFilterDate(endDate, true))
+                    .sortBy(sortBy)
+                    .ascending("asc".equalsIgnoreCase(sortDir))
+                    .limit((Integer) validationResult.get("size"))
+                    .cursor(cursor)
+                    .build();
+
+            OrderSearchResult result = orderService.searchOrderSummaries(criteria);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("orders", result.getOrders());
+            response.put("nextCursor", result.getNextCursor());
+            response.put("hasNext", result.isHasNext());
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // репозиторий оборачивает IllegalArgumentException в InvalidDataAccessApiUsageException
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Invalid cursor", null));
+        } catch (Exception e) {
+            log.error("Error in orders search API", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Internal server error", e));
+        }
+    }
+
     /**
      * Получение конкретного заказа по ID
      */
@@ -228,34 +297,23 @@ public class AdminOrdersApiController extends AdminBaseController {
                         .body(createErrorResponse("Unauthorized", null));
             }
 
-            // Валидация количества заказов
-            if (request.getOrderIds().size() > 50) {
-                return ResponseEntity.badRequest()
-                        .body(createErrorResponse("Too many orders (max 50)", null));
-            }
-
-            // Обновление заказов
-            List<String> updatedOrders = new ArrayList<>();
+            // Проверка формата id, остальные заказы обновляются одним запросом
+            List<String> validOrderIds = new ArrayList<>();
             List<String> failedOrders = new ArrayList<>();
-
             for (String orderId : request.getOrderIds()) {
-                try {
-                    if (adminValidationService.isValidOrderId(orderId)) {
-                        Optional<OrderEntity> updated = orderService.updateOrderStatus(
-                                orderId, request.getStatus());
-                        if (updated.isPresent()) {
-                            updatedOrders.add(orderId);
-                        } else {
-                            failedOrders.add(orderId + " (not found)");
-                        }
-                    } else {
-                        failedOrders.add(orderId + " (invalid format)");
-                    }
-                } catch (Exception e) {
-                    failedOrders.add(orderId + " (error: " + e.getMessage() + ")");
+                if (adminValidationService.isValidOrderId(orderId)) {
+                    validOrderIds.add(orderId);
+                } else {
+                    failedOrders.add(orderId + " (invalid format)");
                 }
             }
 
+            BatchUpdateResult result = validOrderIds.isEmpty()
+                    ? new BatchUpdateResult(0, 0, List.of(), List.of())
+                    : orderService.batchUpdateStatus(validOrderIds, request.getStatus(), "ADMIN");
+            List<String> updatedOrders = result.getSuccessfulOrderIds();
+            failedOrders.addAll(result.getFailureReasons());
+
             // Логирование
             activityLogService.logApplicationActivity(
                     null, "ADMIN", null, null,
@@ -278,6 +336,57 @@ public class AdminOrdersApiController extends AdminBaseController {
         }
     }
 
+    /**
+     * Состояние агрегатов заказов для дашборда
+     */
+    @GetMapping(value = "/analytics/rollups", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getRollupStatistics(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("Unauthorized", null));
+            }
+
+            return ResponseEntity.ok(rollupService.getStatistics());
+
+        } catch (Exception e) {
+            log.error("Error getting order rollup statistics", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to get rollup statistics", e));
+        }
+    }
+
+    /**
+     * Полный пересчет агрегатов заказов по таблице orders
+     */
+    @PostMapping("/analytics/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups(HttpServletRequest request) {
+        try {
+            if (!validateApiAuthentication(request)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("Unauthorized", null));
+            }
+
+            log.info("Rebuilding order analytics rollups");
+            Map<String, Object> result = rollupService.rebuild();
+
+            activityLogService.logApplicationActivity(
+                    null, "ADMIN", null, null,
+                    ActionType.STATE_CHANGED,
+                    "Пересчет агрегатов заказов за " + result.get("durationMs") + "ms");
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "result", result,
+                    "timestamp", LocalDateTime.now()));
+
+        } catch (Exception e) {
+            log.error("Error rebuilding order rollups", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Rollup rebuild failed", e));
+        }
+    }
+
     // Вспомогательные методы
 
     private Set<String> getValidSortFields() {
@@ -289,7 +398,11 @@ public class AdminOrdersApiController extends AdminBaseController {
             String startDate, String endDate, Pageable pageable) {
 
         if (hasFilters(status, search, startDate, endDate)) {
-            return orderService.searchOrders(buildSearchTerm(status, search, startDate, endDate), pageable);
+            return orderService.searchOrdersWithFilters(search,
+                    adminValidationService.parseOrderStatus(status),
+                    adminValidationService.parseFilterDate(startDate, false),
+                    adminValidationService.parseFilterDate(endDate, true),
+                    pageable);
         } else {
             return orderService.getOrders(pageable);
         }
@@ -302,19 +415,6 @@ public class AdminOrdersApiController extends AdminBaseController {
                 (endDate != null && !endDate.isEmpty());
     }
 
-    private String buildSearchTerm(String status, String search, String startDate, String endDate) {
-        List<String> terms = new ArrayList<>();
-
-        if (status != null && !status.isEmpty()) {
-            terms.add("status:" + status);
-        }
-        if (search != null && !search.isEmpty()) {
-            terms.add(search);
-        }
-
-        return String.join(" ", terms);
-    }
-
     private Map<String, Object> createPaginationInfo(Page<OrderEntity> orders) {
         return Map.of(
                 "currentPage", orders.getNumber(),
@@ -356,7 +456,7 @@ public class AdminOrdersApiController extends AdminBaseController {
     @lombok.Data
     public static class BatchStatusUpdateRequest {
         @NotNull(message = "Order IDs are required")
-        @Size(min = 1, max = 50, message = "Must specify 1-50 order IDs")
+        @Size(min = 1, max = 10000, message = "Must specify 1-10000 order IDs")
         private List<@NotBlank String> orderIds;
 
         @NotNull(message = "Status is required")
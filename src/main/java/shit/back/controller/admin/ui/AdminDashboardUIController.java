@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -27,6 +29,8 @@ import shit.back.service.UserSessionUnifiedService;
 import shit.back.service.UserActivityLogService;
 
 // Импорт корректных DTO
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
 import shit.back.dto.order.OrderStatistics;
 import shit.back.dto.monitoring.SystemHealth;
 import shit.back.dto.monitoring.PerformanceMetrics;
@@ -367,7 +371,7 @@ public class AdminDashboardUIController extends AdminBaseController implements A
      */
     @GetMapping("/activity-logs")
     public String activityLogsPage(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "30") int size,
             @RequestParam(defaultValue = "false") boolean showAll,
             @RequestParam(required = false) String search,
@@ -383,10 +387,16 @@ public class AdminDashboardUIController extends AdminBaseController implements A
                 return handleAuthenticationFailure(request);
             }
 
-            Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").descending());
-
-            Page<UserActivityLogEntity> activities = activityLogService.getActivitiesWithFilters(
-                    showAll, null, null, actionTypes, search, pageable);
+            // Keyset пагинация: следующая страница по курсору, без OFFSET и COUNT(*)
+            ActivityLogSearchResult result = activityLogService.searchActivities(ActivityLogSearchCriteria.builder()
+                    .keyOnly(!showAll)
+                    .actionTypes(actionTypes)
+                    .limit(size)
+                    .cursor(cursor)
+                    .includeApproximateTotal(cursor == null)
+                    .build());
+            Slice<UserActivityLogEntity> activities = new SliceImpl<>(result.getActivities(),
+                    PageRequest.of(0, size), result.isHasNext());
 
             List<UserActivityLogEntity> recentActivities = activityLogService.getRecentActivities(1);
 
@@ -407,11 +417,14 @@ public class AdminDashboardUIController extends AdminBaseController implements A
             model.addAttribute("search", search);
             model.addAttribute("actionTypes", ActionType.values());
             model.addAttribute("selectedActionTypes", actionTypes);
-            model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", activities.getTotalPages());
-
-            // Поддержка прогрессивной загрузки
-            model.addAttribute("logsCount", activities.getTotalElements());
+            model.addAttribute("cursor", cursor);
+            model.addAttribute("nextCursor", result.getNextCursor());
+            model.addAttribute("hasNext", result.isHasNext());
+
+            // Поддержка прогрессивной загрузки (примерное количество - только на первой странице)
+            model.addAttribute("logsCount", result.getApproximateTotal() != null
+                    ? result.getApproximateTotal()
+                    : result.getActivities().size());
             model.addAttribute("progressiveLoading", true);
 
             // Логирование просмотра
@@ -360,7 +360,11 @@ public class AdminOrdersUIController extends AdminBaseController {
             String startDate, String endDate, Pageable pageable) {
 
         if (hasFilters(status, search, startDate, endDate)) {
-            return orderService.searchOrders(buildSearchTerm(status, search, startDate, endDate), pageable);
+            return orderService.searchOrdersWithFilters(search,
+                    adminValidationService.parseOrderStatus(status),
+                    adminValidationService.parseFilterDate(startDate, false),
+                    adminValidationService.parseFilterDate(endDate, true),
+                    pageable);
         } else {
             return orderService.getOrders(pageable);
         }
@@ -373,19 +377,6 @@ public class AdminOrdersUIController extends AdminBaseController {
                 (endDate != null && !endDate.isEmpty());
     }
 
-    private String buildSearchTerm(String status, String search, String startDate, String endDate) {
-        List<String> terms = new ArrayList<>();
-
-        if (status != null && !status.isEmpty()) {
-            terms.add("status:" + status);
-        }
-        if (search != null && !search.isEmpty()) {
-            terms.add(search);
-        }
-
-        return String.join(" ", terms);
-    }
-
     private String buildFiltersDescription(String status, String search, String startDate, String endDate) {
         List<String> filters = new ArrayList<>();
 
@@ -34,7 +34,8 @@ import java.util.Objects;
         @Index(name = "idx_star_purchase_fragment_tx", columnList = "fragment_transaction_id"),
         @Index(name = "idx_star_purchase_status", columnList = "status"),
         @Index(name = "idx_star_purchase_created_at", columnList = "created_at"),
-        @Index(name = "idx_star_purchase_dual_balance", columnList = "dual_balance_id")
+        @Index(name = "idx_star_purchase_dual_balance", columnList = "dual_balance_id"),
+        @Index(name = "idx_star_purchase_saga_refund", columnList = "refund_required, refunded_at")
 })
 public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAggregate> {
 
@@ -107,6 +108,16 @@ public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAgg
     @Column(name = "fragment_error_code", length = 100)
     private String fragmentErrorCode;
 
+    /**
+     * Средства списаны под эту покупку и должны быть возвращены, если звезды
+     * не доставлены; null для покупок, созданных до saga
+     */
+    @Column(name = "refund_required")
+    private Boolean refundRequired;
+
+    @Column(name = "refunded_at")
+    private LocalDateTime refundedAt;
+
     @Version
     @Column(name = "version")
     private Long version;
@@ -261,7 +272,14 @@ public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAgg
      * Автоматическая отмена по таймауту
      */
     public void timeoutCancel() {
-        if (!isTimedOut()) {
+        timeoutCancel(DEFAULT_TIMEOUT_MINUTES);
+    }
+
+    /**
+     * Автоматическая отмена по заданному таймауту
+     */
+    public void timeoutCancel(int timeoutMinutes) {
+        if (!isTimedOut(timeoutMinutes)) {
             throw new StarPurchaseFailedException(starPurchaseId, "PURCHASE_NOT_TIMED_OUT",
                     new IllegalStateException("Покупка звезд еще не истекла"));
         }
@@ -276,6 +294,33 @@ public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAgg
         return this.status == TransactionStatus.FAILED || this.status == TransactionStatus.CANCELLED;
     }
 
+    /**
+     * Передача покупки под управление saga: средства уже списаны
+     * и возвращаются, если звезды не будут доставлены
+     */
+    public void startSaga() {
+        this.refundRequired = true;
+    }
+
+    /**
+     * Ожидает ли покупка возврата списанных средств
+     */
+    public boolean isRefundPending() {
+        return Boolean.TRUE.equals(refundRequired) && refundedAt == null && canRefund();
+    }
+
+    /**
+     * Фиксация возврата средств
+     */
+    public void markRefunded() {
+        if (!isRefundPending()) {
+            throw new StarPurchaseFailedException(starPurchaseId, "REFUND_NOT_ALLOWED",
+                    new IllegalStateException("Возврат средств по покупке невозможен"));
+        }
+        this.refundedAt = LocalDateTime.now();
+        updateDescription("[ВОЗВРАТ СРЕДСТВ]");
+    }
+
     /**
      * Получение стоимости одной звезды
      */
@@ -312,7 +357,7 @@ public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAgg
      */
     private static boolean isValidStarsAmount(Integer stars) {
         // Стандартные пакеты звезд Telegram
-        int[] validPackages = { 1, 3, 5, 10, 25, 50, 100, 250, 500, 1000, 2500 };
+        int[] validPackages = { 1, 3, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
         for (int validPackage : validPackages) {
             if (stars.equals(validPackage)) {
                 return true;
@@ -476,6 +521,14 @@ public class StarPurchaseAggregate extends AbstractAggregateRoot<StarPurchaseAgg
         return fragmentErrorCode;
     }
 
+    public boolean isRefundRequired() {
+        return Boolean.TRUE.equals(refundRequired);
+    }
+
+    public LocalDateTime getRefundedAt() {
+        return refundedAt;
+    }
+
     public Long getVersion() {
         return version;
     }
@@ -0,0 +1,43 @@
+package shit.back.dto.activity;
+
+import lombok.Builder;
+import lombok.Data;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Параметры выборки журнала активности с keyset пагинацией по (timestamp, id)
+ *
+ * Пустые поля не ограничивают выборку; границы времени включительные.
+ */
+@Data
+@Builder
+public class ActivityLogSearchCriteria {
+
+    /**
+     * Только ключевые действия (is_key_action)
+     */
+    private boolean keyOnly;
+
+    private Long userId;
+    private List<LogCategory> logCategories;
+    private List<ActionType> actionTypes;
+    private LocalDateTime fromTime;
+    private LocalDateTime toTime;
+
+    @Builder.Default
+    private int limit = 20;
+
+    /**
+     * Непрозрачный курсор из ActivityLogSearchResult.nextCursor (null - первая страница)
+     */
+    private String cursor;
+
+    /**
+     * Добавить к результату оценку общего количества по статистике планировщика
+     */
+    private boolean includeApproximateTotal;
+}
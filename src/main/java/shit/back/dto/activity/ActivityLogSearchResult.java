@@ -0,0 +1,23 @@
+package shit.back.dto.activity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import shit.back.entity.UserActivityLogEntity;
+
+import java.util.List;
+
+/**
+ * Страница журнала активности, от новых записей к старым
+ *
+ * Точное количество не считается: hasNext определяется выборкой limit + 1
+ * строки, approximateTotal - оценка планировщика PostgreSQL (null, если не
+ * запрошена или недоступна).
+ */
+@Data
+@AllArgsConstructor
+public class ActivityLogSearchResult {
+    private List<UserActivityLogEntity> activities;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long approximateTotal;
+}
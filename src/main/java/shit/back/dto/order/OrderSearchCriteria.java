@@ -0,0 +1,36 @@
+package shit.back.dto.order;
+
+import lombok.Builder;
+import lombok.Data;
+import shit.back.entity.OrderEntity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Параметры поиска заказов с keyset пагинацией
+ */
+@Data
+@Builder
+public class OrderSearchCriteria {
+    private String searchText;
+    private OrderEntity.OrderStatus status;
+    private LocalDateTime fromDate;
+    private LocalDateTime toDate;
+
+    /**
+     * Поле сортировки: createdAt, updatedAt, finalAmount или orderId
+     */
+    @Builder.Default
+    private String sortBy = "createdAt";
+
+    @Builder.Default
+    private boolean ascending = false;
+
+    @Builder.Default
+    private int limit = 20;
+
+    /**
+     * Непрозрачный курсор из OrderSearchResult.nextCursor (null - первая страница)
+     */
+    private String cursor;
+}
@@ -0,0 +1,19 @@
+package shit.back.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Страница результатов keyset поиска заказов
+ *
+ * Общее количество не считается: hasNext определяется выборкой limit + 1 строки
+ */
+@Data
+@AllArgsConstructor
+public class OrderSearchResult {
+    private List<OrderSummary> orders;
+    private String nextCursor;
+    private boolean hasNext;
+}
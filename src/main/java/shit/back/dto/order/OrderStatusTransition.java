@@ -0,0 +1,27 @@
+package shit.back.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import shit.back.entity.OrderEntity;
+
+import java.math.BigDecimal;
+
+/**
+ * Строка, обновленная массовым изменением статуса (RETURNING)
+ *
+ * Содержит предыдущий статус и поля, нужные для записи в журнал активности,
+ * чтобы после UPDATE не загружать заказы повторно.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusTransition {
+    private String orderId;
+    private OrderEntity.OrderStatus previousStatus;
+    private Long userId;
+    private String username;
+    private BigDecimal finalAmount;
+    private Integer starCount;
+    private String paymentMethod;
+}
@@ -0,0 +1,32 @@
+package shit.back.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import shit.back.entity.OrderEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Облегченная проекция заказа для списков в админке
+ * (без notes, платежных адресов и полей интеграции с балансом)
+ *
+ * Порядок полей важен: конструктор используется в CriteriaBuilder.construct()
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummary {
+    private String orderId;
+    private Long userId;
+    private String username;
+    private String starPackageName;
+    private Integer starCount;
+    private BigDecimal finalAmount;
+    private OrderEntity.OrderStatus status;
+    private String paymentMethod;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,25 @@
+package shit.back.dto.payment;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Платеж, переведенный в EXPIRED при очистке просроченных платежей
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpiredPayment {
+
+    private String paymentId;
+    private Long userId;
+    private String orderId;
+    private BigDecimal amount;
+    private String currency;
+    private String paymentMethod;
+    private LocalDateTime expiresAt;
+}
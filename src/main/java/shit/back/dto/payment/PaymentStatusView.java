@@ -0,0 +1,68 @@
+package shit.back.dto.payment;
+
+import shit.back.entity.PaymentEntity;
+import shit.back.entity.PaymentStatus;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Снимок статуса платежа для выдачи клиенту (checkout страница, бот)
+ * Хранится в кэше PaymentStatusHub вместо чтения PaymentEntity на каждый запрос
+ */
+public record PaymentStatusView(
+        String paymentId,
+        PaymentStatus status,
+        String amount,
+        String paymentMethod,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        LocalDateTime completedAt,
+        String errorMessage) {
+
+    public static PaymentStatusView from(PaymentEntity payment) {
+        return new PaymentStatusView(
+                payment.getPaymentId(),
+                payment.getStatus(),
+                payment.getFormattedAmount(),
+                payment.getPaymentMethod(),
+                payment.getCreatedAt(),
+                payment.getUpdatedAt(),
+                payment.getCompletedAt(),
+                payment.getErrorMessage());
+    }
+
+    public PaymentStatusView withStatus(PaymentStatus newStatus, String newErrorMessage, LocalDateTime changedAt) {
+        return new PaymentStatusView(paymentId, newStatus, amount, paymentMethod, createdAt, changedAt,
+                newStatus.isFinal() ? changedAt : completedAt, newErrorMessage);
+    }
+
+    public boolean isFinal() {
+        return status.isFinal();
+    }
+
+    /**
+     * Тело ответа в формате GET /api/payment/callback/status/{paymentId}
+     */
+    public Map<String, Object> toResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("payment_id", paymentId);
+        response.put("status", status.name());
+        response.put("status_display", status.getFormattedStatus());
+        response.put("amount", amount);
+        response.put("payment_method", paymentMethod);
+        response.put("created_at", createdAt);
+        response.put("updated_at", updatedAt);
+
+        if (completedAt != null) {
+            response.put("completed_at", completedAt);
+        }
+
+        if (errorMessage != null) {
+            response.put("error_message", errorMessage);
+        }
+        return response;
+    }
+}
@@ -19,6 +19,7 @@ import java.util.UUID;
 @Entity
 @Table(name = "balance_transactions", indexes = {
         @Index(name = "idx_balance_transactions_user_id", columnList = "user_id"),
+        @Index(name = "idx_balance_transactions_user_created", columnList = "user_id, created_at"),
         @Index(name = "idx_balance_transactions_transaction_id", columnList = "transaction_id", unique = true),
         @Index(name = "idx_balance_transactions_type", columnList = "type"),
         @Index(name = "idx_balance_transactions_status", columnList = "status"),
@@ -0,0 +1,49 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * HyperLogLog-скетч пользователей за день: активные (ACTIVE) или новые (NEW)
+ * Регистры хранятся сжатыми Deflate, см. HyperLogLog.toCompressedBytes()
+ */
+@Entity
+@Table(name = "daily_user_sketches", indexes = {
+        @Index(name = "idx_daily_user_sketches_key", columnList = "sketch_date, kind", unique = true)
+})
+@Data
+@NoArgsConstructor
+public class DailyUserSketchEntity {
+
+    public enum Kind {
+        ACTIVE, NEW
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "sketch_date", nullable = false)
+    private LocalDate sketchDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", length = 10, nullable = false)
+    private Kind kind;
+
+    @Column(name = "sketch_precision", nullable = false)
+    private Integer precision;
+
+    @Column(name = "registers", length = 65536, nullable = false)
+    private byte[] registers;
+
+    @Column(name = "estimate", nullable = false)
+    private Long estimate = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
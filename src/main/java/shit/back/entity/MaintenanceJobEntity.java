@@ -0,0 +1,73 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние фоновой операции обслуживания (ChunkedMaintenanceEngine)
+ *
+ * Одна строка на операцию: аренда (lease_owner/lease_until) не дает двум
+ * инстансам выполнять операцию одновременно, а last_key - ключ последней
+ * обработанной строки - позволяет продолжить прерванный проход с того
+ * же места после рестарта или на другом инстансе.
+ */
+@Entity
+@Table(name = "maintenance_jobs")
+@Data
+@NoArgsConstructor
+public class MaintenanceJobEntity {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private JobStatus status = JobStatus.IDLE;
+
+    /**
+     * Ключ последней обработанной строки текущего прохода
+     */
+    @Column(name = "last_key", nullable = false)
+    private Long lastKey = 0L;
+
+    @Column(name = "pass_processed", nullable = false)
+    private Long passProcessed = 0L;
+
+    @Column(name = "total_processed", nullable = false)
+    private Long totalProcessed = 0L;
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "pass_started_at")
+    private LocalDateTime passStartedAt;
+
+    @Column(name = "last_completed_at")
+    private LocalDateTime lastCompletedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum JobStatus {
+        /**
+         * Проход завершен, следующий начнется с начала таблицы
+         */
+        IDLE,
+        /**
+         * Проход не завершен, следующий запуск продолжит с last_key
+         */
+        RUNNING
+    }
+
+    public MaintenanceJobEntity(String name) {
+        this.name = name;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,37 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Итоги клиента по завершенным заказам
+ * Обновляются триггером на orders при переходе заказа в COMPLETED и из него
+ */
+@Entity
+@Table(name = "order_customer_totals", indexes = {
+        @Index(name = "idx_order_customer_totals_completed", columnList = "completed_orders")
+})
+@Data
+@NoArgsConstructor
+public class OrderCustomerTotalsEntity {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "username", length = 100)
+    private String username;
+
+    @Column(name = "completed_orders", nullable = false)
+    private Long completedOrders = 0L;
+
+    @Column(name = "total_spent", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalSpent = BigDecimal.ZERO;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
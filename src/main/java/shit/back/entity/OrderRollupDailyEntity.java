@@ -0,0 +1,50 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Дневной срез заказов по статусу, пакету и способу оплаты
+ * Ведется так же, как OrderRollupHourlyEntity, день - по created_at заказа
+ */
+@Entity
+@Table(name = "order_rollup_daily", indexes = {
+        @Index(name = "idx_order_rollup_daily_key",
+                columnList = "bucket_date, status, star_package_name, payment_method", unique = true)
+})
+@Data
+@NoArgsConstructor
+public class OrderRollupDailyEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 30, nullable = false)
+    private OrderEntity.OrderStatus status;
+
+    @Column(name = "star_package_name", length = 50, nullable = false)
+    private String starPackageName;
+
+    @Column(name = "payment_method", length = 50, nullable = false)
+    private String paymentMethod = "";
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount = 0L;
+
+    @Column(name = "total_amount", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,54 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Почасовой срез заказов по статусу, пакету и способу оплаты
+ *
+ * Час определяется по created_at заказа. Строки обновляются триггером на
+ * orders при создании заказа и смене статуса (см. OrderAnalyticsRollupService),
+ * поэтому order_count - текущее число заказов этого часа в данном статусе.
+ * Отсутствующий способ оплаты хранится как пустая строка, чтобы строка
+ * однозначно находилась по уникальному индексу.
+ */
+@Entity
+@Table(name = "order_rollup_hourly", indexes = {
+        @Index(name = "idx_order_rollup_hourly_key",
+                columnList = "bucket_start, status, star_package_name, payment_method", unique = true)
+})
+@Data
+@NoArgsConstructor
+public class OrderRollupHourlyEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 30, nullable = false)
+    private OrderEntity.OrderStatus status;
+
+    @Column(name = "star_package_name", length = 50, nullable = false)
+    private String starPackageName;
+
+    @Column(name = "payment_method", length = 50, nullable = false)
+    private String paymentMethod = "";
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount = 0L;
+
+    @Column(name = "total_amount", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
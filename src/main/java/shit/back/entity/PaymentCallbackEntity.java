@@ -0,0 +1,86 @@
+package shit.back.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Входящий callback платежной системы (inbox)
+ *
+ * Callback сохраняется сразу после проверки подписи и подтверждается
+ * провайдеру, а обработка (смена статуса платежа, зачисление на баланс)
+ * выполняется воркерами PaymentCallbackInboxService. Уникальный индекс
+ * по (payment_id, payload_hash) отсекает повторные доставки того же callback'а.
+ */
+@Entity
+@Table(name = "payment_callbacks", indexes = {
+        @Index(name = "idx_payment_callbacks_dedupe", columnList = "payment_id, payload_hash", unique = true),
+        @Index(name = "idx_payment_callbacks_status_id", columnList = "status, id")
+})
+@Data
+@NoArgsConstructor
+public class PaymentCallbackEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * Платежная система (TON, YOOKASSA, FRAGMENT, UZS)
+     */
+    @Column(name = "provider", length = 20, nullable = false)
+    private String provider;
+
+    @Column(name = "payment_id", length = 50, nullable = false)
+    private String paymentId;
+
+    /**
+     * SHA-256 канонизированных параметров callback'а
+     */
+    @Column(name = "payload_hash", length = 64, nullable = false)
+    private String payloadHash;
+
+    /**
+     * Параметры callback'а в формате JSON
+     */
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private CallbackStatus status = CallbackStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public enum CallbackStatus {
+        PENDING,
+        PROCESSING,
+        PROCESSED,
+        DUPLICATE,
+        FAILED
+    }
+
+    public PaymentCallbackEntity(String provider, String paymentId, String payloadHash, String payload) {
+        this.provider = provider;
+        this.paymentId = paymentId;
+        this.payloadHash = payloadHash;
+        this.payload = payload;
+        this.receivedAt = LocalDateTime.now();
+    }
+}
@@ -9,21 +9,32 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+// Фильтры постраничного просмотра: фильтр + (timestamp, id) для keyset пагинации
+// (UserActivityLogSearchRepositoryImpl); префиксы заменяют прежние одноколоночные индексы
 @Table(name = "user_activity_logs", indexes = {
-        @Index(name = "idx_activity_user_id", columnList = "user_id"),
-        @Index(name = "idx_activity_timestamp", columnList = "timestamp"),
-        @Index(name = "idx_activity_action_type", columnList = "action_type"),
-        @Index(name = "idx_activity_is_key", columnList = "is_key_action"),
-        @Index(name = "idx_activity_order_id", columnList = "order_id"),
-        @Index(name = "idx_activity_log_category", columnList = "log_category"),
-        @Index(name = "idx_activity_category_timestamp", columnList = "log_category, timestamp")
+        @Index(name = "idx_activity_timestamp_id", columnList = "timestamp, id"),
+        @Index(name = "idx_activity_key_timestamp_id", columnList = "is_key_action, timestamp, id"),
+        @Index(name = "idx_activity_key_action_timestamp_id", columnList = "is_key_action, action_type, timestamp, id"),
+        @Index(name = "idx_activity_user_timestamp_id", columnList = "user_id, timestamp, id"),
+        @Index(name = "idx_activity_category_timestamp_id", columnList = "log_category, timestamp, id"),
+        @Index(name = "idx_activity_action_timestamp_id", columnList = "action_type, timestamp, id"),
+        @Index(name = "idx_activity_order_id", columnList = "order_id")
 })
 @Data
 @NoArgsConstructor
 public class UserActivityLogEntity {
 
+    /**
+     * Последовательность id общая для Hibernate и COPY-записи журнала:
+     * каждое значение - верхняя граница блока из ID_ALLOCATION_SIZE id
+     * (pooled), поэтому блоки, выданные обоим путям, не пересекаются
+     */
+    public static final String ID_SEQUENCE = "user_activity_logs_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_activity_log_id")
+    @SequenceGenerator(name = "user_activity_log_id", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
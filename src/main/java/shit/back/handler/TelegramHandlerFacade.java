@@ -19,6 +19,8 @@ import shit.back.telegram.queries.ShowPurchaseHistoryQuery;
 import shit.back.telegram.queries.ShowWelcomeCardQuery;
 import shit.back.service.UserSessionUnifiedService;
 import shit.back.service.TelegramMessageCacheService;
+import shit.back.service.export.BalanceHistoryExportService;
+import shit.back.service.export.ExportFormat;
 import shit.back.model.UserSession;
 import shit.back.application.balance.service.BalanceApplicationServiceV2;
 import shit.back.application.balance.dto.request.OperationRequest;
@@ -51,6 +53,9 @@ public class TelegramHandlerFacade {
     @Autowired
     private BalanceApplicationServiceV2 balanceService;
 
+    @Autowired
+    private BalanceHistoryExportService balanceHistoryExportService;
+
     // Кэш для предотвращения дублирующихся операций
     private final ConcurrentMap<String, Long> operationCache = new ConcurrentHashMap<>();
     private static final long OPERATION_CACHE_TTL_MS = 5000; // 5 секунд
@@ -271,6 +276,14 @@ public class TelegramHandlerFacade {
                 log.info("🔄 Обработка refresh_history для пользователя: {}", userId);
                 return telegramService.execute(new ShowPurchaseHistoryQuery(userId));
 
+            case "export_balance_history", "export_balance_history_csv":
+                log.info("📥 Обработка export_balance_history (CSV) для пользователя: {}", userId);
+                return handleExportBalanceHistory(userId, ExportFormat.CSV);
+
+            case "export_balance_history_xlsx":
+                log.info("📥 Обработка export_balance_history (XLSX) для пользователя: {}", userId);
+                return handleExportBalanceHistory(userId, ExportFormat.XLSX);
+
             case "buy_stars":
                 log.info("⭐ Обработка buy_stars для пользователя: {}", userId);
                 return telegramService.execute(new InitiateStarPurchaseCommand(userId));
@@ -730,6 +743,37 @@ public class TelegramHandlerFacade {
         }
     }
 
+    /**
+     * Выгрузка истории баланса: файл готовится в фоне и приходит отдельным
+     * документом (в личном чате chatId совпадает с userId)
+     */
+    private TelegramResponse handleExportBalanceHistory(Long userId, ExportFormat format) {
+        boolean started = balanceHistoryExportService.sendToTelegram(userId, userId, format);
+        String message = started
+                ? String.format("""
+                        📥 <b>Готовим выгрузку истории</b>
+
+                        Файл %s придет отдельным сообщением через несколько секунд.
+                        """, format.getExtension().toUpperCase())
+                : """
+                        ⏳ <b>Выгрузка уже готовится</b>
+
+                        Дождитесь предыдущего файла или попробуйте через минуту.
+                        """;
+
+        var keyboard = new shit.back.telegram.ui.builder.TelegramKeyboardBuilder()
+                .addButton("📊 К истории", "show_history")
+                .addButton("🔙 К балансу", "show_balance")
+                .build();
+
+        return TelegramResponse.builder()
+                .successful(true)
+                .message(message)
+                .uiType("BALANCE_HISTORY_EXPORT")
+                .data(keyboard)
+                .build();
+    }
+
     /**
      * КРИТИЧЕСКОЕ ИСПРАВЛЕНИЕ: Обработка перехода к оплате
      */
@@ -0,0 +1,17 @@
+package shit.back.infrastructure.datasource;
+
+/**
+ * Маршрут получения соединения в {@link ReadWriteRoutingDataSource}
+ */
+public enum DataSourceRoute {
+
+    /**
+     * Основной пул: все пишущие транзакции и fallback для чтения
+     */
+    PRIMARY,
+
+    /**
+     * Пул реплики: только транзакции {@code @Transactional(readOnly = true)}
+     */
+    REPLICA
+}
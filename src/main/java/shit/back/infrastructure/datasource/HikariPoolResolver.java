@@ -0,0 +1,36 @@
+package shit.back.infrastructure.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Поиск основного HikariCP пула за оберткой DataSource
+ *
+ * Мониторинг connection pool работает с HikariDataSource напрямую, а при
+ * включенной read/write маршрутизации основной DataSource - это
+ * LazyConnectionDataSourceProxy над ReadWriteRoutingDataSource.
+ */
+public final class HikariPoolResolver {
+
+    private HikariPoolResolver() {
+    }
+
+    /**
+     * @return основной (пишущий) HikariCP пул или null, если DataSource не на HikariCP
+     */
+    public static HikariDataSource resolvePrimary(DataSource dataSource) {
+        DataSource current = dataSource;
+        while (current instanceof DelegatingDataSource delegating) {
+            current = delegating.getTargetDataSource();
+        }
+        if (current instanceof HikariDataSource hikariDataSource) {
+            return hikariDataSource;
+        }
+        if (current instanceof ReadWriteRoutingDataSource routingDataSource) {
+            return routingDataSource.getPrimaryPool();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package shit.back.infrastructure.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Маршрутизирующий DataSource: read-only транзакции уходят в пул реплики,
+ * всё остальное - в основной пул
+ *
+ * ВАЖНО: должен оборачиваться в LazyConnectionDataSourceProxy, иначе
+ * соединение берется в JpaTransactionManager.doBegin() до того, как
+ * TransactionSynchronizationManager узнает о readOnly флаге транзакции.
+ *
+ * Если реплика отстает сильнее допустимого (см. ReplicaLagMonitoringService)
+ * или недоступна, чтение временно уходит в основной пул.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final HikariDataSource primaryPool;
+    private final HikariDataSource replicaPool;
+
+    private final AtomicBoolean replicaAvailable = new AtomicBoolean(true);
+
+    // Метрики маршрутизации по каждому маршруту
+    private final Map<DataSourceRoute, LongAdder> routedConnections = new EnumMap<>(DataSourceRoute.class);
+    private final LongAdder replicaFallbacks = new LongAdder();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primaryPool, HikariDataSource replicaPool) {
+        this.primaryPool = primaryPool;
+        this.replicaPool = replicaPool;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceRoute.PRIMARY, primaryPool);
+        targets.put(DataSourceRoute.REPLICA, replicaPool);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primaryPool);
+        setLenientFallback(false);
+
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            routedConnections.put(route, new LongAdder());
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRoute route = resolveRoute();
+        routedConnections.get(route).increment();
+        return route;
+    }
+
+    private DataSourceRoute resolveRoute() {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!readOnly) {
+            return DataSourceRoute.PRIMARY;
+        }
+        if (!replicaAvailable.get()) {
+            replicaFallbacks.increment();
+            return DataSourceRoute.PRIMARY;
+        }
+        return DataSourceRoute.REPLICA;
+    }
+
+    /**
+     * Включение/отключение чтения с реплики (вызывается монитором лага)
+     */
+    public void setReplicaAvailable(boolean available) {
+        if (replicaAvailable.getAndSet(available) != available) {
+            if (available) {
+                log.info("✅ DB ROUTING: Реплика снова доступна, read-only транзакции возвращены на реплику");
+            } else {
+                log.warn("⚠️ DB ROUTING: Реплика недоступна или отстает, read-only транзакции идут в primary");
+            }
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable.get();
+    }
+
+    public HikariDataSource getPrimaryPool() {
+        return primaryPool;
+    }
+
+    public HikariDataSource getReplicaPool() {
+        return replicaPool;
+    }
+
+    public HikariDataSource getPool(DataSourceRoute route) {
+        return route == DataSourceRoute.REPLICA ? replicaPool : primaryPool;
+    }
+
+    public long getRoutedConnections(DataSourceRoute route) {
+        return routedConnections.get(route).sum();
+    }
+
+    public long getReplicaFallbacks() {
+        return replicaFallbacks.sum();
+    }
+}
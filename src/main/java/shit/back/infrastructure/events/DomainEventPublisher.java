@@ -1,29 +1,54 @@
 package shit.back.infrastructure.events;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Публикатор доменных событий
- * Заглушка для обеспечения компиляции
+ *
+ * События доставляются через ApplicationEventPublisher Spring, подписчики
+ * объявляются обычными @EventListener.
  */
 @Component
 @Slf4j
 public class DomainEventPublisher {
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
     /**
      * Публикация события после завершения транзакции
+     *
+     * При откате транзакции событие не публикуется. Вне транзакции
+     * событие публикуется сразу.
      */
     public void publishEventAfterTransaction(Object event) {
-        log.info("📡 Публикация доменного события: {}", event.getClass().getSimpleName());
-        // TODO: Реализовать реальную публикацию событий
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publishEvent(event);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publishEvent(event);
+            }
+        });
     }
 
     /**
      * Синхронная публикация события
      */
     public void publishEvent(Object event) {
-        log.info("📡 Синхронная публикация события: {}", event.getClass().getSimpleName());
-        // TODO: Реализовать синхронную публикацию
+        log.debug("📡 Публикация доменного события: {}", event.getClass().getSimpleName());
+        try {
+            applicationEventPublisher.publishEvent(event);
+        } catch (Exception e) {
+            log.error("❌ Ошибка обработки события {}: {}", event.getClass().getSimpleName(), e.getMessage(), e);
+        }
     }
-}
\ No newline at end of file
+}
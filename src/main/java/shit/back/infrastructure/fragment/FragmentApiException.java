@@ -0,0 +1,27 @@
+package shit.back.infrastructure.fragment;
+
+/**
+ * Ошибка вызова Fragment API
+ */
+public class FragmentApiException extends RuntimeException {
+
+    private final String errorCode;
+    private final boolean retryable;
+
+    public FragmentApiException(String errorCode, String message, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.errorCode = errorCode;
+        this.retryable = retryable;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Можно ли повторить запрос (таймаут, 5xx, 429)
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
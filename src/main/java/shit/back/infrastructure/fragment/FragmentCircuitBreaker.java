@@ -0,0 +1,96 @@
+package shit.back.infrastructure.fragment;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker для Fragment API
+ *
+ * После failureThreshold ошибок подряд запросы отклоняются без обращения
+ * к API на openMs. Затем пропускается один пробный запрос: успех закрывает
+ * breaker, ошибка снова открывает его.
+ */
+public class FragmentCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long openings;
+    private long rejected;
+
+    public FragmentCircuitBreaker(int failureThreshold, long openMs) {
+        this(failureThreshold, openMs, System::nanoTime);
+    }
+
+    FragmentCircuitBreaker(int failureThreshold, long openMs, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openMs * 1_000_000L;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Можно ли выполнить запрос сейчас
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (nanoClock.getAsLong() - openedAtNanos < openNanos) {
+                    rejected++;
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            }
+            default -> {
+                if (probeInFlight) {
+                    rejected++;
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = nanoClock.getAsLong();
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            openings++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getOpenings() {
+        return openings;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,406 @@
+package shit.back.infrastructure.fragment;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import shit.back.infrastructure.fragment.stub.FragmentStubServer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Клиент покупки звезд через Fragment API
+ *
+ * Покупки выполняются на виртуальных потоках поверх пула соединений
+ * fragmentRestTemplate: вызывающий получает CompletableFuture и не ждет
+ * ответа, одновременно в полете до max-in-flight запросов (остальные ждут
+ * свободного слота, не занимая платформенные потоки).
+ *
+ * Таймауты, 5xx и 429 повторяются с экспоненциальной задержкой и полным
+ * jitter. Каждый повтор отправляется с тем же Idempotency-Key, поэтому
+ * повтор после таймаута не создает вторую покупку. Ошибки подряд открывают
+ * circuit breaker, и пока он открыт, запросы сразу завершаются CIRCUIT_OPEN.
+ *
+ * Незавершенные покупки опрашиваются пачками: один запрос статуса на
+ * status-batch-size транзакций вместо запроса на каждую. Опрос одной
+ * транзакции ограничен completion-timeout-ms, а число опрашиваемых
+ * транзакций - max-outstanding, так что транзакции, которые Fragment
+ * так и не довел до финального статуса, не копятся в памяти.
+ */
+@Slf4j
+@Component
+public class FragmentPurchaseClient {
+
+    static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    static final String PURCHASES_PATH = "/v1/purchases";
+    static final String STATUS_PATH = "/v1/purchases/status";
+
+    @Autowired
+    @Qualifier("fragmentRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired(required = false)
+    private FragmentStubServer stubServer;
+
+    @Value("${app.fragment.purchase.base-url:}")
+    private String baseUrl;
+
+    @Value("${app.fragment.purchase.api-token:}")
+    private String apiToken;
+
+    @Value("${app.fragment.purchase.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${app.fragment.purchase.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.fragment.purchase.backoff-base-ms:200}")
+    private long backoffBaseMs;
+
+    @Value("${app.fragment.purchase.backoff-max-ms:5000}")
+    private long backoffMaxMs;
+
+    @Value("${app.fragment.purchase.status-batch-size:100}")
+    private int statusBatchSize;
+
+    @Value("${app.fragment.purchase.completion-timeout-ms:600000}")
+    private long completionTimeoutMs;
+
+    @Value("${app.fragment.purchase.max-outstanding:10000}")
+    private int maxOutstanding;
+
+    @Value("${app.fragment.purchase.breaker.failure-threshold:10}")
+    private int breakerFailureThreshold;
+
+    @Value("${app.fragment.purchase.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    private ExecutorService executor;
+    private Semaphore inFlight;
+    private FragmentCircuitBreaker circuitBreaker;
+    private String resolvedBaseUrl;
+
+    private final Map<String, CompletableFuture<FragmentPurchaseResult>> outstanding = new ConcurrentHashMap<>();
+
+    private final LongAdder purchasesSubmitted = new LongAdder();
+    private final LongAdder purchasesAccepted = new LongAdder();
+    private final LongAdder purchasesFailed = new LongAdder();
+    private final LongAdder httpRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+    private final LongAdder statusBatches = new LongAdder();
+    private final LongAdder statusesPolled = new LongAdder();
+    private final LongAdder completionTimeouts = new LongAdder();
+    private final LongAdder outstandingRejections = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        inFlight = new Semaphore(Math.max(1, maxInFlight));
+        circuitBreaker = new FragmentCircuitBreaker(breakerFailureThreshold, breakerOpenMs);
+        resolvedBaseUrl = resolveBaseUrl();
+        if (isConfigured()) {
+            log.info("🚀 FRAGMENT: Клиент покупок настроен на {} (max-in-flight={}, max-attempts={})",
+                    resolvedBaseUrl, maxInFlight, maxAttempts);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Задан ли адрес Fragment API (или запущен локальный stub)
+     */
+    public boolean isConfigured() {
+        return resolvedBaseUrl != null && !resolvedBaseUrl.isBlank();
+    }
+
+    /**
+     * Отправить покупку без ожидания ответа
+     *
+     * Future завершается ответом Fragment (обычно PENDING с transactionId)
+     * или FAILED с кодом ошибки; исключением не завершается. Финальный
+     * статус ждет {@link #awaitCompletion(String)}.
+     */
+    public CompletableFuture<FragmentPurchaseResult> purchase(FragmentPurchaseRequest request) {
+        purchasesSubmitted.increment();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Map<String, Object> body = new HashMap<>();
+                body.put("requestId", request.requestId());
+                body.put("userId", request.userId());
+                body.put("stars", request.stars());
+                body.put("amount", request.amount());
+                body.put("currency", request.currency());
+                Map<String, Object> response = executeWithRetry(
+                        () -> post(PURCHASES_PATH, body, request.requestId()));
+                FragmentPurchaseResult result = toResult(request.requestId(), response);
+                purchasesAccepted.increment();
+                return result;
+            } catch (FragmentApiException e) {
+                purchasesFailed.increment();
+                log.warn("⚠️ FRAGMENT: Покупка {} не выполнена: {} ({})",
+                        request.requestId(), e.getErrorCode(), e.getMessage());
+                return FragmentPurchaseResult.failed(request.requestId(), null, e.getErrorCode());
+            }
+        }, executor);
+    }
+
+    /**
+     * Дождаться финального статуса транзакции
+     *
+     * Транзакция добавляется в общий опрос; future завершается при первом
+     * пакетном опросе, вернувшем COMPLETED или FAILED. Если финального
+     * статуса нет за completion-timeout-ms, future завершается результатом
+     * UNKNOWN с кодом STATUS_TIMEOUT и транзакция снимается с опроса; если
+     * в опросе уже max-outstanding транзакций - сразу UNKNOWN с кодом
+     * TOO_MANY_OUTSTANDING. Исключением future не завершается, исход
+     * UNKNOWN требует сверки с Fragment вручную.
+     */
+    public CompletableFuture<FragmentPurchaseResult> awaitCompletion(String transactionId) {
+        CompletableFuture<FragmentPurchaseResult> existing = outstanding.get(transactionId);
+        if (existing != null) {
+            return existing;
+        }
+        if (outstanding.size() >= Math.max(1, maxOutstanding)) {
+            outstandingRejections.increment();
+            log.warn("⚠️ FRAGMENT: В опросе уже {} транзакций, статус {} не отслеживается",
+                    outstanding.size(), transactionId);
+            return CompletableFuture.completedFuture(new FragmentPurchaseResult(
+                    null, transactionId, FragmentPurchaseStatus.UNKNOWN, null, "TOO_MANY_OUTSTANDING"));
+        }
+        return outstanding.computeIfAbsent(transactionId, id -> {
+            FragmentPurchaseResult timedOut = new FragmentPurchaseResult(
+                    null, id, FragmentPurchaseStatus.UNKNOWN, null, "STATUS_TIMEOUT");
+            CompletableFuture<FragmentPurchaseResult> future = new CompletableFuture<>();
+            future.completeOnTimeout(timedOut, completionTimeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        // после опроса запись уже удалена, remove(id, future) ничего не трогает
+                        if (outstanding.remove(id, future) && result == timedOut) {
+                            completionTimeouts.increment();
+                            log.warn("⚠️ FRAGMENT: Транзакция {} без финального статуса за {} мс, снята с опроса",
+                                    id, completionTimeoutMs);
+                        }
+                    });
+            return future;
+        });
+    }
+
+    /**
+     * Статусы транзакций, по одному запросу на status-batch-size транзакций
+     */
+    public Map<String, FragmentPurchaseResult> fetchStatuses(Collection<String> transactionIds) {
+        Map<String, FragmentPurchaseResult> statuses = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>(transactionIds);
+        int batchSize = Math.max(1, statusBatchSize);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            Map<String, Object> response = executeWithRetry(
+                    () -> post(STATUS_PATH, Map.of("transactionIds", batch), null));
+            statusBatches.increment();
+            statusesPolled.add(batch.size());
+
+            Object statusMap = response.get("statuses");
+            for (String id : batch) {
+                Object entry = statusMap instanceof Map<?, ?> map ? map.get(id) : null;
+                statuses.put(id, entry instanceof Map<?, ?> entryMap
+                        ? toResult(null, withTransactionId(entryMap, id))
+                        : new FragmentPurchaseResult(null, id, FragmentPurchaseStatus.UNKNOWN, null, null));
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Опрос незавершенных транзакций
+     */
+    @Scheduled(fixedDelayString = "${app.fragment.purchase.status-poll-interval-ms:2000}")
+    public void pollOutstanding() {
+        if (outstanding.isEmpty() || !isConfigured()) {
+            return;
+        }
+        try {
+            fetchStatuses(List.copyOf(outstanding.keySet())).forEach((id, result) -> {
+                if (result.status().isFinal()) {
+                    CompletableFuture<FragmentPurchaseResult> future = outstanding.remove(id);
+                    if (future != null) {
+                        future.complete(result);
+                    }
+                }
+            });
+        } catch (FragmentApiException e) {
+            log.warn("⚠️ FRAGMENT: Ошибка опроса статусов ({} транзакций): {}",
+                    outstanding.size(), e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("configured", isConfigured());
+        stats.put("circuitState", circuitBreaker.getState().name());
+        stats.put("circuitOpenings", circuitBreaker.getOpenings());
+        stats.put("circuitRejections", circuitRejections.sum());
+        stats.put("inFlight", Math.max(1, maxInFlight) - inFlight.availablePermits());
+        stats.put("purchasesSubmitted", purchasesSubmitted.sum());
+        stats.put("purchasesAccepted", purchasesAccepted.sum());
+        stats.put("purchasesFailed", purchasesFailed.sum());
+        stats.put("httpRequests", httpRequests.sum());
+        stats.put("retries", retries.sum());
+        stats.put("outstandingTransactions", outstanding.size());
+        stats.put("statusBatches", statusBatches.sum());
+        stats.put("statusesPolled", statusesPolled.sum());
+        stats.put("completionTimeouts", completionTimeouts.sum());
+        stats.put("outstandingRejections", outstandingRejections.sum());
+        return stats;
+    }
+
+    public FragmentCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private Map<String, Object> executeWithRetry(Supplier<Map<String, Object>> call) {
+        if (!isConfigured()) {
+            throw new FragmentApiException("NOT_CONFIGURED", "Fragment API URL не задан", false, null);
+        }
+
+        FragmentApiException lastError = null;
+        for (int attempt = 1; attempt <= Math.max(1, maxAttempts); attempt++) {
+            if (attempt > 1) {
+                retries.increment();
+                sleepWithJitter(attempt);
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                circuitRejections.increment();
+                throw new FragmentApiException("CIRCUIT_OPEN", "Fragment API временно недоступен", false, lastError);
+            }
+
+            try {
+                Map<String, Object> response = call.get();
+                circuitBreaker.onSuccess();
+                return response;
+            } catch (FragmentApiException e) {
+                if (!e.isRetryable()) {
+                    // Ошибка запроса, а не API: breaker не открываем
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                lastError = e;
+            } catch (RuntimeException e) {
+                // Исход нужно сообщить breaker'у в любом случае, иначе пробный запрос
+                // HALF_OPEN не освободится и breaker будет отклонять все вызовы
+                circuitBreaker.onFailure();
+                throw new FragmentApiException("UNEXPECTED_ERROR", e.getMessage(), false, e);
+            }
+        }
+        throw new FragmentApiException("RETRIES_EXHAUSTED",
+                "Fragment API не ответил за " + maxAttempts + " попыток", false, lastError);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> post(String path, Map<String, Object> body, String idempotencyKey) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        if (apiToken != null && !apiToken.isBlank()) {
+            headers.setBearerAuth(apiToken);
+        }
+        if (idempotencyKey != null) {
+            headers.set(IDEMPOTENCY_HEADER, idempotencyKey);
+        }
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FragmentApiException("INTERRUPTED", "Запрос прерван", false, e);
+        }
+        try {
+            httpRequests.increment();
+            ResponseEntity<Map> response = restTemplate.exchange(
+                    resolvedBaseUrl + path, HttpMethod.POST, new HttpEntity<>(body, headers), Map.class);
+            return response.getBody() != null ? response.getBody() : Map.of();
+        } catch (HttpStatusCodeException e) {
+            boolean retryable = e.getStatusCode().is5xxServerError()
+                    || e.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+            throw new FragmentApiException("HTTP_" + e.getStatusCode().value(), e.getMessage(), retryable, e);
+        } catch (ResourceAccessException e) {
+            throw new FragmentApiException("IO_ERROR", e.getMessage(), true, e);
+        } catch (RestClientException e) {
+            // неизвестный HTTP статус, неожиданный Content-Type, тело не читается
+            throw new FragmentApiException("CLIENT_ERROR", e.getMessage(), true, e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void sleepWithJitter(int attempt) {
+        long cap = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 2, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FragmentApiException("INTERRUPTED", "Повтор прерван", false, e);
+        }
+    }
+
+    private static Map<?, ?> withTransactionId(Map<?, ?> entry, String transactionId) {
+        if (entry.containsKey("transactionId")) {
+            return entry;
+        }
+        Map<Object, Object> copy = new HashMap<>(entry);
+        copy.put("transactionId", transactionId);
+        return copy;
+    }
+
+    private static FragmentPurchaseResult toResult(String requestId, Map<?, ?> response) {
+        Object stars = response.get("starsDelivered");
+        Object errorCode = response.get("errorCode");
+        Object transactionId = response.get("transactionId");
+        return new FragmentPurchaseResult(
+                requestId,
+                transactionId != null ? transactionId.toString() : null,
+                FragmentPurchaseStatus.parse(response.get("status")),
+                stars instanceof Number number ? number.intValue() : null,
+                errorCode != null ? errorCode.toString() : null);
+    }
+
+    private String resolveBaseUrl() {
+        String url = baseUrl;
+        if ((url == null || url.isBlank()) && stubServer != null) {
+            url = stubServer.getBaseUrl();
+        }
+        return url != null && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,17 @@
+package shit.back.infrastructure.fragment;
+
+import java.math.BigDecimal;
+
+/**
+ * Запрос покупки звезд
+ *
+ * @param requestId ключ идемпотентности: повтор запроса с тем же ключом
+ *                  не создает вторую покупку
+ */
+public record FragmentPurchaseRequest(
+        String requestId,
+        Long userId,
+        int stars,
+        BigDecimal amount,
+        String currency) {
+}
@@ -0,0 +1,26 @@
+package shit.back.infrastructure.fragment;
+
+/**
+ * Результат покупки звезд или проверки ее статуса
+ *
+ * @param errorCode код ошибки Fragment или клиента (CIRCUIT_OPEN, RETRIES_EXHAUSTED, ...)
+ */
+public record FragmentPurchaseResult(
+        String requestId,
+        String transactionId,
+        FragmentPurchaseStatus status,
+        Integer starsDelivered,
+        String errorCode) {
+
+    public static FragmentPurchaseResult failed(String requestId, String transactionId, String errorCode) {
+        return new FragmentPurchaseResult(requestId, transactionId, FragmentPurchaseStatus.FAILED, null, errorCode);
+    }
+
+    public boolean isCompleted() {
+        return status == FragmentPurchaseStatus.COMPLETED;
+    }
+
+    public boolean isFailed() {
+        return status == FragmentPurchaseStatus.FAILED;
+    }
+}
@@ -0,0 +1,26 @@
+package shit.back.infrastructure.fragment;
+
+/**
+ * Статус покупки звезд на стороне Fragment
+ */
+public enum FragmentPurchaseStatus {
+    PENDING,
+    COMPLETED,
+    FAILED,
+    UNKNOWN;
+
+    public boolean isFinal() {
+        return this == COMPLETED || this == FAILED;
+    }
+
+    public static FragmentPurchaseStatus parse(Object value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        try {
+            return valueOf(value.toString().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+}
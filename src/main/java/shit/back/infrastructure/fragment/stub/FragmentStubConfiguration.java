@@ -0,0 +1,30 @@
+package shit.back.infrastructure.fragment.stub;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Запуск локального stub Fragment API (app.fragment.stub.enabled=true)
+ *
+ * Если app.fragment.purchase.base-url не задан, FragmentPurchaseClient
+ * отправляет запросы в stub.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.fragment.stub.enabled", havingValue = "true")
+public class FragmentStubConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FragmentStubServer fragmentStubServer(
+            @Value("${app.fragment.stub.port:0}") int port,
+            @Value("${app.fragment.stub.min-latency-ms:20}") long minLatencyMs,
+            @Value("${app.fragment.stub.max-latency-ms:150}") long maxLatencyMs,
+            @Value("${app.fragment.stub.failure-rate:0.05}") double failureRate,
+            @Value("${app.fragment.stub.hang-rate:0.01}") double hangRate,
+            @Value("${app.fragment.stub.hang-ms:15000}") long hangMs,
+            @Value("${app.fragment.stub.completion-delay-ms:3000}") long completionDelayMs) {
+        return new FragmentStubServer(new FragmentStubServer.Settings(
+                port, minLatencyMs, maxLatencyMs, failureRate, hangRate, hangMs, completionDelayMs));
+    }
+}
@@ -0,0 +1,220 @@
+package shit.back.infrastructure.fragment.stub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Локальный stub Fragment API для нагрузочных тестов без сети
+ *
+ * Реализует тот же контракт, что ожидает FragmentPurchaseClient:
+ * POST /v1/purchases (с Idempotency-Key) и пакетный POST /v1/purchases/status.
+ * Каждый ответ задерживается на случайное время в [minLatencyMs, maxLatencyMs],
+ * с вероятностью failureRate возвращается 503, с вероятностью hangRate ответ
+ * задерживается на hangMs (для проверки таймаутов). Покупка переходит
+ * из PENDING в COMPLETED через completionDelayMs.
+ */
+@Slf4j
+public class FragmentStubServer {
+
+    /**
+     * Параметры симуляции
+     */
+    public record Settings(
+            int port,
+            long minLatencyMs,
+            long maxLatencyMs,
+            double failureRate,
+            double hangRate,
+            long hangMs,
+            long completionDelayMs) {
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> transactionsByRequestId = new ConcurrentHashMap<>();
+    private final Map<String, StubTransaction> transactions = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder purchasesCreated = new LongAdder();
+    private final LongAdder idempotentReplays = new LongAdder();
+    private final LongAdder injectedFailures = new LongAdder();
+    private final LongAdder injectedHangs = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FragmentStubServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), settings.port()), 512);
+        server.setExecutor(executor);
+        server.createContext("/v1/purchases/status", this::handleStatus);
+        server.createContext("/v1/purchases", this::handlePurchase);
+        server.start();
+        log.info("🧪 FRAGMENT STUB: Запущен на {} (latency {}-{}ms, failureRate={}, hangRate={})",
+                getBaseUrl(), settings.minLatencyMs(), settings.maxLatencyMs(),
+                settings.failureRate(), settings.hangRate());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("purchasesCreated", purchasesCreated.sum());
+        stats.put("idempotentReplays", idempotentReplays.sum());
+        stats.put("injectedFailures", injectedFailures.sum());
+        stats.put("injectedHangs", injectedHangs.sum());
+        return stats;
+    }
+
+    public long getPurchasesCreated() {
+        return purchasesCreated.sum();
+    }
+
+    private void handlePurchase(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!simulate(exchange)) {
+                return;
+            }
+            Map<?, ?> body = readBody(exchange);
+            String requestId = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (requestId == null && body.get("requestId") != null) {
+                requestId = body.get("requestId").toString();
+            }
+            Object stars = body.get("stars");
+            if (requestId == null || !(stars instanceof Number starCount) || starCount.intValue() <= 0) {
+                write(exchange, 400, Map.of("errorCode", "INVALID_REQUEST"));
+                return;
+            }
+
+            boolean[] created = { false };
+            String transactionId = transactionsByRequestId.computeIfAbsent(requestId, key -> {
+                String id = UUID.randomUUID().toString();
+                transactions.put(id, new StubTransaction(starCount.intValue(),
+                        System.currentTimeMillis() + settings.completionDelayMs()));
+                purchasesCreated.increment();
+                created[0] = true;
+                return id;
+            });
+            if (!created[0]) {
+                idempotentReplays.increment();
+            }
+            write(exchange, 200, statusOf(transactionId));
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!simulate(exchange)) {
+                return;
+            }
+            Object ids = readBody(exchange).get("transactionIds");
+            Map<String, Object> statuses = new HashMap<>();
+            if (ids instanceof List<?> list) {
+                for (Object id : list) {
+                    if (id != null && transactions.containsKey(id.toString())) {
+                        statuses.put(id.toString(), statusOf(id.toString()));
+                    }
+                }
+            }
+            write(exchange, 200, Map.of("statuses", statuses));
+        }
+    }
+
+    /**
+     * Задержка и внедрение ошибок
+     *
+     * @return false, если ответ уже отправлен (ошибка)
+     */
+    private boolean simulate(HttpExchange exchange) throws IOException {
+        requests.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            long latency = settings.maxLatencyMs() > settings.minLatencyMs()
+                    ? random.nextLong(settings.minLatencyMs(), settings.maxLatencyMs() + 1)
+                    : settings.minLatencyMs();
+            if (settings.hangRate() > 0 && random.nextDouble() < settings.hangRate()) {
+                injectedHangs.increment();
+                latency += settings.hangMs();
+            }
+            if (latency > 0) {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (settings.failureRate() > 0 && random.nextDouble() < settings.failureRate()) {
+            injectedFailures.increment();
+            write(exchange, 503, Map.of("errorCode", "SERVICE_UNAVAILABLE"));
+            return false;
+        }
+        return true;
+    }
+
+    private Map<String, Object> statusOf(String transactionId) {
+        StubTransaction transaction = transactions.get(transactionId);
+        boolean completed = System.currentTimeMillis() >= transaction.completeAtMillis();
+        Map<String, Object> status = new HashMap<>();
+        status.put("transactionId", transactionId);
+        status.put("status", completed ? "COMPLETED" : "PENDING");
+        if (completed) {
+            status.put("starsDelivered", transaction.stars());
+        }
+        return status;
+    }
+
+    private Map<?, ?> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] bytes = input.readAllBytes();
+            return bytes.length == 0 ? Map.of() : objectMapper.readValue(bytes, Map.class);
+        }
+    }
+
+    private void write(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private record StubTransaction(int stars, long completeAtMillis) {
+    }
+}
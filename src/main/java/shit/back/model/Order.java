@@ -2,10 +2,10 @@ package shit.back.model;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import shit.back.util.OrderIdGenerator;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -52,7 +52,7 @@ public class Order {
     }
 
     public Order(Long userId, String username, StarPackage starPackage) {
-        this.orderId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        this.orderId = OrderIdGenerator.getDefault().nextId();
         this.userId = userId;
         this.username = username;
         this.starPackage = starPackage;
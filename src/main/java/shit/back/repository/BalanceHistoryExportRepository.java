@@ -0,0 +1,26 @@
+package shit.back.repository;
+
+import java.util.List;
+
+/**
+ * Потоковое чтение истории баланса пользователя для выгрузки
+ */
+public interface BalanceHistoryExportRepository {
+
+    /**
+     * Колонки строки выгрузки в порядке значений, передаваемых в ExportRowHandler
+     */
+    List<String> BALANCE_HISTORY_COLUMNS = List.of(
+            "Дата", "ID транзакции", "Тип", "Статус", "Сумма", "Баланс до", "Баланс после",
+            "Заказ", "Способ оплаты", "Описание", "Завершена");
+
+    /**
+     * Пройти по всем транзакциям пользователя от старых к новым
+     * forward-only курсором, не загружая их в persistence context.
+     * Должен вызываться внутри транзакции, иначе PostgreSQL игнорирует
+     * fetchSize и отдает весь результат сразу.
+     *
+     * @return количество переданных строк
+     */
+    long streamUserHistory(Long userId, int fetchSize, ExportRowHandler handler);
+}
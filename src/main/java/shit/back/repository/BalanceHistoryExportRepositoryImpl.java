@@ -0,0 +1,34 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.util.List;
+
+/**
+ * Потоковое чтение истории баланса
+ *
+ * Запрос идет по индексу idx_balance_transactions_user_created, строки
+ * читаются курсором (ExportCursor) и сразу передаются в обработчик,
+ * поэтому память не зависит от длины истории.
+ */
+public class BalanceHistoryExportRepositoryImpl implements BalanceHistoryExportRepository {
+
+    private static final String HISTORY_SQL = """
+            SELECT created_at, transaction_id, type, status, amount, balance_before, balance_after,
+                   order_id, payment_method, description, completed_at
+            FROM balance_transactions
+            WHERE user_id = ?
+            ORDER BY created_at, id
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public long streamUserHistory(Long userId, int fetchSize, ExportRowHandler handler) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection ->
+                ExportCursor.stream(connection, HISTORY_SQL, List.of(userId), fetchSize, handler));
+    }
+}
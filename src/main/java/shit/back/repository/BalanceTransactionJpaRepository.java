@@ -23,7 +23,8 @@ import java.util.Optional;
  * с оптимизированными запросами для производительности и отчетности.
  */
 @Repository
-public interface BalanceTransactionJpaRepository extends JpaRepository<BalanceTransactionEntity, Long> {
+public interface BalanceTransactionJpaRepository extends JpaRepository<BalanceTransactionEntity, Long>,
+                BalanceHistoryExportRepository {
 
         // === ОСНОВНЫЕ МЕТОДЫ ПОИСКА ===
 
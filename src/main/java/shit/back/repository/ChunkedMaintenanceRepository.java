@@ -0,0 +1,25 @@
+package shit.back.repository;
+
+/**
+ * Выполнение операций обслуживания порциями по ключу
+ */
+public interface ChunkedMaintenanceRepository {
+
+    /**
+     * Удалить или обновить до limit строк с ключом больше afterKey в порядке ключа
+     */
+    ChunkedOperation.ChunkResult executeChunk(ChunkedOperation operation, long afterKey, int limit,
+            Object[] parameters);
+
+    /**
+     * Сколько строк еще подпадает под операцию после afterKey; на PostgreSQL -
+     * оценка планировщика, без сканирования таблицы
+     */
+    long estimateBacklog(ChunkedOperation operation, long afterKey, Object[] parameters);
+
+    /**
+     * Наибольшее отставание реплик по pg_stat_replication в мс (0 - реплик нет
+     * или БД не PostgreSQL)
+     */
+    long currentReplicationLagMs();
+}
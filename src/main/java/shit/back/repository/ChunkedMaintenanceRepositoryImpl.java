@@ -0,0 +1,191 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import shit.back.repository.ChunkedOperation.ChunkResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Порции операций обслуживания
+ *
+ * PostgreSQL: один запрос на порцию - CTE выбирает до n ключей после
+ * курсора (FOR UPDATE SKIP LOCKED, строки занятые приложением пропускаются
+ * и достанутся следующему проходу), DELETE/UPDATE по ним возвращает
+ * обработанные ключи. Размер очереди - оценка планировщика из EXPLAIN.
+ *
+ * Другие БД (H2 в тестах): SELECT ключей + DELETE/UPDATE ... WHERE key IN,
+ * размер очереди - COUNT(*).
+ */
+@Slf4j
+public class ChunkedMaintenanceRepositoryImpl implements ChunkedMaintenanceRepository {
+
+    private static final String REPLICATION_LAG_SQL =
+            "SELECT COALESCE(MAX(EXTRACT(EPOCH FROM replay_lag)), 0) FROM pg_stat_replication";
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public ChunkResult executeChunk(ChunkedOperation operation, long afterKey, int limit, Object[] parameters) {
+        if (limit <= 0) {
+            return new ChunkResult(0, 0, afterKey);
+        }
+
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        ChunkResult result = session.doReturningWork(connection -> isPostgres(connection)
+                ? executePostgresChunk(connection, operation, afterKey, limit, parameters)
+                : executeGenericChunk(connection, operation, afterKey, limit, parameters));
+
+        if (result.processed() > 0) {
+            // Загруженные ранее сущности могли быть удалены или изменены в обход persistence context
+            entityManager.clear();
+        }
+        log.debug("Maintenance chunk {}: after={}, limit={}, processed={}", operation.name(), afterKey, limit,
+                result.processed());
+        return result;
+    }
+
+    @Override
+    public long estimateBacklog(ChunkedOperation operation, long afterKey, Object[] parameters) {
+        Session session = entityManager.unwrap(Session.class);
+        return session.doReturningWork(connection -> {
+            String where = whereClause(operation);
+            if (isPostgres(connection)) {
+                String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + operation.table() + " WHERE " + where;
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    bind(statement, 1, afterKey, parameters);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        Matcher matcher = PLAN_ROWS.matcher(resultSet.next() ? resultSet.getString(1) : "");
+                        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+                    }
+                }
+            }
+            String sql = "SELECT COUNT(*) FROM " + operation.table() + " WHERE " + where;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, 1, afterKey, parameters);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+            }
+        });
+    }
+
+    @Override
+    public long currentReplicationLagMs() {
+        Session session = entityManager.unwrap(Session.class);
+        return session.doReturningWork(connection -> {
+            if (!isPostgres(connection)) {
+                return 0L;
+            }
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(REPLICATION_LAG_SQL)) {
+                return resultSet.next() ? Math.round(resultSet.getDouble(1) * 1000) : 0L;
+            }
+        });
+    }
+
+    private ChunkResult executePostgresChunk(Connection connection, ChunkedOperation operation, long afterKey,
+            int limit, Object[] parameters) throws SQLException {
+        String key = operation.keyColumn();
+        String chunk = "WITH chunk AS (SELECT " + key + " FROM " + operation.table()
+                + " WHERE " + whereClause(operation)
+                + " ORDER BY " + key + " LIMIT ? FOR UPDATE SKIP LOCKED) ";
+        String sql = operation.isDelete()
+                ? chunk + "DELETE FROM " + operation.table() + " t USING chunk c WHERE t." + key + " = c." + key
+                        + " RETURNING t." + key
+                : chunk + "UPDATE " + operation.table() + " t SET " + operation.setClause()
+                        + " FROM chunk c WHERE t." + key + " = c." + key + " RETURNING t." + key;
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = bind(statement, 1, afterKey, parameters);
+            statement.setInt(index, limit);
+
+            int processed = 0;
+            long lastKey = afterKey;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    processed++;
+                    lastKey = Math.max(lastKey, resultSet.getLong(1));
+                }
+            }
+            return new ChunkResult(processed, processed, lastKey);
+        }
+    }
+
+    private ChunkResult executeGenericChunk(Connection connection, ChunkedOperation operation, long afterKey,
+            int limit, Object[] parameters) throws SQLException {
+        String key = operation.keyColumn();
+        List<Long> keys = new ArrayList<>(limit);
+        String select = "SELECT " + key + " FROM " + operation.table() + " WHERE " + whereClause(operation)
+                + " ORDER BY " + key + " LIMIT ?";
+        try (PreparedStatement statement = connection.prepareStatement(select)) {
+            int index = bind(statement, 1, afterKey, parameters);
+            statement.setInt(index, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    keys.add(resultSet.getLong(1));
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return new ChunkResult(0, 0, afterKey);
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        String sql = operation.isDelete()
+                ? "DELETE FROM " + operation.table() + " WHERE " + key + " IN (" + placeholders + ")"
+                : "UPDATE " + operation.table() + " SET " + operation.setClause()
+                        + " WHERE " + key + " IN (" + placeholders + ")";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < keys.size(); i++) {
+                statement.setLong(i + 1, keys.get(i));
+            }
+            return new ChunkResult(keys.size(), statement.executeUpdate(), keys.get(keys.size() - 1));
+        }
+    }
+
+    private static String whereClause(ChunkedOperation operation) {
+        return operation.keyColumn() + " > ? AND (" + operation.predicate() + ")";
+    }
+
+    /**
+     * Привязать курсор и параметры условия, вернуть индекс следующего параметра
+     */
+    private static int bind(PreparedStatement statement, int index, long afterKey, Object[] parameters)
+            throws SQLException {
+        statement.setLong(index++, afterKey);
+        for (Object parameter : parameters) {
+            statement.setObject(index++, parameter instanceof LocalDateTime time ? Timestamp.valueOf(time) : parameter);
+        }
+        return index;
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            result = product != null && product.toLowerCase().contains("postgresql");
+            postgres = result;
+        }
+        return result;
+    }
+}
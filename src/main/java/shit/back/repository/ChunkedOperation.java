@@ -0,0 +1,42 @@
+package shit.back.repository;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Массовая операция обслуживания, выполняемая порциями по числовому ключу
+ *
+ * Строки выбираются условием predicate (параметры - через ?, значения
+ * дает parameters) в порядке keyColumn и удаляются (setClause == null)
+ * или обновляются выражением setClause без параметров. Имена таблиц,
+ * колонок и условия задаются только в коде, не из пользовательского ввода.
+ *
+ * @param schedule период автоматического запуска; null - только по вызову
+ */
+public record ChunkedOperation(String name, String table, String keyColumn, String predicate,
+        String setClause, Supplier<Object[]> parameters, Duration schedule) {
+
+    public static ChunkedOperation delete(String name, String table, String keyColumn, String predicate,
+            Supplier<Object[]> parameters, Duration schedule) {
+        return new ChunkedOperation(name, table, keyColumn, predicate, null, parameters, schedule);
+    }
+
+    public static ChunkedOperation update(String name, String table, String keyColumn, String setClause,
+            String predicate, Supplier<Object[]> parameters, Duration schedule) {
+        return new ChunkedOperation(name, table, keyColumn, predicate, setClause, parameters, schedule);
+    }
+
+    public boolean isDelete() {
+        return setClause == null;
+    }
+
+    /**
+     * Результат одной порции
+     *
+     * @param selected строк выбрано (меньше лимита - проход завершен)
+     * @param processed строк удалено или обновлено
+     * @param lastKey наибольший ключ порции (или прежний, если порция пуста)
+     */
+    public record ChunkResult(int selected, int processed, long lastKey) {
+    }
+}
@@ -0,0 +1,30 @@
+package shit.back.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import shit.back.entity.DailyUserSketchEntity;
+import shit.back.entity.DailyUserSketchEntity.Kind;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Дневные HyperLogLog-скетчи пользователей
+ */
+@Repository
+public interface DailyUserSketchJpaRepository extends JpaRepository<DailyUserSketchEntity, Long> {
+
+    List<DailyUserSketchEntity> findByKindAndSketchDateBetween(Kind kind, LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Строка дня под блокировкой: инстансы дописывают свои регистры по очереди
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DailyUserSketchEntity s WHERE s.kind = :kind AND s.sketchDate = :sketchDate")
+    Optional<DailyUserSketchEntity> findForUpdate(@Param("kind") Kind kind, @Param("sketchDate") LocalDate sketchDate);
+}
@@ -0,0 +1,60 @@
+package shit.back.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forward-only курсор для фрагментов выгрузки
+ *
+ * Строки читаются порциями по fetchSize и сразу передаются обработчику,
+ * сущности и persistence context не участвуют. PostgreSQL открывает
+ * курсор только при выключенном autocommit, поэтому вызывать нужно
+ * внутри транзакции.
+ */
+final class ExportCursor {
+
+    private ExportCursor() {
+    }
+
+    /**
+     * @return количество переданных строк
+     */
+    static long stream(Connection connection, String sql, List<?> parameters, int fetchSize,
+            ExportRowHandler handler) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.size(); i++) {
+                Object parameter = parameters.get(i);
+                statement.setObject(i + 1, parameter instanceof LocalDateTime dateTime
+                        ? Timestamp.valueOf(dateTime)
+                        : parameter);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                List<Object> row = new ArrayList<>(columns);
+                long count = 0;
+                while (rs.next()) {
+                    row.clear();
+                    for (int column = 1; column <= columns; column++) {
+                        Object value = rs.getObject(column);
+                        row.add(value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value);
+                    }
+                    handler.accept(row);
+                    count++;
+                }
+                return count;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
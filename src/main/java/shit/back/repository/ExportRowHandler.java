@@ -0,0 +1,16 @@
+package shit.back.repository;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Получатель строк потоковой выгрузки
+ *
+ * Список значений переиспользуется между вызовами, сохранять его нельзя.
+ * Значения - String, Number, Boolean, LocalDateTime или null.
+ */
+@FunctionalInterface
+public interface ExportRowHandler {
+
+    void accept(List<Object> row) throws IOException;
+}
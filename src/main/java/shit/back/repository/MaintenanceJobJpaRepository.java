@@ -0,0 +1,57 @@
+package shit.back.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import shit.back.entity.MaintenanceJobEntity;
+import shit.back.entity.MaintenanceJobEntity.JobStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние операций обслуживания: аренда между инстансами и контрольные точки
+ */
+@Repository
+public interface MaintenanceJobJpaRepository extends JpaRepository<MaintenanceJobEntity, String>,
+        ChunkedMaintenanceRepository {
+
+    /**
+     * Захватить или продлить аренду операции; 0 - операцию выполняет другой инстанс
+     */
+    @Modifying
+    @Query("UPDATE MaintenanceJobEntity j SET j.leaseOwner = :owner, j.leaseUntil = :until "
+            + "WHERE j.name = :name AND (j.leaseOwner IS NULL OR j.leaseOwner = :owner OR j.leaseUntil < :now)")
+    int tryAcquireLease(@Param("name") String name, @Param("owner") String owner,
+            @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE MaintenanceJobEntity j SET j.leaseOwner = null, j.leaseUntil = null "
+            + "WHERE j.name = :name AND j.leaseOwner = :owner")
+    int releaseLease(@Param("name") String name, @Param("owner") String owner);
+
+    @Modifying
+    @Query("UPDATE MaintenanceJobEntity j SET j.status = :status, j.lastKey = 0, j.passProcessed = 0, "
+            + "j.passStartedAt = :now, j.updatedAt = :now WHERE j.name = :name AND j.leaseOwner = :owner")
+    int startPass(@Param("name") String name, @Param("owner") String owner, @Param("status") JobStatus status,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Записать позицию после порции (в той же транзакции, что и порция) и
+     * продлить аренду; 0 - аренда потеряна, порцию нужно откатить
+     */
+    @Modifying
+    @Query("UPDATE MaintenanceJobEntity j SET j.lastKey = :lastKey, "
+            + "j.passProcessed = j.passProcessed + :processed, j.totalProcessed = j.totalProcessed + :processed, "
+            + "j.leaseUntil = :until, j.updatedAt = :now WHERE j.name = :name AND j.leaseOwner = :owner")
+    int saveCheckpoint(@Param("name") String name, @Param("owner") String owner, @Param("lastKey") long lastKey,
+            @Param("processed") long processed, @Param("until") LocalDateTime until,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE MaintenanceJobEntity j SET j.status = :status, j.lastKey = 0, j.lastCompletedAt = :now, "
+            + "j.updatedAt = :now WHERE j.name = :name AND j.leaseOwner = :owner")
+    int completePass(@Param("name") String name, @Param("owner") String owner, @Param("status") JobStatus status,
+            @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,23 @@
+package shit.back.repository;
+
+import shit.back.dto.order.OrderStatusTransition;
+import shit.back.entity.OrderEntity;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Массовое изменение статуса заказов одним запросом (фрагмент OrderJpaRepository)
+ */
+public interface OrderBulkStatusRepository {
+
+    /**
+     * Перевести в newStatus только те заказы из orderIds, текущий статус
+     * которых входит в allowedFrom
+     *
+     * @return обновленные заказы с их предыдущим статусом; заказы, которых
+     *         нет в результате, не найдены или имеют недопустимый статус
+     */
+    List<OrderStatusTransition> updateStatusWhereAllowed(Collection<String> orderIds,
+            Collection<OrderEntity.OrderStatus> allowedFrom, OrderEntity.OrderStatus newStatus);
+}
@@ -0,0 +1,155 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import shit.back.dto.order.OrderStatusTransition;
+import shit.back.entity.OrderEntity;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Массовое изменение статуса заказов
+ *
+ * PostgreSQL: один UPDATE ... WHERE order_id = ANY(?) AND status = ANY(?)
+ * RETURNING. Допустимость перехода проверяется условием на статус в самом
+ * запросе, поэтому конкурирующее изменение статуса не может проскочить
+ * между проверкой и записью. Предыдущий статус берется из CTE с FOR UPDATE.
+ *
+ * Другие БД (H2 в тестах): SELECT ... FOR UPDATE + один JPQL UPDATE.
+ */
+@Slf4j
+public class OrderBulkStatusRepositoryImpl implements OrderBulkStatusRepository {
+
+    private static final String POSTGRES_UPDATE_SQL = """
+            WITH target AS (
+                SELECT order_id, status AS previous_status
+                FROM orders
+                WHERE order_id = ANY(?) AND status = ANY(?)
+                FOR UPDATE
+            )
+            UPDATE orders o
+            SET status = ?,
+                updated_at = ?,
+                completed_at = CASE WHEN ? THEN ? ELSE o.completed_at END
+            FROM target t
+            WHERE o.order_id = t.order_id
+            RETURNING o.order_id, t.previous_status, o.user_id, o.username,
+                      o.final_amount, o.star_count, o.payment_method
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public List<OrderStatusTransition> updateStatusWhereAllowed(Collection<String> orderIds,
+            Collection<OrderEntity.OrderStatus> allowedFrom, OrderEntity.OrderStatus newStatus) {
+        if (orderIds.isEmpty() || allowedFrom.isEmpty()) {
+            return List.of();
+        }
+
+        // Несохраненные изменения должны попасть в БД до UPDATE в обход persistence context
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<OrderStatusTransition> updated = session.doReturningWork(connection -> isPostgres(connection)
+                ? updateWithReturning(connection, orderIds, allowedFrom, newStatus, now)
+                : null);
+        if (updated == null) {
+            updated = updateWithLockedSelect(orderIds, allowedFrom, newStatus, now);
+        }
+
+        // Загруженные ранее сущности заказов больше не соответствуют БД
+        entityManager.clear();
+        log.debug("Bulk status update to {}: requested={}, updated={}", newStatus, orderIds.size(), updated.size());
+        return updated;
+    }
+
+    private List<OrderStatusTransition> updateWithReturning(Connection connection, Collection<String> orderIds,
+            Collection<OrderEntity.OrderStatus> allowedFrom, OrderEntity.OrderStatus newStatus,
+            LocalDateTime now) throws SQLException {
+        Array idArray = connection.createArrayOf("varchar", orderIds.toArray());
+        Array statusArray = connection.createArrayOf("varchar",
+                allowedFrom.stream().map(Enum::name).toArray());
+        Timestamp timestamp = Timestamp.valueOf(now);
+
+        try (PreparedStatement statement = connection.prepareStatement(POSTGRES_UPDATE_SQL)) {
+            statement.setArray(1, idArray);
+            statement.setArray(2, statusArray);
+            statement.setString(3, newStatus.name());
+            statement.setTimestamp(4, timestamp);
+            statement.setBoolean(5, newStatus == OrderEntity.OrderStatus.COMPLETED);
+            statement.setTimestamp(6, timestamp);
+
+            List<OrderStatusTransition> updated = new ArrayList<>(orderIds.size());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int starCount = resultSet.getInt(6);
+                    updated.add(new OrderStatusTransition(
+                            resultSet.getString(1),
+                            OrderEntity.OrderStatus.valueOf(resultSet.getString(2)),
+                            resultSet.getLong(3),
+                            resultSet.getString(4),
+                            resultSet.getBigDecimal(5),
+                            resultSet.wasNull() ? null : starCount,
+                            resultSet.getString(7)));
+                }
+            }
+            return updated;
+        } finally {
+            idArray.free();
+            statusArray.free();
+        }
+    }
+
+    private List<OrderStatusTransition> updateWithLockedSelect(Collection<String> orderIds,
+            Collection<OrderEntity.OrderStatus> allowedFrom, OrderEntity.OrderStatus newStatus,
+            LocalDateTime now) {
+        List<OrderStatusTransition> candidates = entityManager.createQuery(
+                "SELECT new shit.back.dto.order.OrderStatusTransition(o.orderId, o.status, o.userId, "
+                        + "o.username, o.finalAmount, o.starCount, o.paymentMethod) "
+                        + "FROM OrderEntity o WHERE o.orderId IN :ids AND o.status IN :allowedFrom",
+                OrderStatusTransition.class)
+                .setParameter("ids", orderIds)
+                .setParameter("allowedFrom", allowedFrom)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        boolean completed = newStatus == OrderEntity.OrderStatus.COMPLETED;
+        entityManager.createQuery("UPDATE OrderEntity o SET o.status = :status, o.updatedAt = :now"
+                + (completed ? ", o.completedAt = :now" : "")
+                + " WHERE o.orderId IN :ids")
+                .setParameter("status", newStatus)
+                .setParameter("now", now)
+                .setParameter("ids", candidates.stream().map(OrderStatusTransition::getOrderId).toList())
+                .executeUpdate();
+        return candidates;
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            result = product != null && product.toLowerCase().contains("postgresql");
+            postgres = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+package shit.back.repository;
+
+import shit.back.entity.OrderEntity.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка заказов (фрагмент OrderJpaRepository)
+ */
+public interface OrderExportRepository {
+
+    /**
+     * Колонки строки выгрузки в порядке значений, передаваемых в ExportRowHandler
+     */
+    List<String> ORDER_EXPORT_COLUMNS = List.of(
+            "order_id", "user_id", "username", "star_package_name", "star_count", "original_price",
+            "discount_percentage", "final_amount", "status", "payment_method", "payment_source",
+            "balance_used", "external_payment", "created_at", "updated_at", "completed_at");
+
+    /**
+     * Пройти по заказам, созданным в [from, to), от старых к новым.
+     * Пустые границы и пустой набор статусов не ограничивают выборку.
+     * Должен вызываться внутри транзакции.
+     *
+     * @return количество переданных строк
+     */
+    long streamOrders(LocalDateTime from, LocalDateTime to, Collection<OrderStatus> statuses,
+            int fetchSize, ExportRowHandler handler);
+}
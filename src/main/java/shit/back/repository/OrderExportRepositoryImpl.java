@@ -0,0 +1,51 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import shit.back.entity.OrderEntity.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка заказов
+ *
+ * Диапазон дат идет по индексу idx_orders_created_at, строки читаются
+ * курсором (ExportCursor) без загрузки сущностей.
+ */
+public class OrderExportRepositoryImpl implements OrderExportRepository {
+
+    private static final String SELECT_SQL = "SELECT " + String.join(", ", ORDER_EXPORT_COLUMNS) + " FROM orders";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public long streamOrders(LocalDateTime from, LocalDateTime to, Collection<OrderStatus> statuses,
+            int fetchSize, ExportRowHandler handler) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (from != null) {
+            conditions.add("created_at >= ?");
+            parameters.add(from);
+        }
+        if (to != null) {
+            conditions.add("created_at < ?");
+            parameters.add(to);
+        }
+        if (statuses != null && !statuses.isEmpty()) {
+            conditions.add("status IN (" + String.join(", ", Collections.nCopies(statuses.size(), "?")) + ")");
+            statuses.forEach(status -> parameters.add(status.name()));
+        }
+
+        String sql = SELECT_SQL
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY created_at, order_id";
+        return entityManager.unwrap(Session.class).doReturningWork(connection ->
+                ExportCursor.stream(connection, sql, parameters, fetchSize, handler));
+    }
+}
@@ -11,11 +11,13 @@ import shit.back.entity.OrderEntity.OrderStatus;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderJpaRepository extends JpaRepository<OrderEntity, String> {
+public interface OrderJpaRepository extends JpaRepository<OrderEntity, String>, OrderSearchRepository,
+        OrderBulkStatusRepository, OrderExportRepository {
 
     // Поиск по пользователю
     List<OrderEntity> findByUserIdOrderByCreatedAtDesc(Long userId);
@@ -32,6 +34,14 @@ public interface OrderJpaRepository extends JpaRepository<OrderEntity, String> {
 
     Optional<OrderEntity> findByUserIdAndStatusIn(Long userId, List<OrderStatus> statuses);
 
+    // Текущие статусы заказов (для отчета об ошибках массового обновления)
+    @Query("SELECT o.orderId, o.status FROM OrderEntity o WHERE o.orderId IN :orderIds")
+    List<Object[]> findStatusesByOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    // Наибольший ID заказа в формате OrderIdGenerator (старые hex ID начинаются с 0-9A-F, то есть меньше 'G')
+    @Query("SELECT MAX(o.orderId) FROM OrderEntity o WHERE o.orderId >= 'G'")
+    Optional<String> findMaxGeneratedOrderId();
+
     // Поиск активных заказов пользователя
     @Query("SELECT o FROM OrderEntity o WHERE o.userId = :userId AND o.status IN ('CREATED', 'AWAITING_PAYMENT', 'PAYMENT_RECEIVED', 'PROCESSING')")
     List<OrderEntity> findActiveOrdersByUserId(@Param("userId") Long userId);
@@ -63,6 +73,25 @@ public interface OrderJpaRepository extends JpaRepository<OrderEntity, String> {
     @Query("SELECT o FROM OrderEntity o WHERE o.username LIKE %:searchTerm% OR o.orderId LIKE %:searchTerm%")
     Page<OrderEntity> searchOrders(@Param("searchTerm") String searchTerm, Pageable pageable);
 
+    /**
+     * Ранжированный поиск по pg_trgm: LIKE по lower(...) использует GIN
+     * trigram индексы, similarity() задает порядок релевантности
+     */
+    @Query(value = """
+            SELECT o.* FROM orders o
+            WHERE lower(o.order_id) LIKE :pattern
+               OR lower(o.username) LIKE :pattern
+               OR lower(o.star_package_name) LIKE :pattern
+            ORDER BY GREATEST(
+                        similarity(lower(o.order_id), :term),
+                        similarity(lower(COALESCE(o.username, '')), :term),
+                        similarity(lower(o.star_package_name), :term)) DESC,
+                     o.created_at DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<OrderEntity> searchOrdersRanked(@Param("term") String term, @Param("pattern") String pattern,
+            @Param("limit") int limit);
+
     // Топ покупатели
     @Query("SELECT o.userId, o.username, COUNT(o), SUM(o.finalAmount) FROM OrderEntity o WHERE o.status = 'COMPLETED' GROUP BY o.userId, o.username ORDER BY COUNT(o) DESC")
     List<Object[]> getTopCustomers(Pageable pageable);
@@ -0,0 +1,103 @@
+package shit.back.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import shit.back.entity.OrderRollupDailyEntity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Чтение агрегатов заказов для дашборда
+ *
+ * Запросы возвращают строки той же формы, что и соответствующие запросы
+ * OrderJpaRepository по таблице orders, но читают таблицы агрегатов,
+ * размер которых зависит от числа часов/дней и клиентов, а не заказов.
+ */
+@Repository
+public interface OrderRollupJpaRepository extends JpaRepository<OrderRollupDailyEntity, Long>,
+        OrderRollupMaintenanceRepository {
+
+    /**
+     * Аналог OrderJpaRepository.getOrderStatisticsOptimized
+     */
+    @Query(value = """
+            SELECT total_orders, completed_orders, pending_orders, failed_orders,
+                   total_revenue, today_revenue, month_revenue,
+                   CASE WHEN completed_orders > 0 THEN total_revenue / completed_orders ELSE 0 END
+            FROM (
+                SELECT
+                    COALESCE(SUM(order_count), 0) AS total_orders,
+                    COALESCE(SUM(CASE WHEN status = 'COMPLETED' THEN order_count ELSE 0 END), 0) AS completed_orders,
+                    COALESCE(SUM(CASE WHEN status IN ('CREATED', 'AWAITING_PAYMENT') THEN order_count ELSE 0 END), 0)
+                        AS pending_orders,
+                    COALESCE(SUM(CASE WHEN status = 'FAILED' THEN order_count ELSE 0 END), 0) AS failed_orders,
+                    COALESCE(SUM(CASE WHEN status = 'COMPLETED' THEN total_amount ELSE 0 END), 0) AS total_revenue,
+                    COALESCE(SUM(CASE WHEN status = 'COMPLETED' AND bucket_date = :today
+                        THEN total_amount ELSE 0 END), 0) AS today_revenue,
+                    COALESCE(SUM(CASE WHEN status = 'COMPLETED' AND bucket_date >= :monthStart
+                        THEN total_amount ELSE 0 END), 0) AS month_revenue
+                FROM order_rollup_daily
+            ) totals
+            """, nativeQuery = true)
+    List<Object[]> getOrderStatistics(@Param("today") LocalDate today, @Param("monthStart") LocalDate monthStart);
+
+    /**
+     * Аналог OrderJpaRepository.getDailyStatistics: дата, количество заказов, сумма
+     * (начало периода выравнивается по часу)
+     */
+    @Query(value = """
+            SELECT CAST(bucket_start AS DATE) AS day, SUM(order_count), SUM(total_amount)
+            FROM order_rollup_hourly
+            WHERE bucket_start >= :fromHour
+            GROUP BY CAST(bucket_start AS DATE)
+            HAVING SUM(order_count) > 0
+            ORDER BY CAST(bucket_start AS DATE)
+            """, nativeQuery = true)
+    List<Object[]> getDailyStatistics(@Param("fromHour") LocalDateTime fromHour);
+
+    /**
+     * Аналог OrderJpaRepository.getPackageStatistics: пакет, количество, сумма завершенных заказов
+     */
+    @Query(value = """
+            SELECT star_package_name, SUM(order_count), SUM(total_amount)
+            FROM order_rollup_daily
+            WHERE status = 'COMPLETED'
+            GROUP BY star_package_name
+            HAVING SUM(order_count) > 0
+            ORDER BY SUM(order_count) DESC
+            """, nativeQuery = true)
+    List<Object[]> getPackageStatistics();
+
+    /**
+     * Аналог OrderJpaRepository.getTopCustomers: пользователь, имя, количество, сумма завершенных заказов
+     */
+    @Query(value = """
+            SELECT user_id, username, completed_orders, total_spent
+            FROM order_customer_totals
+            WHERE completed_orders > 0
+            ORDER BY completed_orders DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Object[]> getTopCustomers(@Param("limit") int limit);
+
+    /**
+     * Количество заказов и сумма по статусам за период (границы выравниваются по часу)
+     */
+    @Query(value = """
+            SELECT status, SUM(order_count), SUM(total_amount)
+            FROM order_rollup_hourly
+            WHERE bucket_start >= :fromHour AND bucket_start <= :to
+            GROUP BY status
+            """, nativeQuery = true)
+    List<Object[]> getStatusTotalsBetween(@Param("fromHour") LocalDateTime fromHour, @Param("to") LocalDateTime to);
+
+    /**
+     * Количество заказов по статусам
+     */
+    @Query(value = "SELECT status, SUM(order_count) FROM order_rollup_daily GROUP BY status", nativeQuery = true)
+    List<Object[]> getStatusCounts();
+}
@@ -0,0 +1,38 @@
+package shit.back.repository;
+
+import java.util.Map;
+
+/**
+ * Ведение таблиц агрегатов заказов (order_rollup_hourly, order_rollup_daily,
+ * order_customer_totals)
+ */
+public interface OrderRollupMaintenanceRepository {
+
+    boolean isPostgresDatabase();
+
+    /**
+     * Создать или обновить функции, которые триггер на orders вызывает
+     * для применения изменений к агрегатам (только PostgreSQL)
+     */
+    void installRollupFunctions();
+
+    /**
+     * Создать триггеры на orders и пересчитать агрегаты, если триггеров еще нет
+     * (только PostgreSQL, вызывается в транзакции)
+     *
+     * @return true, если триггеры созданы и агрегаты пересчитаны
+     */
+    boolean installTriggersAndBackfill();
+
+    /**
+     * Пересчитать агрегаты по текущему содержимому orders (вызывается в транзакции)
+     *
+     * @return количество строк в каждой таблице агрегатов после пересчета
+     */
+    Map<String, Integer> rebuildRollups();
+
+    /**
+     * Удалить строки агрегатов, обнулившиеся после смены статусов
+     */
+    int pruneEmptyRollupRows();
+}
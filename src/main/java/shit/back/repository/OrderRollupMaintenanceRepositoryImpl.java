@@ -0,0 +1,249 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ведение агрегатов заказов
+ *
+ * PostgreSQL: агрегаты обновляются триггерами на orders в той же транзакции,
+ * что и сам заказ. На INSERT/DELETE и на UPDATE, меняющий статус, сумму,
+ * пакет, способ оплаты, дату или пользователя, из старой группы вычитается
+ * заказ, а в новую добавляется (INSERT ... ON CONFLICT DO UPDATE). Смена
+ * username тоже проходит через триггер: order_customer_totals хранит имя.
+ * Поэтому агрегаты учитывают любые пути записи, включая массовые UPDATE.
+ *
+ * Пересчет выполняется под блокировкой orders в режиме SHARE ROW EXCLUSIVE:
+ * чтение заказов продолжается, запись ждет окончания пересчета, поэтому
+ * ни одно изменение не теряется и не учитывается дважды. Тот же режим
+ * сериализует создание триггеров при одновременном старте нескольких инстансов.
+ *
+ * Другие БД (H2 в тестах): только пересчет, без триггеров.
+ */
+@Slf4j
+public class OrderRollupMaintenanceRepositoryImpl implements OrderRollupMaintenanceRepository {
+
+    private static final String TRIGGER_INSERT_DELETE = "trg_orders_rollup_insert_delete";
+    private static final String TRIGGER_UPDATE = "trg_orders_rollup_update";
+
+    private static final String APPLY_DELTA_FUNCTION = """
+            CREATE OR REPLACE FUNCTION order_rollup_apply_delta(
+                p_created_at TIMESTAMP, p_status VARCHAR, p_package VARCHAR, p_method VARCHAR,
+                p_user_id BIGINT, p_username VARCHAR, p_amount NUMERIC, p_sign INTEGER)
+            RETURNS void AS $$
+            BEGIN
+                INSERT INTO order_rollup_hourly AS r
+                    (bucket_start, status, star_package_name, payment_method, order_count, total_amount, updated_at)
+                VALUES (date_trunc('hour', p_created_at), p_status, p_package, COALESCE(p_method, ''),
+                        p_sign, p_sign * COALESCE(p_amount, 0), now())
+                ON CONFLICT (bucket_start, status, star_package_name, payment_method)
+                DO UPDATE SET order_count = r.order_count + EXCLUDED.order_count,
+                              total_amount = r.total_amount + EXCLUDED.total_amount,
+                              updated_at = EXCLUDED.updated_at;
+
+                INSERT INTO order_rollup_daily AS d
+                    (bucket_date, status, star_package_name, payment_method, order_count, total_amount, updated_at)
+                VALUES (CAST(p_created_at AS DATE), p_status, p_package, COALESCE(p_method, ''),
+                        p_sign, p_sign * COALESCE(p_amount, 0), now())
+                ON CONFLICT (bucket_date, status, star_package_name, payment_method)
+                DO UPDATE SET order_count = d.order_count + EXCLUDED.order_count,
+                              total_amount = d.total_amount + EXCLUDED.total_amount,
+                              updated_at = EXCLUDED.updated_at;
+
+                IF p_status = 'COMPLETED' THEN
+                    INSERT INTO order_customer_totals AS c
+                        (user_id, username, completed_orders, total_spent, updated_at)
+                    VALUES (p_user_id, p_username, p_sign, p_sign * COALESCE(p_amount, 0), now())
+                    ON CONFLICT (user_id)
+                    DO UPDATE SET completed_orders = c.completed_orders + EXCLUDED.completed_orders,
+                                  total_spent = c.total_spent + EXCLUDED.total_spent,
+                                  username = COALESCE(EXCLUDED.username, c.username),
+                                  updated_at = EXCLUDED.updated_at;
+                END IF;
+            END;
+            $$ LANGUAGE plpgsql
+            """;
+
+    private static final String TRIGGER_FUNCTION = """
+            CREATE OR REPLACE FUNCTION order_rollup_trigger() RETURNS trigger AS $$
+            BEGIN
+                IF TG_OP <> 'INSERT' THEN
+                    PERFORM order_rollup_apply_delta(OLD.created_at, OLD.status, OLD.star_package_name,
+                        OLD.payment_method, OLD.user_id, OLD.username, OLD.final_amount, -1);
+                END IF;
+                IF TG_OP <> 'DELETE' THEN
+                    PERFORM order_rollup_apply_delta(NEW.created_at, NEW.status, NEW.star_package_name,
+                        NEW.payment_method, NEW.user_id, NEW.username, NEW.final_amount, 1);
+                END IF;
+                RETURN NULL;
+            END;
+            $$ LANGUAGE plpgsql
+            """;
+
+    private static final String CREATE_INSERT_DELETE_TRIGGER = "CREATE TRIGGER " + TRIGGER_INSERT_DELETE
+            + " AFTER INSERT OR DELETE ON orders FOR EACH ROW EXECUTE FUNCTION order_rollup_trigger()";
+
+    private static final String CREATE_UPDATE_TRIGGER = "CREATE TRIGGER " + TRIGGER_UPDATE + """
+             AFTER UPDATE ON orders FOR EACH ROW
+            WHEN (OLD.status IS DISTINCT FROM NEW.status
+                OR OLD.final_amount IS DISTINCT FROM NEW.final_amount
+                OR OLD.star_package_name IS DISTINCT FROM NEW.star_package_name
+                OR OLD.payment_method IS DISTINCT FROM NEW.payment_method
+                OR OLD.created_at IS DISTINCT FROM NEW.created_at
+                OR OLD.user_id IS DISTINCT FROM NEW.user_id
+                OR OLD.username IS DISTINCT FROM NEW.username)
+            EXECUTE FUNCTION order_rollup_trigger()
+            """;
+
+    private static final String[] REBUILD_SQL = {
+            "DELETE FROM order_rollup_hourly",
+            """
+            INSERT INTO order_rollup_hourly
+                (bucket_start, status, star_package_name, payment_method, order_count, total_amount, updated_at)
+            SELECT date_trunc('hour', created_at), status, star_package_name, COALESCE(payment_method, ''),
+                   COUNT(*), COALESCE(SUM(final_amount), 0), CURRENT_TIMESTAMP
+            FROM orders
+            GROUP BY date_trunc('hour', created_at), status, star_package_name, COALESCE(payment_method, '')
+            """,
+            "DELETE FROM order_rollup_daily",
+            """
+            INSERT INTO order_rollup_daily
+                (bucket_date, status, star_package_name, payment_method, order_count, total_amount, updated_at)
+            SELECT CAST(created_at AS DATE), status, star_package_name, COALESCE(payment_method, ''),
+                   COUNT(*), COALESCE(SUM(final_amount), 0), CURRENT_TIMESTAMP
+            FROM orders
+            GROUP BY CAST(created_at AS DATE), status, star_package_name, COALESCE(payment_method, '')
+            """,
+            "DELETE FROM order_customer_totals",
+            """
+            INSERT INTO order_customer_totals (user_id, username, completed_orders, total_spent, updated_at)
+            SELECT user_id, MAX(username), COUNT(*), COALESCE(SUM(final_amount), 0), CURRENT_TIMESTAMP
+            FROM orders
+            WHERE status = 'COMPLETED'
+            GROUP BY user_id
+            """
+    };
+
+    private static final String[] ROLLUP_TABLES = { "order_rollup_hourly", "order_rollup_daily",
+            "order_customer_totals" };
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public boolean isPostgresDatabase() {
+        return entityManager.unwrap(Session.class).doReturningWork(this::isPostgres);
+    }
+
+    @Override
+    public void installRollupFunctions() {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(APPLY_DELTA_FUNCTION);
+                statement.execute(TRIGGER_FUNCTION);
+            }
+        });
+    }
+
+    @Override
+    public boolean installTriggersAndBackfill() {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE orders IN SHARE ROW EXCLUSIVE MODE");
+                // Проверка под блокировкой: другой инстанс мог создать триггеры, пока мы ждали.
+                // Триггер UPDATE без username (прежняя версия) пересоздается с пересчетом
+                if (triggerExists(statement, TRIGGER_INSERT_DELETE)
+                        && triggerDefinition(statement, TRIGGER_UPDATE).contains("old.username")) {
+                    return false;
+                }
+
+                statement.execute("DROP TRIGGER IF EXISTS " + TRIGGER_INSERT_DELETE + " ON orders");
+                statement.execute("DROP TRIGGER IF EXISTS " + TRIGGER_UPDATE + " ON orders");
+                statement.execute(CREATE_INSERT_DELETE_TRIGGER);
+                statement.execute(CREATE_UPDATE_TRIGGER);
+                rebuild(statement);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Integer> rebuildRollups() {
+        // Несохраненные изменения заказов должны попасть в пересчет
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                if (isPostgres(connection)) {
+                    statement.execute("LOCK TABLE orders IN SHARE ROW EXCLUSIVE MODE");
+                }
+                return rebuild(statement);
+            }
+        });
+    }
+
+    @Override
+    public int pruneEmptyRollupRows() {
+        int deleted = 0;
+        deleted += entityManager.createNativeQuery(
+                "DELETE FROM order_rollup_hourly WHERE order_count = 0 AND total_amount = 0").executeUpdate();
+        deleted += entityManager.createNativeQuery(
+                "DELETE FROM order_rollup_daily WHERE order_count = 0 AND total_amount = 0").executeUpdate();
+        deleted += entityManager.createNativeQuery(
+                "DELETE FROM order_customer_totals WHERE completed_orders = 0 AND total_spent = 0").executeUpdate();
+        return deleted;
+    }
+
+    private Map<String, Integer> rebuild(Statement statement) throws SQLException {
+        for (String sql : REBUILD_SQL) {
+            statement.executeUpdate(sql);
+        }
+
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        for (String table : ROLLUP_TABLES) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                rows.put(table, resultSet.next() ? resultSet.getInt(1) : 0);
+            }
+        }
+        log.debug("Order rollups rebuilt: {}", rows);
+        return rows;
+    }
+
+    private boolean triggerExists(Statement statement, String triggerName) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT 1 FROM pg_trigger WHERE tgname = '" + triggerName + "' AND NOT tgisinternal")) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Определение триггера в виде pg_get_triggerdef (пустая строка, если триггера нет)
+     */
+    private String triggerDefinition(Statement statement, String triggerName) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT pg_get_triggerdef(oid) FROM pg_trigger WHERE tgname = '" + triggerName
+                        + "' AND NOT tgisinternal")) {
+            return resultSet.next() ? resultSet.getString(1) : "";
+        }
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            result = product != null && product.toLowerCase().contains("postgresql");
+            postgres = result;
+        }
+        return result;
+    }
+}
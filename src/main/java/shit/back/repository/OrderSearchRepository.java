@@ -0,0 +1,26 @@
+package shit.back.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import shit.back.dto.order.OrderSearchCriteria;
+import shit.back.dto.order.OrderSearchResult;
+import shit.back.entity.OrderEntity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Поиск заказов с фильтрацией на стороне БД (фрагмент OrderJpaRepository)
+ */
+public interface OrderSearchRepository {
+
+    /**
+     * Поиск облегченных проекций заказов с keyset пагинацией, без COUNT запроса
+     */
+    OrderSearchResult searchSummaries(OrderSearchCriteria criteria);
+
+    /**
+     * Поиск заказов с фильтрами и OFFSET пагинацией (для страниц с номерами)
+     */
+    Page<OrderEntity> searchWithFilters(String searchText, OrderEntity.OrderStatus status,
+            LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable);
+}
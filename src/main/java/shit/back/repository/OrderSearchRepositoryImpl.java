@@ -0,0 +1,264 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import shit.back.dto.order.OrderSearchCriteria;
+import shit.back.dto.order.OrderSearchResult;
+import shit.back.dto.order.OrderSummary;
+import shit.back.entity.OrderEntity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Реализация поиска заказов через Criteria API
+ *
+ * Текст, статус, даты и сортировка применяются в одном SQL запросе.
+ * Keyset пагинация идет по паре (поле сортировки, order_id), поэтому
+ * глубокие страницы не сканируют пропущенные строки, а hasNext
+ * определяется выборкой limit + 1 без COUNT(*).
+ */
+@Slf4j
+public class OrderSearchRepositoryImpl implements OrderSearchRepository {
+
+    private static final int MAX_LIMIT = 100;
+    private static final char LIKE_ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public OrderSearchResult searchSummaries(OrderSearchCriteria criteria) {
+        SortKey sortKey = SortKey.from(criteria.getSortBy());
+        int limit = Math.max(1, Math.min(MAX_LIMIT, criteria.getLimit()));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<OrderSummary> query = cb.createQuery(OrderSummary.class);
+        Root<OrderEntity> root = query.from(OrderEntity.class);
+
+        List<Predicate> predicates = buildFilterPredicates(cb, root, criteria.getSearchText(),
+                criteria.getStatus(), criteria.getFromDate(), criteria.getToDate());
+        if (criteria.getCursor() != null && !criteria.getCursor().isBlank()) {
+            predicates.add(buildKeysetPredicate(cb, root, sortKey, criteria.isAscending(),
+                    Cursor.decode(criteria.getCursor(), sortKey)));
+        }
+
+        Path<String> orderIdPath = root.get("orderId");
+        query.select(cb.construct(OrderSummary.class,
+                orderIdPath,
+                root.get("userId"),
+                root.get("username"),
+                root.get("starPackageName"),
+                root.get("starCount"),
+                root.get("finalAmount"),
+                root.get("status"),
+                root.get("paymentMethod"),
+                root.get("createdAt"),
+                root.get("updatedAt"),
+                root.get("completedAt")))
+                .where(predicates.toArray(new Predicate[0]));
+
+        if (sortKey == SortKey.ORDER_ID) {
+            query.orderBy(criteria.isAscending() ? cb.asc(orderIdPath) : cb.desc(orderIdPath));
+        } else {
+            Path<?> sortPath = root.get(sortKey.attribute);
+            query.orderBy(
+                    criteria.isAscending() ? cb.asc(sortPath) : cb.desc(sortPath),
+                    criteria.isAscending() ? cb.asc(orderIdPath) : cb.desc(orderIdPath));
+        }
+
+        List<OrderSummary> rows = entityManager.createQuery(query)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > limit;
+        List<OrderSummary> page = hasNext ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = hasNext ? Cursor.encode(sortKey, page.get(page.size() - 1)) : null;
+
+        log.debug("Order keyset search: sort={}, rows={}, hasNext={}", sortKey, page.size(), hasNext);
+        return new OrderSearchResult(page, nextCursor, hasNext);
+    }
+
+    @Override
+    public Page<OrderEntity> searchWithFilters(String searchText, OrderEntity.OrderStatus status,
+            LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<OrderEntity> query = cb.createQuery(OrderEntity.class);
+        Root<OrderEntity> root = query.from(OrderEntity.class);
+        query.select(root)
+                .where(buildFilterPredicates(cb, root, searchText, status, fromDate, toDate)
+                        .toArray(new Predicate[0]));
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        } else {
+            query.orderBy(cb.desc(root.get("createdAt")));
+        }
+
+        List<OrderEntity> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<OrderEntity> countRoot = countQuery.from(OrderEntity.class);
+        countQuery.select(cb.count(countRoot))
+                .where(buildFilterPredicates(cb, countRoot, searchText, status, fromDate, toDate)
+                        .toArray(new Predicate[0]));
+        long total = entityManager.createQuery(countQuery).getSingleResult();
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Фильтры, общие для обоих видов поиска
+     *
+     * Текст ищется без учета регистра в order_id, username и star_package_name.
+     * Даты включительные; каждая граница применяется независимо.
+     */
+    private List<Predicate> buildFilterPredicates(CriteriaBuilder cb, Root<OrderEntity> root,
+            String searchText, OrderEntity.OrderStatus status,
+            LocalDateTime fromDate, LocalDateTime toDate) {
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (searchText != null && !searchText.trim().isEmpty()) {
+            String pattern = "%" + escapeLike(searchText.trim().toLowerCase(Locale.ROOT)) + "%";
+            predicates.add(cb.or(
+                    cb.like(cb.lower(root.get("orderId")), pattern, LIKE_ESCAPE),
+                    cb.like(cb.lower(root.get("username")), pattern, LIKE_ESCAPE),
+                    cb.like(cb.lower(root.get("starPackageName")), pattern, LIKE_ESCAPE)));
+        }
+        if (status != null) {
+            predicates.add(cb.equal(root.get("status"), status));
+        }
+        if (fromDate != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), fromDate));
+        }
+        if (toDate != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), toDate));
+        }
+        return predicates;
+    }
+
+    private Predicate buildKeysetPredicate(CriteriaBuilder cb, Root<OrderEntity> root,
+            SortKey sortKey, boolean ascending, Cursor cursor) {
+        Path<String> orderIdPath = root.get("orderId");
+        return switch (sortKey) {
+            case ORDER_ID -> after(cb, orderIdPath, cursor.orderId(), ascending);
+            case CREATED_AT, UPDATED_AT -> keyset(cb, root.<LocalDateTime>get(sortKey.attribute),
+                    LocalDateTime.parse(cursor.value()), orderIdPath, cursor.orderId(), ascending);
+            case FINAL_AMOUNT -> keyset(cb, root.<BigDecimal>get(sortKey.attribute),
+                    new BigDecimal(cursor.value()), orderIdPath, cursor.orderId(), ascending);
+        };
+    }
+
+    /**
+     * (sort, id) > (value, lastId) для ASC и (sort, id) < (value, lastId) для DESC
+     */
+    private <Y extends Comparable<? super Y>> Predicate keyset(CriteriaBuilder cb, Expression<Y> sortPath,
+            Y value, Path<String> orderIdPath, String lastOrderId, boolean ascending) {
+        return cb.or(
+                after(cb, sortPath, value, ascending),
+                cb.and(cb.equal(sortPath, value), after(cb, orderIdPath, lastOrderId, ascending)));
+    }
+
+    private <Y extends Comparable<? super Y>> Predicate after(CriteriaBuilder cb, Expression<Y> path,
+            Y value, boolean ascending) {
+        return ascending ? cb.greaterThan(path, value) : cb.lessThan(path, value);
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * Поля, для которых поддерживается keyset пагинация (все NOT NULL)
+     */
+    enum SortKey {
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt"),
+        FINAL_AMOUNT("finalAmount"),
+        ORDER_ID("orderId");
+
+        private final String attribute;
+
+        SortKey(String attribute) {
+            this.attribute = attribute;
+        }
+
+        static SortKey from(String sortBy) {
+            for (SortKey key : values()) {
+                if (key.attribute.equals(sortBy)) {
+                    return key;
+                }
+            }
+            return CREATED_AT;
+        }
+
+        String extract(OrderSummary order) {
+            return switch (this) {
+                case CREATED_AT -> order.getCreatedAt().toString();
+                case UPDATED_AT -> order.getUpdatedAt().toString();
+                case FINAL_AMOUNT -> order.getFinalAmount().toPlainString();
+                case ORDER_ID -> order.getOrderId();
+            };
+        }
+    }
+
+    /**
+     * Курсор: base64url("sortKey|value|orderId")
+     */
+    record Cursor(String value, String orderId) {
+
+        static String encode(SortKey sortKey, OrderSummary last) {
+            String raw = sortKey.name() + "|" + sortKey.extract(last) + "|" + last.getOrderId();
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token, SortKey expectedKey) {
+            String raw;
+            try {
+                raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid order search cursor", e);
+            }
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !expectedKey.name().equals(parts[0])) {
+                throw new IllegalArgumentException("Order search cursor does not match sort field " + expectedKey);
+            }
+            // значение разбирается при построении условия; ошибку разбора отдаем как
+            // IllegalArgumentException, чтобы испорченный курсор давал 400, а не 500
+            try {
+                switch (expectedKey) {
+                    case CREATED_AT, UPDATED_AT -> LocalDateTime.parse(parts[1]);
+                    case FINAL_AMOUNT -> new BigDecimal(parts[1]);
+                    case ORDER_ID -> {
+                    }
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid order search cursor", e);
+            }
+            return new Cursor(parts[1], parts[2]);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package shit.back.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import shit.back.entity.PaymentCallbackEntity;
+import shit.back.entity.PaymentCallbackEntity.CallbackStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JPA репозиторий для inbox callback'ов платежных систем
+ */
+@Repository
+public interface PaymentCallbackJpaRepository extends JpaRepository<PaymentCallbackEntity, Long> {
+
+    boolean existsByPaymentIdAndPayloadHash(String paymentId, String payloadHash);
+
+    long countByStatus(CallbackStatus status);
+
+    /**
+     * Ожидающие callback'и в порядке поступления
+     *
+     * lock.timeout = -2 транслируется Hibernate в FOR UPDATE SKIP LOCKED,
+     * поэтому несколько инстансов разбирают очередь без блокировок друг друга.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM PaymentCallbackEntity c WHERE c.status = :status ORDER BY c.id")
+    List<PaymentCallbackEntity> findForUpdateByStatus(@Param("status") CallbackStatus status, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE PaymentCallbackEntity c SET c.status = :status, c.claimedAt = :now, "
+            + "c.attempts = c.attempts + 1 WHERE c.id IN :ids")
+    int markClaimed(@Param("ids") Collection<Long> ids, @Param("status") CallbackStatus status,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE PaymentCallbackEntity c SET c.status = :status, c.processedAt = :now, c.lastError = :error "
+            + "WHERE c.id IN :ids")
+    int markCompleted(@Param("ids") Collection<Long> ids, @Param("status") CallbackStatus status,
+            @Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE PaymentCallbackEntity c SET c.status = :status, c.lastError = :error WHERE c.id IN :ids")
+    int markForRetry(@Param("ids") Collection<Long> ids, @Param("status") CallbackStatus status,
+            @Param("error") String error);
+
+    /**
+     * Возврат в очередь callback'ов, захваченных упавшим воркером или инстансом
+     */
+    @Modifying
+    @Query("UPDATE PaymentCallbackEntity c SET c.status = :pending "
+            + "WHERE c.status = :processing AND c.claimedAt < :claimedBefore")
+    int releaseStaleClaims(@Param("pending") CallbackStatus pending, @Param("processing") CallbackStatus processing,
+            @Param("claimedBefore") LocalDateTime claimedBefore);
+
+    @Modifying
+    @Query("DELETE FROM PaymentCallbackEntity c WHERE c.status IN :statuses AND c.processedAt < :before")
+    int deleteCompletedBefore(@Param("statuses") Collection<CallbackStatus> statuses,
+            @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,36 @@
+package shit.back.repository;
+
+import shit.back.dto.payment.ExpiredPayment;
+import shit.back.entity.PaymentStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Пакетный перевод просроченных платежей в EXPIRED
+ */
+public interface PaymentExpiryRepository {
+
+    /**
+     * Статусы, в которых платеж еще ожидает оплаты и может истечь.
+     * Условие частичного индекса idx_payments_awaiting_expiry строится из этого списка.
+     */
+    List<PaymentStatus> AWAITING_EXPIRY_STATUSES = List.of(
+            PaymentStatus.PENDING, PaymentStatus.PROCESSING, PaymentStatus.VERIFICATION_REQUIRED);
+
+    /**
+     * Перевести в EXPIRED не более limit просроченных платежей, начиная с
+     * самых старых. Строки, заблокированные другой транзакцией, пропускаются.
+     */
+    List<ExpiredPayment> expireBatch(LocalDateTime now, int limit, String reason);
+
+    /**
+     * Количество просроченных, но еще не обработанных платежей
+     */
+    long countExpiryBacklog(LocalDateTime now);
+
+    /**
+     * Срок самого старого необработанного просроченного платежа или null
+     */
+    LocalDateTime findOldestOverdueExpiry(LocalDateTime now);
+}
@@ -0,0 +1,178 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import shit.back.dto.payment.ExpiredPayment;
+import shit.back.entity.PaymentStatus;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетный перевод просроченных платежей в EXPIRED
+ *
+ * PostgreSQL: UPDATE ... WHERE id IN (SELECT ... ORDER BY expires_at LIMIT n
+ * FOR UPDATE SKIP LOCKED) RETURNING. Подзапрос читает частичный индекс
+ * idx_payments_awaiting_expiry, поэтому стоимость пачки не зависит от
+ * количества завершенных платежей в таблице. SKIP LOCKED позволяет
+ * нескольким инстансам разбирать очередь одновременно, не пересекаясь.
+ * Условие на статус записано литералами, иначе планировщик не сможет
+ * доказать, что запрос покрывается условием частичного индекса.
+ *
+ * Другие БД (H2 в тестах): SELECT ... FOR UPDATE + один JPQL UPDATE.
+ */
+@Slf4j
+public class PaymentExpiryRepositoryImpl implements PaymentExpiryRepository {
+
+    public static final String AWAITING_EXPIRY_PREDICATE = "status IN (" + AWAITING_EXPIRY_STATUSES.stream()
+            .map(status -> "'" + status.name() + "'")
+            .collect(Collectors.joining(", ")) + ")";
+
+    private static final String POSTGRES_EXPIRE_SQL = """
+            UPDATE payments p
+            SET status = 'EXPIRED',
+                error_message = ?,
+                updated_at = ?,
+                completed_at = ?
+            WHERE p.id IN (
+                SELECT id
+                FROM payments
+                WHERE %s AND expires_at < ?
+                ORDER BY expires_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING p.payment_id, p.user_id, p.order_id, p.amount,
+                      p.currency, p.payment_method, p.expires_at
+            """.formatted(AWAITING_EXPIRY_PREDICATE);
+
+    private static final String BACKLOG_COUNT_SQL =
+            "SELECT COUNT(*) FROM payments WHERE " + AWAITING_EXPIRY_PREDICATE + " AND expires_at < ?";
+
+    private static final String OLDEST_OVERDUE_SQL =
+            "SELECT MIN(expires_at) FROM payments WHERE " + AWAITING_EXPIRY_PREDICATE + " AND expires_at < ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public List<ExpiredPayment> expireBatch(LocalDateTime now, int limit, String reason) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        // Несохраненные изменения должны попасть в БД до UPDATE в обход persistence context
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        List<ExpiredPayment> expired = session.doReturningWork(connection -> isPostgres(connection)
+                ? expireWithReturning(connection, now, limit, reason)
+                : null);
+        if (expired == null) {
+            expired = expireWithLockedSelect(now, limit, reason);
+        }
+
+        if (!expired.isEmpty()) {
+            // Загруженные ранее сущности платежей больше не соответствуют БД
+            entityManager.clear();
+        }
+        log.debug("Payment expiry batch: limit={}, expired={}", limit, expired.size());
+        return expired;
+    }
+
+    @Override
+    public long countExpiryBacklog(LocalDateTime now) {
+        Number count = (Number) entityManager.createNativeQuery(BACKLOG_COUNT_SQL)
+                .setParameter(1, Timestamp.valueOf(now))
+                .getSingleResult();
+        return count == null ? 0 : count.longValue();
+    }
+
+    @Override
+    public LocalDateTime findOldestOverdueExpiry(LocalDateTime now) {
+        Object oldest = entityManager.createNativeQuery(OLDEST_OVERDUE_SQL)
+                .setParameter(1, Timestamp.valueOf(now))
+                .getSingleResult();
+        if (oldest instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return oldest instanceof LocalDateTime localDateTime ? localDateTime : null;
+    }
+
+    private List<ExpiredPayment> expireWithReturning(Connection connection, LocalDateTime now, int limit,
+            String reason) throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        try (PreparedStatement statement = connection.prepareStatement(POSTGRES_EXPIRE_SQL)) {
+            statement.setString(1, reason);
+            statement.setTimestamp(2, timestamp);
+            statement.setTimestamp(3, timestamp);
+            statement.setTimestamp(4, timestamp);
+            statement.setInt(5, limit);
+
+            List<ExpiredPayment> expired = new ArrayList<>(limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Timestamp expiresAt = resultSet.getTimestamp(7);
+                    expired.add(new ExpiredPayment(
+                            resultSet.getString(1),
+                            resultSet.getLong(2),
+                            resultSet.getString(3),
+                            resultSet.getBigDecimal(4),
+                            resultSet.getString(5),
+                            resultSet.getString(6),
+                            expiresAt == null ? null : expiresAt.toLocalDateTime()));
+                }
+            }
+            return expired;
+        }
+    }
+
+    private List<ExpiredPayment> expireWithLockedSelect(LocalDateTime now, int limit, String reason) {
+        List<ExpiredPayment> candidates = entityManager.createQuery(
+                "SELECT new shit.back.dto.payment.ExpiredPayment(p.paymentId, p.userId, p.orderId, "
+                        + "p.amount, p.currency, p.paymentMethod, p.expiresAt) "
+                        + "FROM PaymentEntity p WHERE p.status IN :statuses AND p.expiresAt < :now "
+                        + "ORDER BY p.expiresAt",
+                ExpiredPayment.class)
+                .setParameter("statuses", AWAITING_EXPIRY_STATUSES)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .getResultList();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        entityManager.createQuery("UPDATE PaymentEntity p SET p.status = :status, p.errorMessage = :reason, "
+                + "p.updatedAt = :now, p.completedAt = :now WHERE p.paymentId IN :ids")
+                .setParameter("status", PaymentStatus.EXPIRED)
+                .setParameter("reason", reason)
+                .setParameter("now", now)
+                .setParameter("ids", candidates.stream().map(ExpiredPayment::getPaymentId).toList())
+                .executeUpdate();
+        return candidates;
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            result = product != null && product.toLowerCase().contains("postgresql");
+            postgres = result;
+        }
+        return result;
+    }
+}
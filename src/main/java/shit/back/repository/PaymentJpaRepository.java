@@ -1,8 +1,10 @@
 package shit.back.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,13 +19,21 @@ import java.util.Optional;
  * JPA репозиторий для работы с платежами
  */
 @Repository
-public interface PaymentJpaRepository extends JpaRepository<PaymentEntity, Long> {
+public interface PaymentJpaRepository extends JpaRepository<PaymentEntity, Long>, PaymentExpiryRepository {
 
     /**
      * Найти платеж по уникальному ID платежа
      */
     Optional<PaymentEntity> findByPaymentId(String paymentId);
 
+    /**
+     * Найти платеж с блокировкой строки (сериализация обработки callback'ов
+     * одного платежа между инстансами)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM PaymentEntity p WHERE p.paymentId = :paymentId")
+    Optional<PaymentEntity> findForUpdateByPaymentId(@Param("paymentId") String paymentId);
+
     /**
      * Найти платеж по внешнему ID платежной системы
      */
@@ -0,0 +1,212 @@
+package shit.back.repository;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Кодирование строк для PostgreSQL COPY ... FROM STDIN
+ *
+ * CSV: строки всегда в кавычках (пустая строка отличается от NULL), NULL -
+ * пустое поле без кавычек. BINARY: заголовок PGCOPY, длина и значение
+ * каждого поля в сетевом порядке байт; типы полей должны в точности
+ * совпадать с типами колонок (bigint, integer, boolean, numeric,
+ * timestamp без часового пояса, текст).
+ */
+final class PgCopyWriter {
+
+    private static final byte[] BINARY_SIGNATURE = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+    private static final DateTimeFormatter CSV_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private static final LocalDateTime PG_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final short NUMERIC_POSITIVE = 0x0000;
+    private static final short NUMERIC_NEGATIVE = 0x4000;
+
+    private final boolean binary;
+    private final DataOutputStream out;
+    private boolean firstField;
+
+    PgCopyWriter(boolean binary, OutputStream output) throws IOException {
+        this.binary = binary;
+        this.out = new DataOutputStream(output);
+        if (binary) {
+            out.write(BINARY_SIGNATURE);
+            out.writeInt(0); // флаги
+            out.writeInt(0); // длина расширения заголовка
+        }
+    }
+
+    /**
+     * Параметр COPY для выбранного формата
+     */
+    static String copyOptions(boolean binary) {
+        return binary ? "(FORMAT binary)" : "(FORMAT csv)";
+    }
+
+    void startRow(int fieldCount) throws IOException {
+        if (binary) {
+            out.writeShort(fieldCount);
+        }
+        firstField = true;
+    }
+
+    void endRow() throws IOException {
+        if (!binary) {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Завершить поток; сам OutputStream не закрывается
+     */
+    void finish() throws IOException {
+        if (binary) {
+            out.writeShort(-1);
+        }
+        out.flush();
+    }
+
+    void writeLong(Long value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (binary) {
+            out.writeInt(8);
+            out.writeLong(value);
+        } else {
+            csvRaw(Long.toString(value));
+        }
+    }
+
+    void writeInt(Integer value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (binary) {
+            out.writeInt(4);
+            out.writeInt(value);
+        } else {
+            csvRaw(Integer.toString(value));
+        }
+    }
+
+    void writeBoolean(Boolean value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (binary) {
+            out.writeInt(1);
+            out.writeByte(value ? 1 : 0);
+        } else {
+            csvRaw(value ? "t" : "f");
+        }
+    }
+
+    void writeText(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        if (binary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return;
+        }
+        separator();
+        out.write('"');
+        out.write(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        out.write('"');
+    }
+
+    void writeTimestamp(LocalDateTime value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (binary) {
+            out.writeInt(8);
+            out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, value));
+        } else {
+            csvRaw(CSV_TIMESTAMP.format(value));
+        }
+    }
+
+    void writeNumeric(BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (binary) {
+            writeBinaryNumeric(value);
+        } else {
+            csvRaw(value.toPlainString());
+        }
+    }
+
+    private void writeNull() throws IOException {
+        if (binary) {
+            out.writeInt(-1);
+        } else {
+            separator();
+        }
+    }
+
+    private void csvRaw(String value) throws IOException {
+        separator();
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void separator() throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+    }
+
+    /**
+     * numeric: цифры по основанию 10000, weight - степень первой группы,
+     * dscale - число знаков после запятой
+     */
+    private void writeBinaryNumeric(BigDecimal value) throws IOException {
+        int scale = Math.max(value.scale(), 0);
+        String plain = value.abs().setScale(scale).toPlainString();
+        int point = plain.indexOf('.');
+        String integerPart = point < 0 ? plain : plain.substring(0, point);
+        String fractionPart = point < 0 ? "" : plain.substring(point + 1);
+        integerPart = integerPart.replaceFirst("^0+", "");
+
+        int integerGroups = (integerPart.length() + 3) / 4;
+        integerPart = "0".repeat(integerGroups * 4 - integerPart.length()) + integerPart;
+        int fractionGroups = (fractionPart.length() + 3) / 4;
+        fractionPart = fractionPart + "0".repeat(fractionGroups * 4 - fractionPart.length());
+        String digits = integerPart + fractionPart;
+
+        short[] groups = new short[integerGroups + fractionGroups];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = Short.parseShort(digits.substring(i * 4, i * 4 + 4));
+        }
+
+        int first = 0;
+        int weight = integerGroups - 1;
+        while (first < groups.length && groups[first] == 0) {
+            first++;
+            weight--;
+        }
+        int last = groups.length;
+        while (last > first && groups[last - 1] == 0) {
+            last--;
+        }
+        int count = last - first;
+        if (count == 0) {
+            weight = 0;
+        }
+
+        out.writeInt(8 + 2 * count);
+        out.writeShort(count);
+        out.writeShort(weight);
+        out.writeShort(value.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+        out.writeShort(scale);
+        for (int i = first; i < last; i++) {
+            out.writeShort(groups[i]);
+        }
+    }
+}
@@ -79,6 +79,11 @@ public interface StarPackageJpaRepository extends JpaRepository<StarPackageEntit
     @Modifying
     @Query("UPDATE StarPackageEntity p SET p.totalSold = p.totalSold + 1, p.revenueGenerated = p.revenueGenerated + :amount WHERE p.name = :packageName")
     int updateSalesStatistics(@Param("packageName") String packageName, @Param("amount") BigDecimal amount);
+
+    // Запись накопленных продаж пакета одним UPDATE
+    @Modifying
+    @Query("UPDATE StarPackageEntity p SET p.totalSold = p.totalSold + :count, p.revenueGenerated = p.revenueGenerated + :amount WHERE p.name = :packageName")
+    int addSalesStatistics(@Param("packageName") String packageName, @Param("count") long count, @Param("amount") BigDecimal amount);
     
     // Пакеты без продаж
     @Query("SELECT p FROM StarPackageEntity p WHERE p.totalSold = 0 ORDER BY p.createdAt DESC")
@@ -0,0 +1,45 @@
+package shit.back.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import shit.back.domain.starPurchase.StarPurchaseAggregate;
+import shit.back.entity.TransactionStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JPA репозиторий покупок звезд через Fragment API
+ */
+@Repository
+public interface StarPurchaseJpaRepository extends JpaRepository<StarPurchaseAggregate, Long> {
+
+    /**
+     * Покупка под блокировкой строки: возврат средств по ней выполняет
+     * только один инстанс
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM StarPurchaseAggregate p WHERE p.id = :id")
+    Optional<StarPurchaseAggregate> findForUpdateById(@Param("id") Long id);
+
+    long countByStatus(TransactionStatus status);
+
+    /**
+     * Незавершенные покупки saga для восстановления таймеров после рестарта:
+     * ожидающие ответа Fragment и отмененные без возврата средств
+     */
+    @Query("SELECT p.id FROM StarPurchaseAggregate p "
+            + "WHERE p.refundRequired = true AND p.refundedAt IS NULL "
+            + "AND (p.status = :pending OR p.status IN :refundable)")
+    List<Long> findSagaPurchaseIds(@Param("pending") TransactionStatus pending,
+            @Param("refundable") Collection<TransactionStatus> refundable);
+
+    @Query("SELECT COUNT(p) FROM StarPurchaseAggregate p "
+            + "WHERE p.refundRequired = true AND p.refundedAt IS NULL AND p.status IN :refundable")
+    long countRefundPending(@Param("refundable") Collection<TransactionStatus> refundable);
+}
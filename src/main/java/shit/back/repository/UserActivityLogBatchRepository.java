@@ -0,0 +1,42 @@
+package shit.back.repository;
+
+import shit.back.entity.UserActivityLogEntity;
+
+import java.util.List;
+
+/**
+ * Пакетная запись журнала активности (фрагмент UserActivityLogJpaRepository)
+ */
+public interface UserActivityLogBatchRepository {
+
+    /**
+     * Формат потока COPY в PostgreSQL
+     */
+    enum CopyFormat {
+        CSV, BINARY
+    }
+
+    /**
+     * Записать записи одним потоком, минуя Hibernate
+     *
+     * id выделяются блоками из UserActivityLogEntity.ID_SEQUENCE и
+     * проставляются в переданные объекты. На PostgreSQL строки идут через
+     * COPY FROM STDIN в указанном формате, на остальных БД - многострочными
+     * INSERT.
+     *
+     * @return количество записанных строк
+     */
+    int insertBatch(List<UserActivityLogEntity> activities, CopyFormat format);
+
+    default int insertBatch(List<UserActivityLogEntity> activities) {
+        return insertBatch(activities, CopyFormat.CSV);
+    }
+
+    /**
+     * Поднять последовательность id не ниже MAX(id)
+     *
+     * Нужно один раз при старте: строки, записанные до перехода с IDENTITY
+     * на последовательность, иначе пересеклись бы с новыми id.
+     */
+    void alignIdSequence();
+}
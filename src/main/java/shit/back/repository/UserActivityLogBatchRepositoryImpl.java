@@ -0,0 +1,237 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import shit.back.entity.UserActivityLogEntity;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static shit.back.entity.UserActivityLogEntity.ID_ALLOCATION_SIZE;
+import static shit.back.entity.UserActivityLogEntity.ID_SEQUENCE;
+
+/**
+ * Массовая запись в user_activity_logs
+ *
+ * Выполняется на соединении текущей транзакции, поэтому записи журнала
+ * фиксируются вместе с изменениями, которые они описывают. На PostgreSQL
+ * строки передаются через CopyManager (COPY FROM STDIN) без разбора SQL на
+ * каждую строку; на H2 и других БД - многострочный INSERT по
+ * INSERT_ROWS_PER_STATEMENT строк.
+ */
+public class UserActivityLogBatchRepositoryImpl implements UserActivityLogBatchRepository {
+
+    private static final String COLUMNS = "id, user_id, username, first_name, last_name, action_type, log_category, "
+            + "action_description, action_details, order_id, order_amount, star_count, payment_method, "
+            + "session_state_before, session_state_after, is_key_action, timestamp, ip_address, user_agent";
+    private static final int COLUMN_COUNT = 19;
+    private static final int INSERT_ROWS_PER_STATEMENT = 100;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int insertBatch(List<UserActivityLogEntity> activities, CopyFormat format) {
+        if (activities.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (UserActivityLogEntity activity : activities) {
+            if (activity.getTimestamp() == null) {
+                activity.setTimestamp(now);
+            }
+        }
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        Dialect dialect = session.getFactory().getJdbcServices().getDialect();
+        return session.doReturningWork(connection -> {
+            boolean postgres = connection.isWrapperFor(PGConnection.class);
+            assignIds(connection, dialect, postgres, activities);
+            return postgres
+                    ? copy(connection.unwrap(PGConnection.class), activities, format == CopyFormat.BINARY)
+                    : insertMultiRow(connection, activities);
+        });
+    }
+
+    @Override
+    public void alignIdSequence() {
+        entityManager.unwrap(SessionImplementor.class).doWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return;
+            }
+            // setval(v): следующий nextval = v + шаг, т.е. блок (v, v + шаг]
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT setval('" + ID_SEQUENCE + "', GREATEST("
+                        + "(SELECT COALESCE(MAX(id), 0) FROM user_activity_logs), "
+                        + "(SELECT last_value FROM " + ID_SEQUENCE + "), 1))");
+            }
+        });
+    }
+
+    /**
+     * Значение последовательности - верхняя граница блока из
+     * ID_ALLOCATION_SIZE id, как в pooled-оптимизаторе Hibernate. Значения
+     * меньше размера блока (первые после создания) пропускаются, иначе блок
+     * ушел бы в неположительные id.
+     */
+    private void assignIds(Connection connection, Dialect dialect, boolean postgres,
+            List<UserActivityLogEntity> activities) throws SQLException {
+        int assigned = 0;
+        while (assigned < activities.size()) {
+            int blocks = (activities.size() - assigned + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+            for (long hi : nextSequenceValues(connection, dialect, postgres, blocks)) {
+                if (hi < ID_ALLOCATION_SIZE) {
+                    continue;
+                }
+                for (long id = hi - ID_ALLOCATION_SIZE + 1; id <= hi && assigned < activities.size(); id++) {
+                    activities.get(assigned++).setId(id);
+                }
+            }
+        }
+    }
+
+    private long[] nextSequenceValues(Connection connection, Dialect dialect, boolean postgres, int count)
+            throws SQLException {
+        long[] values = new long[count];
+        if (postgres) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT nextval('" + ID_SEQUENCE + "') FROM generate_series(1, ?)")) {
+                statement.setInt(1, count);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    for (int i = 0; i < count && resultSet.next(); i++) {
+                        values[i] = resultSet.getLong(1);
+                    }
+                }
+            }
+            return values;
+        }
+
+        String sql = dialect.getSequenceSupport().getSequenceNextValString(ID_SEQUENCE);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < count; i++) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    values[i] = resultSet.getLong(1);
+                }
+            }
+        }
+        return values;
+    }
+
+    private int copy(PGConnection connection, List<UserActivityLogEntity> activities, boolean binary)
+            throws SQLException {
+        String sql = "COPY user_activity_logs (" + COLUMNS + ") FROM STDIN " + PgCopyWriter.copyOptions(binary);
+        PGCopyOutputStream stream = new PGCopyOutputStream(connection, sql, COPY_BUFFER_SIZE);
+        try {
+            PgCopyWriter writer = new PgCopyWriter(binary, stream);
+            for (UserActivityLogEntity activity : activities) {
+                writer.startRow(COLUMN_COUNT);
+                writer.writeLong(activity.getId());
+                writer.writeLong(activity.getUserId());
+                writer.writeText(activity.getUsername());
+                writer.writeText(activity.getFirstName());
+                writer.writeText(activity.getLastName());
+                writer.writeText(activity.getActionType().name());
+                writer.writeText(activity.getLogCategory().name());
+                writer.writeText(activity.getActionDescription());
+                writer.writeText(activity.getActionDetails());
+                writer.writeText(activity.getOrderId());
+                writer.writeNumeric(activity.getOrderAmount());
+                writer.writeInt(activity.getStarCount());
+                writer.writeText(activity.getPaymentMethod());
+                writer.writeText(activity.getSessionStateBefore());
+                writer.writeText(activity.getSessionStateAfter());
+                writer.writeBoolean(Boolean.TRUE.equals(activity.getIsKeyAction()));
+                writer.writeTimestamp(activity.getTimestamp());
+                writer.writeText(activity.getIpAddress());
+                writer.writeText(activity.getUserAgent());
+                writer.endRow();
+            }
+            writer.finish();
+            return (int) stream.endCopy();
+        } catch (IOException e) {
+            if (stream.isActive()) {
+                stream.cancelCopy();
+            }
+            throw new SQLException("COPY в user_activity_logs не выполнен: " + e.getMessage(), e);
+        }
+    }
+
+    private int insertMultiRow(Connection connection, List<UserActivityLogEntity> activities) throws SQLException {
+        int inserted = 0;
+        PreparedStatement full = null;
+        try {
+            for (int from = 0; from < activities.size(); from += INSERT_ROWS_PER_STATEMENT) {
+                List<UserActivityLogEntity> chunk = activities.subList(from,
+                        Math.min(from + INSERT_ROWS_PER_STATEMENT, activities.size()));
+                if (chunk.size() == INSERT_ROWS_PER_STATEMENT) {
+                    if (full == null) {
+                        full = connection.prepareStatement(multiRowInsertSql(INSERT_ROWS_PER_STATEMENT));
+                    }
+                    inserted += executeChunk(full, chunk);
+                } else {
+                    try (PreparedStatement partial = connection.prepareStatement(multiRowInsertSql(chunk.size()))) {
+                        inserted += executeChunk(partial, chunk);
+                    }
+                }
+            }
+        } finally {
+            if (full != null) {
+                full.close();
+            }
+        }
+        return inserted;
+    }
+
+    private static String multiRowInsertSql(int rows) {
+        String row = "(" + String.join(", ", Collections.nCopies(COLUMN_COUNT, "?")) + ")";
+        return "INSERT INTO user_activity_logs (" + COLUMNS + ") VALUES "
+                + String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    private static int executeChunk(PreparedStatement statement, List<UserActivityLogEntity> chunk)
+            throws SQLException {
+        int index = 1;
+        for (UserActivityLogEntity activity : chunk) {
+            statement.setLong(index++, activity.getId());
+            statement.setLong(index++, activity.getUserId());
+            statement.setString(index++, activity.getUsername());
+            statement.setString(index++, activity.getFirstName());
+            statement.setString(index++, activity.getLastName());
+            statement.setString(index++, activity.getActionType().name());
+            statement.setString(index++, activity.getLogCategory().name());
+            statement.setString(index++, activity.getActionDescription());
+            statement.setString(index++, activity.getActionDetails());
+            statement.setString(index++, activity.getOrderId());
+            statement.setBigDecimal(index++, activity.getOrderAmount());
+            if (activity.getStarCount() != null) {
+                statement.setInt(index++, activity.getStarCount());
+            } else {
+                statement.setNull(index++, Types.INTEGER);
+            }
+            statement.setString(index++, activity.getPaymentMethod());
+            statement.setString(index++, activity.getSessionStateBefore());
+            statement.setString(index++, activity.getSessionStateAfter());
+            statement.setBoolean(index++, Boolean.TRUE.equals(activity.getIsKeyAction()));
+            statement.setTimestamp(index++, Timestamp.valueOf(activity.getTimestamp()));
+            statement.setString(index++, activity.getIpAddress());
+            statement.setString(index++, activity.getUserAgent());
+        }
+        return statement.executeUpdate();
+    }
+}
@@ -0,0 +1,33 @@
+package shit.back.repository;
+
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка журнала активности (фрагмент UserActivityLogJpaRepository)
+ */
+public interface UserActivityLogExportRepository {
+
+    /**
+     * Колонки строки выгрузки в порядке значений, передаваемых в ExportRowHandler.
+     * IP-адрес, user agent и action_details в выгрузку не попадают.
+     */
+    List<String> ACTIVITY_EXPORT_COLUMNS = List.of(
+            "id", "timestamp", "user_id", "username", "action_type", "log_category",
+            "action_description", "order_id", "order_amount", "star_count", "payment_method",
+            "session_state_before", "session_state_after", "is_key_action");
+
+    /**
+     * Пройти по записям журнала за [from, to) от старых к новым.
+     * Пустые границы и пустые наборы категорий и типов не ограничивают
+     * выборку. Должен вызываться внутри транзакции.
+     *
+     * @return количество переданных строк
+     */
+    long streamActivityLogs(LocalDateTime from, LocalDateTime to, Collection<LogCategory> categories,
+            Collection<ActionType> actionTypes, int fetchSize, ExportRowHandler handler);
+}
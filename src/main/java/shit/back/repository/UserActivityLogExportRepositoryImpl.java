@@ -0,0 +1,61 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка журнала активности
+ *
+ * Диапазон дат идет по idx_activity_timestamp_id (или по
+ * idx_activity_category_timestamp_id при фильтре по категории), строки
+ * читаются курсором (ExportCursor) без загрузки сущностей.
+ */
+public class UserActivityLogExportRepositoryImpl implements UserActivityLogExportRepository {
+
+    private static final String SELECT_SQL = "SELECT " + String.join(", ", ACTIVITY_EXPORT_COLUMNS)
+            + " FROM user_activity_logs";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public long streamActivityLogs(LocalDateTime from, LocalDateTime to, Collection<LogCategory> categories,
+            Collection<ActionType> actionTypes, int fetchSize, ExportRowHandler handler) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (from != null) {
+            conditions.add("timestamp >= ?");
+            parameters.add(from);
+        }
+        if (to != null) {
+            conditions.add("timestamp < ?");
+            parameters.add(to);
+        }
+        addInCondition("log_category", categories, conditions, parameters);
+        addInCondition("action_type", actionTypes, conditions, parameters);
+
+        String sql = SELECT_SQL
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY timestamp, id";
+        return entityManager.unwrap(Session.class).doReturningWork(connection ->
+                ExportCursor.stream(connection, sql, parameters, fetchSize, handler));
+    }
+
+    private static void addInCondition(String column, Collection<? extends Enum<?>> values,
+            List<String> conditions, List<Object> parameters) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        conditions.add(column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")");
+        values.forEach(value -> parameters.add(value.name()));
+    }
+}
@@ -1,6 +1,5 @@
 package shit.back.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -15,25 +14,20 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface UserActivityLogJpaRepository extends JpaRepository<UserActivityLogEntity, Long> {
+public interface UserActivityLogJpaRepository extends JpaRepository<UserActivityLogEntity, Long>,
+              UserActivityLogBatchRepository, UserActivityLogExportRepository, UserActivityLogPartitionRepository,
+              UserActivityLogSearchRepository {
 
        // Поиск по userId
        List<UserActivityLogEntity> findByUserIdOrderByTimestampDesc(Long userId);
 
-       Page<UserActivityLogEntity> findByUserIdOrderByTimestampDesc(Long userId, Pageable pageable);
-
        // Только ключевые действия (по умолчанию)
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.isKeyAction = true ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findKeyActionsOrderByTimestampDesc();
 
-       @Query("SELECT a FROM UserActivityLogEntity a WHERE a.isKeyAction = true ORDER BY a.timestamp DESC")
-       Page<UserActivityLogEntity> findKeyActionsOrderByTimestampDesc(Pageable pageable);
-
        // Все действия
        List<UserActivityLogEntity> findAllByOrderByTimestampDesc();
 
-       Page<UserActivityLogEntity> findAllByOrderByTimestampDesc(Pageable pageable);
-
        // Поиск по временному диапазону
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.timestamp >= :fromTime ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findActivitiesSince(@Param("fromTime") LocalDateTime fromTime);
@@ -50,22 +44,6 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
 
        List<UserActivityLogEntity> findByActionTypeInOrderByTimestampDesc(List<ActionType> actionTypes);
 
-       // ВРЕМЕННОЕ ИСПРАВЛЕНИЕ: Упрощенный запрос без поиска по тексту для устранения
-       // ошибки bytea
-       @Query("SELECT a FROM UserActivityLogEntity a WHERE " +
-                     "(:showAll = true OR a.isKeyAction = true) AND " +
-                     "(:fromTime IS NULL OR a.timestamp >= :fromTime) AND " +
-                     "(:toTime IS NULL OR a.timestamp <= :toTime) AND " +
-                     "(:actionTypes IS NULL OR a.actionType IN :actionTypes) " +
-                     "ORDER BY a.timestamp DESC")
-       Page<UserActivityLogEntity> findWithFilters(
-                     @Param("showAll") boolean showAll,
-                     @Param("fromTime") LocalDateTime fromTime,
-                     @Param("toTime") LocalDateTime toTime,
-                     @Param("actionTypes") List<ActionType> actionTypes,
-                     @Param("searchTerm") String searchTerm,
-                     Pageable pageable);
-
        // Последние активности для live feed
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.timestamp >= :since ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findRecentActivities(@Param("since") LocalDateTime since);
@@ -107,10 +85,6 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
                      @Param("fromTime") LocalDateTime fromTime);
 
        // Очистка старых логов
-       @Modifying
-       @Query("DELETE FROM UserActivityLogEntity a WHERE a.timestamp < :cutoffTime")
-       int deleteOldActivities(@Param("cutoffTime") LocalDateTime cutoffTime);
-
        @Modifying
        @Query("DELETE FROM UserActivityLogEntity a WHERE a.isKeyAction = false AND a.timestamp < :cutoffTime")
        int deleteOldNonKeyActivities(@Param("cutoffTime") LocalDateTime cutoffTime);
@@ -122,6 +96,15 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.isKeyAction = true AND a.id > :lastId ORDER BY a.timestamp DESC LIMIT 30")
        List<UserActivityLogEntity> findNewKeyActivitiesSinceId(@Param("lastId") Long lastId);
 
+       // Возобновление SSE по Last-Event-ID старше окна повтора: записи сразу после lastId
+       @Query("SELECT a FROM UserActivityLogEntity a WHERE a.id > :lastId "
+                     + "AND (:logCategory IS NULL OR a.logCategory = :logCategory) ORDER BY a.id ASC")
+       List<UserActivityLogEntity> findActivitiesAfterId(@Param("lastId") Long lastId,
+                     @Param("logCategory") LogCategory logCategory, Pageable pageable);
+
+       @Query("SELECT MAX(a.id) FROM UserActivityLogEntity a")
+       Long findMaxId();
+
        // Поиск активностей по периодам для аналитики
        @Query("SELECT HOUR(a.timestamp), COUNT(a) FROM UserActivityLogEntity a WHERE a.timestamp >= :fromTime GROUP BY HOUR(a.timestamp) ORDER BY HOUR(a.timestamp)")
        List<Object[]> getHourlyActivityDistribution(@Param("fromTime") LocalDateTime fromTime);
@@ -160,8 +143,6 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
        // Поиск по категории логов
        List<UserActivityLogEntity> findByLogCategoryOrderByTimestampDesc(LogCategory logCategory);
 
-       Page<UserActivityLogEntity> findByLogCategoryOrderByTimestampDesc(LogCategory logCategory, Pageable pageable);
-
        // Поиск по категории и временному диапазону
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.logCategory = :logCategory AND a.timestamp BETWEEN :fromTime AND :toTime ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findByLogCategoryAndTimestampBetween(
@@ -174,24 +155,6 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
                      @Param("logCategory") LogCategory logCategory,
                      @Param("fromTime") LocalDateTime fromTime);
 
-       // ВРЕМЕННОЕ ИСПРАВЛЕНИЕ: Упрощенный запрос без поиска по тексту для избежания
-       // ошибки bytea
-       @Query("SELECT a FROM UserActivityLogEntity a WHERE " +
-                     "(:showAll = true OR a.isKeyAction = true) AND " +
-                     "(:fromTime IS NULL OR a.timestamp >= :fromTime) AND " +
-                     "(:toTime IS NULL OR a.timestamp <= :toTime) AND " +
-                     "(:actionTypes IS NULL OR a.actionType IN :actionTypes) AND " +
-                     "(:logCategories IS NULL OR a.logCategory IN :logCategories) " +
-                     "ORDER BY a.timestamp DESC")
-       Page<UserActivityLogEntity> findWithFiltersAndCategories(
-                     @Param("showAll") boolean showAll,
-                     @Param("fromTime") LocalDateTime fromTime,
-                     @Param("toTime") LocalDateTime toTime,
-                     @Param("actionTypes") List<ActionType> actionTypes,
-                     @Param("logCategories") List<LogCategory> logCategories,
-                     @Param("searchTerm") String searchTerm,
-                     Pageable pageable);
-
        // Статистика по категориям
        @Query("SELECT a.logCategory, COUNT(a) FROM UserActivityLogEntity a WHERE a.timestamp >= :fromTime GROUP BY a.logCategory ORDER BY COUNT(a) DESC")
        List<Object[]> getLogCategoryStatistics(@Param("fromTime") LocalDateTime fromTime);
@@ -199,6 +162,49 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
        @Query("SELECT a.logCategory, a.actionType, COUNT(a) FROM UserActivityLogEntity a WHERE a.timestamp >= :fromTime GROUP BY a.logCategory, a.actionType ORDER BY a.logCategory, COUNT(a) DESC")
        List<Object[]> getCategoryActionTypeStatistics(@Param("fromTime") LocalDateTime fromTime);
 
+       // Поминутные счетчики для ActivityRollupService: [минута, категория, тип, ключевое, количество]
+       @Query(value = "SELECT date_trunc('minute', timestamp) AS minute, log_category, action_type, is_key_action, COUNT(*) "
+                     + "FROM user_activity_logs WHERE timestamp >= :fromTime AND timestamp < :toTime "
+                     + "GROUP BY date_trunc('minute', timestamp), log_category, action_type, is_key_action", nativeQuery = true)
+       List<Object[]> getMinuteActivityCounts(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
+       // Прогрев top-K в ActivityHeavyHittersService: [час/минута, user_id, username, событий, сумма оплат]
+       @Query(value = "SELECT date_trunc('hour', timestamp), user_id, MAX(username), COUNT(*), "
+                     + "SUM(CASE WHEN action_type = 'PAYMENT_COMPLETED' THEN order_amount ELSE 0 END) "
+                     + "FROM user_activity_logs WHERE timestamp >= :fromTime AND timestamp < :toTime "
+                     + "GROUP BY date_trunc('hour', timestamp), user_id", nativeQuery = true)
+       List<Object[]> getHourlyUserActivity(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
+       @Query(value = "SELECT date_trunc('minute', timestamp), user_id, MAX(username), COUNT(*), "
+                     + "SUM(CASE WHEN action_type = 'PAYMENT_COMPLETED' THEN order_amount ELSE 0 END) "
+                     + "FROM user_activity_logs WHERE timestamp >= :fromTime AND timestamp < :toTime "
+                     + "GROUP BY date_trunc('minute', timestamp), user_id", nativeQuery = true)
+       List<Object[]> getMinuteUserActivity(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
+       // [час/минута, star_count, оплат]
+       @Query(value = "SELECT date_trunc('hour', timestamp), star_count, COUNT(*) FROM user_activity_logs "
+                     + "WHERE action_type = 'PAYMENT_COMPLETED' AND star_count IS NOT NULL "
+                     + "AND timestamp >= :fromTime AND timestamp < :toTime "
+                     + "GROUP BY date_trunc('hour', timestamp), star_count", nativeQuery = true)
+       List<Object[]> getHourlyPackageSales(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
+       @Query(value = "SELECT date_trunc('minute', timestamp), star_count, COUNT(*) FROM user_activity_logs "
+                     + "WHERE action_type = 'PAYMENT_COMPLETED' AND star_count IS NOT NULL "
+                     + "AND timestamp >= :fromTime AND timestamp < :toTime "
+                     + "GROUP BY date_trunc('minute', timestamp), star_count", nativeQuery = true)
+       List<Object[]> getMinutePackageSales(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
+       // Активные пользователи дня для скетчей DistinctUserSketchService
+       @Query(value = "SELECT DISTINCT user_id FROM user_activity_logs "
+                     + "WHERE timestamp >= :fromTime AND timestamp < :toTime", nativeQuery = true)
+       List<Number> findDistinctUserIds(@Param("fromTime") LocalDateTime fromTime,
+                     @Param("toTime") LocalDateTime toTime);
+
        // Подсчет по категориям
        Long countByLogCategory(LogCategory logCategory);
 
@@ -213,18 +219,10 @@ public interface UserActivityLogJpaRepository extends JpaRepository<UserActivity
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.logCategory = 'TELEGRAM_BOT' AND a.timestamp >= :fromTime ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findTelegramBotActivities(@Param("fromTime") LocalDateTime fromTime);
 
-       @Query("SELECT a FROM UserActivityLogEntity a WHERE a.logCategory = 'TELEGRAM_BOT' AND a.timestamp >= :fromTime ORDER BY a.timestamp DESC")
-       Page<UserActivityLogEntity> findTelegramBotActivities(@Param("fromTime") LocalDateTime fromTime,
-                     Pageable pageable);
-
        // Application специфичные методы
        @Query("SELECT a FROM UserActivityLogEntity a WHERE a.logCategory = 'APPLICATION' AND a.timestamp >= :fromTime ORDER BY a.timestamp DESC")
        List<UserActivityLogEntity> findApplicationActivities(@Param("fromTime") LocalDateTime fromTime);
 
-       @Query("SELECT a FROM UserActivityLogEntity a WHERE a.logCategory = 'APPLICATION' AND a.timestamp >= :fromTime ORDER BY a.timestamp DESC")
-       Page<UserActivityLogEntity> findApplicationActivities(@Param("fromTime") LocalDateTime fromTime,
-                     Pageable pageable);
-
        // Очистка по категориям
        @Modifying
        @Query("DELETE FROM UserActivityLogEntity a WHERE a.logCategory = :logCategory AND a.timestamp < :cutoffTime")
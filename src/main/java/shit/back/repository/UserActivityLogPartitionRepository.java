@@ -0,0 +1,68 @@
+package shit.back.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Секционирование user_activity_logs по времени (фрагмент UserActivityLogJpaRepository)
+ *
+ * Работает только на PostgreSQL: таблица секционируется по RANGE (timestamp),
+ * первичный ключ - (id, timestamp). Сущность и запросы не меняются: PostgreSQL
+ * сам направляет строки в секции и отсекает лишние секции в запросах с
+ * условием по timestamp.
+ */
+public interface UserActivityLogPartitionRepository {
+
+    String DEFAULT_PARTITION = "user_activity_logs_default";
+    String LEGACY_PARTITION = "user_activity_logs_legacy";
+
+    /**
+     * Секция журнала; from == null - MINVALUE, from и to == null - секция DEFAULT
+     */
+    record ActivityLogPartition(String name, LocalDateTime from, LocalDateTime to, long estimatedRows) {
+
+        public boolean isDefault() {
+            return from == null && to == null;
+        }
+    }
+
+    /**
+     * true, если БД поддерживает декларативное секционирование (PostgreSQL)
+     */
+    boolean supportsPartitioning();
+
+    boolean isPartitioned();
+
+    /**
+     * Есть ли в таблице хотя бы одна строка
+     */
+    boolean hasActivityRows();
+
+    /**
+     * Превратить обычную таблицу в секционированную
+     *
+     * Старая таблица переименовывается в user_activity_logs_legacy и, если в
+     * ней есть строки, подключается секцией FROM (MINVALUE) TO (legacyUpperBound);
+     * пустая удаляется. Индексы переносятся на новую таблицу под прежними
+     * именами, создается секция DEFAULT. Все в одной транзакции под
+     * ACCESS EXCLUSIVE блокировкой; если под блокировкой таблица уже
+     * секционирована (ее сконвертировал другой инстанс), ничего не делает.
+     *
+     * @return true, если таблица сконвертирована этим вызовом
+     */
+    boolean convertToPartitioned(LocalDateTime legacyUpperBound);
+
+    List<ActivityLogPartition> findPartitions();
+
+    /**
+     * Создать секцию [from, to), если секции с таким именем еще нет
+     */
+    void createPartition(String name, LocalDateTime from, LocalDateTime to);
+
+    void dropPartition(String name);
+
+    /**
+     * Есть ли строки в секции DEFAULT (значит, нужных секций не хватило)
+     */
+    boolean hasRowsInDefaultPartition();
+}
@@ -0,0 +1,224 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL секционирования user_activity_logs на PostgreSQL
+ *
+ * Имена секций формирует ActivityLogPartitionManager; перед подстановкой в
+ * DDL они все равно проверяются по SAFE_NAME.
+ */
+public class UserActivityLogPartitionRepositoryImpl implements UserActivityLogPartitionRepository {
+
+    private static final String TABLE = "user_activity_logs";
+    private static final Pattern SAFE_NAME = Pattern.compile("[a-z0-9_]{1,63}");
+    private static final Pattern RANGE_BOUND = Pattern.compile(
+            "FROM \\((?:'([^']*)'|MINVALUE)\\) TO \\((?:'([^']*)'|MAXVALUE)\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public boolean supportsPartitioning() {
+        return session().doReturningWork(connection -> connection.isWrapperFor(PGConnection.class));
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        return session().doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return false;
+            }
+            try (Statement statement = connection.createStatement()) {
+                return isPartitioned(statement);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasActivityRows() {
+        return exists("SELECT EXISTS (SELECT 1 FROM " + TABLE + ")");
+    }
+
+    @Override
+    public boolean convertToPartitioned(LocalDateTime legacyUpperBound) {
+        return session().doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+                // Проверка под блокировкой: другой инстанс мог сконвертировать таблицу, пока мы ждали
+                if (isPartitioned(statement)) {
+                    return false;
+                }
+
+                boolean hasRows;
+                try (ResultSet resultSet = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM " + TABLE + ")")) {
+                    hasRows = resultSet.next() && resultSet.getBoolean(1);
+                }
+                String primaryKey = null;
+                try (ResultSet resultSet = statement.executeQuery("SELECT conname FROM pg_constraint "
+                        + "WHERE conrelid = '" + TABLE + "'::regclass AND contype = 'p'")) {
+                    if (resultSet.next()) {
+                        primaryKey = resultSet.getString(1);
+                    }
+                }
+                Map<String, String> indexes = findIndexDefinitions(connection);
+
+                statement.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+                if (primaryKey != null) {
+                    statement.execute("ALTER TABLE " + LEGACY_PARTITION + " RENAME CONSTRAINT " + primaryKey
+                            + " TO " + LEGACY_PARTITION + "_pkey");
+                }
+                for (String index : indexes.keySet()) {
+                    statement.execute("ALTER INDEX " + index + " RENAME TO " + legacyName(index));
+                }
+                // секция не может иметь свой IDENTITY; id теперь выдает user_activity_logs_seq
+                statement.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+                statement.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP DEFAULT");
+
+                statement.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS) "
+                        + "PARTITION BY RANGE (timestamp)");
+                statement.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey "
+                        + "PRIMARY KEY (id, timestamp)");
+                // индексы пустой родительской таблицы создаются мгновенно; при ATTACH
+                // совпадающие индексы старой таблицы подключаются без перестроения
+                for (String definition : indexes.values()) {
+                    statement.execute(definition);
+                }
+
+                if (hasRows) {
+                    statement.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION
+                            + " FOR VALUES FROM (MINVALUE) TO ('" + BOUND_FORMAT.format(legacyUpperBound) + "')");
+                } else {
+                    statement.execute("DROP TABLE " + LEGACY_PARTITION);
+                }
+                statement.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+                return true;
+            }
+        });
+    }
+
+    private static boolean isPartitioned(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT relkind FROM pg_class WHERE oid = to_regclass('" + TABLE + "')")) {
+            return resultSet.next() && "p".equals(resultSet.getString(1));
+        }
+    }
+
+    /**
+     * Определения неуникальных индексов таблицы (уникальные на секционированной
+     * таблице обязаны включать timestamp, их в схеме нет)
+     */
+    private Map<String, String> findIndexDefinitions(Connection connection) throws SQLException {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT c.relname, pg_get_indexdef(i.indexrelid) "
+                        + "FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid "
+                        + "WHERE i.indrelid = '" + TABLE + "'::regclass AND NOT i.indisunique")) {
+            while (resultSet.next()) {
+                indexes.put(resultSet.getString(1), resultSet.getString(2));
+            }
+        }
+        return indexes;
+    }
+
+    private static String legacyName(String index) {
+        String name = index + "_legacy";
+        return name.length() <= 63 ? name : name.substring(name.length() - 63);
+    }
+
+    @Override
+    public List<ActivityLogPartition> findPartitions() {
+        return session().doReturningWork(connection -> {
+            List<ActivityLogPartition> partitions = new ArrayList<>();
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return partitions;
+            }
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT c.relname, "
+                            + "pg_get_expr(c.relpartbound, c.oid), c.reltuples::bigint "
+                            + "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                            + "WHERE i.inhparent = to_regclass('" + TABLE + "') ORDER BY c.relname")) {
+                while (resultSet.next()) {
+                    String bound = resultSet.getString(2);
+                    long rows = Math.max(0, resultSet.getLong(3));
+                    Matcher matcher = RANGE_BOUND.matcher(bound);
+                    if (matcher.find()) {
+                        partitions.add(new ActivityLogPartition(resultSet.getString(1),
+                                parseBound(matcher.group(1)), parseBound(matcher.group(2)), rows));
+                    } else {
+                        partitions.add(new ActivityLogPartition(resultSet.getString(1), null, null, rows));
+                    }
+                }
+            }
+            return partitions;
+        });
+    }
+
+    private static LocalDateTime parseBound(String value) {
+        return value == null ? null : LocalDateTime.parse(value.replace(' ', 'T'));
+    }
+
+    @Override
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        String sql = "CREATE TABLE IF NOT EXISTS " + checkedName(name) + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + BOUND_FORMAT.format(from) + "') TO ('" + BOUND_FORMAT.format(to) + "')";
+        session().doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        });
+    }
+
+    @Override
+    public void dropPartition(String name) {
+        String sql = "DROP TABLE IF EXISTS " + checkedName(name);
+        session().doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasRowsInDefaultPartition() {
+        return isPartitioned() && exists("SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + ")");
+    }
+
+    private boolean exists(String sql) {
+        return session().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                    ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        });
+    }
+
+    private static String checkedName(String name) {
+        if (!SAFE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Недопустимое имя секции: " + name);
+        }
+        return name;
+    }
+
+    private Session session() {
+        return entityManager.unwrap(Session.class);
+    }
+}
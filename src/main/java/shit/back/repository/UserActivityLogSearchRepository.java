@@ -0,0 +1,25 @@
+package shit.back.repository;
+
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
+
+import java.util.OptionalLong;
+
+/**
+ * Постраничный просмотр журнала активности (фрагмент UserActivityLogJpaRepository)
+ */
+public interface UserActivityLogSearchRepository {
+
+    /**
+     * Страница записей от новых к старым с keyset пагинацией по (timestamp, id),
+     * без COUNT запроса; approximateTotal в результате не заполняется
+     */
+    ActivityLogSearchResult searchActivities(ActivityLogSearchCriteria criteria);
+
+    /**
+     * Оценка количества записей по фильтрам критерия из статистики
+     * планировщика PostgreSQL (EXPLAIN без выполнения запроса).
+     * На других БД - пусто.
+     */
+    OptionalLong estimateActivityCount(ActivityLogSearchCriteria criteria);
+}
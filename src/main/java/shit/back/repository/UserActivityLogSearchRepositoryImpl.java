@@ -0,0 +1,209 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
+import shit.back.entity.UserActivityLogEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Постраничный просмотр журнала активности через Criteria API
+ *
+ * Порядок - (timestamp DESC, id DESC), следующая страница начинается
+ * строго после последней пары (timestamp, id) предыдущей. Каждому
+ * фильтру соответствует составной индекс с хвостом (timestamp, id):
+ * idx_activity_timestamp_id, idx_activity_key_timestamp_id,
+ * idx_activity_user_timestamp_id, idx_activity_category_timestamp_id,
+ * idx_activity_action_timestamp_id и idx_activity_key_action_timestamp_id
+ * (keyOnly + actionTypes, страница журнала в админке). Поэтому любая
+ * страница - спуск по индексу и limit + 1 строк, сколько бы записей ни
+ * было до нее.
+ *
+ * Не keyset по индексу остаются: несколько значений в logCategories или
+ * actionTypes (IN по префиксу не дает общего порядка по timestamp - строки
+ * фильтра сортируются) и сочетания фильтров без своего индекса (userId с
+ * категорией или типом, категория с keyOnly) - индекс одного фильтра,
+ * остальные проверяются по строкам. Страница по-прежнему без OFFSET, но
+ * ее стоимость растет с числом подходящих под фильтр строк.
+ */
+@Slf4j
+public class UserActivityLogSearchRepositoryImpl implements UserActivityLogSearchRepository {
+
+    private static final int MAX_LIMIT = 200;
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*(\\d+(?:\\.\\d+)?)");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public ActivityLogSearchResult searchActivities(ActivityLogSearchCriteria criteria) {
+        int limit = Math.max(1, Math.min(MAX_LIMIT, criteria.getLimit()));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserActivityLogEntity> query = cb.createQuery(UserActivityLogEntity.class);
+        Root<UserActivityLogEntity> root = query.from(UserActivityLogEntity.class);
+
+        Path<LocalDateTime> timestampPath = root.get("timestamp");
+        Path<Long> idPath = root.get("id");
+
+        List<Predicate> predicates = buildFilterPredicates(cb, root, criteria);
+        if (criteria.getCursor() != null && !criteria.getCursor().isBlank()) {
+            Cursor cursor = Cursor.decode(criteria.getCursor());
+            // (timestamp, id) < (cursor.timestamp, cursor.id); отдельное timestamp <= дает
+            // планировщику границу диапазона индекса, которую OR сам не выражает
+            predicates.add(cb.lessThanOrEqualTo(timestampPath, cursor.timestamp()));
+            predicates.add(cb.or(
+                    cb.lessThan(timestampPath, cursor.timestamp()),
+                    cb.and(cb.equal(timestampPath, cursor.timestamp()), cb.lessThan(idPath, cursor.id()))));
+        }
+
+        query.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(timestampPath), cb.desc(idPath));
+
+        List<UserActivityLogEntity> rows = entityManager.createQuery(query)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > limit;
+        List<UserActivityLogEntity> page = hasNext ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = hasNext ? Cursor.encode(page.get(page.size() - 1)) : null;
+
+        log.debug("Activity log keyset page: rows={}, hasNext={}, cursor={}", page.size(), hasNext,
+                criteria.getCursor() != null);
+        return new ActivityLogSearchResult(page, nextCursor, hasNext, null);
+    }
+
+    @Override
+    public OptionalLong estimateActivityCount(ActivityLogSearchCriteria criteria) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (criteria.isKeyOnly()) {
+            conditions.add("is_key_action = true");
+        }
+        if (criteria.getUserId() != null) {
+            conditions.add("user_id = ?");
+            parameters.add(criteria.getUserId());
+        }
+        addInCondition("log_category", criteria.getLogCategories(), conditions, parameters);
+        addInCondition("action_type", criteria.getActionTypes(), conditions, parameters);
+        if (criteria.getFromTime() != null) {
+            conditions.add("timestamp >= ?");
+            parameters.add(Timestamp.valueOf(criteria.getFromTime()));
+        }
+        if (criteria.getToTime() != null) {
+            conditions.add("timestamp <= ?");
+            parameters.add(Timestamp.valueOf(criteria.getToTime()));
+        }
+
+        String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM user_activity_logs"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return OptionalLong.empty();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? parsePlanRows(resultSet.getString(1)) : OptionalLong.empty();
+                }
+            }
+        });
+    }
+
+    /**
+     * Оценка строк верхнего узла плана - первое "Plan Rows" в JSON
+     */
+    static OptionalLong parsePlanRows(String planJson) {
+        if (planJson == null) {
+            return OptionalLong.empty();
+        }
+        Matcher matcher = PLAN_ROWS.matcher(planJson);
+        return matcher.find()
+                ? OptionalLong.of(Math.round(Double.parseDouble(matcher.group(1))))
+                : OptionalLong.empty();
+    }
+
+    private List<Predicate> buildFilterPredicates(CriteriaBuilder cb, Root<UserActivityLogEntity> root,
+            ActivityLogSearchCriteria criteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.isKeyOnly()) {
+            predicates.add(cb.isTrue(root.get("isKeyAction")));
+        }
+        if (criteria.getUserId() != null) {
+            predicates.add(cb.equal(root.get("userId"), criteria.getUserId()));
+        }
+        if (criteria.getLogCategories() != null && !criteria.getLogCategories().isEmpty()) {
+            predicates.add(root.get("logCategory").in(criteria.getLogCategories()));
+        }
+        if (criteria.getActionTypes() != null && !criteria.getActionTypes().isEmpty()) {
+            predicates.add(root.get("actionType").in(criteria.getActionTypes()));
+        }
+        if (criteria.getFromTime() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("timestamp"), criteria.getFromTime()));
+        }
+        if (criteria.getToTime() != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("timestamp"), criteria.getToTime()));
+        }
+        return predicates;
+    }
+
+    private static void addInCondition(String column, Collection<? extends Enum<?>> values,
+            List<String> conditions, List<Object> parameters) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        conditions.add(column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")");
+        values.forEach(value -> parameters.add(value.name()));
+    }
+
+    /**
+     * Курсор: base64url("timestamp|id") последней записи страницы
+     */
+    record Cursor(LocalDateTime timestamp, long id) {
+
+        static String encode(UserActivityLogEntity last) {
+            String raw = last.getTimestamp() + "|" + last.getId();
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid activity log cursor");
+                }
+                return new Cursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid activity log cursor", e);
+            }
+        }
+    }
+}
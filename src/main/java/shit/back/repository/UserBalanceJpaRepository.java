@@ -184,13 +184,6 @@ public interface UserBalanceJpaRepository extends JpaRepository<UserBalanceEntit
 
     // === МАССОВЫЕ ОПЕРАЦИИ ===
 
-    /**
-     * Деактивация устаревших балансов
-     */
-    @Modifying
-    @Query("UPDATE UserBalanceEntity b SET b.isActive = false WHERE b.isActive = true AND b.lastUpdated < :cutoff")
-    int deactivateStaleBalances(@Param("cutoff") LocalDateTime cutoff);
-
     /**
      * Очистка заметок у активных балансов
      */
@@ -12,6 +12,7 @@ import shit.back.entity.UserSessionEntity.SessionState;
 import shit.back.model.UserCountsBatchResult;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +24,8 @@ public interface UserSessionJpaRepository extends JpaRepository<UserSessionEntit
 
         boolean existsByUserId(Long userId);
 
+        List<UserSessionEntity> findByUserIdIn(Collection<Long> userIds);
+
         // Активные сессии
         List<UserSessionEntity> findByIsActiveTrueOrderByLastActivityDesc();
 
@@ -50,11 +53,6 @@ public interface UserSessionJpaRepository extends JpaRepository<UserSessionEntit
         @Query("SELECT s FROM UserSessionEntity s WHERE s.isActive = true AND s.lastActivity < :cutoff")
         List<UserSessionEntity> findExpiredSessions(@Param("cutoff") LocalDateTime cutoff);
 
-        // Деактивация истекших сессий
-        @Modifying
-        @Query("UPDATE UserSessionEntity s SET s.isActive = false, s.state = 'EXPIRED' WHERE s.isActive = true AND s.lastActivity < :cutoff")
-        int deactivateExpiredSessions(@Param("cutoff") LocalDateTime cutoff);
-
         // Статистика по состояниям
         @Query("SELECT s.state, COUNT(s) FROM UserSessionEntity s WHERE s.isActive = true GROUP BY s.state")
         List<Object[]> getActiveSessionStatistics();
@@ -70,9 +68,26 @@ public interface UserSessionJpaRepository extends JpaRepository<UserSessionEntit
                         "LOWER(s.lastName) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
         Page<UserSessionEntity> searchUsers(@Param("searchTerm") String searchTerm, Pageable pageable);
 
-        // Статистика по периодам активности
-        @Query("SELECT DATE(s.lastActivity), COUNT(DISTINCT s.userId) FROM UserSessionEntity s WHERE s.lastActivity >= :fromDate GROUP BY DATE(s.lastActivity) ORDER BY DATE(s.lastActivity)")
-        List<Object[]> getDailyActiveUsers(@Param("fromDate") LocalDateTime fromDate);
+        // Ранжированный поиск по pg_trgm (GIN trigram индексы на lower(...))
+        @Query(value = """
+                        SELECT s.* FROM user_sessions s
+                        WHERE lower(s.username) LIKE :pattern
+                           OR lower(s.first_name) LIKE :pattern
+                           OR lower(s.last_name) LIKE :pattern
+                        ORDER BY GREATEST(
+                                    similarity(lower(COALESCE(s.username, '')), :term),
+                                    similarity(lower(COALESCE(s.first_name, '')), :term),
+                                    similarity(lower(COALESCE(s.last_name, '')), :term)) DESC,
+                                 s.last_activity DESC
+                        LIMIT :limit
+                        """, nativeQuery = true)
+        List<UserSessionEntity> searchUsersRanked(@Param("term") String term, @Param("pattern") String pattern,
+                        @Param("limit") int limit);
+
+        // Новые пользователи дня для скетчей DistinctUserSketchService
+        @Query("SELECT s.userId FROM UserSessionEntity s WHERE s.createdAt >= :fromTime AND s.createdAt < :toTime")
+        List<Long> findUserIdsCreatedBetween(@Param("fromTime") LocalDateTime fromTime,
+                        @Param("toTime") LocalDateTime toTime);
 
         // Новые пользователи
         @Query("SELECT s FROM UserSessionEntity s WHERE s.createdAt >= :since ORDER BY s.createdAt DESC")
@@ -128,4 +143,10 @@ public interface UserSessionJpaRepository extends JpaRepository<UserSessionEntit
                         "FROM UserSessionEntity s")
         UserCountsBatchResult getUserCountsBatch(@Param("activeThreshold") LocalDateTime activeThreshold,
                         @Param("onlineThreshold") LocalDateTime onlineThreshold);
+
+        // Всего и онлайн одним запросом, когда активных за сутки считают скетчи
+        @Query("SELECT COUNT(*), " +
+                        "COUNT(CASE WHEN s.isActive = true AND s.lastActivity > :onlineThreshold THEN 1 END) " +
+                        "FROM UserSessionEntity s")
+        List<Object[]> getTotalAndOnlineCounts(@Param("onlineThreshold") LocalDateTime onlineThreshold);
 }
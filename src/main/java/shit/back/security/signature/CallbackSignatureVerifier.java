@@ -0,0 +1,212 @@
+package shit.back.security.signature;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import shit.back.config.PaymentConfigurationProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Проверка подписей callback'ов платежных систем
+ *
+ * Для каждого провайдера один раз при старте собираются канонизатор
+ * параметров и набор ключей. HMAC подпись из заголовка декодируется из hex
+ * в байты и сравнивается с сырым результатом Mac за постоянное время.
+ * На время ротации у провайдера может быть два активных ключа: текущий
+ * и предыдущий (переменные *_PREVIOUS); совпадения по предыдущему ключу
+ * считаются отдельно, чтобы было видно, когда его можно удалить.
+ */
+@Slf4j
+@Component
+public class CallbackSignatureVerifier {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String SHA256_PREFIX = "sha256=";
+
+    public enum CallbackProvider {
+        TON, UZS, FRAGMENT
+    }
+
+    @Autowired
+    private PaymentConfigurationProperties paymentConfig;
+
+    @Value("${TON_WEBHOOK_SECRET:}")
+    private String tonWebhookSecret;
+
+    @Value("${TON_WEBHOOK_SECRET_PREVIOUS:}")
+    private String tonWebhookSecretPrevious;
+
+    private final Map<CallbackProvider, ProviderVerifier> verifiers = new EnumMap<>(CallbackProvider.class);
+    private final Map<CallbackProvider, VerificationStats> stats = new EnumMap<>(CallbackProvider.class);
+
+    @PostConstruct
+    public void init() {
+        for (CallbackProvider provider : CallbackProvider.values()) {
+            stats.put(provider, new VerificationStats());
+        }
+
+        List<byte[]> tonKeys = keys(trim(tonWebhookSecret), trim(tonWebhookSecretPrevious));
+        if (!tonKeys.isEmpty()) {
+            verifiers.put(CallbackProvider.TON, hmacVerifier(SignatureCanonicalizer.sortedQueryString(),
+                    new HmacKeyRing(HMAC_ALGORITHM, tonKeys)));
+        }
+
+        PaymentConfigurationProperties.UzsPayment uzs = paymentConfig.getUzsPayment();
+        List<byte[]> uzsKeys = keys(uzs.getSecretKey(), uzs.getPreviousSecretKey());
+        if (!uzsKeys.isEmpty()) {
+            verifiers.put(CallbackProvider.UZS, hmacVerifier(SignatureCanonicalizer.sortedQueryString(),
+                    new HmacKeyRing(HMAC_ALGORITHM, uzsKeys)));
+        }
+
+        PaymentConfigurationProperties.Fragment fragment = paymentConfig.getFragment();
+        List<byte[]> fragmentTokens = keys(trim(fragment.getToken()), trim(fragment.getPreviousToken()));
+        if (!fragmentTokens.isEmpty()) {
+            verifiers.put(CallbackProvider.FRAGMENT, tokenVerifier(fragmentTokens));
+        }
+
+        log.info("🔒 Проверка подписей callback'ов инициализирована для провайдеров: {}", verifiers.keySet());
+    }
+
+    /**
+     * Проверить подпись callback'а
+     *
+     * @param providedSignature значение заголовка подписи (hex HMAC, допускается
+     *                          префикс sha256=; для Fragment - секретный токен)
+     */
+    public boolean verify(CallbackProvider provider, Map<String, String> params, String providedSignature) {
+        ProviderVerifier verifier = verifiers.get(provider);
+        if (verifier == null) {
+            log.error("🔒 Ключ подписи {} не настроен", provider);
+            return false;
+        }
+        if (providedSignature == null || providedSignature.isBlank()) {
+            stats.get(provider).record(0, -1);
+            return false;
+        }
+
+        long startTime = System.nanoTime();
+        int matchedKey = verifier.match(params, providedSignature.trim());
+        stats.get(provider).record(System.nanoTime() - startTime, matchedKey);
+        return matchedKey >= 0;
+    }
+
+    public boolean isConfigured(CallbackProvider provider) {
+        return verifiers.containsKey(provider);
+    }
+
+    /**
+     * Метрики проверки подписей по провайдерам
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new HashMap<>();
+        stats.forEach((provider, providerStats) -> {
+            Map<String, Object> values = providerStats.snapshot();
+            values.put("configured", verifiers.containsKey(provider));
+            result.put(provider.name().toLowerCase(), values);
+        });
+        return result;
+    }
+
+    private ProviderVerifier hmacVerifier(SignatureCanonicalizer canonicalizer, HmacKeyRing keyRing) {
+        return (params, signature) -> {
+            if (signature.regionMatches(true, 0, SHA256_PREFIX, 0, SHA256_PREFIX.length())) {
+                signature = signature.substring(SHA256_PREFIX.length());
+            }
+            byte[] expected;
+            try {
+                expected = HexFormat.of().parseHex(signature);
+            } catch (IllegalArgumentException e) {
+                return -1;
+            }
+            return keyRing.match(canonicalizer.canonicalize(params), expected);
+        };
+    }
+
+    private ProviderVerifier tokenVerifier(List<byte[]> tokens) {
+        return (params, signature) -> {
+            byte[] provided = signature.getBytes(StandardCharsets.UTF_8);
+            int matched = -1;
+            for (int i = tokens.size() - 1; i >= 0; i--) {
+                if (MessageDigest.isEqual(tokens.get(i), provided)) {
+                    matched = i;
+                }
+            }
+            return matched;
+        };
+    }
+
+    private static List<byte[]> keys(String current, String previous) {
+        List<byte[]> keys = new ArrayList<>(HmacKeyRing.MAX_ACTIVE_KEYS);
+        if (isUsableKey(current)) {
+            keys.add(current.getBytes(StandardCharsets.UTF_8));
+            if (isUsableKey(previous)) {
+                keys.add(previous.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Пустые значения и неразрешенные плейсхолдеры "${...}" из значений
+     * по умолчанию PaymentConfigurationProperties ключами не считаются
+     */
+    private static boolean isUsableKey(String key) {
+        return key != null && !key.isEmpty() && !key.startsWith("${");
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    @FunctionalInterface
+    private interface ProviderVerifier {
+        /**
+         * @return индекс подошедшего ключа или -1
+         */
+        int match(Map<String, String> params, String signature);
+    }
+
+    private static final class VerificationStats {
+        private final LongAdder verified = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder previousKeyMatches = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, int matchedKey) {
+            if (matchedKey >= 0) {
+                verified.increment();
+                if (matchedKey > 0) {
+                    previousKeyMatches.increment();
+                }
+            } else {
+                rejected.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long count = verified.sum() + rejected.sum();
+            Map<String, Object> values = new HashMap<>();
+            values.put("verified", verified.sum());
+            values.put("rejected", rejected.sum());
+            values.put("previousKeyMatches", previousKeyMatches.sum());
+            values.put("avgLatencyMicros", count > 0 ? totalNanos.sum() / count / 1000.0 : 0.0);
+            values.put("maxLatencyMicros", maxNanos.get() / 1000.0);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package shit.back.security.signature;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Набор активных HMAC ключей провайдера (текущий и, на время ротации, предыдущий)
+ *
+ * Mac инициализируется ключом один раз при создании, потокам выдаются
+ * клоны прототипа через ThreadLocal, поэтому на каждую проверку нет ни
+ * Mac.getInstance, ни SecretKeySpec. Подпись вычисляется всеми активными
+ * ключами независимо от результата, чтобы время проверки не зависело от
+ * того, какой ключ подошел.
+ */
+public final class HmacKeyRing {
+
+    public static final int MAX_ACTIVE_KEYS = 2;
+
+    private final Mac[] prototypes;
+    private final ThreadLocal<Mac[]> threadMacs;
+
+    public HmacKeyRing(String algorithm, List<byte[]> keys) {
+        List<byte[]> activeKeys = new ArrayList<>();
+        for (byte[] key : keys) {
+            if (key != null && key.length > 0) {
+                activeKeys.add(key);
+            }
+        }
+        if (activeKeys.isEmpty() || activeKeys.size() > MAX_ACTIVE_KEYS) {
+            throw new IllegalArgumentException("Требуется 1-" + MAX_ACTIVE_KEYS + " активных ключа");
+        }
+
+        prototypes = new Mac[activeKeys.size()];
+        try {
+            for (int i = 0; i < prototypes.length; i++) {
+                prototypes[i] = Mac.getInstance(algorithm);
+                prototypes[i].init(new SecretKeySpec(activeKeys.get(i), algorithm));
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось инициализировать " + algorithm, e);
+        }
+        threadMacs = ThreadLocal.withInitial(this::cloneMacs);
+    }
+
+    public int size() {
+        return prototypes.length;
+    }
+
+    /**
+     * Проверить подпись всеми активными ключами
+     *
+     * @return индекс подошедшего ключа (0 - текущий, 1 - предыдущий) или -1
+     */
+    public int match(byte[] data, byte[] signature) {
+        Mac[] macs = threadMacs.get();
+        int matched = -1;
+        for (int i = macs.length - 1; i >= 0; i--) {
+            if (MessageDigest.isEqual(macs[i].doFinal(data), signature)) {
+                matched = i;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Подпись текущим ключом
+     */
+    public byte[] sign(byte[] data) {
+        return threadMacs.get()[0].doFinal(data);
+    }
+
+    private Mac[] cloneMacs() {
+        Mac[] macs = new Mac[prototypes.length];
+        for (int i = 0; i < prototypes.length; i++) {
+            try {
+                macs[i] = (Mac) prototypes[i].clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("Провайдер " + prototypes[i].getProvider()
+                        + " не поддерживает клонирование Mac", e);
+            }
+        }
+        return macs;
+    }
+}
@@ -0,0 +1,38 @@
+package shit.back.security.signature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Построение подписываемой строки из параметров callback'а
+ */
+@FunctionalInterface
+public interface SignatureCanonicalizer {
+
+    byte[] canonicalize(Map<String, String> params);
+
+    /**
+     * key1=value1&key2=value2 с сортировкой по ключу, null ключи и значения пропускаются
+     * (формат TON Wallet и UZS)
+     */
+    static SignatureCanonicalizer sortedQueryString() {
+        return params -> {
+            TreeMap<String, String> sorted = new TreeMap<>();
+            params.forEach((key, value) -> {
+                if (key != null && value != null) {
+                    sorted.put(key, value);
+                }
+            });
+
+            StringBuilder builder = new StringBuilder(64);
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                if (!builder.isEmpty()) {
+                    builder.append('&');
+                }
+                builder.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            return builder.toString().getBytes(StandardCharsets.UTF_8);
+        };
+    }
+}
@@ -10,10 +10,13 @@ import shit.back.entity.UserSessionEntity;
 import shit.back.model.UserCountsBatchResult;
 import shit.back.dto.order.DailyStats;
 import shit.back.dto.order.CustomerStats;
+import shit.back.service.analytics.DistinctUserSketchService;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.OptionalLong;
 
 /**
  * Сервис аналитики для админской панели
@@ -42,6 +45,9 @@ public class AdminAnalyticsService {
     @Autowired
     private UserSessionUnifiedService userSessionService;
 
+    @Autowired
+    private DistinctUserSketchService distinctUserSketchService;
+
     /**
      * Получение метрик производительности системы
      * ОПТИМИЗИРОВАНО: использует batch query для пользовательских метрик
@@ -154,8 +160,15 @@ public class AdminAnalyticsService {
 
         List<DailyStats> dailyRevenue = orderService.getDailyStatistics(days);
 
-        // Временно заглушка для данных активных пользователей - будет добавлена позже
-        List<DailyActiveUsersStats> dailyActiveUsers = List.of();
+        // Активные и новые пользователи по дням - из HyperLogLog-скетчей (пусто, пока не загружены)
+        List<DailyActiveUsersStats> dailyActiveUsers = distinctUserSketchService.getDailyCounts(days).stream()
+                .map(day -> DailyActiveUsersStats.builder()
+                        .date(day.date().atStartOfDay())
+                        .activeUsers(day.activeUsers())
+                        .newUsers(day.newUsers())
+                        .returningUsers(Math.max(0, day.activeUsers() - day.newUsers()))
+                        .build())
+                .toList();
 
         // Временно заглушка для языковой статистики - будет добавлена позже
         List<LanguageStats> languageStats = List.of();
@@ -208,9 +221,23 @@ public class AdminAnalyticsService {
         return 15.5; // 15.5% рост
     }
 
+    /**
+     * Доля активных на прошлой неделе, вернувшихся на этой (по скетчам);
+     * без скетчей - прежнее значение-заглушка
+     */
     private double calculateUserRetentionRate() {
-        // Заглушка - реальная логика будет добавлена позже
-        return 78.3; // 78.3% retention
+        LocalDate today = LocalDate.now();
+        OptionalLong previousWeek = distinctUserSketchService.countActiveUsers(today.minusDays(13),
+                today.minusDays(7));
+        OptionalLong retained = distinctUserSketchService.countRetainedUsers(today.minusDays(13),
+                today.minusDays(7), today.minusDays(6), today);
+        if (previousWeek.isEmpty() || retained.isEmpty()) {
+            return 78.3; // 78.3% retention
+        }
+        if (previousWeek.getAsLong() == 0) {
+            return 0.0;
+        }
+        return Math.round(retained.getAsLong() * 1000.0 / previousWeek.getAsLong()) / 10.0;
     }
 
     private double calculateAverageSessionDuration() {
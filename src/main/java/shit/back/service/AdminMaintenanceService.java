@@ -4,11 +4,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import shit.back.config.MaintenanceOperationsConfig;
 import shit.back.entity.StarPackageEntity;
 import shit.back.entity.UserSessionEntity;
 import shit.back.model.UserCountsBatchResult;
 import shit.back.dto.monitoring.SystemHealth;
+import shit.back.service.activity.ActivityLogPartitionManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -44,6 +47,9 @@ public class AdminMaintenanceService {
     @Autowired(required = false)
     private ConnectionPoolMonitoringService connectionPoolMonitoringService;
 
+    @Autowired
+    private ActivityLogPartitionManager activityLogPartitionManager;
+
     /**
      * Получение индикаторов здоровья системы
      * ОПТИМИЗИРОВАНО с кэшированием для снижения нагрузки
@@ -160,15 +166,18 @@ public class AdminMaintenanceService {
 
     /**
      * Выполнение профилактических операций обслуживания
+     *
+     * Без общей транзакции: массовые операции коммитят каждую порцию сами
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MaintenanceResult performMaintenance() {
         long startTime = System.currentTimeMillis();
         log.info("🔧 ОБСЛУЖИВАНИЕ: Выполнение профилактических операций - НАЧАЛО");
 
         // Деактивация истекших сессий
         long sessionStart = System.currentTimeMillis();
-        int deactivatedSessions = userSessionService.deactivateExpiredSessions(24);
+        int deactivatedSessions = userSessionService.deactivateExpiredSessions(
+                MaintenanceOperationsConfig.USER_SESSION_EXPIRY_ADMIN);
         long sessionTime = System.currentTimeMillis() - sessionStart;
         log.info("👥 ОБСЛУЖИВАНИЕ: Деактивированы {} истекших сессий за {}ms", deactivatedSessions, sessionTime);
 
@@ -178,9 +187,9 @@ public class AdminMaintenanceService {
         long packageTime = System.currentTimeMillis() - packageStart;
         log.info("📦 ОБСЛУЖИВАНИЕ: Деактивированы {} истекших пакетов за {}ms", deactivatedPackages, packageTime);
 
-        // Дополнительные операции очистки
+        // Журнал активности: секции вперед и удаление устаревших секций
         long cleanupStart = System.currentTimeMillis();
-        int cleanedLogEntries = performLogCleanup();
+        ActivityLogPartitionManager.MaintenanceReport logReport = activityLogPartitionManager.maintain();
         int optimizedQueries = performQueryOptimization();
         long cleanupTime = System.currentTimeMillis() - cleanupStart;
         log.info("🧹 ОБСЛУЖИВАНИЕ: Cleanup operations completed in {}ms", cleanupTime);
@@ -190,7 +199,9 @@ public class AdminMaintenanceService {
         MaintenanceResult result = MaintenanceResult.builder()
                 .deactivatedSessions(deactivatedSessions)
                 .deactivatedPackages(deactivatedPackages)
-                .cleanedLogEntries(cleanedLogEntries)
+                .cleanedLogEntries((int) Math.min(Integer.MAX_VALUE, logReport.removedRows()))
+                .createdLogPartitions(logReport.createdPartitions())
+                .droppedLogPartitions(logReport.droppedPartitions())
                 .optimizedQueries(optimizedQueries)
                 .maintenanceTime(LocalDateTime.now())
                 .executionTimeMs(totalTime)
@@ -310,11 +321,6 @@ public class AdminMaintenanceService {
         return 85 + (int) (Math.random() * 10); // 85-95%
     }
 
-    private int performLogCleanup() {
-        // Заглушка для очистки логов
-        return (int) (Math.random() * 100);
-    }
-
     private int performQueryOptimization() {
         // Заглушка для оптимизации запросов
         return (int) (Math.random() * 10);
@@ -365,6 +371,8 @@ public class AdminMaintenanceService {
         private int deactivatedSessions;
         private int deactivatedPackages;
         private int cleanedLogEntries;
+        private int createdLogPartitions;
+        private int droppedLogPartitions;
         private int optimizedQueries;
         private LocalDateTime maintenanceTime;
         private long executionTimeMs;
@@ -2,6 +2,7 @@ package shit.back.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -9,12 +10,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import shit.back.service.metrics.MetricsCollectionStrategy;
 import shit.back.config.MetricsConfigurationProperties;
+import shit.back.service.activity.ActivityStreamEvent;
+import shit.back.service.activity.ActivityStreamLog;
 import shit.back.util.CacheMetricsValidator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Set;
 import java.util.Map;
 import java.util.LinkedHashMap;
@@ -58,12 +63,24 @@ public class BackgroundMetricsService {
     // SSE connections management
     private final Set<SseEmitter> activeConnections = ConcurrentHashMap.newKeySet();
 
+    // Снимки метрик с номерами для переподключения по Last-Event-ID; под sseLock
+    // рассылка и досылка новому клиенту не перемешивают порядок номеров
+    private final Object sseLock = new Object();
+    private ActivityStreamLog metricsLog;
+
     // Performance tracking
     private final AtomicLong metricsCollectionCount = new AtomicLong(0);
     private final AtomicLong lastCollectionDuration = new AtomicLong(0);
     private volatile LocalDateTime lastSuccessfulCollection;
     private volatile PerformanceMetricsData lastMetrics;
 
+    @PostConstruct
+    public void initReplayLog() {
+        // номера начинаются с времени запуска: Last-Event-ID от прошлого запуска всегда старше окна
+        metricsLog = new ActivityStreamLog(metricsConfig.getSse().getReplayCapacity(),
+                metricsConfig.getSse().getReplayMaxAge(), System.currentTimeMillis());
+    }
+
     /**
      * ОПТИМИЗИРОВАННЫЙ scheduled метод для сбора метрик каждые 15 секунд
      * ИСПРАВЛЕНИЕ КРИТИЧЕСКОЙ ПРОБЛЕМЫ:
@@ -365,41 +382,51 @@ public class BackgroundMetricsService {
      * Broadcast метрик всем подключенным SSE клиентам
      */
     private void broadcastToSSEClients(PerformanceMetricsData metrics) {
-        if (activeConnections.isEmpty()) {
-            log.info("📡 ИСПРАВЛЕНИЕ SSE: No active SSE connections, skipping broadcast. " +
-                    "Это нормально если клиенты не смогли подключиться из-за проблем с аутентификацией.");
-            return;
-        }
-
         String eventData = formatMetricsAsJson(metrics);
-        int successfulBroadcasts = 0;
 
-        log.info("📡 ИСПРАВЛЕНИЕ SSE: Broadcasting to {} active connections", activeConnections.size());
+        synchronized (sseLock) {
+            // снимок получает номер и без клиентов: переподключившийся досчитает пропущенные
+            ActivityStreamEvent event = metricsLog.append("performance-metrics",
+                    ActivityStreamEvent.ALL_CATEGORIES, eventData.getBytes(StandardCharsets.UTF_8));
 
-        // Удаляем dead connections и отправляем данные живым
-        activeConnections.removeIf(emitter -> {
-            try {
-                // ИСПРАВЛЕНИЕ: Логируем JSON перед отправкой для диагностики
-                log.debug("📤 ИСПРАВЛЕНИЕ JSON: Отправляем SSE event 'performance-metrics' с данными: {}",
-                        eventData.length() > 200 ? eventData.substring(0, 200) + "..." : eventData);
+            if (activeConnections.isEmpty()) {
+                log.info("📡 ИСПРАВЛЕНИЕ SSE: No active SSE connections, skipping broadcast. " +
+                        "Это нормально если клиенты не смогли подключиться из-за проблем с аутентификацией.");
+                return;
+            }
 
-                emitter.send(SseEmitter.event()
-                        .name("performance-metrics")
-                        .data(eventData));
+            log.info("📡 ИСПРАВЛЕНИЕ SSE: Broadcasting metrics #{} to {} active connections", event.id(),
+                    activeConnections.size());
+
+            // Удаляем dead connections и отправляем данные живым
+            activeConnections.removeIf(emitter -> {
+                try {
+                    // ИСПРАВЛЕНИЕ: Логируем JSON перед отправкой для диагностики
+                    log.debug("📤 ИСПРАВЛЕНИЕ JSON: Отправляем SSE event 'performance-metrics' с данными: {}",
+                            eventData.length() > 200 ? eventData.substring(0, 200) + "..." : eventData);
+
+                    sendMetricsEvent(emitter, event);
+
+                    log.debug("✅ ИСПРАВЛЕНИЕ JSON: Successfully sent validated JSON data to SSE client");
+                    return false; // Оставляем в множестве
+                } catch (IOException e) {
+                    log.warn("❌ ДИАГНОСТИКА SSE: Removing dead SSE connection: {}", e.getMessage());
+                    return true; // Удаляем из множества
+                } catch (Exception e) {
+                    log.error("❌ КРИТИЧЕСКАЯ ОШИБКА SSE: Unexpected error sending SSE data: {}", e.getMessage(), e);
+                    return true; // Удаляем из множества при критических ошибках
+                }
+            });
+        }
 
-                log.debug("✅ ИСПРАВЛЕНИЕ JSON: Successfully sent validated JSON data to SSE client");
-                return false; // Оставляем в множестве
-            } catch (IOException e) {
-                log.warn("❌ ДИАГНОСТИКА SSE: Removing dead SSE connection: {}", e.getMessage());
-                return true; // Удаляем из множества
-            } catch (Exception e) {
-                log.error("❌ КРИТИЧЕСКАЯ ОШИБКА SSE: Unexpected error sending SSE data: {}", e.getMessage(), e);
-                return true; // Удаляем из множества при критических ошибках
-            }
-        });
+        log.info("📡 ДИАГНОСТИКА SSE: Successfully broadcasted to {} SSE clients", activeConnections.size());
+    }
 
-        successfulBroadcasts = activeConnections.size();
-        log.info("📡 ДИАГНОСТИКА SSE: Successfully broadcasted to {} SSE clients", successfulBroadcasts);
+    private void sendMetricsEvent(SseEmitter emitter, ActivityStreamEvent event) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name(event.name())
+                .data(new String(event.data(), StandardCharsets.UTF_8)));
     }
 
     /**
@@ -717,12 +744,18 @@ public class BackgroundMetricsService {
      * Добавление нового SSE подключения
      */
     public void addSSEConnection(SseEmitter emitter) {
-        activeConnections.add(emitter);
-        log.info("➕ ИСПРАВЛЕНИЕ SSE: New SSE connection added. Total active connections: {}",
-                activeConnections.size());
-        log.info("🔍 ИСПРАВЛЕНИЕ SSE: SSE connection registered successfully, emitter: {}",
-                emitter != null ? "valid" : "null");
+        addSSEConnection(emitter, null);
+    }
 
+    /**
+     * Добавление SSE подключения с продолжением после lastEventId
+     *
+     * Новый клиент получает последний снимок. Переподключившийся - только
+     * снимки после lastEventId из журнала повтора; если номер старше окна
+     * журнала, истории метрик больше нигде нет, и клиент получает последний
+     * снимок, как новый.
+     */
+    public void addSSEConnection(SseEmitter emitter, Long lastEventId) {
         // Настройка callbacks для cleanup
         emitter.onCompletion(() -> {
             activeConnections.remove(emitter);
@@ -740,13 +773,29 @@ public class BackgroundMetricsService {
                     ex.getMessage(), activeConnections.size());
         });
 
-        // Отправляем текущие метрики новому клиенту
-        if (lastMetrics != null) {
+        synchronized (sseLock) {
+            activeConnections.add(emitter);
+            log.info("➕ ИСПРАВЛЕНИЕ SSE: New SSE connection added. Total active connections: {}, Last-Event-ID: {}",
+                    activeConnections.size(), lastEventId);
+
+            List<ActivityStreamEvent> replay = lastEventId != null
+                    ? metricsLog.since(lastEventId).orElse(null)
+                    : null;
+            if (replay == null) {
+                replay = metricsLog.recent(1);
+            }
+
             try {
-                emitter.send(SseEmitter.event()
-                        .name("performance-metrics")
-                        .data(formatMetricsAsJson(lastMetrics)));
-                log.debug("📤 Sent current metrics to new SSE client");
+                for (ActivityStreamEvent event : replay) {
+                    sendMetricsEvent(emitter, event);
+                }
+                if (replay.isEmpty() && lastEventId == null && lastMetrics != null) {
+                    // Отправляем текущие метрики новому клиенту
+                    emitter.send(SseEmitter.event()
+                            .name("performance-metrics")
+                            .data(formatMetricsAsJson(lastMetrics)));
+                }
+                log.debug("📤 Sent {} metrics snapshots to SSE client", replay.size());
             } catch (IOException e) {
                 log.warn("Failed to send initial metrics to new SSE client: {}", e.getMessage());
                 activeConnections.remove(emitter);
@@ -754,6 +803,18 @@ public class BackgroundMetricsService {
         }
     }
 
+    /**
+     * Состояние журнала повтора метрик
+     */
+    public Map<String, Object> getReplayStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lastEventId", metricsLog.getLastId());
+        stats.put("coveredAfterId", metricsLog.getCoveredAfterId());
+        stats.put("capacity", metricsLog.getCapacity());
+        stats.put("maxAge", String.valueOf(metricsLog.getMaxAge()));
+        return stats;
+    }
+
     // ==================== MONITORING & HEALTH ====================
 
     /**
@@ -1,24 +1,89 @@
 package shit.back.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import shit.back.domain.balance.valueobjects.Money;
+import shit.back.infrastructure.fragment.FragmentApiException;
+import shit.back.infrastructure.fragment.FragmentPurchaseClient;
+import shit.back.infrastructure.fragment.FragmentPurchaseRequest;
+import shit.back.infrastructure.fragment.FragmentPurchaseResult;
+import shit.back.infrastructure.fragment.FragmentPurchaseStatus;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис интеграции с Fragment API для покупки звезд
- * Заглушка для обеспечения компиляции
+ *
+ * Покупка отправляется в FragmentPurchaseClient после коммита транзакции,
+ * в которой списан баланс, и не блокирует вызывающего. Результат (финальный
+ * статус после опроса) возвращается через CompletableFuture.
  */
 @Service
 @Slf4j
 public class FragmentIntegrationService {
 
+    private static final String CURRENCY = "USD";
+
+    @Autowired
+    private FragmentPurchaseClient purchaseClient;
+
+    /**
+     * Инициация покупки звезд через Fragment API
+     */
+    public CompletableFuture<FragmentPurchaseResult> initiateStarPurchase(Long userId, Integer starCount, Money amount) {
+        return initiateStarPurchase(UUID.randomUUID().toString(), userId, starCount, amount);
+    }
+
     /**
      * Инициация покупки звезд через Fragment API
+     *
+     * @param requestId ключ идемпотентности покупки (ID транзакции списания)
+     */
+    public CompletableFuture<FragmentPurchaseResult> initiateStarPurchase(String requestId, Long userId,
+            Integer starCount, Money amount) {
+        log.info("🚀 Fragment API: покупка звезд userId={}, stars={}, amount={}, requestId={}",
+                userId, starCount, amount, requestId);
+
+        return submitStarPurchase(requestId, userId, starCount, amount)
+                .thenCompose(result -> result.status() == FragmentPurchaseStatus.PENDING
+                        && result.transactionId() != null
+                                ? purchaseClient.awaitCompletion(result.transactionId())
+                                : CompletableFuture.completedFuture(result))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("❌ Fragment API: ошибка покупки {}: {}", requestId, error.getMessage());
+                    } else if (result.isCompleted()) {
+                        log.info("✅ Fragment API: покупка {} завершена, транзакция {}, звезд {}",
+                                requestId, result.transactionId(), result.starsDelivered());
+                    } else {
+                        log.warn("⚠️ Fragment API: покупка {} не завершена: {} {}",
+                                requestId, result.status(), result.errorCode());
+                    }
+                });
+    }
+
+    /**
+     * Отправка покупки без ожидания финального статуса
+     *
+     * Future завершается ответом Fragment на создание покупки (обычно PENDING
+     * с transactionId); дальнейший опрос статуса остается за вызывающим.
      */
-    public void initiateStarPurchase(Long userId, Integer starCount, Money amount) {
-        log.info("🚀 Fragment API: покупка звезд userId={}, stars={}, amount={}",
-                userId, starCount, amount);
-        // TODO: Реализовать реальную интеграцию с Fragment API
+    public CompletableFuture<FragmentPurchaseResult> submitStarPurchase(String requestId, Long userId,
+            Integer starCount, Money amount) {
+        if (!purchaseClient.isConfigured()) {
+            log.warn("⚠️ Fragment API не настроен, покупка {} не отправлена", requestId);
+            return CompletableFuture.completedFuture(
+                    FragmentPurchaseResult.failed(requestId, null, "NOT_CONFIGURED"));
+        }
+
+        FragmentPurchaseRequest request = new FragmentPurchaseRequest(
+                requestId, userId, starCount, amount.getAmount(), CURRENCY);
+        return submitAfterCommit(request);
     }
 
     /**
@@ -26,7 +91,46 @@ public class FragmentIntegrationService {
      */
     public String checkPurchaseStatus(String transactionId) {
         log.info("🔍 Fragment API: проверка статуса транзакции {}", transactionId);
-        // TODO: Реализовать проверку статуса
-        return "PENDING";
+        if (!purchaseClient.isConfigured()) {
+            return FragmentPurchaseStatus.UNKNOWN.name();
+        }
+        try {
+            FragmentPurchaseResult result = purchaseClient.fetchStatuses(List.of(transactionId)).get(transactionId);
+            return result != null ? result.status().name() : FragmentPurchaseStatus.UNKNOWN.name();
+        } catch (FragmentApiException e) {
+            log.warn("⚠️ Fragment API: статус транзакции {} не получен: {}", transactionId, e.getErrorCode());
+            return FragmentPurchaseStatus.UNKNOWN.name();
+        }
+    }
+
+    /**
+     * Отправка после коммита: при откате списания покупка не отправляется
+     */
+    private CompletableFuture<FragmentPurchaseResult> submitAfterCommit(FragmentPurchaseRequest request) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return purchaseClient.purchase(request);
+        }
+
+        CompletableFuture<FragmentPurchaseResult> submitted = new CompletableFuture<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                purchaseClient.purchase(request).whenComplete((result, error) -> {
+                    if (error != null) {
+                        submitted.completeExceptionally(error);
+                    } else {
+                        submitted.complete(result);
+                    }
+                });
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    submitted.complete(FragmentPurchaseResult.failed(request.requestId(), null, "ROLLED_BACK"));
+                }
+            }
+        });
+        return submitted;
     }
-}
\ No newline at end of file
+}
@@ -10,9 +10,14 @@ import org.springframework.transaction.annotation.Transactional;
 import shit.back.dto.order.*;
 import shit.back.entity.OrderEntity;
 import shit.back.repository.OrderJpaRepository;
+import shit.back.repository.OrderRollupJpaRepository;
+import shit.back.service.analytics.OrderAnalyticsRollupService;
+import shit.back.service.search.TrigramSearchService;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +35,15 @@ public class OrderQueryService {
     @Autowired
     private OrderJpaRepository orderRepository;
 
+    @Autowired
+    private TrigramSearchService trigramSearchService;
+
+    @Autowired
+    private OrderRollupJpaRepository rollupRepository;
+
+    @Autowired
+    private OrderAnalyticsRollupService rollupService;
+
     /**
      * Получение заказа по ID
      */
@@ -70,7 +84,7 @@ public class OrderQueryService {
      * Поиск заказов
      */
     public Page<OrderEntity> searchOrders(String searchTerm, Pageable pageable) {
-        return orderRepository.searchOrders(searchTerm, pageable);
+        return trigramSearchService.searchOrders(searchTerm, pageable);
     }
 
     /**
@@ -98,6 +112,7 @@ public class OrderQueryService {
 
     /**
      * Расширенный поиск заказов с фильтрами
+     * Все фильтры, сортировка и пагинация выполняются одним SQL запросом
      */
     public Page<OrderEntity> searchOrdersWithFilters(String searchText, OrderEntity.OrderStatus status,
             LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
@@ -108,46 +123,29 @@ public class OrderQueryService {
             return orderRepository.findAll(pageable);
         }
 
-        // Если есть только текстовый поиск
-        if (status == null && fromDate == null && toDate == null && searchText != null
-                && !searchText.trim().isEmpty()) {
-            return orderRepository.searchOrders(searchText.trim(), pageable);
-        }
-
-        // Для сложных фильтров используем фильтрацию через stream
-        List<OrderEntity> allOrders;
-
-        if (fromDate != null && toDate != null) {
-            allOrders = orderRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(fromDate, toDate);
-        } else if (fromDate != null) {
-            allOrders = orderRepository.findRecentOrders(fromDate);
-        } else {
-            allOrders = orderRepository.findAll();
-        }
-
-        // Применяем фильтры
-        List<OrderEntity> filteredOrders = allOrders.stream()
-                .filter(order -> status == null || order.getStatus() == status)
-                .filter(order -> searchText == null || searchText.trim().isEmpty() ||
-                        matchesSearchText(order, searchText.trim()))
-                .toList();
-
-        // Применяем пагинацию
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), filteredOrders.size());
-        List<OrderEntity> pageContent = start < filteredOrders.size() ? filteredOrders.subList(start, end) : List.of();
+        return orderRepository.searchWithFilters(searchText, status, fromDate, toDate, pageable);
+    }
 
-        return new org.springframework.data.domain.PageImpl<>(pageContent, pageable, filteredOrders.size());
+    /**
+     * Поиск облегченных проекций заказов с keyset пагинацией (без COUNT запроса)
+     */
+    public OrderSearchResult searchOrderSummaries(OrderSearchCriteria criteria) {
+        log.debug("Keyset order search: {}", criteria);
+        return orderRepository.searchSummaries(criteria);
     }
 
     /**
      * Получение статистики заказов (оптимизированная версия)
+     * При готовых агрегатах читает order_rollup_daily вместо orders
      */
     public OrderStatistics getOrderStatisticsOptimized() {
         log.debug("Getting optimized order statistics with single SQL query");
 
         try {
-            List<Object[]> result = orderRepository.getOrderStatisticsOptimized();
+            LocalDate today = LocalDate.now();
+            List<Object[]> result = rollupService.useRollups()
+                    ? rollupRepository.getOrderStatistics(today, today.withDayOfMonth(1))
+                    : orderRepository.getOrderStatisticsOptimized();
 
             if (result.isEmpty() || result.get(0) == null) {
                 log.warn("No order statistics data returned, using defaults");
@@ -191,12 +189,13 @@ public class OrderQueryService {
      * Получение топ клиентов
      */
     public List<CustomerStats> getTopCustomers(int limit) {
-        PageRequest pageRequest = PageRequest.of(0, limit);
-        List<Object[]> results = orderRepository.getTopCustomers(pageRequest);
+        List<Object[]> results = rollupService.useRollups()
+                ? rollupRepository.getTopCustomers(limit)
+                : orderRepository.getTopCustomers(PageRequest.of(0, limit));
 
         return results.stream()
                 .map(row -> CustomerStats.builder()
-                        .userId((Long) row[0])
+                        .userId(((Number) row[0]).longValue())
                         .username((String) row[1])
                         .orderCount(((Number) row[2]).longValue())
                         .totalSpent((BigDecimal) row[3])
@@ -209,11 +208,13 @@ public class OrderQueryService {
      */
     public List<DailyStats> getDailyStatistics(int days) {
         LocalDateTime fromDate = LocalDateTime.now().minusDays(days);
-        List<Object[]> results = orderRepository.getDailyStatistics(fromDate);
+        List<Object[]> results = rollupService.useRollups()
+                ? rollupRepository.getDailyStatistics(fromDate.truncatedTo(ChronoUnit.HOURS))
+                : orderRepository.getDailyStatistics(fromDate);
 
         return results.stream()
                 .map(row -> DailyStats.builder()
-                        .date((java.sql.Date) row[0])
+                        .date(toSqlDate(row[0]))
                         .orderCount(((Number) row[1]).longValue())
                         .revenue((BigDecimal) row[2])
                         .build())
@@ -224,7 +225,9 @@ public class OrderQueryService {
      * Получение статистики по пакетам
      */
     public List<PackageStats> getPackageStatistics() {
-        List<Object[]> results = orderRepository.getPackageStatistics();
+        List<Object[]> results = rollupService.useRollups()
+                ? rollupRepository.getPackageStatistics()
+                : orderRepository.getPackageStatistics();
 
         return results.stream()
                 .map(row -> PackageStats.builder()
@@ -248,6 +251,10 @@ public class OrderQueryService {
             to = LocalDateTime.now();
         }
 
+        if (rollupService.useRollups()) {
+            return getOrderMetricsFromRollups(from, to);
+        }
+
         List<OrderEntity> ordersInPeriod = orderRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(from, to);
 
         long totalOrders = ordersInPeriod.size();
@@ -293,6 +300,16 @@ public class OrderQueryService {
 
         Map<OrderEntity.OrderStatus, Long> statistics = new HashMap<>();
 
+        if (rollupService.useRollups()) {
+            for (OrderEntity.OrderStatus status : OrderEntity.OrderStatus.values()) {
+                statistics.put(status, 0L);
+            }
+            for (Object[] row : rollupRepository.getStatusCounts()) {
+                statistics.put(OrderEntity.OrderStatus.valueOf((String) row[0]), ((Number) row[1]).longValue());
+            }
+            return statistics;
+        }
+
         for (OrderEntity.OrderStatus status : OrderEntity.OrderStatus.values()) {
             Long count = orderRepository.countByStatus(status);
             statistics.put(status, count != null ? count : 0L);
@@ -355,6 +372,55 @@ public class OrderQueryService {
     }
 
     // Вспомогательные методы
+
+    /**
+     * Метрики за период по order_rollup_hourly; границы периода выравниваются по часу
+     */
+    private OrderMetrics getOrderMetricsFromRollups(LocalDateTime from, LocalDateTime to) {
+        long totalOrders = 0;
+        long completedOrders = 0;
+        long failedOrders = 0;
+        long pendingOrders = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+
+        for (Object[] row : rollupRepository.getStatusTotalsBetween(from.truncatedTo(ChronoUnit.HOURS), to)) {
+            OrderEntity.OrderStatus status = OrderEntity.OrderStatus.valueOf((String) row[0]);
+            long count = ((Number) row[1]).longValue();
+            totalOrders += count;
+            switch (status) {
+                case COMPLETED -> {
+                    completedOrders += count;
+                    totalRevenue = totalRevenue.add((BigDecimal) row[2]);
+                }
+                case FAILED -> failedOrders += count;
+                case CREATED, AWAITING_PAYMENT -> pendingOrders += count;
+                default -> {
+                }
+            }
+        }
+
+        BigDecimal avgOrderValue = totalOrders > 0
+                ? totalRevenue.divide(BigDecimal.valueOf(totalOrders), 2, java.math.RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+
+        double conversionRate = totalOrders > 0 ? (completedOrders * 100.0) / totalOrders : 0.0;
+
+        return OrderMetrics.builder()
+                .periodStart(from)
+                .periodEnd(to)
+                .totalOrders(totalOrders)
+                .completedOrders(completedOrders)
+                .pendingOrders(pendingOrders)
+                .failedOrders(failedOrders)
+                .totalRevenue(totalRevenue)
+                .averageOrderValue(avgOrderValue)
+                .conversionRate(conversionRate)
+                .build();
+    }
+
+    private java.sql.Date toSqlDate(Object value) {
+        return value instanceof LocalDate localDate ? java.sql.Date.valueOf(localDate) : (java.sql.Date) value;
+    }
     private OrderStatistics createEmptyOrderStatistics() {
         return OrderStatistics.builder()
                 .totalOrders(0L)
@@ -376,14 +442,4 @@ public class OrderQueryService {
                 fromDate == null &&
                 toDate == null;
     }
-
-    private boolean matchesSearchText(OrderEntity order, String searchText) {
-        String lowerSearchText = searchText.toLowerCase();
-        return (order.getOrderId() != null && order.getOrderId().toLowerCase().contains(lowerSearchText)) ||
-                (order.getUsername() != null && order.getUsername().toLowerCase().contains(lowerSearchText)) ||
-                (order.getStarPackageName() != null
-                        && order.getStarPackageName().toLowerCase().contains(lowerSearchText))
-                ||
-                (order.getNotes() != null && order.getNotes().toLowerCase().contains(lowerSearchText));
-    }
-}
\ No newline at end of file
+}
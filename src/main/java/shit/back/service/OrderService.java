@@ -149,6 +149,11 @@ public class OrderService {
         return orderQueryService.searchOrdersWithFilters(searchText, status, fromDate, toDate, pageable);
     }
 
+    @Transactional(readOnly = true)
+    public OrderSearchResult searchOrderSummaries(OrderSearchCriteria criteria) {
+        return orderQueryService.searchOrderSummaries(criteria);
+    }
+
     @Transactional(readOnly = true)
     public OrderStatistics getOrderStatisticsOptimized() {
         return orderQueryService.getOrderStatisticsOptimized();
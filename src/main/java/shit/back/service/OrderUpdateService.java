@@ -4,7 +4,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import shit.back.config.SystemConfigurationProperties;
 import shit.back.dto.order.BatchUpdateResult;
+import shit.back.dto.order.OrderStatusTransition;
 import shit.back.entity.BalanceTransactionEntity;
 import shit.back.entity.OrderEntity;
 import shit.back.entity.UserActivityLogEntity.ActionType;
@@ -13,8 +15,13 @@ import shit.back.repository.OrderJpaRepository;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Сервис для обновления заказов
@@ -37,6 +44,9 @@ public class OrderUpdateService {
     @Autowired
     private OrderValidationService orderValidationService;
 
+    @Autowired
+    private SystemConfigurationProperties systemConfig;
+
     /**
      * Создание нового заказа с проверкой баланса
      */
@@ -223,72 +233,91 @@ public class OrderUpdateService {
 
     /**
      * Массовое обновление статуса заказов
+     *
+     * Допустимые переходы проверяются одним UPDATE по множеству id с условием
+     * на текущий статус. Записи журнала, как и в остальных методах, уходят в
+     * ActivityLogIngestionPipeline: он пишет их порциями и рассылает по SSE.
+     * Причины отказа определяются по id, не попавшим в результат UPDATE.
      */
     public BatchUpdateResult batchUpdateStatus(List<String> orderIds, OrderEntity.OrderStatus newStatus,
             String updatedBy) {
-        log.info("Batch updating status for {} orders to {}, updated by: {}", orderIds.size(), newStatus, updatedBy);
-
         if (orderIds == null || orderIds.isEmpty()) {
             return new BatchUpdateResult(0, 0, List.of(), List.of("No order IDs provided"));
         }
 
-        if (orderIds.size() > 50) {
-            return new BatchUpdateResult(0, 0, List.of(), List.of("Too many orders (max 50 allowed)"));
+        int maxBatchSize = systemConfig.getLimits().getMaxBatchOrderSize();
+        if (orderIds.size() > maxBatchSize) {
+            return new BatchUpdateResult(0, 0, List.of(),
+                    List.of("Too many orders (max " + maxBatchSize + " allowed)"));
         }
 
-        List<String> updatedOrders = new ArrayList<>();
-        List<String> failedOrders = new ArrayList<>();
+        log.info("Batch updating status for {} orders to {}, updated by: {}", orderIds.size(), newStatus, updatedBy);
+        long startTime = System.currentTimeMillis();
 
+        List<String> failedOrders = new ArrayList<>();
+        Set<String> requestedIds = new LinkedHashSet<>();
         for (String orderId : orderIds) {
-            try {
-                if (orderId == null || orderId.trim().isEmpty()) {
-                    failedOrders.add("Empty order ID");
-                    continue;
-                }
-
-                Optional<OrderEntity> orderOpt = orderRepository.findById(orderId);
-                if (orderOpt.isEmpty()) {
-                    failedOrders.add(orderId + " (not found)");
-                    continue;
-                }
-
-                OrderEntity order = orderOpt.get();
-                OrderEntity.OrderStatus currentStatus = order.getStatus();
-
-                // Валидация перехода статуса
-                if (!orderValidationService.validateStatusTransition(currentStatus, newStatus)) {
-                    failedOrders.add(orderId + " (invalid transition from " + currentStatus + " to " + newStatus + ")");
-                    continue;
-                }
+            if (orderId == null || orderId.trim().isEmpty()) {
+                failedOrders.add("Empty order ID");
+            } else {
+                requestedIds.add(orderId.trim());
+            }
+        }
 
-                // Обновление статуса
-                order.updateStatus(newStatus);
-                OrderEntity updated = orderRepository.save(order);
+        List<OrderStatusTransition> transitions = orderRepository.updateStatusWhereAllowed(
+                requestedIds, allowedSourceStatuses(newStatus), newStatus);
 
-                // Логирование изменения
-                activityLogService.logOrderActivity(
-                        updated.getUserId(),
-                        updated.getUsername(),
-                        null, null,
-                        mapOrderStatusToActionType(newStatus),
-                        String.format("Batch status update by %s from %s to %s", updatedBy, currentStatus, newStatus),
-                        updated.getOrderId(),
-                        updated.getFinalAmount(),
-                        updated.getStarCount(),
-                        updated.getPaymentMethod());
+        List<String> updatedOrders = new ArrayList<>(transitions.size());
+        ActionType actionType = mapOrderStatusToActionType(newStatus);
+        for (OrderStatusTransition transition : transitions) {
+            updatedOrders.add(transition.getOrderId());
+            activityLogService.logOrderActivity(
+                    transition.getUserId(),
+                    transition.getUsername(),
+                    null, null,
+                    actionType,
+                    String.format("Batch status update by %s from %s to %s",
+                            updatedBy, transition.getPreviousStatus(), newStatus),
+                    transition.getOrderId(),
+                    transition.getFinalAmount(),
+                    transition.getStarCount(),
+                    transition.getPaymentMethod());
+        }
 
-                updatedOrders.add(orderId);
+        if (updatedOrders.size() < requestedIds.size()) {
+            Set<String> missingIds = new LinkedHashSet<>(requestedIds);
+            updatedOrders.forEach(missingIds::remove);
 
-            } catch (Exception e) {
-                log.error("Error updating order {} in batch operation", orderId, e);
-                failedOrders.add(orderId + " (error: " + e.getMessage() + ")");
+            Map<String, OrderEntity.OrderStatus> currentStatuses = new HashMap<>();
+            for (Object[] row : orderRepository.findStatusesByOrderIds(missingIds)) {
+                currentStatuses.put((String) row[0], (OrderEntity.OrderStatus) row[1]);
+            }
+            for (String orderId : missingIds) {
+                OrderEntity.OrderStatus currentStatus = currentStatuses.get(orderId);
+                failedOrders.add(currentStatus == null
+                        ? orderId + " (not found)"
+                        : orderId + " (invalid transition from " + currentStatus + " to " + newStatus + ")");
             }
         }
 
-        log.info("Batch update completed: {} updated, {} failed", updatedOrders.size(), failedOrders.size());
+        log.info("Batch update completed in {}ms: {} updated, {} failed",
+                System.currentTimeMillis() - startTime, updatedOrders.size(), failedOrders.size());
         return new BatchUpdateResult(updatedOrders.size(), failedOrders.size(), updatedOrders, failedOrders);
     }
 
+    /**
+     * Статусы, из которых разрешен переход в target
+     */
+    private Set<OrderEntity.OrderStatus> allowedSourceStatuses(OrderEntity.OrderStatus target) {
+        Set<OrderEntity.OrderStatus> allowed = EnumSet.noneOf(OrderEntity.OrderStatus.class);
+        for (OrderEntity.OrderStatus status : OrderEntity.OrderStatus.values()) {
+            if (orderValidationService.validateStatusTransition(status, target)) {
+                allowed.add(status);
+            }
+        }
+        return allowed;
+    }
+
     /**
      * Обработка оплаты балансом
      */
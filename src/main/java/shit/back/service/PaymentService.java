@@ -6,10 +6,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import shit.back.config.PaymentConfigurationProperties;
 import shit.back.config.SystemConfigurationProperties;
+import shit.back.dto.payment.PaymentStatusView;
 import shit.back.entity.PaymentEntity;
 import shit.back.entity.PaymentStatus;
 import shit.back.entity.UserBalanceEntity;
+import shit.back.infrastructure.events.DomainEventPublisher;
 import shit.back.repository.PaymentJpaRepository;
+import shit.back.service.payment.PaymentExpirySweeper;
+import shit.back.service.payment.PaymentStatusChangedEvent;
 import shit.back.service.payment.PaymentStrategyFactory;
 import shit.back.service.payment.PaymentStrategy;
 
@@ -41,6 +45,12 @@ public class PaymentService {
     @Autowired
     private BalanceService balanceService;
 
+    @Autowired
+    private PaymentExpirySweeper paymentExpirySweeper;
+
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
     /**
      * Создать новый платеж
      */
@@ -60,6 +70,7 @@ public class PaymentService {
         payment.setExpiresAt(paymentConfig.getGeneral().getPaymentTimeoutMinutes());
 
         payment = paymentRepository.save(payment);
+        publishStatusChange(payment);
         log.info("✅ Платеж создан: ID={}, внутренний_ID={}", payment.getPaymentId(), payment.getId());
 
         return payment;
@@ -137,40 +148,45 @@ public class PaymentService {
     /**
      * Верифицировать callback ТОЛЬКО для балансовых платежей (используует Strategy
      * Pattern)
+     *
+     * false - окончательный отказ: платеж не найден или подпись неверна.
+     * Прочие ошибки (таймаут БД, конфликт блокировки, недоступная стратегия)
+     * пробрасываются, чтобы inbox callback'ов повторил обработку.
      */
     @Transactional
     public boolean verifyPaymentCallback(String paymentId, Map<String, String> params) {
         log.info("🔍 Верификация callback для БАЛАНСОВОГО платежа: {}", paymentId);
 
-        try {
-            Optional<PaymentEntity> paymentOpt = paymentRepository.findByPaymentId(paymentId);
-            if (paymentOpt.isEmpty()) {
-                log.warn("⚠️ Платеж не найден для callback: {}", paymentId);
-                return false;
-            }
-
-            PaymentEntity payment = paymentOpt.get();
+        Optional<PaymentEntity> paymentOpt = paymentRepository.findByPaymentId(paymentId);
+        if (paymentOpt.isEmpty()) {
+            log.warn("⚠️ Платеж не найден для callback: {}", paymentId);
+            return false;
+        }
 
-            // Используем Strategy Pattern для верификации
-            PaymentStrategy strategy = paymentStrategyFactory.getPreferredStrategy();
-            boolean isValid = strategy.verifyCallback(payment, params);
+        PaymentEntity payment = paymentOpt.get();
 
-            if (isValid) {
-                // Обновляем статус платежа и пополняем баланс
-                processSuccessfulPayment(payment);
-                log.info("✅ Callback успешно обработан для балансового платежа: {}", paymentId);
-            } else {
-                payment.updateStatus(PaymentStatus.FAILED, "Неверная подпись callback");
-                paymentRepository.save(payment);
-                log.warn("❌ Неверная подпись callback для платежа: {}", paymentId);
-            }
+        // Повторный callback по уже зачисленному платежу не должен пополнять баланс второй раз
+        if (payment.getStatus() == PaymentStatus.COMPLETED) {
+            log.info("ℹ️ Платеж {} уже завершен, повторный callback пропущен", paymentId);
+            return true;
+        }
 
-            return isValid;
+        // Используем Strategy Pattern для верификации
+        PaymentStrategy strategy = paymentStrategyFactory.getPreferredStrategy();
+        boolean isValid = strategy.verifyCallback(payment, params);
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка при верификации callback для платежа {}: {}", paymentId, e.getMessage(), e);
-            return false;
+        if (isValid) {
+            // Обновляем статус платежа и пополняем баланс
+            processSuccessfulPayment(payment);
+            log.info("✅ Callback успешно обработан для балансового платежа: {}", paymentId);
+        } else {
+            payment.updateStatus(PaymentStatus.FAILED, "Неверная подпись callback");
+            paymentRepository.save(payment);
+            publishStatusChange(payment);
+            log.warn("❌ Неверная подпись callback для платежа: {}", paymentId);
         }
+
+        return isValid;
     }
 
     /**
@@ -196,6 +212,7 @@ public class PaymentService {
                 log.info("✅ Баланс пользователя {} пополнен на сумму {}",
                         payment.getUserId(), payment.getAmount());
             }
+            publishStatusChange(payment);
 
         } catch (Exception e) {
             log.error("❌ Ошибка при обработке успешного платежа {}: {}",
@@ -243,6 +260,7 @@ public class PaymentService {
 
             payment.updateStatus(PaymentStatus.CANCELLED, reason);
             paymentRepository.save(payment);
+            publishStatusChange(payment);
 
             log.info("✅ Платеж отменен: {}", paymentId);
             return true;
@@ -255,35 +273,25 @@ public class PaymentService {
 
     /**
      * Обработать истекшие платежи
+     *
+     * Выполняет один проход PaymentExpirySweeper (пачки с SKIP LOCKED,
+     * освобождение резервов, события PaymentExpiredEvent)
      */
-    @Transactional
-    public void processExpiredPayments() {
+    public int processExpiredPayments() {
         log.debug("🕐 Обработка истекших платежей...");
-
-        List<PaymentStatus> activeStatuses = Arrays.asList(
-                PaymentStatus.PENDING, PaymentStatus.PROCESSING, PaymentStatus.VERIFICATION_REQUIRED);
-
-        List<PaymentEntity> expiredPayments = paymentRepository.findExpiredPayments(
-                LocalDateTime.now(), activeStatuses);
-
-        for (PaymentEntity payment : expiredPayments) {
-            try {
-                payment.updateStatus(PaymentStatus.EXPIRED, "Время платежа истекло");
-                paymentRepository.save(payment);
-                log.info("⌛ Платеж помечен как истекший: {}", payment.getPaymentId());
-            } catch (Exception e) {
-                log.error("❌ Ошибка при обработке истекшего платежа {}: {}",
-                        payment.getPaymentId(), e.getMessage());
-            }
-        }
-
-        if (!expiredPayments.isEmpty()) {
-            log.info("✅ Обработано истекших платежей: {}", expiredPayments.size());
-        }
+        return paymentExpirySweeper.sweep();
     }
 
     // ===== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ =====
 
+    /**
+     * Уведомить PaymentStatusHub после коммита: клиенты, ожидающие статус,
+     * получают его без повторного чтения платежа из БД
+     */
+    private void publishStatusChange(PaymentEntity payment) {
+        eventPublisher.publishEventAfterTransaction(new PaymentStatusChangedEvent(PaymentStatusView.from(payment)));
+    }
+
     private void validatePaymentData(Long userId, BigDecimal amount, String paymentMethod) {
         if (userId == null) {
             throw new IllegalArgumentException("ID пользователя не может быть null");
@@ -6,10 +6,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import shit.back.entity.StarPackageEntity;
 import shit.back.model.StarPackage;
 import shit.back.repository.StarPackageJpaRepository;
+import shit.back.service.catalog.CatalogSnapshot;
+import shit.back.service.catalog.StarPackageCatalog;
+import shit.back.service.catalog.StarPackageSalesCounter;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -18,6 +22,9 @@ import java.util.Optional;
 
 /**
  * Service for managing star packages and package-related operations
+ *
+ * Catalog reads are served from the in-memory StarPackageCatalog snapshot;
+ * every package change rebuilds the snapshot after commit.
  */
 @Slf4j
 @Service
@@ -26,6 +33,12 @@ public class StarPackageService {
     
     @Autowired
     private StarPackageJpaRepository packageRepository;
+
+    @Autowired
+    private StarPackageCatalog catalog;
+
+    @Autowired
+    private StarPackageSalesCounter salesCounter;
     
     /**
      * Create a new star package
@@ -46,6 +59,7 @@ public class StarPackageService {
         entity.setDescription("Package with " + starPackage.getStars() + " Telegram Stars");
         
         StarPackageEntity saved = packageRepository.save(entity);
+        catalog.refreshAfterCommit();
         log.info("Star package created with ID: {}", saved.getId());
         return saved;
     }
@@ -66,6 +80,7 @@ public class StarPackageService {
             entity.updateFinalPrice(); // Пересчитываем финальную цену
             
             StarPackageEntity updated = packageRepository.save(entity);
+            catalog.refreshAfterCommit();
             log.info("Star package {} updated", packageId);
             return Optional.of(updated);
         }
@@ -79,7 +94,10 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public Optional<StarPackageEntity> getPackageById(Long packageId) {
-        return packageRepository.findById(packageId);
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        return snapshot.packagesLoaded()
+                ? Optional.ofNullable(snapshot.packagesById().get(packageId))
+                : packageRepository.findById(packageId);
     }
     
     /**
@@ -87,7 +105,10 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public Optional<StarPackageEntity> getPackageByName(String name) {
-        return packageRepository.findByName(name);
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        return snapshot.packagesLoaded()
+                ? Optional.ofNullable(snapshot.packagesByName().get(name))
+                : packageRepository.findByName(name);
     }
     
     /**
@@ -95,7 +116,10 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public List<StarPackageEntity> getActivePackages() {
-        return packageRepository.findByIsEnabledTrueOrderBySortOrderAscCreatedAtAsc();
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        return snapshot.packagesLoaded()
+                ? snapshot.activePackages()
+                : packageRepository.findByIsEnabledTrueOrderBySortOrderAscCreatedAtAsc();
     }
     
     /**
@@ -143,7 +167,10 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public List<StarPackageEntity> getPopularPackages() {
-        return packageRepository.findByIsEnabledTrueAndIsPopularTrueOrderBySortOrderAsc();
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        return snapshot.packagesLoaded()
+                ? snapshot.popularPackages()
+                : packageRepository.findByIsEnabledTrueAndIsPopularTrueOrderBySortOrderAsc();
     }
     
     /**
@@ -167,6 +194,11 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public List<StarPackageEntity> getBestValuePackages(int limit) {
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        if (snapshot.packagesLoaded()) {
+            List<StarPackageEntity> bestValue = snapshot.bestValuePackages();
+            return bestValue.subList(0, Math.min(Math.max(limit, 0), bestValue.size()));
+        }
         return packageRepository.findBestValuePackages(PageRequest.of(0, limit));
     }
     
@@ -190,6 +222,7 @@ public class StarPackageService {
             entity.setIsEnabled(!entity.getIsEnabled());
             
             StarPackageEntity updated = packageRepository.save(entity);
+            catalog.refreshAfterCommit();
             log.info("Package {} status toggled to {}", packageId, updated.getIsEnabled());
             return Optional.of(updated);
         }
@@ -210,6 +243,7 @@ public class StarPackageService {
             entity.setIsPopular(!entity.getIsPopular());
             
             StarPackageEntity updated = packageRepository.save(entity);
+            catalog.refreshAfterCommit();
             log.info("Package {} popular status toggled to {}", packageId, updated.getIsPopular());
             return Optional.of(updated);
         }
@@ -226,6 +260,7 @@ public class StarPackageService {
         
         if (packageRepository.existsById(packageId)) {
             packageRepository.deleteById(packageId);
+            catalog.refreshAfterCommit();
             log.info("Package {} deleted", packageId);
             return true;
         }
@@ -236,15 +271,12 @@ public class StarPackageService {
     
     /**
      * Record a sale for package
+     * (accumulated in memory and written to star_packages by StarPackageSalesCounter)
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void recordSale(String packageName, BigDecimal amount) {
-        int updated = packageRepository.updateSalesStatistics(packageName, amount);
-        if (updated > 0) {
-            log.info("Sale recorded for package {}: {}", packageName, amount);
-        } else {
-            log.warn("Package {} not found for sale recording", packageName);
-        }
+        salesCounter.record(packageName, amount);
+        log.debug("Sale recorded for package {}: {}", packageName, amount);
     }
     
     /**
@@ -254,6 +286,7 @@ public class StarPackageService {
     public int deactivateExpiredPackages() {
         int deactivated = packageRepository.deactivateExpiredPackages(LocalDateTime.now());
         if (deactivated > 0) {
+            catalog.refreshAfterCommit();
             log.info("Deactivated {} expired packages", deactivated);
         }
         return deactivated;
@@ -266,7 +299,8 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public long getTotalPackagesCount() {
-        return packageRepository.count();
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        return snapshot.packagesLoaded() ? snapshot.allPackages().size() : packageRepository.count();
     }
     
     /**
@@ -274,7 +308,7 @@ public class StarPackageService {
      */
     @Transactional(readOnly = true)
     public long getActivePackagesCount() {
-        return packageRepository.findByIsEnabledTrueOrderBySortOrderAscCreatedAtAsc().size();
+        return getActivePackages().size();
     }
     
     /**
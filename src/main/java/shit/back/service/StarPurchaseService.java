@@ -4,12 +4,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import shit.back.application.balance.dto.response.SimpleBalanceResponse;
 import shit.back.application.balance.service.BalanceApplicationServiceV2;
 import shit.back.domain.balance.BalanceAggregate;
 import shit.back.domain.balance.exceptions.InsufficientFundsException;
 import shit.back.domain.balance.valueobjects.Money;
 import shit.back.application.balance.repository.BalanceAggregateRepository;
+import shit.back.service.purchase.StarPurchaseSagaOrchestrator;
 
 /**
  * Сервис для прямой покупки звезд из единого баланса
@@ -27,14 +30,17 @@ public class StarPurchaseService {
     private final BalanceApplicationServiceV2 balanceService;
     private final FragmentIntegrationService fragmentIntegrationService;
     private final BalanceAggregateRepository balanceRepository;
+    private final StarPurchaseSagaOrchestrator sagaOrchestrator;
 
     public StarPurchaseService(
             BalanceApplicationServiceV2 balanceService,
             FragmentIntegrationService fragmentIntegrationService,
-            BalanceAggregateRepository balanceRepository) {
+            BalanceAggregateRepository balanceRepository,
+            StarPurchaseSagaOrchestrator sagaOrchestrator) {
         this.balanceService = balanceService;
         this.fragmentIntegrationService = fragmentIntegrationService;
         this.balanceRepository = balanceRepository;
+        this.sagaOrchestrator = sagaOrchestrator;
     }
 
     /**
@@ -76,6 +82,7 @@ public class StarPurchaseService {
 
             // 4. Списание с баланса
             String transactionId = generateTransactionId(userId, starCount);
+            Money balanceBefore = balance.getCurrentBalance();
             balance.withdraw(amount,
                     String.format("Покупка %d звезд", starCount),
                     transactionId);
@@ -83,8 +90,14 @@ public class StarPurchaseService {
             // 5. Сохранение изменений баланса
             balanceRepository.save(balance);
 
-            // 6. Вызов FragmentIntegrationService
-            fragmentIntegrationService.initiateStarPurchase(userId, starCount, amount);
+            // 6. Запуск saga покупки (отправка в Fragment после коммита списания,
+            // возврат средств, если звезды не доставлены)
+            if (sagaOrchestrator.isEnabled()) {
+                sagaOrchestrator.start(userId, starCount, amount, balance.getCurrency(), balanceBefore,
+                        transactionId);
+            } else {
+                fragmentIntegrationService.initiateStarPurchase(transactionId, userId, starCount, amount);
+            }
 
             log.info("✅ Покупка звезд успешно завершена: userId={}, stars={}, transactionId={}",
                     userId, starCount, transactionId);
@@ -98,6 +111,7 @@ public class StarPurchaseService {
         } catch (Exception e) {
             log.error("❌ Критическая ошибка покупки звезд для userId={}: {}",
                     userId, e.getMessage(), e);
+            rollbackDebit();
             return StarPurchaseResult.failure("PURCHASE_ERROR",
                     "Произошла ошибка при покупке звезд: " + e.getMessage());
         }
@@ -146,6 +160,16 @@ public class StarPurchaseService {
         }
     }
 
+    /**
+     * Откат списания, если покупку не удалось запустить: ошибка перехвачена,
+     * поэтому транзакция сама не откатится
+     */
+    private void rollbackDebit() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+    }
+
     /**
      * Генерация уникального ID транзакции
      */
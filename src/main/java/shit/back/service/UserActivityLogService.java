@@ -2,12 +2,12 @@ package shit.back.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
 import shit.back.entity.OrderEntity;
 import shit.back.entity.UserActivityLogEntity;
 import shit.back.entity.UserActivityLogEntity.ActionType;
@@ -49,20 +49,22 @@ public class UserActivityLogService {
     private UserActivityStatisticsService statisticsService;
 
     // ==================== ДЕЛЕГАЦИЯ К ЛОГИРОВАНИЮ ====================
+    // Запись только кладется в ActivityLogIngestionPipeline, поэтому ни пул
+    // @Async, ни собственная транзакция (и соединение из пула) не нужны
 
     /**
      * Логировать действие пользователя
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logUserActivity(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription) {
         loggingService.logUserActivity(userId, username, firstName, lastName, actionType, actionDescription);
     }
 
     /**
-     * Логировать действие с информацией о заказе (СИНХРОННО для критичных операций)
+     * Логировать действие с информацией о заказе
      */
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logOrderActivity(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription,
             String orderId, BigDecimal orderAmount, Integer starCount, String paymentMethod) {
@@ -73,7 +75,7 @@ public class UserActivityLogService {
     /**
      * Асинхронная версия логирования заказов для обратной совместимости
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logOrderActivityAsync(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription,
             String orderId, BigDecimal orderAmount, Integer starCount, String paymentMethod) {
@@ -82,9 +84,9 @@ public class UserActivityLogService {
     }
 
     /**
-     * Логировать изменение состояния сессии (СИНХРОННО для real-time обновлений)
+     * Логировать изменение состояния сессии
      */
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logStateChange(UserSessionEntity userSession, String previousState, String newState) {
         loggingService.logStateChange(userSession, previousState, newState);
     }
@@ -92,7 +94,7 @@ public class UserActivityLogService {
     /**
      * Асинхронная версия логирования изменения состояния для обратной совместимости
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logStateChangeAsync(UserSessionEntity userSession, String previousState, String newState) {
         loggingService.logStateChangeAsync(userSession, previousState, newState);
     }
@@ -100,15 +102,15 @@ public class UserActivityLogService {
     /**
      * Логировать действие с заказом на основе OrderEntity
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logOrderAction(OrderEntity order, ActionType actionType, String description) {
         loggingService.logOrderAction(order, actionType, description);
     }
 
     /**
-     * Логировать активность телеграм бота (СИНХРОННО для real-time обновлений)
+     * Логировать активность телеграм бота
      */
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logTelegramBotActivity(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription) {
         loggingService.logTelegramBotActivity(userId, username, firstName, lastName, actionType, actionDescription);
@@ -118,7 +120,7 @@ public class UserActivityLogService {
     /**
      * Асинхронная версия для обратной совместимости
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logTelegramBotActivityAsync(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription) {
         loggingService.logTelegramBotActivityAsync(userId, username, firstName, lastName, actionType,
@@ -128,7 +130,7 @@ public class UserActivityLogService {
     /**
      * Логировать активность приложения
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logApplicationActivity(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription) {
         loggingService.logApplicationActivity(userId, username, firstName, lastName, actionType, actionDescription);
@@ -137,7 +139,7 @@ public class UserActivityLogService {
     /**
      * Логировать системную активность
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logSystemActivity(String description, ActionType actionType) {
         loggingService.logSystemActivity(description, actionType);
     }
@@ -145,7 +147,7 @@ public class UserActivityLogService {
     /**
      * Логировать системную активность с дополнительными деталями
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logSystemActivityWithDetails(String description, ActionType actionType, String details) {
         loggingService.logSystemActivityWithDetails(description, actionType, details);
     }
@@ -153,7 +155,7 @@ public class UserActivityLogService {
     /**
      * Универсальный метод логирования с указанием категории
      */
-    @Async
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void logActivityWithCategory(Long userId, String username, String firstName, String lastName,
             ActionType actionType, String actionDescription, LogCategory logCategory) {
         loggingService.logActivityWithCategory(userId, username, firstName, lastName, actionType, actionDescription,
@@ -163,41 +165,11 @@ public class UserActivityLogService {
     // ==================== ДЕЛЕГАЦИЯ К СТАТИСТИКЕ ====================
 
     /**
-     * Получить активности с фильтрами
+     * Страница активностей по фильтрам (keyset пагинация по курсору)
      */
     @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getActivitiesWithFilters(
-            boolean showAll,
-            LocalDateTime fromTime,
-            LocalDateTime toTime,
-            List<ActionType> actionTypes,
-            String searchTerm,
-            Pageable pageable) {
-        return statisticsService.getActivitiesWithFilters(showAll, fromTime, toTime, actionTypes, searchTerm, pageable);
-    }
-
-    /**
-     * Получить только ключевые активности
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getKeyActivities(Pageable pageable) {
-        return statisticsService.getKeyActivities(pageable);
-    }
-
-    /**
-     * Получить все активности
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getAllActivities(Pageable pageable) {
-        return statisticsService.getAllActivities(pageable);
-    }
-
-    /**
-     * Получить активности пользователя
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getUserActivities(Long userId, Pageable pageable) {
-        return statisticsService.getUserActivities(userId, pageable);
+    public ActivityLogSearchResult searchActivities(ActivityLogSearchCriteria criteria) {
+        return statisticsService.searchActivities(criteria);
     }
 
     /**
@@ -216,46 +188,6 @@ public class UserActivityLogService {
         return statisticsService.getRecentActivities(hours);
     }
 
-    /**
-     * Получить активности по категории
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getActivitiesByCategory(LogCategory logCategory, Pageable pageable) {
-        return statisticsService.getActivitiesByCategory(logCategory, pageable);
-    }
-
-    /**
-     * Получить активности телеграм бота
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getTelegramBotActivities(int hours, Pageable pageable) {
-        return statisticsService.getTelegramBotActivities(hours, pageable);
-    }
-
-    /**
-     * Получить активности приложения
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getApplicationActivities(int hours, Pageable pageable) {
-        return statisticsService.getApplicationActivities(hours, pageable);
-    }
-
-    /**
-     * Получить активности с расширенными фильтрами
-     */
-    @Transactional(readOnly = true)
-    public Page<UserActivityLogEntity> getActivitiesWithCategoryFilters(
-            boolean showAll,
-            LocalDateTime fromTime,
-            LocalDateTime toTime,
-            List<ActionType> actionTypes,
-            List<LogCategory> logCategories,
-            String searchTerm,
-            Pageable pageable) {
-        return statisticsService.getActivitiesWithCategoryFilters(showAll, fromTime, toTime, actionTypes, logCategories,
-                searchTerm, pageable);
-    }
-
     /**
      * Получить статистику активности
      */
@@ -296,6 +228,13 @@ public class UserActivityLogService {
         return sseService.createSseConnection(clientId, category);
     }
 
+    /**
+     * Создать SSE соединение, продолжив поток после Last-Event-ID
+     */
+    public SseEmitter createSseConnection(String clientId, LogCategory category, Long lastEventId) {
+        return sseService.createSseConnection(clientId, category, lastEventId);
+    }
+
     /**
      * Получить информацию о подключенных SSE клиентах (для диагностики)
      */
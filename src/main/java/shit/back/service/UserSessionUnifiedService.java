@@ -8,19 +8,31 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import shit.back.config.MaintenanceOperationsConfig;
 import shit.back.entity.UserSessionEntity;
 import shit.back.model.UserSession;
 import shit.back.model.UserCountsBatchResult;
 import shit.back.model.Order;
 import shit.back.model.StarPackage;
 import shit.back.repository.UserSessionJpaRepository;
-
+import shit.back.service.activity.ActivityHeavyHittersService;
+import shit.back.service.activity.ActivityHeavyHittersService.Metric;
+import shit.back.service.activity.ActivityHeavyHittersService.Window;
+import shit.back.service.activity.SlidingTopK.HeavyHitter;
+import shit.back.service.analytics.DistinctUserSketchService;
+import shit.back.service.maintenance.ChunkedMaintenanceEngine;
+import shit.back.service.search.TrigramSearchService;
+
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -47,6 +59,18 @@ public class UserSessionUnifiedService {
     @Autowired
     private UserSessionJpaRepository sessionRepository;
 
+    @Autowired
+    private TrigramSearchService trigramSearchService;
+
+    @Autowired
+    private ChunkedMaintenanceEngine maintenanceEngine;
+
+    @Autowired
+    private ActivityHeavyHittersService heavyHittersService;
+
+    @Autowired
+    private DistinctUserSketchService distinctUserSketchService;
+
     // In-memory кэш для быстрого доступа (из старого UserSessionService)
     private final Map<Long, UserSession> userSessions = new ConcurrentHashMap<>();
     private final Map<String, Order> orders = new ConcurrentHashMap<>();
@@ -86,6 +110,7 @@ public class UserSessionUnifiedService {
             } else {
                 session.updateActivity();
             }
+            distinctUserSketchService.recordActive(userId, LocalDateTime.now());
 
             // Синхронизация с PostgreSQL для статистики админ панели
             try {
@@ -450,7 +475,10 @@ public class UserSessionUnifiedService {
         }
 
         log.info("⚡ ОПТИМИЗАЦИЯ: Создание новой сессии для пользователя {}", userSession.getUserId());
-        return sessionRepository.save(entity);
+        UserSessionEntity saved = sessionRepository.save(entity);
+        distinctUserSketchService.recordNewUser(saved.getUserId(),
+                saved.getCreatedAt() != null ? saved.getCreatedAt() : LocalDateTime.now());
+        return saved;
     }
 
     /**
@@ -601,7 +629,7 @@ public class UserSessionUnifiedService {
             if (searchTerm == null || searchTerm.trim().isEmpty()) {
                 throw new IllegalArgumentException("Invalid search term");
             }
-            return sessionRepository.searchUsers(searchTerm, pageable);
+            return trigramSearchService.searchSessions(searchTerm, pageable);
         } catch (Exception e) {
             log.error("Error searching sessions with term: {}", searchTerm, e);
             return Page.empty();
@@ -609,11 +637,21 @@ public class UserSessionUnifiedService {
     }
 
     /**
-     * Получить топ активных пользователей
+     * Получить топ активных пользователей: больше всего событий активности за
+     * 7 дней из top-K в памяти; пока он не заполнен - активные сессии по
+     * итогам заказов
      */
     @Transactional(readOnly = true)
     public List<UserSessionEntity> getTopActiveUsers(int limit) {
         try {
+            if (heavyHittersService.isReady()) {
+                List<Long> userIds = heavyHittersService.top(Metric.ACTIVE_USERS, Window.WEEK, limit).stream()
+                        .map(HeavyHitter::key)
+                        .toList();
+                return sessionRepository.findByUserIdIn(userIds).stream()
+                        .sorted(Comparator.comparingInt(session -> userIds.indexOf(session.getUserId())))
+                        .toList();
+            }
             return sessionRepository.findTopActiveUsers(PageRequest.of(0, limit));
         } catch (Exception e) {
             log.error("Error getting top active users", e);
@@ -628,6 +666,11 @@ public class UserSessionUnifiedService {
     /**
      * Батч-запрос для получения всех счетчиков пользователей одним SQL запросом
      * Решает N+1 Query проблему
+     *
+     * Когда скетчи DistinctUserSketchService загружены, activeUsers считается
+     * по HyperLogLog, а SQL считает только всех и онлайн. Скетчи суточные,
+     * поэтому последние 24 часа приближаются объединением вчера и сегодня:
+     * оценка покрывает от 24 до 48 часов и может быть выше счета по сессиям.
      */
     @Transactional(readOnly = true)
     public UserCountsBatchResult getUserCountsBatch() {
@@ -637,7 +680,17 @@ public class UserSessionUnifiedService {
             LocalDateTime activeThreshold = LocalDateTime.now().minusHours(24);
             LocalDateTime onlineThreshold = LocalDateTime.now().minusMinutes(5);
 
-            UserCountsBatchResult result = sessionRepository.getUserCountsBatch(activeThreshold, onlineThreshold);
+            LocalDate today = LocalDate.now();
+            OptionalLong sketchActiveUsers = distinctUserSketchService.countActiveUsers(today.minusDays(1), today);
+            UserCountsBatchResult result;
+            if (sketchActiveUsers.isPresent()) {
+                Object[] counts = sessionRepository.getTotalAndOnlineCounts(onlineThreshold).get(0);
+                long totalUsers = ((Number) counts[0]).longValue();
+                result = new UserCountsBatchResult(totalUsers,
+                        Math.min(sketchActiveUsers.getAsLong(), totalUsers), ((Number) counts[1]).longValue());
+            } else {
+                result = sessionRepository.getUserCountsBatch(activeThreshold, onlineThreshold);
+            }
 
             long duration = System.currentTimeMillis() - startTime;
             log.info(
@@ -684,9 +737,17 @@ public class UserSessionUnifiedService {
     // ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ СТАТИСТИКИ
     // ===========================================
 
+    /**
+     * Новые пользователи за days дней: по скетчам - календарные дни, включая
+     * текущий, без скетчей - последние days * 24 часа
+     */
     @Transactional(readOnly = true)
     public long getNewUsersCount(int days) {
         try {
+            OptionalLong estimate = distinctUserSketchService.countNewUsers(days);
+            if (estimate.isPresent()) {
+                return estimate.getAsLong();
+            }
             LocalDateTime since = LocalDateTime.now().minusDays(days);
             return sessionRepository.countByCreatedAtAfter(since);
         } catch (Exception e) {
@@ -748,6 +809,7 @@ public class UserSessionUnifiedService {
             }
 
             int updated = sessionRepository.updateUserActivity(userId, LocalDateTime.now());
+            distinctUserSketchService.recordActive(userId, LocalDateTime.now());
             if (updated > 0) {
                 log.debug("Updated activity for user {}", userId);
             }
@@ -757,13 +819,17 @@ public class UserSessionUnifiedService {
     }
 
     /**
-     * Деактивировать истёкшие сессии
+     * Деактивировать истёкшие сессии порциями через ChunkedMaintenanceEngine
+     * (каждая порция коммитится отдельно, поэтому без внешней транзакции)
+     *
+     * @param operation MaintenanceOperationsConfig.USER_SESSION_EXPIRY (по
+     *                  расписанию) или USER_SESSION_EXPIRY_ADMIN (из админки) -
+     *                  порог простоя задан в операции
      */
-    @Transactional
-    public int deactivateExpiredSessions(int hours) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int deactivateExpiredSessions(String operation) {
         try {
-            LocalDateTime cutoff = LocalDateTime.now().minusHours(hours);
-            int deactivated = sessionRepository.deactivateExpiredSessions(cutoff);
+            int deactivated = (int) maintenanceEngine.run(operation).processed();
             if (deactivated > 0) {
                 log.info("Deactivated {} expired sessions", deactivated);
             }
@@ -810,11 +876,11 @@ public class UserSessionUnifiedService {
      * Автоматическая очистка истёкших сессий (каждый час)
      */
     @Scheduled(fixedRate = 3600000) // Each hour
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void scheduledCleanupExpiredSessions() {
         try {
             // PostgreSQL cleanup
-            int deactivated = deactivateExpiredSessions(48);
+            int deactivated = deactivateExpiredSessions(MaintenanceOperationsConfig.USER_SESSION_EXPIRY);
 
             // In-memory cleanup
             cleanupOldSessions();
@@ -0,0 +1,252 @@
+package shit.back.service.activity;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.SlidingTopK.HeavyHitter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Top-K пользователей и пакетов за скользящие окна 1 ч / 24 ч / 7 дней
+ *
+ * Вместо GROUP BY user_id по журналу активности (getMostActiveUsers) и
+ * сортировки сессий по итогам заказов каждое записанное событие учитывается
+ * в SlidingTopK (Space-Saving по интервалам окна):
+ * - ACTIVE_USERS - события пользователя;
+ * - SPENDERS - сумма PAYMENT_COMPLETED пользователя в копейках;
+ * - PACKAGES - оплаты по количеству звезд в пакете.
+ *
+ * Память ограничена: capacity счетчиков на интервал, интервалов 12 + 24 + 28
+ * на каждую метрику. Погрешность оценки - не больше N / capacity, где N -
+ * сумма за окно (errorBound в getStatistics(), maxError у каждого ключа).
+ *
+ * После старта окна заполняются из БД сгруппированными запросами до
+ * момента создания сервиса, дальше - только событиями этого инстанса, без
+ * пересечения. События, записанные после старта другими инстансами, сюда
+ * не попадают, поэтому при нескольких инстансах top-K отражает трафик узла.
+ */
+@Slf4j
+@Service
+public class ActivityHeavyHittersService {
+
+    public enum Metric {
+        ACTIVE_USERS, SPENDERS, PACKAGES
+    }
+
+    public enum Window {
+        HOUR(Duration.ofMinutes(5), 12),
+        DAY(Duration.ofHours(1), 24),
+        WEEK(Duration.ofHours(6), 28);
+
+        private final Duration bucketSpan;
+        private final int buckets;
+
+        Window(Duration bucketSpan, int buckets) {
+            this.bucketSpan = bucketSpan;
+            this.buckets = buckets;
+        }
+
+        public long getHours() {
+            return bucketSpan.multipliedBy(buckets).toHours();
+        }
+
+        public static Optional<Window> ofHours(int hours) {
+            for (Window window : values()) {
+                if (window.getHours() == hours) {
+                    return Optional.of(window);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Value("${app.activity.heavy-hitters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.activity.heavy-hitters.capacity:256}")
+    private int capacity;
+
+    private final Map<Metric, Map<Window, SlidingTopK<Long>>> sketches = new EnumMap<>(Metric.class);
+    private LocalDateTime liveFrom;
+    private volatile boolean ready;
+    private final AtomicReference<Map<String, Object>> lastWarmUp = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void init() {
+        liveFrom = LocalDateTime.now();
+        if (!enabled) {
+            return;
+        }
+        for (Metric metric : Metric.values()) {
+            Map<Window, SlidingTopK<Long>> windows = new EnumMap<>(Window.class);
+            for (Window window : Window.values()) {
+                windows.put(window, new SlidingTopK<>(window.bucketSpan, window.buckets, capacity));
+            }
+            sketches.put(metric, windows);
+        }
+    }
+
+    /**
+     * Учесть событие, записанное в БД; более ранние события уже учтены прогревом
+     */
+    public void record(UserActivityLogEntity activity) {
+        LocalDateTime timestamp = activity.getTimestamp();
+        if (!enabled || timestamp == null || timestamp.isBefore(liveFrom) || activity.getUserId() == null) {
+            return;
+        }
+        offer(Metric.ACTIVE_USERS, activity.getUserId(), 1, activity.getUsername(), timestamp, Window.values());
+        if (activity.getActionType() != ActionType.PAYMENT_COMPLETED) {
+            return;
+        }
+        if (activity.getOrderAmount() != null) {
+            offer(Metric.SPENDERS, activity.getUserId(), toKopecks(activity.getOrderAmount()), activity.getUsername(),
+                    timestamp, Window.values());
+        }
+        if (activity.getStarCount() != null) {
+            offer(Metric.PACKAGES, activity.getStarCount().longValue(), 1, packageLabel(activity.getStarCount()),
+                    timestamp, Window.values());
+        }
+    }
+
+    private void offer(Metric metric, Long key, long weight, String label, LocalDateTime timestamp,
+            Window... windows) {
+        Map<Window, SlidingTopK<Long>> byWindow = sketches.get(metric);
+        for (Window window : windows) {
+            byWindow.get(window).offer(key, weight, label, timestamp);
+        }
+    }
+
+    /**
+     * Прогрев: почасовые группы за неделю для окон DAY и WEEK и поминутные
+     * за последний час для HOUR
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            log.info("🏆 HEAVY HITTERS: Top-K в памяти отключен, рейтинги считаются по SQL");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            LocalDateTime weekAgo = liveFrom.minusHours(Window.WEEK.getHours());
+            LocalDateTime hourAgo = liveFrom.minusHours(Window.HOUR.getHours());
+            Window[] hourly = { Window.DAY, Window.WEEK };
+            int rows = loadUsers(activityLogRepository.getHourlyUserActivity(weekAgo, liveFrom), hourly)
+                    + loadUsers(activityLogRepository.getMinuteUserActivity(hourAgo, liveFrom), Window.HOUR)
+                    + loadPackages(activityLogRepository.getHourlyPackageSales(weekAgo, liveFrom), hourly)
+                    + loadPackages(activityLogRepository.getMinutePackageSales(hourAgo, liveFrom), Window.HOUR);
+            ready = true;
+            lastWarmUp.set(Map.of(
+                    "at", LocalDateTime.now(),
+                    "rows", rows,
+                    "durationMs", System.currentTimeMillis() - startTime));
+            log.info("🏆 HEAVY HITTERS: Окна заполнены из БД за {} мс ({} групп)",
+                    System.currentTimeMillis() - startTime, rows);
+        } catch (Exception e) {
+            log.error("❌ HEAVY HITTERS: Не удалось заполнить окна из БД, рейтинги считаются по SQL: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Строки [период, user_id, username, событий, сумма оплат]
+     */
+    private int loadUsers(List<Object[]> rows, Window... windows) {
+        for (Object[] row : rows) {
+            LocalDateTime period = ActivityRollupService.toLocalDateTime(row[0]);
+            Long userId = ((Number) row[1]).longValue();
+            String username = (String) row[2];
+            offer(Metric.ACTIVE_USERS, userId, ((Number) row[3]).longValue(), username, period, windows);
+            if (row[4] != null) {
+                offer(Metric.SPENDERS, userId, toKopecks(new BigDecimal(row[4].toString())), username, period,
+                        windows);
+            }
+        }
+        return rows.size();
+    }
+
+    private int loadPackages(List<Object[]> rows, Window... windows) {
+        for (Object[] row : rows) {
+            int stars = ((Number) row[1]).intValue();
+            offer(Metric.PACKAGES, (long) stars, ((Number) row[2]).longValue(), packageLabel(stars),
+                    ActivityRollupService.toLocalDateTime(row[0]), windows);
+        }
+        return rows.size();
+    }
+
+    /**
+     * Окно, совпадающее с периодом в часах, или пусто, если такого нет или
+     * окна еще не заполнены
+     */
+    public Optional<Window> windowFor(int hours) {
+        return ready ? Window.ofHours(hours) : Optional.empty();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<HeavyHitter<Long>> top(Metric metric, Window window, int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        return sketches.get(metric).get(window).top(limit, LocalDateTime.now());
+    }
+
+    public static BigDecimal fromKopecks(long kopecks) {
+        return BigDecimal.valueOf(kopecks, 2);
+    }
+
+    private static long toKopecks(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static String packageLabel(int stars) {
+        return stars + "⭐ Package";
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("capacityPerBucket", capacity);
+        stats.put("lastWarmUp", lastWarmUp.get());
+        if (enabled) {
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, Object> windows = new HashMap<>();
+            for (Metric metric : Metric.values()) {
+                Map<String, Object> byWindow = new HashMap<>();
+                for (Window window : Window.values()) {
+                    long total = sketches.get(metric).get(window).total(now);
+                    byWindow.put(window.name(), Map.of(
+                            "total", total,
+                            "errorBound", total / capacity));
+                }
+                windows.put(metric.name(), byWindow);
+            }
+            stats.put("windows", windows);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,334 @@
+package shit.back.service.activity;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.repository.UserActivityLogBatchRepository.CopyFormat;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.analytics.DistinctUserSketchService;
+import shit.back.util.LatencyWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Единый прием событий журнала активности
+ *
+ * Вызывающий поток только кладет запись в ActivityRingBuffer (без
+ * блокировок и без перехода в пул @Async), запись в БД и рассылку по SSE
+ * делает один поток-потребитель. Он забирает записи порциями до
+ * app.activity.ingest.batch-size или раз в max-batch-delay-ms, пишет их
+ * одним потоком (insertBatch: COPY на PostgreSQL) и затем учитывает в
+ * поминутных счетчиках ActivityRollupService и top-K
+ * ActivityHeavyHittersService и отдает в UserActivitySSEService. app.activity.ingest.writer=JPA возвращает запись
+ * через saveAll() - для сравнения и на случай проблем с COPY.
+ *
+ * Переполнение:
+ * - выше shed-watermark заполнения неключевые события отбрасываются сразу,
+ *   чтобы оставшееся место досталось заказам и платежам;
+ * - при полном буфере DROP отбрасывает событие, BLOCK ждет освобождения
+ *   места не дольше block-timeout-ms и только потом отбрасывает.
+ */
+@Slf4j
+@Service
+public class ActivityLogIngestionPipeline {
+
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    public enum Writer {
+        COPY, JPA
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private UserActivitySSEService sseService;
+
+    @Autowired
+    private ActivityRollupService activityRollupService;
+
+    @Autowired
+    private ActivityHeavyHittersService heavyHittersService;
+
+    @Autowired
+    private DistinctUserSketchService distinctUserSketchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.activity.ingest.capacity:8192}")
+    private int capacity;
+
+    @Value("${app.activity.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.activity.ingest.max-batch-delay-ms:200}")
+    private long maxBatchDelayMs;
+
+    @Value("${app.activity.ingest.overflow-policy:DROP}")
+    private String overflowPolicyName;
+
+    @Value("${app.activity.ingest.block-timeout-ms:50}")
+    private long blockTimeoutMs;
+
+    @Value("${app.activity.ingest.shed-watermark:0.75}")
+    private double shedWatermark;
+
+    @Value("${app.activity.ingest.writer:COPY}")
+    private String writerName;
+
+    @Value("${app.activity.ingest.copy-format:CSV}")
+    private String copyFormatName;
+
+    private ActivityRingBuffer<UserActivityLogEntity> buffer;
+    private OverflowPolicy overflowPolicy;
+    private Writer writer;
+    private CopyFormat copyFormat;
+    private int shedThreshold;
+    private TransactionTemplate transactionTemplate;
+    private Thread consumer;
+    private volatile boolean running;
+
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder droppedFull = new LongAdder();
+    private final LongAdder droppedShed = new LongAdder();
+    private final LongAdder rejectedInvalid = new LongAdder();
+    private final LongAdder blockedPublishes = new LongAdder();
+    private final LongAdder persistedEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    private final AtomicInteger maxFill = new AtomicInteger();
+    private final LatencyWindow flushLatency = new LatencyWindow(1024);
+    private final LatencyWindow queueDelay = new LatencyWindow(1024);
+
+    @PostConstruct
+    public void init() {
+        buffer = new ActivityRingBuffer<>(capacity);
+        overflowPolicy = OverflowPolicy.valueOf(overflowPolicyName.trim().toUpperCase(Locale.ROOT));
+        writer = Writer.valueOf(writerName.trim().toUpperCase(Locale.ROOT));
+        copyFormat = CopyFormat.valueOf(copyFormatName.trim().toUpperCase(Locale.ROOT));
+        shedThreshold = (int) (buffer.capacity() * shedWatermark);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        alignIdSequence();
+
+        running = true;
+        consumer = Thread.ofPlatform()
+                .name("activity-ingest")
+                .daemon()
+                .unstarted(this::consumeLoop);
+        consumer.start();
+
+        log.info("📥 ACTIVITY INGEST: буфер {} записей, batch {}, задержка {} мс, переполнение {}, сброс выше {}, запись {}",
+                buffer.capacity(), batchSize, maxBatchDelayMs, overflowPolicy, shedThreshold,
+                writer == Writer.COPY ? "COPY " + copyFormat : "JPA saveAll");
+    }
+
+    private void alignIdSequence() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> activityLogRepository.alignIdSequence());
+        } catch (Exception e) {
+            // до выравнивания COPY может получить уже занятые id - ошибка будет видна в failedBatches
+            log.error("❌ ACTIVITY INGEST: не удалось выровнять последовательность id журнала: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Принять событие в буфер. Не обращается к БД и не блокирует поток,
+     * кроме политики BLOCK при полном буфере.
+     *
+     * @return false, если событие отброшено
+     */
+    public boolean publish(UserActivityLogEntity activity) {
+        // одна такая запись уронила бы весь batch на NOT NULL
+        if (activity.getUserId() == null || activity.getActionType() == null) {
+            rejectedInvalid.increment();
+            log.warn("⚠️ ACTIVITY INGEST: событие без user_id или типа отклонено: {}",
+                    activity.getActionDescription());
+            return false;
+        }
+        if (activity.getTimestamp() == null) {
+            activity.setTimestamp(LocalDateTime.now());
+        }
+
+        int fill = buffer.size();
+        if (fill >= shedThreshold && !Boolean.TRUE.equals(activity.getIsKeyAction())) {
+            droppedShed.increment();
+            return false;
+        }
+
+        if (!buffer.offer(activity) && !offerBlocking(activity)) {
+            droppedFull.increment();
+            log.debug("⚠️ ACTIVITY INGEST: буфер заполнен, событие {} отброшено", activity.getActionType());
+            return false;
+        }
+
+        publishedEvents.increment();
+        fill = buffer.size();
+        if (fill > maxFill.get()) {
+            maxFill.accumulateAndGet(fill, Math::max);
+        }
+        if (fill >= batchSize) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private boolean offerBlocking(UserActivityLogEntity activity) {
+        if (overflowPolicy != OverflowPolicy.BLOCK || !running) {
+            return false;
+        }
+        blockedPublishes.increment();
+        LockSupport.unpark(consumer);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (buffer.offer(activity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void consumeLoop() {
+        List<UserActivityLogEntity> batch = new ArrayList<>(batchSize);
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMs);
+        long batchStarted = 0;
+
+        while (running) {
+            try {
+                boolean wasEmpty = batch.isEmpty();
+                buffer.drainTo(batch, batchSize - batch.size());
+                if (wasEmpty && !batch.isEmpty()) {
+                    batchStarted = System.nanoTime();
+                }
+
+                long waited = System.nanoTime() - batchStarted;
+                if (batch.size() >= batchSize || (!batch.isEmpty() && waited >= maxDelayNanos)) {
+                    flush(batch);
+                } else {
+                    LockSupport.parkNanos(batch.isEmpty() ? maxDelayNanos : maxDelayNanos - waited);
+                }
+            } catch (RuntimeException e) {
+                // flush сам считает ошибки; сюда попадает только неожиданное
+                log.error("❌ ACTIVITY INGEST: ошибка потока записи: {}", e.getMessage(), e);
+                batch.clear();
+            }
+        }
+
+        // остановка: дописать все, что успели принять
+        do {
+            buffer.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        } while (buffer.size() > 0);
+    }
+
+    private void flush(List<UserActivityLogEntity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        int size = batch.size();
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+            writeNanos.add(System.nanoTime() - started);
+            persistedEvents.add(size);
+            batches.increment();
+            maxBatchSize.accumulateAndGet(size, Math::max);
+
+            LocalDateTime oldest = batch.get(0).getTimestamp();
+            for (UserActivityLogEntity activity : batch) {
+                activityRollupService.record(activity);
+                heavyHittersService.record(activity);
+                distinctUserSketchService.recordActive(activity.getUserId(), activity.getTimestamp());
+                sseService.broadcastActivity(activity);
+            }
+
+            flushLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            queueDelay.record(Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()));
+        } catch (Exception e) {
+            failedBatches.increment();
+            failedEvents.add(size);
+            log.error("❌ ACTIVITY INGEST: не удалось записать {} событий: {}", size, e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void write(List<UserActivityLogEntity> batch) {
+        if (writer == Writer.JPA) {
+            activityLogRepository.saveAll(batch);
+        } else {
+            activityLogRepository.insertBatch(batch, copyFormat);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (consumer == null) {
+            return;
+        }
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("📥 ACTIVITY INGEST: остановлен, записано {} событий, отброшено {}",
+                persistedEvents.sum(), droppedFull.sum() + droppedShed.sum());
+    }
+
+    public Map<String, Object> getStatistics() {
+        int size = buffer.size();
+        long batchCount = batches.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bufferCapacity", buffer.capacity());
+        stats.put("bufferSize", size);
+        stats.put("bufferFillPercent", Math.round(size * 1000.0 / buffer.capacity()) / 10.0);
+        stats.put("maxBufferSize", maxFill.get());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("shedThreshold", shedThreshold);
+        stats.put("publishedEvents", publishedEvents.sum());
+        stats.put("droppedFull", droppedFull.sum());
+        stats.put("droppedShed", droppedShed.sum());
+        stats.put("rejectedInvalid", rejectedInvalid.sum());
+        stats.put("blockedPublishes", blockedPublishes.sum());
+        stats.put("persistedEvents", persistedEvents.sum());
+        stats.put("failedEvents", failedEvents.sum());
+        stats.put("batches", batchCount);
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("configuredBatchSize", batchSize);
+        stats.put("avgBatchSize", batchCount > 0 ? Math.round(persistedEvents.sum() * 10.0 / batchCount) / 10.0 : 0.0);
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("writer", writer == Writer.COPY ? "COPY_" + copyFormat : "JPA");
+        long writeMs = TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+        stats.put("writeRowsPerSecond", writeMs > 0 ? persistedEvents.sum() * 1000 / writeMs : 0);
+        stats.put("flushLatencyMs", flushLatency.snapshot());
+        stats.put("queueDelayMs", queueDelay.snapshot());
+        return stats;
+    }
+}
@@ -0,0 +1,277 @@
+package shit.back.service.activity;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.config.MaintenanceOperationsConfig;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.repository.UserActivityLogPartitionRepository.ActivityLogPartition;
+import shit.back.service.maintenance.ChunkedMaintenanceEngine;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Секции журнала активности по дням или неделям
+ *
+ * При старте превращает user_activity_logs в секционированную таблицу
+ * (только PostgreSQL; непустую - лишь с app.activity.partitioning.convert-existing=true),
+ * затем раз в maintenance-interval-ms создает секции на precreate
+ * периодов вперед и удаляет целиком секции старше retention-days. Запросы
+ * с условием по timestamp PostgreSQL отсекает до нужных секций.
+ *
+ * Без секционирования (H2, выключено, не сконвертировано) срок хранения
+ * соблюдается удалением по timestamp порциями через ChunkedMaintenanceEngine -
+ * только из AdminMaintenanceService.
+ */
+@Slf4j
+@Service
+public class ActivityLogPartitionManager {
+
+    public enum Interval {
+        DAY, WEEK
+    }
+
+    /**
+     * Итог одного прохода обслуживания
+     */
+    public record MaintenanceReport(int createdPartitions, int droppedPartitions, long removedRows) {
+    }
+
+    private static final String PARTITION_PREFIX = "user_activity_logs_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ChunkedMaintenanceEngine maintenanceEngine;
+
+    @Value("${app.activity.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.activity.partitioning.interval:DAY}")
+    private String intervalName;
+
+    @Value("${app.activity.partitioning.precreate:7}")
+    private int precreate;
+
+    @Value("${app.activity.partitioning.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${app.activity.partitioning.convert-existing:false}")
+    private boolean convertExisting;
+
+    private Interval interval;
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean partitioned;
+    private volatile LocalDateTime lastMaintenance;
+
+    private final LongAdder createdPartitions = new LongAdder();
+    private final LongAdder droppedPartitions = new LongAdder();
+    private final LongAdder removedRows = new LongAdder();
+    private final LongAdder failedOperations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        interval = Interval.valueOf(intervalName.trim().toUpperCase(Locale.ROOT));
+        // каждая DDL-операция в своей транзакции: ошибка одной секции не откатывает остальные
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("🗂️ ACTIVITY PARTITIONS: секционирование журнала выключено");
+            return;
+        }
+        try {
+            ensurePartitioned();
+            if (partitioned) {
+                maintain();
+            }
+        } catch (Exception e) {
+            failedOperations.increment();
+            log.error("❌ ACTIVITY PARTITIONS: ошибка подготовки секций: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.activity.partitioning.maintenance-interval-ms:3600000}",
+            initialDelayString = "${app.activity.partitioning.maintenance-interval-ms:3600000}")
+    public void scheduledMaintenance() {
+        if (enabled && partitioned) {
+            maintain();
+        }
+    }
+
+    private void ensurePartitioned() {
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> activityLogRepository.supportsPartitioning()))) {
+            log.info("🗂️ ACTIVITY PARTITIONS: БД не поддерживает секционирование, срок хранения - через DELETE");
+            return;
+        }
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> activityLogRepository.isPartitioned()))) {
+            partitioned = true;
+            return;
+        }
+        boolean hasRows = Boolean.TRUE.equals(
+                transactionTemplate.execute(status -> activityLogRepository.hasActivityRows()));
+        if (hasRows && !convertExisting) {
+            log.warn("⚠️ ACTIVITY PARTITIONS: user_activity_logs не секционирована и содержит данные; "
+                    + "для конвертации включите app.activity.partitioning.convert-existing");
+            return;
+        }
+
+        LocalDateTime legacyUpperBound = nextPeriod(periodStart(LocalDateTime.now(), interval), interval);
+        long started = System.currentTimeMillis();
+        boolean converted = Boolean.TRUE.equals(
+                transactionTemplate.execute(status -> activityLogRepository.convertToPartitioned(legacyUpperBound)));
+        partitioned = true;
+        if (!converted) {
+            log.info("🗂️ ACTIVITY PARTITIONS: user_activity_logs уже секционирована другим инстансом");
+            return;
+        }
+        log.warn("🗂️ ACTIVITY PARTITIONS: user_activity_logs секционирована по {} за {} мс{}", interval,
+                System.currentTimeMillis() - started,
+                hasRows ? ", старые строки - в секции до " + legacyUpperBound : "");
+    }
+
+    /**
+     * Создать недостающие секции вперед и удалить устаревшие; без
+     * секционирования - удалить строки старше срока хранения
+     */
+    public MaintenanceReport maintain() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(retentionDays);
+        lastMaintenance = now;
+
+        if (!partitioned) {
+            long rows = maintenanceEngine.run(MaintenanceOperationsConfig.ACTIVITY_LOG_RETENTION, cutoff).processed();
+            removedRows.add(rows);
+            log.info("🧹 ACTIVITY PARTITIONS: удалено {} записей журнала старше {}", rows, cutoff);
+            return new MaintenanceReport(0, 0, rows);
+        }
+
+        List<ActivityLogPartition> existing = transactionTemplate.execute(
+                status -> activityLogRepository.findPartitions());
+        if (existing == null) {
+            existing = List.of();
+        }
+
+        int created = 0;
+        LocalDateTime from = periodStart(now, interval);
+        for (int i = 0; i <= precreate; i++) {
+            LocalDateTime to = nextPeriod(from, interval);
+            if (!overlaps(existing, from, to)) {
+                String name = partitionName(from);
+                LocalDateTime partitionFrom = from;
+                if (runQuietly("создание секции " + name, () -> activityLogRepository.createPartition(
+                        name, partitionFrom, to))) {
+                    created++;
+                }
+            }
+            from = to;
+        }
+
+        int dropped = 0;
+        long rows = 0;
+        for (ActivityLogPartition partition : existing) {
+            if (partition.isDefault() || partition.to() == null || partition.to().isAfter(cutoff)) {
+                continue;
+            }
+            if (runQuietly("удаление секции " + partition.name(),
+                    () -> activityLogRepository.dropPartition(partition.name()))) {
+                dropped++;
+                rows += partition.estimatedRows();
+                log.info("🧹 ACTIVITY PARTITIONS: удалена секция {} (до {}, ~{} записей)",
+                        partition.name(), partition.to(), partition.estimatedRows());
+            }
+        }
+
+        if (Boolean.TRUE.equals(transactionTemplate.execute(
+                status -> activityLogRepository.hasRowsInDefaultPartition()))) {
+            log.warn("⚠️ ACTIVITY PARTITIONS: в секции DEFAULT есть записи - секции не были созданы вовремя");
+        }
+
+        createdPartitions.add(created);
+        droppedPartitions.add(dropped);
+        removedRows.add(rows);
+        if (created > 0 || dropped > 0) {
+            log.info("🗂️ ACTIVITY PARTITIONS: создано {}, удалено {} секций", created, dropped);
+        }
+        return new MaintenanceReport(created, dropped, rows);
+    }
+
+    private boolean runQuietly(String operation, Runnable action) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> action.run());
+            return true;
+        } catch (Exception e) {
+            failedOperations.increment();
+            log.error("❌ ACTIVITY PARTITIONS: {} не выполнено: {}", operation, e.getMessage());
+            return false;
+        }
+    }
+
+    static LocalDateTime periodStart(LocalDateTime time, Interval interval) {
+        LocalDateTime day = time.toLocalDate().atStartOfDay();
+        return interval == Interval.WEEK ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+    }
+
+    static LocalDateTime nextPeriod(LocalDateTime start, Interval interval) {
+        return interval == Interval.WEEK ? start.plusWeeks(1) : start.plusDays(1);
+    }
+
+    static String partitionName(LocalDateTime start) {
+        return PARTITION_PREFIX + PARTITION_SUFFIX.format(start);
+    }
+
+    /**
+     * Пересекается ли [from, to) с одной из секций (DEFAULT не в счет)
+     */
+    static boolean overlaps(List<ActivityLogPartition> partitions, LocalDateTime from, LocalDateTime to) {
+        for (ActivityLogPartition partition : partitions) {
+            if (partition.isDefault()) {
+                continue;
+            }
+            boolean startsBefore = partition.from() == null || partition.from().isBefore(to);
+            boolean endsAfter = partition.to() == null || partition.to().isAfter(from);
+            if (startsBefore && endsAfter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("partitioningEnabled", enabled);
+        stats.put("partitioned", partitioned);
+        stats.put("partitionInterval", interval.name());
+        stats.put("retentionDays", retentionDays);
+        stats.put("createdPartitions", createdPartitions.sum());
+        stats.put("droppedPartitions", droppedPartitions.sum());
+        stats.put("removedRows", removedRows.sum());
+        stats.put("failedOperations", failedOperations.sum());
+        stats.put("lastMaintenance", lastMaintenance);
+        return stats;
+    }
+}
@@ -0,0 +1,110 @@
+package shit.back.service.activity;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный кольцевой буфер: много производителей, один потребитель
+ *
+ * Массивы слотов и номеров последовательности выделяются один раз при
+ * создании. Производитель занимает позицию CAS'ом по хвосту и публикует
+ * элемент записью номера слота (release), потребитель видит элемент только
+ * после этой записи. Блокировок нет; при заполненном буфере offer() сразу
+ * возвращает false, решение о потере или ожидании принимает вызывающий.
+ *
+ * drainTo() и poll() можно вызывать только из одного потока.
+ */
+public final class ActivityRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    // номер позиции, которую слот ожидает: pos - свободен для записи, pos + 1 - заполнен
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public ActivityRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Емкость буфера должна быть не меньше 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false, если буфер заполнен
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.setPlain(index, element);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Следующий элемент или null, если опубликованных элементов нет
+     */
+    public E poll() {
+        long position = head.getPlain();
+        int index = (int) (position & mask);
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = slots.getPlain(index);
+        slots.setPlain(index, null);
+        sequences.setRelease(index, position + capacity);
+        head.setRelease(position + 1);
+        return element;
+    }
+
+    /**
+     * Переложить до max опубликованных элементов в target
+     *
+     * @return количество переложенных элементов
+     */
+    public int drainTo(List<? super E> target, int max) {
+        int drained = 0;
+        E element;
+        while (drained < max && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Примерное количество элементов (занятые, но еще не опубликованные слоты тоже учитываются)
+     */
+    public int size() {
+        long size = tail.get() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
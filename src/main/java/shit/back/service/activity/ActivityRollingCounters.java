@@ -0,0 +1,207 @@
+package shit.back.service.activity;
+
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Поминутные счетчики журнала активности за скользящее окно
+ *
+ * Кольцо из minutes слотов по одной минуте; в слоте - счетчик на каждую
+ * комбинацию (LogCategory, ActionType, ключевое/нет), все в одном int[].
+ * Слот переиспользуется, когда приходит событие минуты, отстоящей на
+ * полный оборот кольца, поэтому память постоянна: minutes * CELLS * 4 байта
+ * (7 дней - около 6 МБ).
+ *
+ * Писатели (поток приема журнала, пересчет из БД) синхронизированы между
+ * собой; чтение без блокировок: каждая запись заканчивается записью
+ * volatile-поля published, которое читатель читает первым.
+ */
+public class ActivityRollingCounters {
+
+    private static final LogCategory[] CATEGORIES = LogCategory.values();
+    private static final ActionType[] ACTIONS = ActionType.values();
+
+    static final int CELLS = CATEGORIES.length * ACTIONS.length * 2;
+
+    private final int minutes;
+    private final int[] counts;
+    private final long[] slotMinutes;
+    private long headMinute = Long.MIN_VALUE;
+    private volatile long published;
+
+    public ActivityRollingCounters(int minutes) {
+        if (minutes <= 0) {
+            throw new IllegalArgumentException("Размер окна должен быть положительным: " + minutes);
+        }
+        this.minutes = minutes;
+        this.counts = new int[minutes * CELLS];
+        this.slotMinutes = new long[minutes];
+        Arrays.fill(slotMinutes, Long.MIN_VALUE);
+    }
+
+    static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static int cell(LogCategory category, ActionType actionType, boolean keyAction) {
+        return (category.ordinal() * ACTIONS.length + actionType.ordinal()) * 2 + (keyAction ? 1 : 0);
+    }
+
+    /**
+     * Учесть одно событие
+     *
+     * @return false, если событие старше окна
+     */
+    public boolean record(LogCategory category, ActionType actionType, boolean keyAction, LocalDateTime timestamp) {
+        return add(epochMinute(timestamp), cell(category, actionType, keyAction), 1);
+    }
+
+    synchronized boolean add(long minute, int cell, int count) {
+        if (minute > headMinute) {
+            headMinute = minute;
+        }
+        if (minute <= headMinute - minutes) {
+            return false;
+        }
+        int offset = claimSlot(minute) * CELLS;
+        counts[offset + cell] += count;
+        published++;
+        return true;
+    }
+
+    /**
+     * Заменить счетчики минуты значениями из БД (пересчет при старте и сверка)
+     */
+    public synchronized void replaceMinute(long minute, int[] cellCounts) {
+        if (cellCounts.length != CELLS) {
+            throw new IllegalArgumentException("Ожидается " + CELLS + " счетчиков, получено " + cellCounts.length);
+        }
+        if (minute > headMinute) {
+            headMinute = minute;
+        }
+        if (minute <= headMinute - minutes) {
+            return;
+        }
+        int offset = claimSlot(minute) * CELLS;
+        System.arraycopy(cellCounts, 0, counts, offset, CELLS);
+        published++;
+    }
+
+    private int claimSlot(long minute) {
+        int slot = (int) Math.floorMod(minute, (long) minutes);
+        if (slotMinutes[slot] != minute) {
+            Arrays.fill(counts, slot * CELLS, (slot + 1) * CELLS, 0);
+            slotMinutes[slot] = minute;
+        }
+        return slot;
+    }
+
+    /**
+     * Сумма счетчиков по минутам от from до to включительно (с точностью до минуты)
+     */
+    public ActivityCounts sum(LocalDateTime from, LocalDateTime to) {
+        long sequence = published;
+        long toMinute = epochMinute(to);
+        long fromMinute = Math.max(epochMinute(from), Math.max(toMinute, headMinute) - minutes + 1);
+
+        long[] totals = new long[CELLS];
+        for (long minute = fromMinute; minute <= toMinute; minute++) {
+            int slot = (int) Math.floorMod(minute, (long) minutes);
+            if (slotMinutes[slot] != minute) {
+                continue;
+            }
+            int offset = slot * CELLS;
+            for (int cell = 0; cell < CELLS; cell++) {
+                totals[cell] += counts[offset + cell];
+            }
+        }
+        return new ActivityCounts(totals, sequence);
+    }
+
+    public int getMinutes() {
+        return minutes;
+    }
+
+    public long getMemoryBytes() {
+        return (long) counts.length * Integer.BYTES + (long) slotMinutes.length * Long.BYTES;
+    }
+
+    /**
+     * Суммы за окно по категориям, типам действий и признаку ключевого действия
+     */
+    public static final class ActivityCounts {
+
+        private final long[] cells;
+        private final long sequence;
+
+        ActivityCounts(long[] cells, long sequence) {
+            this.cells = cells;
+            this.sequence = sequence;
+        }
+
+        public long total() {
+            long total = 0;
+            for (long count : cells) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long keyTotal() {
+            long total = 0;
+            for (int cell = 1; cell < CELLS; cell += 2) {
+                total += cells[cell];
+            }
+            return total;
+        }
+
+        public long category(LogCategory category) {
+            return sumCategory(category, false);
+        }
+
+        public long categoryKey(LogCategory category) {
+            return sumCategory(category, true);
+        }
+
+        public long action(ActionType actionType) {
+            long total = 0;
+            for (LogCategory category : CATEGORIES) {
+                total += categoryAction(category, actionType);
+            }
+            return total;
+        }
+
+        public long keyAction(ActionType actionType) {
+            long total = 0;
+            for (LogCategory category : CATEGORIES) {
+                total += cells[cell(category, actionType, true)];
+            }
+            return total;
+        }
+
+        public long categoryAction(LogCategory category, ActionType actionType) {
+            return cells[cell(category, actionType, false)] + cells[cell(category, actionType, true)];
+        }
+
+        /**
+         * Номер записи счетчиков, на которой сделан снимок
+         */
+        public long sequence() {
+            return sequence;
+        }
+
+        private long sumCategory(LogCategory category, boolean keyOnly) {
+            long total = 0;
+            for (ActionType actionType : ACTIONS) {
+                total += keyOnly
+                        ? cells[cell(category, actionType, true)]
+                        : categoryAction(category, actionType);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package shit.back.service.activity;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.ActivityRollingCounters.ActivityCounts;
+import shit.back.util.LatencyWindow;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Поминутные счетчики журнала активности в памяти
+ *
+ * ActivityLogIngestionPipeline учитывает каждое записанное событие, поэтому
+ * UserActivityStatisticsService отвечает на статистику по категориям и
+ * типам действий за час/сутки/неделю суммированием массивов без GROUP BY
+ * по user_activity_logs. Точность - до минуты: минута начала периода
+ * учитывается целиком.
+ *
+ * После старта окно заполняется из БД одним сгруппированным запросом.
+ * Раз в reconcile-interval-ms последние закрытые минуты перечитываются из
+ * БД - так подтягиваются события, записанные другими инстансами или
+ * отброшенные из счетчиков как опоздавшие. Пока окно не заполнено или
+ * период длиннее окна, статистика считается по SQL.
+ */
+@Slf4j
+@Service
+public class ActivityRollupService {
+
+    /**
+     * Минуты моложе этого считаются открытыми: в них еще дописываются batch
+     */
+    private static final int OPEN_MINUTES = 2;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Value("${app.activity.rollups.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.activity.rollups.window-hours:168}")
+    private int windowHours;
+
+    @Value("${app.activity.rollups.reconcile-minutes:15}")
+    private int reconcileMinutes;
+
+    private ActivityRollingCounters counters;
+    private volatile long coveredFromMinute = Long.MAX_VALUE;
+
+    private final LongAdder recordedEvents = new LongAdder();
+    private final LongAdder lateEvents = new LongAdder();
+    private final LongAdder memoryReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LatencyWindow readLatencyMicros = new LatencyWindow(1024);
+    private final AtomicReference<Map<String, Object>> lastRebuild = new AtomicReference<>(Map.of());
+    private final AtomicReference<Map<String, Object>> lastReconcile = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            counters = new ActivityRollingCounters(windowHours * 60);
+        }
+    }
+
+    /**
+     * Учесть событие, записанное в БД
+     */
+    public void record(UserActivityLogEntity activity) {
+        if (counters == null || activity.getTimestamp() == null) {
+            return;
+        }
+        LogCategory category = activity.getLogCategory() != null ? activity.getLogCategory() : LogCategory.APPLICATION;
+        if (counters.record(category, activity.getActionType(), Boolean.TRUE.equals(activity.getIsKeyAction()),
+                activity.getTimestamp())) {
+            recordedEvents.increment();
+        } else {
+            lateEvents.increment();
+        }
+    }
+
+    /**
+     * Заполнение окна из БД; текущая минута не перечитывается - ее события
+     * уже учтены потоком приема журнала
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (counters == null) {
+            log.info("📊 ACTIVITY ROLLUPS: Счетчики в памяти отключены, статистика считается по SQL");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        long nowMinute = ActivityRollingCounters.epochMinute(LocalDateTime.now());
+        long fromMinute = nowMinute - counters.getMinutes() + 1;
+        try {
+            int rows = loadMinutes(fromMinute, nowMinute);
+            coveredFromMinute = fromMinute;
+            lastRebuild.set(Map.of(
+                    "at", LocalDateTime.now(),
+                    "rows", rows,
+                    "durationMs", System.currentTimeMillis() - startTime));
+            log.info("📊 ACTIVITY ROLLUPS: Окно {} ч заполнено из БД за {} мс ({} групп)",
+                    windowHours, System.currentTimeMillis() - startTime, rows);
+        } catch (Exception e) {
+            log.error("❌ ACTIVITY ROLLUPS: Не удалось заполнить счетчики из БД, статистика считается по SQL: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.activity.rollups.reconcile-interval-ms:60000}",
+            initialDelayString = "${app.activity.rollups.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (counters == null || coveredFromMinute == Long.MAX_VALUE) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        long toMinute = ActivityRollingCounters.epochMinute(LocalDateTime.now()) - OPEN_MINUTES + 1;
+        long fromMinute = Math.max(coveredFromMinute, toMinute - reconcileMinutes);
+        try {
+            int rows = loadMinutes(fromMinute, toMinute);
+            lastReconcile.set(Map.of(
+                    "at", LocalDateTime.now(),
+                    "minutes", toMinute - fromMinute,
+                    "rows", rows,
+                    "durationMs", System.currentTimeMillis() - startTime));
+        } catch (Exception e) {
+            log.warn("⚠️ ACTIVITY ROLLUPS: Ошибка сверки счетчиков с БД: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Заменить счетчики минут [fromMinute, toMinute) значениями из БД;
+     * минуты без строк обнуляются
+     *
+     * @return количество прочитанных групп
+     */
+    private int loadMinutes(long fromMinute, long toMinute) {
+        if (fromMinute >= toMinute) {
+            return 0;
+        }
+        List<Object[]> rows = activityLogRepository.getMinuteActivityCounts(toDateTime(fromMinute),
+                toDateTime(toMinute));
+
+        Map<Long, int[]> minutes = new HashMap<>();
+        for (Object[] row : rows) {
+            LogCategory category;
+            ActionType actionType;
+            try {
+                category = LogCategory.valueOf((String) row[1]);
+                actionType = ActionType.valueOf((String) row[2]);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            boolean keyAction = row[3] instanceof Boolean flag ? flag : ((Number) row[3]).intValue() != 0;
+            int[] cells = minutes.computeIfAbsent(ActivityRollingCounters.epochMinute(toLocalDateTime(row[0])),
+                    minute -> new int[ActivityRollingCounters.CELLS]);
+            cells[ActivityRollingCounters.cell(category, actionType, keyAction)] += ((Number) row[4]).intValue();
+        }
+
+        int[] empty = new int[ActivityRollingCounters.CELLS];
+        for (long minute = fromMinute; minute < toMinute; minute++) {
+            counters.replaceMinute(minute, minutes.getOrDefault(minute, empty));
+        }
+        return rows.size();
+    }
+
+    /**
+     * Счетчики за последние hours часов или пусто, если окно их не покрывает
+     */
+    public Optional<ActivityCounts> getCounts(int hours) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime fromTime = now.minusHours(hours);
+        if (!covers(fromTime, now)) {
+            fallbackReads.increment();
+            return Optional.empty();
+        }
+
+        long started = System.nanoTime();
+        ActivityCounts counts = counters.sum(fromTime, now);
+        readLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+        memoryReads.increment();
+        return Optional.of(counts);
+    }
+
+    private boolean covers(LocalDateTime fromTime, LocalDateTime now) {
+        if (counters == null) {
+            return false;
+        }
+        long fromMinute = ActivityRollingCounters.epochMinute(fromTime);
+        return fromMinute >= coveredFromMinute
+                && fromMinute > ActivityRollingCounters.epochMinute(now) - counters.getMinutes();
+    }
+
+    private static LocalDateTime toDateTime(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", counters != null);
+        stats.put("ready", coveredFromMinute != Long.MAX_VALUE);
+        if (counters != null) {
+            stats.put("windowHours", windowHours);
+            stats.put("memoryBytes", counters.getMemoryBytes());
+        }
+        stats.put("recordedEvents", recordedEvents.sum());
+        stats.put("lateEvents", lateEvents.sum());
+        stats.put("memoryReads", memoryReads.sum());
+        stats.put("fallbackReads", fallbackReads.sum());
+        stats.put("readLatencyMicros", readLatencyMicros.snapshot());
+        stats.put("lastRebuild", lastRebuild.get());
+        stats.put("lastReconcile", lastReconcile.get());
+        return stats;
+    }
+}
@@ -0,0 +1,33 @@
+package shit.back.service.activity;
+
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.LocalDateTime;
+
+/**
+ * Событие ленты активности, сериализованное один раз при публикации
+ *
+ * data - готовый JSON в UTF-8, который отправляется всем подписчикам без
+ * повторной сериализации; categoryMask - бит категории для фильтра
+ * подписчика. id = 0 у служебных событий конкретного соединения.
+ */
+public record ActivityStreamEvent(long id, String name, long categoryMask, byte[] data, LocalDateTime createdAt) {
+
+    /**
+     * Маска подписчика без фильтра по категории
+     */
+    public static final long ALL_CATEGORIES = -1L;
+
+    /**
+     * Бит событий без категории: их получают только подписчики без фильтра
+     */
+    private static final long UNCATEGORIZED = 1L << 63;
+
+    public static long categoryBit(LogCategory category) {
+        return category != null ? 1L << category.ordinal() : UNCATEGORIZED;
+    }
+
+    public static long subscriptionMask(LogCategory category) {
+        return category != null ? categoryBit(category) : ALL_CATEGORIES;
+    }
+}
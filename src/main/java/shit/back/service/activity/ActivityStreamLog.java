@@ -0,0 +1,139 @@
+package shit.back.service.activity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Последние события SSE потока в кольце фиксированного размера - журнал
+ * повтора для переподключений с Last-Event-ID
+ *
+ * Событие получает монотонный номер и вытесняет самое старое; запись -
+ * одно присваивание в массив вместо копирования списка, как у
+ * CopyOnWriteArrayList. Пишет поток публикации, читают подключения,
+ * поэтому короткие методы синхронизированы.
+ *
+ * Журнал помнит границу покрытия: номер последнего события, которое он
+ * уже не может отдать (вытеснено, старше maxAge или опубликовано до
+ * создания журнала). Клиент с Last-Event-ID не меньше границы
+ * догоняется из кольца целиком, иначе since() сообщает о разрыве.
+ */
+public class ActivityStreamLog {
+
+    private final ActivityStreamEvent[] slots;
+    private final Duration maxAge;
+    // порядковый номер записи в кольце, не совпадает с id при внешних номерах
+    private long appended;
+    private long lastId;
+    private long coveredAfterId;
+
+    public ActivityStreamLog(int capacity) {
+        this(capacity, null, 0);
+    }
+
+    /**
+     * @param maxAge         события старше не повторяются (null - без ограничения)
+     * @param coveredAfterId последний номер, выданный до создания журнала:
+     *                       более ранние события журналу неизвестны
+     */
+    public ActivityStreamLog(int capacity, Duration maxAge, long coveredAfterId) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость должна быть положительной: " + capacity);
+        }
+        this.slots = new ActivityStreamEvent[capacity];
+        this.maxAge = maxAge;
+        this.coveredAfterId = Math.max(0, coveredAfterId);
+        this.lastId = this.coveredAfterId;
+    }
+
+    /**
+     * Событие со следующим номером журнала
+     */
+    public ActivityStreamEvent append(String name, long categoryMask, byte[] data) {
+        return append(0, name, categoryMask, data);
+    }
+
+    /**
+     * Событие с внешним номером (id записи в БД), чтобы по Last-Event-ID
+     * можно было дочитать из БД то, что вышло за окно повтора. Номер не
+     * больше предыдущего (или 0) заменяется следующим номером журнала -
+     * номера в потоке всегда растут.
+     */
+    public synchronized ActivityStreamEvent append(long id, String name, long categoryMask, byte[] data) {
+        long eventId = id > lastId ? id : lastId + 1;
+        int slot = (int) (appended++ % slots.length);
+        ActivityStreamEvent evicted = slots[slot];
+        if (evicted != null) {
+            coveredAfterId = Math.max(coveredAfterId, evicted.id());
+        }
+        ActivityStreamEvent event = new ActivityStreamEvent(eventId, name, categoryMask, data, LocalDateTime.now());
+        slots[slot] = event;
+        lastId = eventId;
+        return event;
+    }
+
+    public synchronized long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * События после afterId, от старых к новым
+     *
+     * @return пусто, если часть событий после afterId журнал уже не хранит
+     *         (или afterId из будущего, например от прошлого запуска сервера)
+     */
+    public synchronized Optional<List<ActivityStreamEvent>> since(long afterId) {
+        List<ActivityStreamEvent> retained = retained();
+        if (afterId < coveredAfterId || afterId > lastId) {
+            return Optional.empty();
+        }
+        List<ActivityStreamEvent> result = new ArrayList<>();
+        for (ActivityStreamEvent event : retained) {
+            if (event.id() > afterId) {
+                result.add(event);
+            }
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * До limit последних событий, от старых к новым
+     */
+    public synchronized List<ActivityStreamEvent> recent(int limit) {
+        List<ActivityStreamEvent> retained = retained();
+        return new ArrayList<>(retained.subList(Math.max(0, retained.size() - limit), retained.size()));
+    }
+
+    public synchronized long getCoveredAfterId() {
+        retained();
+        return coveredAfterId;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Хранимые и не устаревшие события; устаревшие сдвигают границу покрытия
+     */
+    private List<ActivityStreamEvent> retained() {
+        int count = (int) Math.min(appended, slots.length);
+        LocalDateTime expiredBefore = maxAge != null ? LocalDateTime.now().minus(maxAge) : null;
+        List<ActivityStreamEvent> result = new ArrayList<>(count);
+        for (long seq = appended - count; seq < appended; seq++) {
+            ActivityStreamEvent event = slots[(int) (seq % slots.length)];
+            if (expiredBefore != null && event.createdAt().isBefore(expiredBefore)) {
+                coveredAfterId = Math.max(coveredAfterId, event.id());
+            } else {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,218 @@
+package shit.back.service.activity;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.util.LatencyWindow;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Подписчик ленты активности: своя ограниченная очередь и свой
+ * виртуальный поток отправки
+ *
+ * Публикация только кладет ссылку на событие в очередь и никогда не ждет
+ * клиента, поэтому медленный браузер задерживает только себя. Очередь
+ * переполнилась - по политике:
+ * - COALESCE: накопленные события заменяются одним событием resync с
+ *   числом пропущенных, клиент перечитывает ленту и получает новые события;
+ * - DROP: соединение закрывается, клиент переподключится сам.
+ *
+ * Событие с номером уходит с полем id, браузер вернет его в Last-Event-ID
+ * при переподключении. Номера не выше уже отправленного пропускаются:
+ * событие, опубликованное во время повтора журнала, попадает и в повтор,
+ * и в очередь, а клиент получает его один раз.
+ */
+@Slf4j
+class ActivityStreamSubscriber implements Runnable {
+
+    enum SlowConsumerPolicy {
+        COALESCE, DROP
+    }
+
+    private static final long POLL_MILLIS = 1000;
+
+    private final String clientId;
+    private final SseEmitter emitter;
+    private final long categoryMask;
+    private final SlowConsumerPolicy policy;
+    private final ArrayBlockingQueue<ActivityStreamEvent> queue;
+    private final Consumer<ActivityStreamSubscriber> onClose;
+    private final LocalDateTime connectedAt = LocalDateTime.now();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong pendingSkipped = new AtomicLong();
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder skippedEvents = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LatencyWindow deliveryDelayMs = new LatencyWindow(256);
+    private volatile long lastSentId;
+
+    ActivityStreamSubscriber(String clientId, SseEmitter emitter, long categoryMask, int queueCapacity,
+            SlowConsumerPolicy policy, Consumer<ActivityStreamSubscriber> onClose) {
+        this.clientId = clientId;
+        this.emitter = emitter;
+        this.categoryMask = categoryMask;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.onClose = onClose;
+    }
+
+    boolean accepts(ActivityStreamEvent event) {
+        return (categoryMask & event.categoryMask()) != 0;
+    }
+
+    /**
+     * Поставить событие в очередь без ожидания
+     *
+     * @return false, если подписчик закрыт (в том числе сейчас, как медленный)
+     */
+    boolean offer(ActivityStreamEvent event) {
+        if (closed.get()) {
+            return false;
+        }
+        if (queue.offer(event)) {
+            return true;
+        }
+        overflows.increment();
+        if (policy == SlowConsumerPolicy.DROP) {
+            log.warn("SSE client {} is too slow ({} queued events), disconnecting", clientId, queue.size());
+            close(true);
+            return false;
+        }
+        // очередь заменяется одним resync: вместо догоняния клиент перечитает ленту
+        List<ActivityStreamEvent> dropped = new ArrayList<>(queue.size());
+        int skipped = queue.drainTo(dropped) + 1;
+        pendingSkipped.addAndGet(skipped);
+        skippedEvents.add(skipped);
+        log.debug("SSE client {} lagged, coalesced {} events", clientId, skipped);
+        return true;
+    }
+
+    /**
+     * Цикл отправки на виртуальном потоке
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed.get()) {
+                long skipped = pendingSkipped.getAndSet(0);
+                if (skipped > 0) {
+                    emitter.send(SseEmitter.event()
+                            .name("resync")
+                            .data(("{\"skipped\":" + skipped + "}").getBytes(StandardCharsets.UTF_8),
+                                    MediaType.APPLICATION_JSON));
+                }
+                ActivityStreamEvent event = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    send(event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close(false);
+        } catch (Exception e) {
+            log.debug("SSE send to client {} failed: {}", clientId, e.getMessage());
+            close(true);
+        }
+    }
+
+    void send(ActivityStreamEvent event) throws Exception {
+        if (event.id() <= 0) {
+            emitter.send(SseEmitter.event()
+                    .name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+            sentEvents.increment();
+            return;
+        }
+        if (event.id() <= lastSentId) {
+            return;
+        }
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name(event.name())
+                .data(event.data(), MediaType.APPLICATION_JSON));
+        sentEvents.increment();
+        lastSentId = event.id();
+        deliveryDelayMs.record(Math.max(0, Duration.between(event.createdAt(), LocalDateTime.now()).toMillis()));
+    }
+
+    /**
+     * Служебное событие с полем id без данных ленты: клиент запоминает
+     * позицию потока, даже если событий ленты еще не было
+     */
+    void sendPosition(String name, long id, byte[] data) throws Exception {
+        SseEmitter.SseEventBuilder builder = SseEmitter.event().name(name);
+        if (id > 0) {
+            builder.id(String.valueOf(id));
+            lastSentId = Math.max(lastSentId, id);
+        }
+        emitter.send(builder.data(data, MediaType.APPLICATION_JSON));
+        sentEvents.increment();
+    }
+
+    long getLastSentId() {
+        return lastSentId;
+    }
+
+    /**
+     * @param completeEmitter завершить ответ (при закрытии по инициативе сервера)
+     */
+    void close(boolean completeEmitter) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        if (completeEmitter) {
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                log.trace("SSE client {} already completed: {}", clientId, e.getMessage());
+            }
+        }
+        onClose.accept(this);
+    }
+
+    String getClientId() {
+        return clientId;
+    }
+
+    long getCategoryMask() {
+        return categoryMask;
+    }
+
+    /**
+     * Отставание - только по событиям, принятым этим подписчиком: ожидающие
+     * в очереди и свернутые в еще не отправленный resync, плюс возраст
+     * самого старого события в очереди. События чужих категорий не считаются.
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connectedAt", connectedAt);
+        stats.put("queued", queue.size());
+        stats.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        stats.put("sentEvents", sentEvents.sum());
+        stats.put("skippedEvents", skippedEvents.sum());
+        stats.put("overflows", overflows.sum());
+        stats.put("lastSentId", lastSentId);
+        stats.put("eventsBehind", queue.size() + pendingSkipped.get());
+        ActivityStreamEvent oldest = queue.peek();
+        stats.put("oldestQueuedMs", oldest != null
+                ? Math.max(0, Duration.between(oldest.createdAt(), LocalDateTime.now()).toMillis())
+                : 0L);
+        stats.put("deliveryDelayMs", deliveryDelayMs.snapshot());
+        return stats;
+    }
+}
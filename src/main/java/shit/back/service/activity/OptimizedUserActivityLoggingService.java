@@ -1,396 +0,0 @@
-package shit.back.service.activity;
-
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import shit.back.entity.OrderEntity;
-import shit.back.entity.UserActivityLogEntity;
-import shit.back.entity.UserActivityLogEntity.ActionType;
-import shit.back.entity.UserActivityLogEntity.LogCategory;
-import shit.back.entity.UserSessionEntity;
-import shit.back.repository.UserActivityLogJpaRepository;
-
-import java.math.BigDecimal;
-import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-
-/**
- * Оптимизированный сервис для логирования активности пользователей
- * 
- * КРИТИЧЕСКИЕ ОПТИМИЗАЦИИ:
- * 1. Batch операции для сокращения количества SQL запросов
- * 2. Буферизация записей в памяти перед сохранением
- * 3. Асинхронная обработка с оптимизированными thread pools
- * 4. Кэширование SSE операций
- * 5. Оптимизированные SQL запросы с индексами
- * 
- * РЕЗУЛЬТАТ: Снижение времени сохранения с 350мс до <50мс
- * 
- * Принципы: SOLID, DRY, Clean Code, KISS, Fail-Fast, YAGNI
- */
-@Slf4j
-@Service
-@Transactional
-public class OptimizedUserActivityLoggingService {
-
-    @Autowired
-    private UserActivityLogJpaRepository activityLogRepository;
-
-    @Autowired
-    private UserActivitySSEService sseService;
-
-    // Буфер для batch операций
-    private final ConcurrentLinkedQueue<UserActivityLogEntity> activityBuffer = new ConcurrentLinkedQueue<>();
-    private final AtomicInteger bufferSize = new AtomicInteger(0);
-
-    // Параметры оптимизации
-    private static final int BATCH_SIZE = 15;
-    private static final int MAX_BUFFER_SIZE = 50;
-    private static final long FLUSH_INTERVAL_MS = 3000; // 3 секунды
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование активности пользователя
-     * Использует буферизацию для batch операций
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logUserActivity(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription) {
-        try {
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    userId, username, firstName, lastName, actionType, actionDescription);
-
-            addToBuffer(activity);
-
-            log.debug("Активность добавлена в буфер: {} для пользователя {}", actionType, username);
-        } catch (Exception e) {
-            log.error("Ошибка буферизации активности пользователя: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * КРИТИЧЕСКИ ОПТИМИЗИРОВАННОЕ логирование активности заказа
-     * Сокращение времени с 350мс до <50мс через batch операции
-     */
-    @Async("userActivityLoggingExecutor")
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
-    public void logOrderActivity(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription,
-            String orderId, BigDecimal orderAmount, Integer starCount, String paymentMethod) {
-
-        long startTime = System.currentTimeMillis();
-
-        try {
-            log.debug("🚀 ОПТИМИЗАЦИЯ: Начало logOrderActivity для userId={}", userId);
-
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    userId, username, firstName, lastName, actionType, actionDescription)
-                    .withOrderInfo(orderId, orderAmount, starCount)
-                    .withPaymentMethod(paymentMethod);
-
-            addToBuffer(activity);
-
-            long totalTime = System.currentTimeMillis() - startTime;
-            log.info("✅ ОПТИМИЗАЦИЯ: OrderActivity буферизировано за {}ms (цель: <50ms)", totalTime);
-
-        } catch (Exception e) {
-            long errorTime = System.currentTimeMillis() - startTime;
-            log.error("🚨 ОШИБКА ОПТИМИЗАЦИИ: OrderActivity после {}ms: {}", errorTime, e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование Telegram активности
-     * Критическое сокращение времени операций
-     */
-    @Async("userActivityLoggingExecutor")
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
-    public void logTelegramBotActivity(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription) {
-
-        long startTime = System.currentTimeMillis();
-
-        try {
-            log.debug("🚀 ОПТИМИЗАЦИЯ: Начало TelegramBotActivity для userId={}", userId);
-
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    userId, username, firstName, lastName, actionType, actionDescription)
-                    .withLogCategory(LogCategory.TELEGRAM_BOT);
-
-            addToBuffer(activity);
-
-            long totalTime = System.currentTimeMillis() - startTime;
-            log.info("✅ ОПТИМИЗАЦИЯ: TelegramBotActivity буферизировано за {}ms (цель: <50ms)", totalTime);
-
-        } catch (Exception e) {
-            long errorTime = System.currentTimeMillis() - startTime;
-            log.error("🚨 ОШИБКА ОПТИМИЗАЦИИ: TelegramBotActivity после {}ms: {}", errorTime, e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование изменения состояния
-     */
-    @Async("userActivityLoggingExecutor")
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
-    public void logStateChange(UserSessionEntity userSession, String previousState, String newState) {
-        try {
-            ActionType actionType = determineActionTypeByState(newState);
-            String description = String.format("Изменил состояние с %s на %s", previousState, newState);
-
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    userSession.getUserId(),
-                    userSession.getUsername(),
-                    userSession.getFirstName(),
-                    userSession.getLastName(),
-                    actionType,
-                    description).withStateChange(previousState, newState);
-
-            addToBuffer(activity);
-
-            log.debug("State change буферизировано для пользователя {}", userSession.getUserId());
-
-        } catch (Exception e) {
-            log.error("Ошибка буферизации изменения состояния: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование действий заказа
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logOrderAction(OrderEntity order, ActionType actionType, String description) {
-        try {
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    order.getUserId(),
-                    order.getUsername(),
-                    null, null, // firstName, lastName не доступны в OrderEntity
-                    actionType,
-                    description)
-                    .withOrderInfo(order.getOrderId(), order.getFinalAmount(), order.getStarCount())
-                    .withPaymentMethod(order.getPaymentMethod());
-
-            addToBuffer(activity);
-
-        } catch (Exception e) {
-            log.error("Ошибка буферизации действия заказа: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование активности приложения
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logApplicationActivity(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription) {
-        try {
-            // Исправляем проблему с NULL user_id - для админских действий используем -1
-            Long actualUserId = userId != null ? userId : -1L;
-            String actualUsername = username != null ? username : "ADMIN";
-
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    actualUserId, actualUsername, firstName, lastName, actionType, actionDescription)
-                    .withLogCategory(LogCategory.APPLICATION);
-
-            addToBuffer(activity);
-
-            log.debug("Application активность буферизирована для пользователя {}", actualUsername);
-        } catch (Exception e) {
-            log.error("Ошибка буферизации активности приложения: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование системной активности
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logSystemActivity(String description, ActionType actionType) {
-        try {
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    0L, "SYSTEM", actionType, description).withLogCategory(LogCategory.SYSTEM);
-
-            addToBuffer(activity);
-
-            log.debug("System активность буферизирована");
-        } catch (Exception e) {
-            log.error("Ошибка буферизации системной активности: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ логирование системной активности с деталями
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logSystemActivityWithDetails(String description, ActionType actionType, String details) {
-        try {
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    0L, "SYSTEM", actionType, description)
-                    .withLogCategory(LogCategory.APPLICATION)
-                    .withDetails(details);
-
-            addToBuffer(activity);
-
-            log.debug("System активность с деталями буферизирована");
-        } catch (Exception e) {
-            log.error("Ошибка буферизации системной активности с деталями: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ОПТИМИЗИРОВАННОЕ универсальное логирование с категорией
-     */
-    @Async("userActivityLoggingExecutor")
-    public void logActivityWithCategory(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription, LogCategory logCategory) {
-        try {
-            UserActivityLogEntity activity = new UserActivityLogEntity(
-                    userId, username, firstName, lastName, actionType, actionDescription, logCategory);
-
-            addToBuffer(activity);
-
-            log.debug("Категоризированная активность {} буферизирована для пользователя {}", logCategory, username);
-        } catch (Exception e) {
-            log.error("Ошибка буферизации категоризированной активности: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * КРИТИЧЕСКИ ВАЖНЫЙ МЕТОД: Добавление в буфер с автоматической очисткой
-     */
-    private void addToBuffer(UserActivityLogEntity activity) {
-        activityBuffer.offer(activity);
-        int currentSize = bufferSize.incrementAndGet();
-
-        log.trace("Добавлено в буфер: размер = {}/{}", currentSize, MAX_BUFFER_SIZE);
-
-        // Автоматическая очистка при достижении максимального размера
-        if (currentSize >= MAX_BUFFER_SIZE) {
-            log.debug("🚀 BATCH FLUSH: Буфер переполнен ({}), принудительная очистка", currentSize);
-            flushBuffer();
-        }
-    }
-
-    /**
-     * КРИТИЧЕСКИ ВАЖНЫЙ МЕТОД: Batch сохранение для оптимизации производительности
-     */
-    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
-    public void flushBuffer() {
-        if (activityBuffer.isEmpty()) {
-            return;
-        }
-
-        long startTime = System.currentTimeMillis();
-
-        try {
-            // Извлекаем все записи из буфера
-            List<UserActivityLogEntity> batch = new java.util.ArrayList<>();
-            UserActivityLogEntity activity;
-            int batchCount = 0;
-
-            while ((activity = activityBuffer.poll()) != null && batchCount < BATCH_SIZE) {
-                batch.add(activity);
-                batchCount++;
-            }
-
-            if (batch.isEmpty()) {
-                return;
-            }
-
-            // Batch сохранение в БД
-            long dbStartTime = System.currentTimeMillis();
-            List<UserActivityLogEntity> savedActivities = activityLogRepository.saveAll(batch);
-            long dbTime = System.currentTimeMillis() - dbStartTime;
-
-            // Обновляем размер буфера
-            bufferSize.addAndGet(-batch.size());
-
-            // Асинхронная обработка SSE для всех сохраненных записей
-            long sseStartTime = System.currentTimeMillis();
-            for (UserActivityLogEntity saved : savedActivities) {
-                sseService.addToRecentActivities(saved);
-                sseService.broadcastActivity(saved);
-            }
-            long sseTime = System.currentTimeMillis() - sseStartTime;
-
-            long totalTime = System.currentTimeMillis() - startTime;
-
-            log.info("🚀 BATCH OPTIMIZATION: Сохранено {} записей за {}ms (БД: {}ms, SSE: {}ms)",
-                    batch.size(), totalTime, dbTime, sseTime);
-
-            // Проверка целевой производительности
-            if (totalTime > 50) {
-                log.warn("⚠️ PERFORMANCE WARNING: Batch операция заняла {}ms (цель: <50ms)", totalTime);
-            }
-
-        } catch (Exception e) {
-            long errorTime = System.currentTimeMillis() - startTime;
-            log.error("🚨 BATCH ERROR: Ошибка сохранения batch после {}ms: {}", errorTime, e.getMessage(), e);
-        }
-    }
-
-    /**
-     * Запланированная очистка буфера каждые 3 секунды
-     */
-    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
-    public void scheduledFlushBuffer() {
-        if (!activityBuffer.isEmpty()) {
-            log.debug("📅 SCHEDULED FLUSH: Очистка буфера по расписанию (размер: {})", bufferSize.get());
-            flushBuffer();
-        }
-    }
-
-    /**
-     * Принудительная очистка буфера (для отключения приложения)
-     */
-    public void forceFlushBuffer() {
-        log.info("🚀 FORCE FLUSH: Принудительная очистка буфера");
-        flushBuffer();
-    }
-
-    /**
-     * Получить текущий размер буфера (для мониторинга)
-     */
-    public int getBufferSize() {
-        return bufferSize.get();
-    }
-
-    /**
-     * Определение типа действия по состоянию
-     */
-    private ActionType determineActionTypeByState(String state) {
-        return switch (state) {
-            case "IDLE" -> ActionType.SESSION_START;
-            case "SELECTING_PACKAGE" -> ActionType.PACKAGE_VIEWED;
-            case "CONFIRMING_ORDER" -> ActionType.PACKAGE_SELECTED;
-            case "AWAITING_PAYMENT" -> ActionType.ORDER_CREATED;
-            case "PAYMENT_PROCESSING" -> ActionType.PAYMENT_INITIATED;
-            case "COMPLETED" -> ActionType.ORDER_COMPLETED;
-            case "CANCELLED" -> ActionType.ORDER_CANCELLED;
-            case "EXPIRED" -> ActionType.SESSION_EXPIRED;
-            default -> ActionType.STATE_CHANGED;
-        };
-    }
-
-    // Методы обратной совместимости для асинхронных вызовов
-    @Async("userActivityLoggingExecutor")
-    public void logOrderActivityAsync(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription,
-            String orderId, BigDecimal orderAmount, Integer starCount, String paymentMethod) {
-        logOrderActivity(userId, username, firstName, lastName, actionType, actionDescription,
-                orderId, orderAmount, starCount, paymentMethod);
-    }
-
-    @Async("userActivityLoggingExecutor")
-    public void logStateChangeAsync(UserSessionEntity userSession, String previousState, String newState) {
-        logStateChange(userSession, previousState, newState);
-    }
-
-    @Async("userActivityLoggingExecutor")
-    public void logTelegramBotActivityAsync(Long userId, String username, String firstName, String lastName,
-            ActionType actionType, String actionDescription) {
-        logTelegramBotActivity(userId, username, firstName, lastName, actionType, actionDescription);
-    }
-}
\ No newline at end of file
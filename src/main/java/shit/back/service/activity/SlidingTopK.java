@@ -0,0 +1,152 @@
+package shit.back.service.activity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Top-K ключей за скользящее окно из buckets интервалов по bucketSpan
+ *
+ * Каждый интервал - свой SpaceSavingSketch; устаревший интервал очищается,
+ * когда в его слот приходит событие нового интервала (ротация). Запрос
+ * складывает счетчики интервалов окна и выбирает K наибольших через кучу.
+ * Окно - от (buckets - 1) до buckets интервалов: текущий интервал неполный.
+ *
+ * Погрешность: для N - суммы весов в окне и capacity счетчиков на интервал
+ * оценка каждого ключа отличается от настоящей суммы не больше чем на
+ * N / capacity (maxError в ответе - точная граница для конкретного ключа).
+ * Ключ с суммой больше N / capacity обязательно попадает в кандидаты.
+ */
+public class SlidingTopK<K> {
+
+    private final long bucketSeconds;
+    private final SpaceSavingSketch<K>[] sketches;
+    private final long[] bucketIds;
+    private long headBucket = Long.MIN_VALUE;
+
+    @SuppressWarnings("unchecked")
+    public SlidingTopK(Duration bucketSpan, int buckets, int capacity) {
+        if (buckets <= 0 || bucketSpan.getSeconds() <= 0) {
+            throw new IllegalArgumentException("Некорректное окно: " + buckets + " x " + bucketSpan);
+        }
+        this.bucketSeconds = bucketSpan.getSeconds();
+        this.sketches = new SpaceSavingSketch[buckets];
+        this.bucketIds = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            sketches[i] = new SpaceSavingSketch<>(capacity);
+            bucketIds[i] = Long.MIN_VALUE;
+        }
+    }
+
+    private long bucketOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), bucketSeconds);
+    }
+
+    /**
+     * Учесть вес ключа в момент timestamp
+     *
+     * @return false, если timestamp старше окна
+     */
+    public synchronized boolean offer(K key, long weight, String label, LocalDateTime timestamp) {
+        long bucket = bucketOf(timestamp);
+        if (bucket > headBucket) {
+            headBucket = bucket;
+        }
+        if (bucket <= headBucket - sketches.length) {
+            return false;
+        }
+        int slot = (int) Math.floorMod(bucket, (long) sketches.length);
+        if (bucketIds[slot] != bucket) {
+            sketches[slot].clear();
+            bucketIds[slot] = bucket;
+        }
+        sketches[slot].offer(key, weight, label);
+        return true;
+    }
+
+    /**
+     * K ключей с наибольшей оценкой за окно, заканчивающееся now
+     */
+    public synchronized List<HeavyHitter<K>> top(int k, LocalDateTime now) {
+        Map<K, Merged> merged = new HashMap<>();
+        long missingBound = 0;
+        long windowTotal = 0;
+        long nowBucket = Math.max(bucketOf(now), headBucket);
+        for (int i = 0; i < sketches.length; i++) {
+            if (bucketIds[i] <= nowBucket - sketches.length || bucketIds[i] > nowBucket) {
+                continue;
+            }
+            SpaceSavingSketch<K> sketch = sketches[i];
+            long minCount = sketch.minCount();
+            missingBound += minCount;
+            windowTotal += sketch.getTotal();
+            sketch.forEach(counter -> {
+                Merged entry = merged.computeIfAbsent(counter.getKey(), key -> new Merged());
+                entry.count += counter.getCount();
+                entry.error += counter.getError();
+                entry.presentMinBound += minCount;
+                if (counter.getLabel() != null) {
+                    entry.label = counter.getLabel();
+                }
+            });
+        }
+
+        PriorityQueue<HeavyHitter<K>> best = new PriorityQueue<>(Math.max(1, k),
+                Comparator.comparingLong(HeavyHitter::count));
+        for (Map.Entry<K, Merged> entry : merged.entrySet()) {
+            Merged value = entry.getValue();
+            // в интервалах, где ключа нет, он мог набрать не больше их минимального счетчика
+            long maxError = Math.max(value.error, missingBound - value.presentMinBound);
+            best.offer(new HeavyHitter<>(entry.getKey(), value.label, value.count, maxError, windowTotal));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+
+        List<HeavyHitter<K>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingLong(HeavyHitter<K>::count).reversed());
+        return result;
+    }
+
+    /**
+     * Сумма весов за окно, заканчивающееся now
+     */
+    public synchronized long total(LocalDateTime now) {
+        long nowBucket = Math.max(bucketOf(now), headBucket);
+        long total = 0;
+        for (int i = 0; i < sketches.length; i++) {
+            if (bucketIds[i] > nowBucket - sketches.length && bucketIds[i] <= nowBucket) {
+                total += sketches[i].getTotal();
+            }
+        }
+        return total;
+    }
+
+    public int getCapacity() {
+        return sketches[0].getCapacity();
+    }
+
+    public int getBuckets() {
+        return sketches.length;
+    }
+
+    private static final class Merged {
+        private String label;
+        private long count;
+        private long error;
+        private long presentMinBound;
+    }
+
+    /**
+     * Ключ в top-K: count - оценка за окно, настоящая сумма в пределах
+     * [count - maxError, count + maxError]; windowTotal - N для границы N / capacity
+     */
+    public record HeavyHitter<K>(K key, String label, long count, long maxError, long windowTotal) {
+    }
+}
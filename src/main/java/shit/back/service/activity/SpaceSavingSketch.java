@@ -0,0 +1,176 @@
+package shit.back.service.activity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Space-Saving (Metwally и др.): приблизительные частоты самых частых ключей
+ * в не более чем capacity счетчиках
+ *
+ * Новый ключ при заполненной таблице занимает счетчик с минимальным
+ * значением и наследует его как погрешность. Отсюда гарантии, где N - сумма
+ * весов всех offer():
+ * - count ключа завышен не больше, чем на его error, а error <= N / capacity;
+ * - ключ с настоящей суммой больше N / capacity всегда есть в таблице;
+ * - ключа нет в таблице - его настоящая сумма не больше minCount().
+ *
+ * Минимальный счетчик ищется через двоичную кучу с индексами в записях,
+ * поэтому offer() - O(log capacity). Не потокобезопасен.
+ */
+public class SpaceSavingSketch<K> {
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private final Counter<K>[] heap;
+    private int size;
+    private long total;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Учесть вес ключа; label (например, username) обновляется последним значением
+     */
+    public void offer(K key, long weight, String label) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+
+        Counter<K> counter = counters.get(key);
+        if (counter == null && size < capacity) {
+            counter = new Counter<>(key, size);
+            counter.label = label;
+            counter.count = weight;
+            heap[size] = counter;
+            counters.put(key, counter);
+            siftUp(size++);
+            return;
+        }
+        if (counter == null) {
+            // вытесняем минимальный счетчик: новый ключ наследует его значение как погрешность
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.label = null;
+            counter.error = counter.count;
+            counters.put(key, counter);
+        }
+        if (label != null) {
+            counter.label = label;
+        }
+        // счетчики только растут, поэтому куча восстанавливается просеиванием вниз
+        counter.count += weight;
+        siftDown(counter.index);
+    }
+
+    /**
+     * Значение минимального счетчика - верхняя граница для ключей вне таблицы
+     */
+    public long minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void forEach(Consumer<Counter<K>> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(heap[i]);
+        }
+    }
+
+    public void clear() {
+        counters.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+        total = 0;
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * Счетчик ключа: count - оценка сверху, count - error - гарантированный минимум
+     */
+    public static final class Counter<K> {
+        private K key;
+        private String label;
+        private long count;
+        private long error;
+        private int index;
+
+        private Counter(K key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
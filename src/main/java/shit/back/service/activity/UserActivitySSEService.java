@@ -1,37 +1,30 @@
 package shit.back.service.activity;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import shit.back.entity.UserActivityLogEntity;
 import shit.back.entity.UserActivityLogEntity.LogCategory;
 import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.ActivityStreamSubscriber.SlowConsumerPolicy;
+import shit.back.util.LatencyWindow;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-/**
- * Класс для хранения SSE соединения с информацией о выбранной категории фильтра
- */
-@lombok.Data
-@lombok.AllArgsConstructor
-class CategorySseConnection {
-    private final SseEmitter emitter;
-    private final LogCategory category; // null означает "ALL" (все категории)
-
-    public boolean shouldReceiveActivity(UserActivityLogEntity activity) {
-        // Если category == null, значит клиент хочет получать все активности
-        if (category == null) {
-            return true;
-        }
-
-        // Иначе отправляем только активности выбранной категории
-        return category.equals(activity.getLogCategory());
-    }
-}
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Сервис для работы с SSE соединениями и real-time обновлениями
@@ -42,6 +35,19 @@ class CategorySseConnection {
  * - Broadcast активности клиентам
  * - Поддержку категорийной фильтрации
  * - Кэширование последних активностей
+ *
+ * Рассылка: активность сериализуется в JSON один раз и попадает в кольцо
+ * последних событий ActivityStreamLog; каждому подписчику, чья маска
+ * категорий совпадает с битом события, в очередь кладется ссылка на те же
+ * байты. Отправляет каждый подписчик на своем виртуальном потоке, поток
+ * приема журнала клиентов не ждет. Переполнение очереди медленного клиента
+ * обрабатывается по app.activity.sse.slow-consumer-policy.
+ *
+ * Номер события - id записи в user_activity_logs, он же поле id в SSE.
+ * Переподключение с Last-Event-ID досылает пропущенное из кольца
+ * (ограничено recent-capacity и replay-max-age-ms) без запросов к БД;
+ * более старый номер дочитывается из БД, а если пропущено больше
+ * recent-capacity записей - клиент получает resync и перечитывает ленту.
  */
 @Slf4j
 @Service
@@ -50,9 +56,56 @@ public class UserActivitySSEService {
     @Autowired
     private UserActivityLogJpaRepository activityLogRepository;
 
-    // SSE connections для real-time обновлений с поддержкой категорий
-    private final Map<String, CategorySseConnection> sseConnections = new ConcurrentHashMap<>();
-    private final List<UserActivityLogEntity> recentActivities = new CopyOnWriteArrayList<>();
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.activity.sse.recent-capacity:1024}")
+    private int recentCapacity;
+
+    @Value("${app.activity.sse.replay-max-age-ms:600000}")
+    private long replayMaxAgeMs;
+
+    @Value("${app.activity.sse.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${app.activity.sse.slow-consumer-policy:COALESCE}")
+    private SlowConsumerPolicy slowConsumerPolicy;
+
+    @Value("${app.activity.sse.timeout-ms:300000}")
+    private long timeoutMs;
+
+    // SSE подписчики с маской категорий и собственной очередью
+    private final Map<String, ActivityStreamSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private ActivityStreamLog recentEvents;
+
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder droppedSubscribers = new LongAdder();
+    private final LongAdder replayedFromLog = new LongAdder();
+    private final LongAdder replayedFromDatabase = new LongAdder();
+    private final LongAdder replayedEvents = new LongAdder();
+    private final LongAdder resumeResyncs = new LongAdder();
+    private final LatencyWindow fanoutMicros = new LatencyWindow(1024);
+
+    @PostConstruct
+    public void init() {
+        // номера событий - id записей журнала: все, что записано до запуска, журнал повтора не хранит
+        long maxPersistedId = 0;
+        try {
+            Long maxId = activityLogRepository.findMaxId();
+            maxPersistedId = maxId != null ? maxId : 0;
+        } catch (Exception e) {
+            log.warn("Failed to read last activity id for SSE replay log: {}", e.getMessage());
+        }
+        recentEvents = new ActivityStreamLog(recentCapacity, Duration.ofMillis(replayMaxAgeMs), maxPersistedId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(subscriber -> subscriber.close(true));
+        senders.shutdownNow();
+    }
 
     /**
      * Создать SSE соединение для live обновлений
@@ -65,133 +118,192 @@ public class UserActivitySSEService {
      * Создать SSE соединение для live обновлений с фильтрацией по категории
      */
     public SseEmitter createSseConnection(String clientId, LogCategory category) {
-        long connectionStart = System.currentTimeMillis();
-        SseEmitter emitter = new SseEmitter(300000L); // 5 минут timeout
-
-        CategorySseConnection connection = new CategorySseConnection(emitter, category);
-        sseConnections.put(clientId, connection);
+        return createSseConnection(clientId, category, null);
+    }
 
-        log.info("SSE connection created for client: {} with category: {}. Total connections: {}",
-                clientId, category != null ? category : "ALL", sseConnections.size());
+    /**
+     * Создать SSE соединение, продолжив поток после lastEventId
+     *
+     * Без lastEventId клиент получает ключевые активности за последний час
+     * из БД и позицию потока в событии connected. С lastEventId - только
+     * пропущенные события: из журнала повтора, а из БД лишь когда номер
+     * старше окна журнала. Позиция потока читается до регистрации
+     * подписчика: все, что опубликовано после нее, есть либо в его очереди,
+     * либо в журнале повтора (досылается сразу), дубль отсекается по номеру.
+     *
+     * @param lastEventId значение Last-Event-ID (null - новое подключение)
+     */
+    public SseEmitter createSseConnection(String clientId, LogCategory category, Long lastEventId) {
+        long connectionStart = System.currentTimeMillis();
+        SseEmitter emitter = new SseEmitter(timeoutMs);
 
-        // ДИАГНОСТИКА: Лог создания соединения
-        log.debug("LIVE_FEED_DEBUG: SSE connection created - clientId={}, category={}, timestamp={}",
-                clientId, category != null ? category : "ALL", System.currentTimeMillis());
+        ActivityStreamSubscriber subscriber = new ActivityStreamSubscriber(clientId, emitter,
+                ActivityStreamEvent.subscriptionMask(category), queueCapacity, slowConsumerPolicy,
+                this::removeSubscriber);
 
         emitter.onCompletion(() -> {
-            sseConnections.remove(clientId);
-            log.debug("SSE connection completed for client: {}. Remaining: {}", clientId, sseConnections.size());
+            subscriber.close(false);
+            log.debug("SSE connection completed for client: {}. Remaining: {}", clientId, subscribers.size());
         });
 
         emitter.onTimeout(() -> {
-            sseConnections.remove(clientId);
-            log.debug("SSE connection timeout for client: {}. Remaining: {}", clientId, sseConnections.size());
+            subscriber.close(false);
+            log.debug("SSE connection timeout for client: {}. Remaining: {}", clientId, subscribers.size());
         });
 
         emitter.onError(e -> {
             log.warn("SSE error for client {}: {}. Removing connection.", clientId, e.getMessage());
-            sseConnections.remove(clientId);
+            subscriber.close(false);
         });
 
-        // Отправить начальные данные
+        // Позиция до подписки: события после нее попадут в очередь или будут дочитаны из журнала.
+        // Поток отправки еще не запущен, события копятся в очереди
+        long position = recentEvents.getLastId();
+        subscribers.put(clientId, subscriber);
+
         try {
-            emitter.send(SseEmitter.event()
-                    .name("connected")
-                    .data("{ \"message\": \"Connected to activity stream\", \"clientId\": \"" + clientId
-                            + "\", \"serverTime\": \"" + System.currentTimeMillis() + "\" }"));
-
-            // Отправить последние активности
-            List<UserActivityLogEntity> recent = getRecentActivities(1);
-            log.debug("Sending {} recent activities to new SSE client {}", recent.size(), clientId);
-
-            for (UserActivityLogEntity activity : recent) {
-                emitter.send(SseEmitter.event()
-                        .name("activity")
-                        .data(convertActivityToJson(activity)));
+            byte[] connected = ("{ \"message\": \"Connected to activity stream\", \"clientId\": \"" + clientId
+                    + "\", \"serverTime\": \"" + System.currentTimeMillis() + "\" }")
+                    .getBytes(StandardCharsets.UTF_8);
+
+            if (lastEventId != null) {
+                subscriber.sendPosition("connected", 0, connected);
+                resume(subscriber, category, lastEventId, position);
+            } else {
+                subscriber.sendPosition("connected", position, connected);
+
+                // Отправить последние активности без номеров: позиция потока уже передана
+                List<UserActivityLogEntity> recent = getRecentActivities(1);
+                log.debug("Sending {} recent activities to new SSE client {}", recent.size(), clientId);
+
+                for (UserActivityLogEntity activity : recent) {
+                    subscriber.send(new ActivityStreamEvent(0, "activity",
+                            ActivityStreamEvent.categoryBit(activity.getLogCategory()), toJsonBytes(activity),
+                            LocalDateTime.now()));
+                }
+                // опубликованное между чтением позиции и подпиской в очередь не попало
+                replayFromLog(subscriber, position);
             }
-
-            long setupTime = System.currentTimeMillis() - connectionStart;
-            log.debug("SSE connection setup completed in {}ms for client: {}", setupTime, clientId);
-
         } catch (Exception e) {
             log.error("Error sending initial SSE data to client {}: {}", clientId, e.getMessage());
-            sseConnections.remove(clientId);
+            subscriber.close(true);
+            return emitter;
         }
 
+        senders.execute(subscriber);
+
+        log.info("SSE connection created for client: {} with category: {}. Total connections: {}",
+                clientId, category != null ? category : "ALL", subscribers.size());
+        log.debug("SSE connection setup completed in {}ms for client: {}",
+                System.currentTimeMillis() - connectionStart, clientId);
+
         return emitter;
     }
 
     /**
-     * Отправить активность всем подключенным клиентам с фильтрацией по категориям
+     * Дослать события после lastEventId: из журнала повтора, если он их еще
+     * хранит, иначе из БД по возрастанию id. Если в БД пропущено больше
+     * recent-capacity записей, досылать их по одной нет смысла: клиент
+     * получает resync с позицией потока и перечитывает ленту.
      */
-    public void broadcastActivity(UserActivityLogEntity activity) {
-        long broadcastStart = System.currentTimeMillis();
-
-        if (sseConnections.isEmpty()) {
-            log.debug("No SSE connections to broadcast to");
+    private void resume(ActivityStreamSubscriber subscriber, LogCategory category, long lastEventId,
+            long position) throws Exception {
+        OptionalInt fromLog = replayFromLog(subscriber, lastEventId);
+        if (fromLog.isPresent()) {
+            replayedFromLog.increment();
+            replayedEvents.add(fromLog.getAsInt());
+            log.debug("SSE client {} resumed after {} from replay log: {} events",
+                    subscriber.getClientId(), lastEventId, fromLog.getAsInt());
             return;
         }
 
-        // ДИАГНОСТИКА: Детальное логирование broadcast
-        log.debug("LIVE_FEED_DEBUG: Broadcasting activity - type={}, category={}, connections={}, description={}",
-                activity.getActionType(), activity.getLogCategory(), sseConnections.size(),
-                activity.getActionDescription());
-
-        log.debug("Broadcasting activity to {} SSE connections: {} - {}",
-                sseConnections.size(), activity.getActionType(), activity.getActionDescription());
-
-        String activityJson = convertActivityToJson(activity);
-        int successCount = 0;
-        int failureCount = 0;
-        int filteredCount = 0;
-
-        Iterator<Map.Entry<String, CategorySseConnection>> iterator = sseConnections.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, CategorySseConnection> entry = iterator.next();
-            CategorySseConnection connection = entry.getValue();
-            String clientId = entry.getKey();
-
-            // ФИЛЬТРАЦИЯ: Проверяем должен ли клиент получить эту активность
-            if (!connection.shouldReceiveActivity(activity)) {
-                filteredCount++;
-                log.trace(
-                        "LIVE_FEED_DEBUG: Activity filtered for client {} - category filter: {}, activity category: {}",
-                        clientId, connection.getCategory(), activity.getLogCategory());
-                continue;
-            }
+        // Номер старше окна повтора: пропущенное есть только в БД (события пишутся в БД до публикации)
+        int limit = recentEvents.getCapacity();
+        List<UserActivityLogEntity> missed = activityLogRepository.findActivitiesAfterId(
+                lastEventId, category, PageRequest.of(0, limit + 1));
+        if (missed.size() > limit) {
+            resumeResyncs.increment();
+            // skipped - нижняя граница: дальше limit + 1 записей БД не читается
+            subscriber.sendPosition("resync", position,
+                    ("{\"skipped\":" + missed.size() + "}").getBytes(StandardCharsets.UTF_8));
+            replayFromLog(subscriber, position);
+            log.info("SSE client {} missed more than {} events after {}, sent resync at {}",
+                    subscriber.getClientId(), limit, lastEventId, position);
+            return;
+        }
+        for (UserActivityLogEntity activity : missed) {
+            subscriber.send(new ActivityStreamEvent(activity.getId(), "activity",
+                    ActivityStreamEvent.categoryBit(activity.getLogCategory()), toJsonBytes(activity),
+                    activity.getTimestamp() != null ? activity.getTimestamp() : LocalDateTime.now()));
+        }
+        replayedFromDatabase.increment();
+        replayedEvents.add(missed.size());
+        log.info("SSE client {} resumed after {} from database: {} events (replay log covers ids after {})",
+                subscriber.getClientId(), lastEventId, missed.size(), recentEvents.getCoveredAfterId());
+    }
 
-            try {
-                connection.getEmitter().send(SseEmitter.event()
-                        .name("activity")
-                        .data(activityJson));
-                successCount++;
-
-                // ДИАГНОСТИКА: Лог успешной отправки
-                log.trace("LIVE_FEED_DEBUG: Activity sent to client {} - type={}, category={}, client filter: {}",
-                        clientId, activity.getActionType(), activity.getLogCategory(),
-                        connection.getCategory() != null ? connection.getCategory() : "ALL");
-            } catch (Exception e) {
-                log.warn("Failed to send SSE to client {}: {}", clientId, e.getMessage());
-                iterator.remove();
-                failureCount++;
+    /**
+     * События журнала повтора после afterId, подходящие подписчику
+     *
+     * @return число отправленных или пусто, если журнал их уже не хранит
+     */
+    private OptionalInt replayFromLog(ActivityStreamSubscriber subscriber, long afterId) throws Exception {
+        Optional<List<ActivityStreamEvent>> replay = recentEvents.since(afterId);
+        if (replay.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        int sent = 0;
+        for (ActivityStreamEvent event : replay.get()) {
+            if (subscriber.accepts(event)) {
+                subscriber.send(event);
+                sent++;
             }
         }
+        return OptionalInt.of(sent);
+    }
 
-        long broadcastTime = System.currentTimeMillis() - broadcastStart;
-        log.debug("Broadcast completed in {}ms: {} successful, {} failed, {} filtered by category",
-                broadcastTime, successCount, failureCount, filteredCount);
+    private void removeSubscriber(ActivityStreamSubscriber subscriber) {
+        subscribers.remove(subscriber.getClientId(), subscriber);
     }
 
     /**
-     * Добавить активность в список последних
+     * Отправить активность всем подключенным клиентам с фильтрацией по категориям
+     *
+     * Сериализация - один раз, дальше только постановка ссылки в очереди
+     * подписчиков; событие попадает в кольцо последних и без подписчиков
      */
-    public void addToRecentActivities(UserActivityLogEntity activity) {
-        recentActivities.add(0, activity);
+    public void broadcastActivity(UserActivityLogEntity activity) {
+        long started = System.nanoTime();
+        ActivityStreamEvent event;
+        try {
+            event = recentEvents.append(activity.getId() != null ? activity.getId() : 0, "activity",
+                    ActivityStreamEvent.categoryBit(activity.getLogCategory()), toJsonBytes(activity));
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize activity {} for SSE: {}", activity.getId(), e.getMessage());
+            return;
+        }
+        publishedEvents.increment();
 
-        // Оставляем только последние 100 активностей в памяти
-        if (recentActivities.size() > 100) {
-            recentActivities.subList(100, recentActivities.size()).clear();
+        int delivered = 0;
+        for (ActivityStreamSubscriber subscriber : subscribers.values()) {
+            if (!subscriber.accepts(event)) {
+                continue;
+            }
+            if (subscriber.offer(event)) {
+                delivered++;
+            } else {
+                droppedSubscribers.increment();
+            }
         }
+        deliveries.add(delivered);
+        fanoutMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+    }
+
+    /**
+     * Последние опубликованные события ленты, от старых к новым
+     */
+    public List<ActivityStreamEvent> getRecentEvents(int limit) {
+        return recentEvents.recent(limit);
     }
 
     /**
@@ -209,68 +321,89 @@ public class UserActivitySSEService {
         Map<String, Object> info = new HashMap<>();
 
         Map<String, String> connections = new HashMap<>();
-        for (Map.Entry<String, CategorySseConnection> entry : sseConnections.entrySet()) {
-            CategorySseConnection connection = entry.getValue();
-            connections.put(entry.getKey(),
-                    connection.getCategory() != null ? connection.getCategory().toString() : "ALL");
+        for (ActivityStreamSubscriber subscriber : subscribers.values()) {
+            connections.put(subscriber.getClientId(), describeMask(subscriber.getCategoryMask()));
         }
 
-        info.put("totalConnections", sseConnections.size());
+        info.put("totalConnections", subscribers.size());
         info.put("connections", connections);
         info.put("timestamp", LocalDateTime.now());
 
-        log.debug("SSE connections info requested: {} active connections", sseConnections.size());
+        log.debug("SSE connections info requested: {} active connections", subscribers.size());
 
         return info;
     }
 
     /**
-     * Конвертация активности в JSON для отправки через SSE
+     * Статистика рассылки и отставание каждого подписчика
      */
-    private String convertActivityToJson(UserActivityLogEntity activity) {
-        return String.format("""
-                {
-                    "id": %d,
-                    "userId": %d,
-                    "username": "%s",
-                    "displayName": "%s",
-                    "actionType": "%s",
-                    "actionIcon": "%s",
-                    "actionDescription": "%s",
-                    "logCategory": "%s",
-                    "logCategoryDisplay": "%s",
-                    "actionDisplayNameWithCategory": "%s",
-                    "timestamp": "%s",
-                    "formattedTimestamp": "%s",
-                    "orderId": "%s",
-                    "orderInfo": "%s",
-                    "stateChange": "%s",
-                    "priorityClass": "%s",
-                    "isKeyAction": %b,
-                    "isTelegramBotActivity": %b,
-                    "isApplicationActivity": %b,
-                    "isSystemActivity": %b
-                }
-                """,
-                activity.getId(),
-                activity.getUserId(),
-                activity.getUsername() != null ? activity.getUsername() : "",
-                activity.getDisplayName(),
-                activity.getActionType(),
-                activity.getActionIcon(),
-                activity.getActionDescription() != null ? activity.getActionDescription() : "",
-                activity.getLogCategory(),
-                activity.getLogCategoryDisplay(),
-                activity.getActionDisplayNameWithCategory(),
-                activity.getTimestamp(),
-                activity.getFormattedTimestamp(),
-                activity.getOrderId() != null ? activity.getOrderId() : "",
-                activity.getOrderDisplayInfo(),
-                activity.getStateChangeDisplay(),
-                activity.getPriorityClass(),
-                activity.getIsKeyAction(),
-                activity.isTelegramBotActivity(),
-                activity.isApplicationActivity(),
-                activity.isSystemActivity());
+    public Map<String, Object> getStatistics() {
+        long latestId = recentEvents.getLastId();
+        Map<String, Object> perSubscriber = new HashMap<>();
+        for (ActivityStreamSubscriber subscriber : subscribers.values()) {
+            Map<String, Object> stats = subscriber.getStatistics();
+            stats.put("category", describeMask(subscriber.getCategoryMask()));
+            perSubscriber.put(subscriber.getClientId(), stats);
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connections", subscribers.size());
+        stats.put("slowConsumerPolicy", slowConsumerPolicy.name());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("recentCapacity", recentEvents.getCapacity());
+        stats.put("replayMaxAgeMs", replayMaxAgeMs);
+        stats.put("replayCoveredAfterId", recentEvents.getCoveredAfterId());
+        stats.put("resumedFromReplayLog", replayedFromLog.sum());
+        stats.put("resumedFromDatabase", replayedFromDatabase.sum());
+        stats.put("replayedEvents", replayedEvents.sum());
+        stats.put("resumeResyncs", resumeResyncs.sum());
+        stats.put("latestEventId", latestId);
+        stats.put("publishedEvents", publishedEvents.sum());
+        stats.put("deliveries", deliveries.sum());
+        stats.put("droppedSubscribers", droppedSubscribers.sum());
+        stats.put("fanoutMicros", fanoutMicros.snapshot());
+        stats.put("subscribers", perSubscriber);
+        return stats;
+    }
+
+    private static String describeMask(long mask) {
+        if (mask == ActivityStreamEvent.ALL_CATEGORIES) {
+            return "ALL";
+        }
+        for (LogCategory category : LogCategory.values()) {
+            if (mask == ActivityStreamEvent.categoryBit(category)) {
+                return category.toString();
+            }
+        }
+        return Long.toHexString(mask);
     }
-}
\ No newline at end of file
+
+    /**
+     * Конвертация активности в JSON для отправки через SSE: одна строка
+     * UTF-8 с экранированием значений (описания могут содержать кавычки)
+     */
+    private byte[] toJsonBytes(UserActivityLogEntity activity) throws JsonProcessingException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", activity.getId());
+        json.put("userId", activity.getUserId());
+        json.put("username", activity.getUsername() != null ? activity.getUsername() : "");
+        json.put("displayName", activity.getDisplayName());
+        json.put("actionType", String.valueOf(activity.getActionType()));
+        json.put("actionIcon", activity.getActionIcon());
+        json.put("actionDescription", activity.getActionDescription() != null ? activity.getActionDescription() : "");
+        json.put("logCategory", String.valueOf(activity.getLogCategory()));
+        json.put("logCategoryDisplay", activity.getLogCategoryDisplay());
+        json.put("actionDisplayNameWithCategory", activity.getActionDisplayNameWithCategory());
+        json.put("timestamp", String.valueOf(activity.getTimestamp()));
+        json.put("formattedTimestamp", activity.getFormattedTimestamp());
+        json.put("orderId", activity.getOrderId() != null ? activity.getOrderId() : "");
+        json.put("orderInfo", activity.getOrderDisplayInfo());
+        json.put("stateChange", activity.getStateChangeDisplay());
+        json.put("priorityClass", activity.getPriorityClass());
+        json.put("isKeyAction", Boolean.TRUE.equals(activity.getIsKeyAction()));
+        json.put("isTelegramBotActivity", activity.isTelegramBotActivity());
+        json.put("isApplicationActivity", activity.isApplicationActivity());
+        json.put("isSystemActivity", activity.isSystemActivity());
+        return objectMapper.writeValueAsBytes(json);
+    }
+}
@@ -2,19 +2,27 @@ package shit.back.service.activity;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
 import shit.back.entity.UserActivityLogEntity;
 import shit.back.entity.UserActivityLogEntity.ActionType;
 import shit.back.entity.UserActivityLogEntity.LogCategory;
 import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.ActivityHeavyHittersService.Metric;
+import shit.back.service.activity.ActivityHeavyHittersService.Window;
+import shit.back.service.activity.ActivityRollingCounters.ActivityCounts;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
 /**
@@ -35,46 +43,32 @@ public class UserActivityStatisticsService {
     @Autowired
     private UserActivityLogJpaRepository activityLogRepository;
 
-    // ==================== МЕТОДЫ ПОЛУЧЕНИЯ ДАННЫХ ====================
+    @Autowired
+    private ActivityRollupService activityRollupService;
 
-    /**
-     * Получить активности с фильтрами - временно используем простой метод
-     */
-    public Page<UserActivityLogEntity> getActivitiesWithFilters(
-            boolean showAll,
-            LocalDateTime fromTime,
-            LocalDateTime toTime,
-            List<ActionType> actionTypes,
-            String searchTerm,
-            Pageable pageable) {
-
-        // ВРЕМЕННОЕ РЕШЕНИЕ: используем только ключевые активности если showAll=false
-        if (!showAll) {
-            return activityLogRepository.findKeyActionsOrderByTimestampDesc(pageable);
-        } else {
-            return activityLogRepository.findAllByOrderByTimestampDesc(pageable);
-        }
-    }
+    @Autowired
+    private ActivityHeavyHittersService heavyHittersService;
 
-    /**
-     * Получить только ключевые активности
-     */
-    public Page<UserActivityLogEntity> getKeyActivities(Pageable pageable) {
-        return activityLogRepository.findKeyActionsOrderByTimestampDesc(pageable);
-    }
+    @Value("${app.activity.heavy-hitters.top-size:20}")
+    private int topSize;
 
-    /**
-     * Получить все активности
-     */
-    public Page<UserActivityLogEntity> getAllActivities(Pageable pageable) {
-        return activityLogRepository.findAllByOrderByTimestampDesc(pageable);
-    }
+    // ==================== МЕТОДЫ ПОЛУЧЕНИЯ ДАННЫХ ====================
 
     /**
-     * Получить активности пользователя
+     * Страница активностей по фильтрам с keyset пагинацией по (timestamp, id)
+     *
+     * Страница ищется по курсору от предыдущей, поэтому глубокая страница
+     * стоит столько же, сколько первая. Общее количество - оценка
+     * планировщика и только по запросу: точный COUNT(*) по журналу
+     * дороже самой страницы.
      */
-    public Page<UserActivityLogEntity> getUserActivities(Long userId, Pageable pageable) {
-        return activityLogRepository.findByUserIdOrderByTimestampDesc(userId, pageable);
+    public ActivityLogSearchResult searchActivities(ActivityLogSearchCriteria criteria) {
+        ActivityLogSearchResult result = activityLogRepository.searchActivities(criteria);
+        if (criteria.isIncludeApproximateTotal()) {
+            OptionalLong estimate = activityLogRepository.estimateActivityCount(criteria);
+            result.setApproximateTotal(estimate.isPresent() ? estimate.getAsLong() : null);
+        }
+        return result;
     }
 
     /**
@@ -92,81 +86,61 @@ public class UserActivityStatisticsService {
         return activityLogRepository.findRecentKeyActivities(since);
     }
 
-    // ==================== МЕТОДЫ ПОЛУЧЕНИЯ ДАННЫХ ПО КАТЕГОРИЯМ
-    // ====================
-
-    /**
-     * Получить активности по категории
-     */
-    public Page<UserActivityLogEntity> getActivitiesByCategory(LogCategory logCategory, Pageable pageable) {
-        return activityLogRepository.findByLogCategoryOrderByTimestampDesc(logCategory, pageable);
-    }
-
-    /**
-     * Получить активности телеграм бота
-     */
-    public Page<UserActivityLogEntity> getTelegramBotActivities(int hours, Pageable pageable) {
-        LocalDateTime fromTime = LocalDateTime.now().minusHours(hours);
-        return activityLogRepository.findTelegramBotActivities(fromTime, pageable);
-    }
-
-    /**
-     * Получить активности приложения
-     */
-    public Page<UserActivityLogEntity> getApplicationActivities(int hours, Pageable pageable) {
-        LocalDateTime fromTime = LocalDateTime.now().minusHours(hours);
-        return activityLogRepository.findApplicationActivities(fromTime, pageable);
-    }
-
-    /**
-     * Получить активности с расширенными фильтрами - временно упрощено
-     */
-    public Page<UserActivityLogEntity> getActivitiesWithCategoryFilters(
-            boolean showAll,
-            LocalDateTime fromTime,
-            LocalDateTime toTime,
-            List<ActionType> actionTypes,
-            List<LogCategory> logCategories,
-            String searchTerm,
-            Pageable pageable) {
-
-        // ВРЕМЕННОЕ РЕШЕНИЕ: используем только ключевые активности если showAll=false
-        if (!showAll) {
-            return activityLogRepository.findKeyActionsOrderByTimestampDesc(pageable);
-        } else {
-            return activityLogRepository.findAllByOrderByTimestampDesc(pageable);
-        }
-    }
-
     // ==================== СТАТИСТИКА И АНАЛИТИКА ====================
 
     /**
      * Получить статистику активности
+     *
+     * Итоги и типы ключевых действий берутся из ActivityRollupService, если
+     * окно счетчиков покрывает период; активные пользователи за 1 ч, 24 ч и
+     * 7 дней - из ActivityHeavyHittersService (top-size лучших), за другие
+     * периоды и способы оплаты - из БД.
      */
     public ActivityStatistics getActivityStatistics(int hours) {
         LocalDateTime fromTime = LocalDateTime.now().minusHours(hours);
 
-        long totalActivities = activityLogRepository.countByTimestampAfter(fromTime);
-        long keyActivities = activityLogRepository.countByIsKeyActionTrueAndTimestampAfter(fromTime);
+        long totalActivities;
+        long keyActivities;
+        List<ActionTypeStat> actionTypeStats;
+        Optional<ActivityCounts> counts = activityRollupService.getCounts(hours);
+        if (counts.isPresent()) {
+            totalActivities = counts.get().total();
+            keyActivities = counts.get().keyTotal();
+            actionTypeStats = keyActionTypeStats(counts.get());
+        } else {
+            totalActivities = activityLogRepository.countByTimestampAfter(fromTime);
+            keyActivities = activityLogRepository.countByIsKeyActionTrueAndTimestampAfter(fromTime);
+            actionTypeStats = convertActionTypeStats(activityLogRepository.getKeyActionTypeStatistics(fromTime));
+        }
 
-        List<Object[]> actionStats = activityLogRepository.getKeyActionTypeStatistics(fromTime);
-        List<Object[]> userStats = activityLogRepository.getMostActiveUsers(fromTime);
+        Optional<Window> window = heavyHittersService.windowFor(hours);
+        List<UserActivityStat> mostActiveUsers = window.isPresent()
+                ? heavyHittersService.top(Metric.ACTIVE_USERS, window.get(), topSize).stream()
+                        .map(hitter -> new UserActivityStat(hitter.key(), hitter.label(), hitter.count()))
+                        .collect(Collectors.toList())
+                : convertUserStats(activityLogRepository.getMostActiveUsers(fromTime));
         List<Object[]> paymentStats = activityLogRepository.getPaymentMethodStatistics(fromTime);
 
         return ActivityStatistics.builder()
                 .totalActivities(totalActivities)
                 .keyActivities(keyActivities)
-                .actionTypeStats(convertActionTypeStats(actionStats))
-                .mostActiveUsers(convertUserStats(userStats))
+                .actionTypeStats(actionTypeStats)
+                .mostActiveUsers(mostActiveUsers)
                 .paymentMethodStats(convertPaymentStats(paymentStats))
                 .periodHours(hours)
                 .build();
     }
 
     /**
-     * Получить статистику по категориям логов
+     * Получить статистику по категориям логов (из счетчиков в памяти, если
+     * они покрывают период)
      */
     public CategoryStatistics getCategoryStatistics(int hours) {
+        Optional<ActivityCounts> counts = activityRollupService.getCounts(hours);
+        if (counts.isPresent()) {
+            return categoryStatistics(counts.get(), hours);
+        }
+
         LocalDateTime fromTime = LocalDateTime.now().minusHours(hours);
 
         long telegramBotActivities = activityLogRepository.countByLogCategoryAndTimestampAfter(LogCategory.TELEGRAM_BOT,
@@ -266,6 +240,56 @@ public class UserActivityStatisticsService {
                 .build();
     }
 
+    // ==================== СТАТИСТИКА ИЗ СЧЕТЧИКОВ В ПАМЯТИ ====================
+
+    /**
+     * То же, что getKeyActionTypeStatistics: ключевые действия по убыванию
+     */
+    private List<ActionTypeStat> keyActionTypeStats(ActivityCounts counts) {
+        List<ActionTypeStat> stats = new ArrayList<>();
+        for (ActionType actionType : ActionType.values()) {
+            long count = counts.keyAction(actionType);
+            if (count > 0) {
+                stats.add(new ActionTypeStat(actionType, count));
+            }
+        }
+        stats.sort(Comparator.comparing(ActionTypeStat::getCount).reversed());
+        return stats;
+    }
+
+    private CategoryStatistics categoryStatistics(ActivityCounts counts, int hours) {
+        List<CategoryStat> categoryStats = new ArrayList<>();
+        List<CategoryActionStat> categoryActionStats = new ArrayList<>();
+        for (LogCategory category : LogCategory.values()) {
+            long count = counts.category(category);
+            if (count > 0) {
+                categoryStats.add(new CategoryStat(category, count));
+            }
+            for (ActionType actionType : ActionType.values()) {
+                long actionCount = counts.categoryAction(category, actionType);
+                if (actionCount > 0) {
+                    categoryActionStats.add(new CategoryActionStat(category, actionType, actionCount));
+                }
+            }
+        }
+        categoryStats.sort(Comparator.comparing(CategoryStat::getCount).reversed());
+        // как ORDER BY logCategory, COUNT DESC в getCategoryActionTypeStatistics (категория хранится строкой)
+        categoryActionStats.sort(Comparator.comparing((CategoryActionStat stat) -> stat.getLogCategory().name())
+                .thenComparing(CategoryActionStat::getCount, Comparator.reverseOrder()));
+
+        return CategoryStatistics.builder()
+                .telegramBotActivities(counts.category(LogCategory.TELEGRAM_BOT))
+                .applicationActivities(counts.category(LogCategory.APPLICATION))
+                .systemActivities(counts.category(LogCategory.SYSTEM))
+                .telegramBotKeyActivities(counts.categoryKey(LogCategory.TELEGRAM_BOT))
+                .applicationKeyActivities(counts.categoryKey(LogCategory.APPLICATION))
+                .systemKeyActivities(counts.categoryKey(LogCategory.SYSTEM))
+                .categoryStats(categoryStats)
+                .categoryActionStats(categoryActionStats)
+                .periodHours(hours)
+                .build();
+    }
+
     // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ КОНВЕРТАЦИИ ====================
 
     private List<ActionTypeStat> convertActionTypeStats(List<Object[]> stats) {
@@ -4,7 +4,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import shit.back.entity.OrderEntity;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -242,6 +247,44 @@ public class AdminValidationService {
         return result;
     }
 
+    /**
+     * Преобразование строки фильтра статуса заказа
+     * 
+     * @param status название статуса (без учета регистра)
+     * @return статус или null, если фильтр пустой или некорректный
+     */
+    public OrderEntity.OrderStatus parseOrderStatus(String status) {
+        if (status == null || status.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return OrderEntity.OrderStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown order status filter: {}", status);
+            return null;
+        }
+    }
+
+    /**
+     * Преобразование даты фильтра (YYYY-MM-DD) в границу диапазона
+     * 
+     * @param dateStr  строка с датой
+     * @param endOfDay true - конец дня (для верхней границы), false - начало дня
+     * @return граница диапазона или null, если дата пустая или некорректная
+     */
+    public LocalDateTime parseFilterDate(String dateStr, boolean endOfDay) {
+        if (dateStr == null || dateStr.trim().isEmpty() || !isValidDateFormat(dateStr.trim())) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(dateStr.trim());
+            return endOfDay ? date.atTime(LocalTime.MAX) : date.atStartOfDay();
+        } catch (DateTimeParseException e) {
+            log.warn("Invalid filter date: {}", dateStr);
+            return null;
+        }
+    }
+
     /**
      * Простая валидация формата даты
      * 
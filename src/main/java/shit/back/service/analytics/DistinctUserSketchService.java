@@ -0,0 +1,461 @@
+package shit.back.service.analytics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.DailyUserSketchEntity;
+import shit.back.entity.DailyUserSketchEntity.Kind;
+import shit.back.repository.DailyUserSketchJpaRepository;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.repository.UserSessionJpaRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Число различных пользователей за любые дни (DAU/WAU/MAU, новые,
+ * удержание) по дневным HyperLogLog-скетчам
+ *
+ * Вместо COUNT(DISTINCT user_id) по журналу активности и user_sessions
+ * каждый день ведется два скетча: ACTIVE - пользователи с событиями журнала
+ * или активностью сессии, NEW - созданные сессии. Запрос за период
+ * объединяет скетчи дней (максимум регистров) - время и память не зависят
+ * от числа пользователей, ошибка около 1.04 / sqrt(2^precision).
+ *
+ * Последние memory-days дней хранятся в памяти и пополняются на лету.
+ * Закрытые дни раз в persist-interval-ms сжато сохраняются в
+ * daily_user_sketches; сохранение объединяет регистры со строкой в БД, так
+ * что строка дня - объединение всех инстансов, и это объединение
+ * возвращается в память. Текущий день сохраняется при остановке, а после
+ * старта пересчитывается из user_activity_logs / user_sessions вместе с
+ * днями окна, которых нет в БД. Пока скетчи не загружены, вызывающие
+ * сервисы считают по SQL.
+ */
+@Slf4j
+@Service
+public class DistinctUserSketchService {
+
+    @Autowired
+    private DailyUserSketchJpaRepository sketchRepository;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private UserSessionJpaRepository sessionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.analytics.distinct-users.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.analytics.distinct-users.precision:14}")
+    private int precision;
+
+    @Value("${app.analytics.distinct-users.memory-days:62}")
+    private int memoryDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Kind, ConcurrentHashMap<LocalDate, HyperLogLog>> sketches = new EnumMap<>(Kind.class);
+    private final Map<Kind, Set<LocalDate>> dirtyDays = new EnumMap<>(Kind.class);
+    private volatile boolean ready;
+
+    private final LongAdder recordedIds = new LongAdder();
+    private final LongAdder outOfWindowIds = new LongAdder();
+    private final LongAdder persistedDays = new LongAdder();
+    private final LongAdder sketchReads = new LongAdder();
+    private final AtomicReference<Map<String, Object>> lastLoad = new AtomicReference<>(Map.of());
+    private final AtomicReference<Map<String, Object>> lastPersist = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        new HyperLogLog(precision); // проверка настройки precision при старте
+        for (Kind kind : Kind.values()) {
+            sketches.put(kind, new ConcurrentHashMap<>());
+            dirtyDays.put(kind, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Пользователь активен в момент at (событие журнала, сообщение боту)
+     */
+    public void recordActive(Long userId, LocalDateTime at) {
+        record(Kind.ACTIVE, userId, at);
+    }
+
+    /**
+     * Создана сессия нового пользователя
+     */
+    public void recordNewUser(Long userId, LocalDateTime at) {
+        record(Kind.NEW, userId, at);
+        record(Kind.ACTIVE, userId, at);
+    }
+
+    private void record(Kind kind, Long userId, LocalDateTime at) {
+        if (!enabled || userId == null || at == null) {
+            return;
+        }
+        LocalDate day = at.toLocalDate();
+        if (day.isBefore(firstMemoryDay(LocalDate.now()))) {
+            outOfWindowIds.increment();
+            return;
+        }
+        if (sketch(kind, day).add(userId)) {
+            dirtyDays.get(kind).add(day);
+        }
+        recordedIds.increment();
+    }
+
+    private HyperLogLog sketch(Kind kind, LocalDate day) {
+        return sketches.get(kind).computeIfAbsent(day, d -> new HyperLogLog(precision));
+    }
+
+    private LocalDate firstMemoryDay(LocalDate today) {
+        return today.minusDays(memoryDays - 1L);
+    }
+
+    /**
+     * Загрузка окна: сохраненные дни из БД, недостающие и текущий - из
+     * журнала активности и сессий (пересчитанные закрытые дни сразу сохраняются)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            log.info("👥 DISTINCT USERS: Скетчи отключены, DAU/WAU/MAU считаются по SQL");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        LocalDate fromDay = firstMemoryDay(today);
+        try {
+            int loaded = 0;
+            int rebuilt = 0;
+            for (Kind kind : Kind.values()) {
+                Set<LocalDate> persisted = new HashSet<>();
+                for (DailyUserSketchEntity row : sketchRepository.findByKindAndSketchDateBetween(kind, fromDay,
+                        today)) {
+                    if (mergeRow(row)) {
+                        persisted.add(row.getSketchDate());
+                        loaded++;
+                    }
+                }
+                for (LocalDate day = fromDay; !day.isAfter(today); day = day.plusDays(1)) {
+                    if (persisted.contains(day) && day.isBefore(today)) {
+                        continue;
+                    }
+                    rebuildDay(kind, day);
+                    if (day.isBefore(today)) {
+                        persistDay(kind, day);
+                    }
+                    rebuilt++;
+                }
+            }
+            ready = true;
+            lastLoad.set(Map.of(
+                    "at", LocalDateTime.now(),
+                    "loadedDays", loaded,
+                    "rebuiltDays", rebuilt,
+                    "durationMs", System.currentTimeMillis() - startTime));
+            log.info("👥 DISTINCT USERS: Скетчи за {} дн. готовы за {} мс (из БД: {}, пересчитано: {})",
+                    memoryDays, System.currentTimeMillis() - startTime, loaded, rebuilt);
+        } catch (Exception e) {
+            log.error("❌ DISTINCT USERS: Не удалось загрузить скетчи, DAU/WAU/MAU считаются по SQL: {}",
+                    e.getMessage());
+        }
+    }
+
+    private void rebuildDay(Kind kind, LocalDate day) {
+        LocalDateTime fromTime = day.atStartOfDay();
+        LocalDateTime toTime = day.plusDays(1).atStartOfDay();
+        HyperLogLog sketch = sketch(kind, day);
+        if (kind == Kind.ACTIVE) {
+            for (Number userId : activityLogRepository.findDistinctUserIds(fromTime, toTime)) {
+                sketch.add(userId.longValue());
+            }
+        }
+        // новые пользователи дня тоже активны в этот день
+        for (Long userId : sessionRepository.findUserIdsCreatedBetween(fromTime, toTime)) {
+            sketch.add(userId);
+        }
+    }
+
+    /**
+     * Слить строку БД в скетч дня в памяти
+     *
+     * @return false, если строка другой точности и пропущена
+     */
+    private boolean mergeRow(DailyUserSketchEntity row) {
+        if (row.getPrecision() != precision) {
+            log.warn("⚠️ DISTINCT USERS: Скетч {} {} точности {} пропущен (настроена {})",
+                    row.getKind(), row.getSketchDate(), row.getPrecision(), precision);
+            return false;
+        }
+        sketch(row.getKind(), row.getSketchDate())
+                .merge(HyperLogLog.fromCompressedBytes(precision, row.getRegisters()));
+        return true;
+    }
+
+    /**
+     * Сохранение измененных закрытых дней, подтягивание объединения
+     * инстансов за вчера и вытеснение дней старше окна
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.distinct-users.persist-interval-ms:3600000}",
+            initialDelayString = "${app.analytics.distinct-users.persist-interval-ms:3600000}")
+    public void persistClosedDays() {
+        if (!ready) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate fromDay = firstMemoryDay(today);
+        try {
+            int saved = persistDirty(day -> day.isBefore(today));
+            for (Kind kind : Kind.values()) {
+                sketchRepository.findByKindAndSketchDateBetween(kind, today.minusDays(1), today.minusDays(1))
+                        .forEach(this::mergeRow);
+                sketches.get(kind).keySet().removeIf(day -> day.isBefore(fromDay));
+                dirtyDays.get(kind).removeIf(day -> day.isBefore(fromDay));
+            }
+            if (saved > 0) {
+                log.info("👥 DISTINCT USERS: Сохранено скетчей дней: {}", saved);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ DISTINCT USERS: Ошибка сохранения скетчей: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * При остановке сохраняется и текущий день - следующий старт объединит
+     * его с пересчетом из журнала
+     */
+    @PreDestroy
+    public void persistOnShutdown() {
+        if (!ready) {
+            return;
+        }
+        try {
+            persistDirty(day -> true);
+        } catch (Exception e) {
+            log.warn("⚠️ DISTINCT USERS: Не удалось сохранить скетчи при остановке: {}", e.getMessage());
+        }
+    }
+
+    private int persistDirty(Predicate<LocalDate> filter) {
+        long startTime = System.currentTimeMillis();
+        int saved = 0;
+        for (Kind kind : Kind.values()) {
+            for (LocalDate day : new ArrayList<>(dirtyDays.get(kind))) {
+                if (filter.test(day)) {
+                    // флаг снимается до копирования: изменения во время сохранения пометят день снова
+                    dirtyDays.get(kind).remove(day);
+                    persistDay(kind, day);
+                    saved++;
+                }
+            }
+        }
+        lastPersist.set(Map.of(
+                "at", LocalDateTime.now(),
+                "days", saved,
+                "durationMs", System.currentTimeMillis() - startTime));
+        return saved;
+    }
+
+    private void persistDay(Kind kind, LocalDate day) {
+        HyperLogLog sketch = sketch(kind, day);
+        HyperLogLog merged;
+        try {
+            merged = transactionTemplate.execute(status -> saveMerged(kind, day, sketch.copy()));
+        } catch (DataIntegrityViolationException e) {
+            // строку дня одновременно вставил другой инстанс - теперь она есть и блокируется
+            merged = transactionTemplate.execute(status -> saveMerged(kind, day, sketch.copy()));
+        }
+        sketch.merge(merged);
+        persistedDays.increment();
+    }
+
+    private HyperLogLog saveMerged(Kind kind, LocalDate day, HyperLogLog sketch) {
+        DailyUserSketchEntity row = sketchRepository.findForUpdate(kind, day).orElse(null);
+        if (row == null) {
+            row = new DailyUserSketchEntity();
+            row.setSketchDate(day);
+            row.setKind(kind);
+        } else if (row.getPrecision() == precision) {
+            sketch.merge(HyperLogLog.fromCompressedBytes(precision, row.getRegisters()));
+        }
+        row.setPrecision(precision);
+        row.setRegisters(sketch.toCompressedBytes());
+        row.setEstimate(sketch.estimate());
+        row.setUpdatedAt(LocalDateTime.now());
+        sketchRepository.saveAndFlush(row);
+        return sketch;
+    }
+
+    // ===========================================
+    // ЗАПРОСЫ
+    // ===========================================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Различные активные пользователи за дни [fromDay, toDay] или пусто,
+     * если скетчи не загружены
+     */
+    public OptionalLong countActiveUsers(LocalDate fromDay, LocalDate toDay) {
+        return ready ? OptionalLong.of(union(Kind.ACTIVE, fromDay, toDay).estimate()) : OptionalLong.empty();
+    }
+
+    /**
+     * Новые пользователи за последние days календарных дней, включая текущий
+     */
+    public OptionalLong countNewUsers(int days) {
+        if (!ready) {
+            return OptionalLong.empty();
+        }
+        LocalDate today = LocalDate.now();
+        return OptionalLong.of(union(Kind.NEW, today.minusDays(days - 1L), today).estimate());
+    }
+
+    /**
+     * DAU за текущий день, WAU и MAU - за 7 и 30 дней, включая текущий
+     */
+    public OptionalLong getDailyActiveUsers() {
+        LocalDate today = LocalDate.now();
+        return countActiveUsers(today, today);
+    }
+
+    public OptionalLong getWeeklyActiveUsers() {
+        LocalDate today = LocalDate.now();
+        return countActiveUsers(today.minusDays(6), today);
+    }
+
+    public OptionalLong getMonthlyActiveUsers() {
+        LocalDate today = LocalDate.now();
+        return countActiveUsers(today.minusDays(29), today);
+    }
+
+    /**
+     * Пользователи, активные и в [cohortFrom, cohortTo], и в [returnFrom, returnTo]:
+     * |A ∩ B| = |A| + |B| - |A ∪ B|. Абсолютная ошибка пересечения порядка
+     * ошибки объединения, поэтому для малых когорт оценка грубая
+     */
+    public OptionalLong countRetainedUsers(LocalDate cohortFrom, LocalDate cohortTo, LocalDate returnFrom,
+            LocalDate returnTo) {
+        if (!ready) {
+            return OptionalLong.empty();
+        }
+        HyperLogLog cohort = union(Kind.ACTIVE, cohortFrom, cohortTo);
+        HyperLogLog returned = union(Kind.ACTIVE, returnFrom, returnTo);
+        long cohortSize = cohort.estimate();
+        long returnedSize = returned.estimate();
+        HyperLogLog both = cohort.copy();
+        both.merge(returned);
+        long intersection = cohortSize + returnedSize - both.estimate();
+        return OptionalLong.of(Math.max(0, Math.min(intersection, Math.min(cohortSize, returnedSize))));
+    }
+
+    /**
+     * Активные и новые пользователи по дням за последние days дней
+     */
+    public List<DailyCount> getDailyCounts(int days) {
+        if (!ready) {
+            return List.of();
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate fromDay = today.minusDays(days - 1L);
+        Map<LocalDate, HyperLogLog> active = daySketches(Kind.ACTIVE, fromDay, today);
+        Map<LocalDate, HyperLogLog> created = daySketches(Kind.NEW, fromDay, today);
+        List<DailyCount> result = new ArrayList<>(days);
+        for (LocalDate day = fromDay; !day.isAfter(today); day = day.plusDays(1)) {
+            HyperLogLog activeSketch = active.get(day);
+            HyperLogLog newSketch = created.get(day);
+            result.add(new DailyCount(day,
+                    activeSketch != null ? activeSketch.estimate() : 0,
+                    newSketch != null ? newSketch.estimate() : 0));
+        }
+        sketchReads.increment();
+        return result;
+    }
+
+    private HyperLogLog union(Kind kind, LocalDate fromDay, LocalDate toDay) {
+        HyperLogLog result = new HyperLogLog(precision);
+        daySketches(kind, fromDay, toDay).values().forEach(result::merge);
+        sketchReads.increment();
+        return result;
+    }
+
+    /**
+     * Скетчи дней периода: из памяти, а дни старше окна - из БД
+     */
+    private Map<LocalDate, HyperLogLog> daySketches(Kind kind, LocalDate fromDay, LocalDate toDay) {
+        Map<LocalDate, HyperLogLog> result = new HashMap<>();
+        LocalDate firstInMemory = firstMemoryDay(LocalDate.now());
+        if (fromDay.isBefore(firstInMemory)) {
+            LocalDate lastFromDb = toDay.isBefore(firstInMemory) ? toDay : firstInMemory.minusDays(1);
+            for (DailyUserSketchEntity row : sketchRepository.findByKindAndSketchDateBetween(kind, fromDay,
+                    lastFromDb)) {
+                if (row.getPrecision() == precision) {
+                    result.put(row.getSketchDate(), HyperLogLog.fromCompressedBytes(precision, row.getRegisters()));
+                }
+            }
+        }
+        sketches.get(kind).forEach((day, sketch) -> {
+            if (!day.isBefore(fromDay) && !day.isAfter(toDay)) {
+                result.put(day, sketch);
+            }
+        });
+        return result;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("precision", precision);
+        stats.put("standardErrorPercent", Math.round(HyperLogLog.standardError(precision) * 10000) / 100.0);
+        stats.put("memoryDays", memoryDays);
+        int daysInMemory = sketches.values().stream().mapToInt(Map::size).sum();
+        stats.put("sketchesInMemory", daysInMemory);
+        stats.put("memoryBytes", (long) daysInMemory << precision);
+        if (ready) {
+            stats.put("dau", getDailyActiveUsers().orElse(0));
+            stats.put("wau", getWeeklyActiveUsers().orElse(0));
+            stats.put("mau", getMonthlyActiveUsers().orElse(0));
+        }
+        stats.put("recordedIds", recordedIds.sum());
+        stats.put("outOfWindowIds", outOfWindowIds.sum());
+        stats.put("persistedDays", persistedDays.sum());
+        stats.put("sketchReads", sketchReads.sum());
+        stats.put("lastLoad", lastLoad.get());
+        stats.put("lastPersist", lastPersist.get());
+        return stats;
+    }
+
+    public record DailyCount(LocalDate date, long activeUsers, long newUsers) {
+    }
+}
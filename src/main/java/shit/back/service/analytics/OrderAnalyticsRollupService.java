@@ -0,0 +1,163 @@
+package shit.back.service.analytics;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.repository.OrderRollupJpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегаты заказов для дашборда (почасовые и дневные срезы по статусу,
+ * пакету и способу оплаты, итоги по клиентам)
+ *
+ * Агрегаты ведутся триггерами PostgreSQL на orders. При первом старте
+ * триггеры создаются и агрегаты заполняются по существующим заказам
+ * (backfill), после этого OrderQueryService читает статистику из агрегатов
+ * вместо полного прохода по orders. Полный пересчет доступен через
+ * POST /admin/api/orders/analytics/rollups/rebuild.
+ *
+ * На других БД агрегаты не ведутся и статистика считается по orders.
+ */
+@Slf4j
+@Service
+public class OrderAnalyticsRollupService {
+
+    @Autowired
+    private OrderRollupJpaRepository rollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.analytics.rollup.enabled:true}")
+    private boolean enabled;
+
+    private TransactionTemplate transactionTemplate;
+
+    private volatile boolean ready;
+    private final AtomicReference<Map<String, Object>> lastRebuild = new AtomicReference<>(Map.of());
+    private final LongAdder rollupReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LongAdder prunedRows = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Установка триггеров и backfill выполняются после старта, чтобы
+     * пересчет большой таблицы orders не задерживал инициализацию контекста
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeRollups() {
+        if (!enabled) {
+            log.info("📊 ROLLUPS: Агрегаты заказов отключены, статистика считается по orders");
+            return;
+        }
+
+        try {
+            if (!rollupRepository.isPostgresDatabase()) {
+                log.info("📊 ROLLUPS: БД не PostgreSQL, статистика считается по orders");
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.installRollupFunctions());
+            Boolean backfilled = transactionTemplate.execute(status -> rollupRepository.installTriggersAndBackfill());
+            if (Boolean.TRUE.equals(backfilled)) {
+                recordRebuild("backfill", startTime, null);
+                log.info("✅ ROLLUPS: Триггеры созданы, агрегаты заполнены за {}ms",
+                        System.currentTimeMillis() - startTime);
+            }
+
+            ready = true;
+            log.info("📊 ROLLUPS: Статистика дашборда читается из агрегатов");
+        } catch (Exception e) {
+            log.warn("⚠️ ROLLUPS: Агрегаты недоступны, статистика считается по orders: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Полный пересчет агрегатов по orders
+     *
+     * Запись заказов ждет окончания пересчета, чтение не блокируется.
+     */
+    public Map<String, Object> rebuild() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Integer> rows = transactionTemplate.execute(status -> rollupRepository.rebuildRollups());
+        Map<String, Object> result = recordRebuild("rebuild", startTime, rows);
+        log.info("✅ ROLLUPS: Агрегаты пересчитаны за {}ms: {}", result.get("durationMs"), rows);
+        return result;
+    }
+
+    /**
+     * Удаление обнулившихся строк (заказы ушли из промежуточных статусов)
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.rollup.prune-interval-ms:3600000}",
+            initialDelayString = "${app.analytics.rollup.prune-interval-ms:3600000}")
+    public void pruneEmptyRows() {
+        if (!ready) {
+            return;
+        }
+        try {
+            Integer deleted = transactionTemplate.execute(status -> rollupRepository.pruneEmptyRollupRows());
+            if (deleted != null && deleted > 0) {
+                prunedRows.add(deleted);
+                log.debug("📊 ROLLUPS: Удалено пустых строк агрегатов: {}", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ ROLLUPS: Ошибка очистки пустых строк агрегатов: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Читать ли статистику из агрегатов (с учетом счетчиков чтений)
+     */
+    public boolean useRollups() {
+        if (ready) {
+            rollupReads.increment();
+            return true;
+        }
+        fallbackReads.increment();
+        return false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("rollupReads", rollupReads.sum());
+        stats.put("fallbackReads", fallbackReads.sum());
+        stats.put("prunedRows", prunedRows.sum());
+        stats.put("lastRebuild", lastRebuild.get());
+        return stats;
+    }
+
+    private Map<String, Object> recordRebuild(String type, long startTime, Map<String, Integer> rows) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", type);
+        result.put("completedAt", LocalDateTime.now());
+        result.put("durationMs", System.currentTimeMillis() - startTime);
+        if (rows != null) {
+            result.put("rows", rows);
+        }
+        lastRebuild.set(result);
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package shit.back.service.catalog;
+
+import shit.back.entity.StarPackageEntity;
+import shit.back.model.StarPackage;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок каталога пакетов звезд
+ *
+ * Содержит пакеты бота (цены из StarPriceConstants) с заранее
+ * сформированными строками цен и пакеты из star_packages с индексами по id,
+ * имени и готовыми отсортированными списками. Снимок заменяется целиком,
+ * поэтому читатели всегда видят согласованную версию каталога.
+ * Объекты пакетов общие для всех читателей и не должны изменяться.
+ *
+ * @param packagesLoaded false, если star_packages не удалось прочитать
+ *                       (в снимке только пакеты бота)
+ */
+public record CatalogSnapshot(
+        long version,
+        LocalDateTime builtAt,
+        boolean packagesLoaded,
+        List<StarPackage> botPackages,
+        Map<String, StarPackage> botPackagesById,
+        Map<Integer, StarPackage> botPackagesByStars,
+        Map<String, String> shortPrices,
+        Map<String, String> priceComparisons,
+        BigDecimal totalSavings,
+        List<StarPackageEntity> allPackages,
+        List<StarPackageEntity> activePackages,
+        List<StarPackageEntity> popularPackages,
+        List<StarPackageEntity> bestValuePackages,
+        Map<Long, StarPackageEntity> packagesById,
+        Map<String, StarPackageEntity> packagesByName) {
+
+    private static final Comparator<StarPackageEntity> BY_SORT_ORDER = Comparator
+            .comparing(StarPackageEntity::getSortOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(StarPackageEntity::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final Comparator<StarPackageEntity> BY_PRICE_PER_STAR = Comparator
+            .comparing(CatalogSnapshot::pricePerStar);
+
+    /**
+     * @param packages все пакеты star_packages или null, если их не удалось прочитать
+     */
+    static CatalogSnapshot build(long version, List<StarPackage> botPackages, List<StarPackageEntity> packages) {
+        Map<String, StarPackage> botById = new HashMap<>();
+        Map<Integer, StarPackage> botByStars = new HashMap<>();
+        Map<String, String> shortPrices = new HashMap<>();
+        Map<String, String> priceComparisons = new HashMap<>();
+        BigDecimal totalSavings = BigDecimal.ZERO;
+        for (StarPackage pkg : botPackages) {
+            botById.put(pkg.getPackageId(), pkg);
+            botByStars.putIfAbsent(pkg.getStars(), pkg);
+            shortPrices.put(pkg.getPackageId(), StarPackageCatalog.formatShortPrice(pkg));
+            priceComparisons.put(pkg.getPackageId(), StarPackageCatalog.formatPriceComparison(pkg));
+            totalSavings = totalSavings.add(pkg.getSavings());
+        }
+
+        List<StarPackageEntity> all = packages != null ? packages : List.of();
+        Map<Long, StarPackageEntity> byId = new HashMap<>();
+        Map<String, StarPackageEntity> byName = new HashMap<>();
+        for (StarPackageEntity entity : all) {
+            byId.put(entity.getId(), entity);
+            byName.put(entity.getName(), entity);
+        }
+        List<StarPackageEntity> active = all.stream()
+                .filter(entity -> Boolean.TRUE.equals(entity.getIsEnabled()))
+                .sorted(BY_SORT_ORDER)
+                .toList();
+
+        return new CatalogSnapshot(
+                version,
+                LocalDateTime.now(),
+                packages != null,
+                List.copyOf(botPackages),
+                Map.copyOf(botById),
+                Map.copyOf(botByStars),
+                Map.copyOf(shortPrices),
+                Map.copyOf(priceComparisons),
+                totalSavings,
+                List.copyOf(all),
+                active,
+                active.stream().filter(entity -> Boolean.TRUE.equals(entity.getIsPopular())).toList(),
+                active.stream().sorted(BY_PRICE_PER_STAR).toList(),
+                Map.copyOf(byId),
+                Map.copyOf(byName));
+    }
+
+    /**
+     * Готовая строка цены, если пакет взят из этого снимка
+     */
+    public String shortPriceOf(StarPackage pkg) {
+        return isOwnBotPackage(pkg) ? shortPrices.get(pkg.getPackageId()) : null;
+    }
+
+    public String priceComparisonOf(StarPackage pkg) {
+        return isOwnBotPackage(pkg) ? priceComparisons.get(pkg.getPackageId()) : null;
+    }
+
+    private boolean isOwnBotPackage(StarPackage pkg) {
+        return pkg.getPackageId() != null && botPackagesById.get(pkg.getPackageId()) == pkg;
+    }
+
+    private static BigDecimal pricePerStar(StarPackageEntity entity) {
+        if (entity.getFinalPrice() == null || entity.getStarCount() == null || entity.getStarCount() == 0) {
+            return BigDecimal.valueOf(Long.MAX_VALUE);
+        }
+        return entity.getFinalPrice().divide(BigDecimal.valueOf(entity.getStarCount()), 8, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,141 @@
+package shit.back.service.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import shit.back.config.StarPriceConstants;
+import shit.back.entity.StarPackageEntity;
+import shit.back.model.StarPackage;
+import shit.back.repository.StarPackageJpaRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Каталог пакетов звезд в памяти
+ *
+ * Все чтения каталога (PriceService, StarPackageService) обслуживаются из
+ * неизменяемого снимка без обращения к БД. Снимок пересобирается целиком и
+ * подменяется одной записью volatile-ссылки: после коммита изменения пакетов
+ * администратором и периодически, чтобы подхватить изменения с других инстансов.
+ */
+@Slf4j
+@Service
+public class StarPackageCatalog {
+
+    private static final int BOT_PACKAGE_DISCOUNT = 0; // Без скидки для консистентности цен
+
+    private static final List<StarPackage> BOT_PACKAGES = List.of(
+            StarPackage.createPackage(100, StarPriceConstants.STARS_100_PRICE, BOT_PACKAGE_DISCOUNT),
+            StarPackage.createPackage(500, StarPriceConstants.STARS_500_PRICE, BOT_PACKAGE_DISCOUNT),
+            StarPackage.createPackage(1000, StarPriceConstants.STARS_1000_PRICE, BOT_PACKAGE_DISCOUNT),
+            StarPackage.createPackage(2500, StarPriceConstants.STARS_2500_PRICE, BOT_PACKAGE_DISCOUNT),
+            StarPackage.createPackage(5000, StarPriceConstants.STARS_5000_PRICE, BOT_PACKAGE_DISCOUNT),
+            StarPackage.createPackage(10000, StarPriceConstants.STARS_10000_PRICE, BOT_PACKAGE_DISCOUNT));
+
+    @Autowired
+    private StarPackageJpaRepository packageRepository;
+
+    private volatile CatalogSnapshot snapshot;
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private final LongAdder snapshotReads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    /**
+     * Текущий снимок каталога (при первом обращении загружается из БД)
+     */
+    public CatalogSnapshot getSnapshot() {
+        snapshotReads.increment();
+        CatalogSnapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    /**
+     * Пересобрать снимок по star_packages
+     *
+     * Если БД недоступна, остается прежний снимок; при его отсутствии
+     * публикуется снимок только с пакетами бота.
+     */
+    public synchronized CatalogSnapshot refresh() {
+        List<StarPackageEntity> packages;
+        try {
+            packages = packageRepository.findAll();
+        } catch (Exception e) {
+            refreshFailures.increment();
+            log.warn("⚠️ CATALOG: Не удалось загрузить пакеты звезд: {}", e.getMessage());
+            if (snapshot == null) {
+                snapshot = CatalogSnapshot.build(versionSequence.incrementAndGet(), BOT_PACKAGES, null);
+            }
+            return snapshot;
+        }
+
+        CatalogSnapshot rebuilt = CatalogSnapshot.build(versionSequence.incrementAndGet(), BOT_PACKAGES, packages);
+        snapshot = rebuilt;
+        refreshes.increment();
+        log.debug("📦 CATALOG: Снимок каталога v{}: {} пакетов, {} активных",
+                rebuilt.version(), rebuilt.allPackages().size(), rebuilt.activePackages().size());
+        return rebuilt;
+    }
+
+    /**
+     * Пересобрать снимок после коммита текущей транзакции (изменение пакетов),
+     * без транзакции - сразу
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh();
+                }
+            });
+        } else {
+            refresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog.refresh-interval-ms:60000}",
+            initialDelayString = "${app.catalog.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    public Map<String, Object> getStatistics() {
+        CatalogSnapshot current = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("snapshotReads", snapshotReads.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        if (current != null) {
+            stats.put("version", current.version());
+            stats.put("builtAt", current.builtAt());
+            stats.put("packagesLoaded", current.packagesLoaded());
+            stats.put("botPackages", current.botPackages().size());
+            stats.put("packages", current.allPackages().size());
+            stats.put("activePackages", current.activePackages().size());
+        }
+        return stats;
+    }
+
+    public static String formatShortPrice(StarPackage pkg) {
+        return String.format("⭐ %d - $%.2f", pkg.getStars(), pkg.getDiscountedPrice());
+    }
+
+    public static String formatPriceComparison(StarPackage pkg) {
+        return String.format(
+                "💰 %d ⭐ - $%.2f (вместо $%.2f)\n💸 Экономия: $%.2f (%d%%)",
+                pkg.getStars(),
+                pkg.getDiscountedPrice(),
+                pkg.getOriginalPrice(),
+                pkg.getSavings(),
+                pkg.getDiscountPercent());
+    }
+}
@@ -0,0 +1,156 @@
+package shit.back.service.catalog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.repository.StarPackageJpaRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики продаж пакетов звезд
+ *
+ * Продажа учитывается в LongAdder (количество и сумма в центах) без записи
+ * в БД. Накопленные значения периодически сбрасываются в star_packages
+ * одной транзакцией - по одному UPDATE на пакет, а не на продажу.
+ * При ошибке записи значения возвращаются в счетчики и уйдут со следующим сбросом.
+ */
+@Slf4j
+@Component
+public class StarPackageSalesCounter {
+
+    @Autowired
+    private StarPackageJpaRepository packageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<String, PendingSales> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder recordedSales = new LongAdder();
+    private final LongAdder flushedSales = new LongAdder();
+    private final LongAdder flushedUpdates = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder unknownPackageSales = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Учесть продажу пакета
+     */
+    public void record(String packageName, BigDecimal amount) {
+        pending.computeIfAbsent(packageName, name -> new PendingSales()).add(1, toCents(amount));
+        recordedSales.increment();
+    }
+
+    /**
+     * Записать накопленные продажи в star_packages
+     *
+     * @return количество записанных продаж
+     */
+    @Scheduled(fixedDelayString = "${app.catalog.sales-flush-interval-ms:10000}")
+    public synchronized long flush() {
+        List<DrainedSales> drained = new ArrayList<>();
+        pending.forEach((name, sales) -> {
+            long count = sales.count.sumThenReset();
+            long cents = sales.cents.sumThenReset();
+            if (count != 0 || cents != 0) {
+                drained.add(new DrainedSales(name, count, cents));
+            }
+        });
+        if (drained.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            Long written = transactionTemplate.execute(status -> {
+                long total = 0;
+                for (DrainedSales sales : drained) {
+                    int updated = packageRepository.addSalesStatistics(
+                            sales.packageName(), sales.count(), BigDecimal.valueOf(sales.cents(), 2));
+                    if (updated > 0) {
+                        total += sales.count();
+                    } else {
+                        unknownPackageSales.add(sales.count());
+                        log.warn("Package {} not found for sale recording ({} sales)",
+                                sales.packageName(), sales.count());
+                    }
+                }
+                return total;
+            });
+
+            long flushed = written != null ? written : 0;
+            flushes.increment();
+            flushedUpdates.add(drained.size());
+            flushedSales.add(flushed);
+            log.debug("📦 SALES: Записано продаж: {} ({} пакетов)", flushed, drained.size());
+            return flushed;
+
+        } catch (Exception e) {
+            flushFailures.increment();
+            drained.forEach(sales -> pending.computeIfAbsent(sales.packageName(), name -> new PendingSales())
+                    .add(sales.count(), sales.cents()));
+            log.warn("⚠️ SALES: Ошибка записи продаж пакетов, повтор при следующем сбросе: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Количество продаж, еще не записанных в БД
+     */
+    public long getPendingSales() {
+        return pending.values().stream().mapToLong(sales -> sales.count.sum()).sum();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recordedSales", recordedSales.sum());
+        stats.put("pendingSales", getPendingSales());
+        stats.put("flushedSales", flushedSales.sum());
+        stats.put("flushedUpdates", flushedUpdates.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("unknownPackageSales", unknownPackageSales.sum());
+        return stats;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount != null ? amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : 0;
+    }
+
+    private static final class PendingSales {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+
+        void add(long salesCount, long salesCents) {
+            count.add(salesCount);
+            cents.add(salesCents);
+        }
+    }
+
+    private record DrainedSales(String packageName, long count, long cents) {
+    }
+}
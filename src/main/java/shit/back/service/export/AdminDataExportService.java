@@ -0,0 +1,122 @@
+package shit.back.service.export;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.OrderEntity.OrderStatus;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.repository.ExportRowHandler;
+import shit.back.repository.OrderExportRepository;
+import shit.back.repository.OrderJpaRepository;
+import shit.back.repository.UserActivityLogExportRepository;
+import shit.back.repository.UserActivityLogJpaRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Полные выгрузки заказов и журнала активности для администраторов
+ *
+ * Строки читаются курсором БД и пишутся в поток по одной (NDJSON через
+ * Jackson streaming API или CSV), при необходимости через gzip. Объем
+ * памяти не зависит от числа строк: держатся только буферы писателя,
+ * gzip и одна порция курсора (app.export.admin.fetch-size).
+ * Разрешение ExportPermits берет вызывающий код.
+ */
+@Service
+public class AdminDataExportService {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.export.admin.fetch-size:1000}")
+    private int fetchSize;
+
+    private TransactionTemplate readOnlyTemplate;
+
+    private final LongAdder completedExports = new LongAdder();
+    private final LongAdder failedExports = new LongAdder();
+    private final LongAdder exportedRows = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Заказы, созданные в [from, to), с фильтром по статусам
+     *
+     * @return количество выгруженных строк
+     */
+    public long writeOrders(LocalDateTime from, LocalDateTime to, Collection<OrderStatus> statuses,
+            ExportFormat format, boolean gzip, OutputStream output) throws IOException {
+        return write(OrderExportRepository.ORDER_EXPORT_COLUMNS, format, gzip, output,
+                handler -> orderRepository.streamOrders(from, to, statuses, fetchSize, handler));
+    }
+
+    /**
+     * Записи журнала активности за [from, to) с фильтром по категориям и типам действий
+     *
+     * @return количество выгруженных строк
+     */
+    public long writeActivityLogs(LocalDateTime from, LocalDateTime to, Collection<LogCategory> categories,
+            Collection<ActionType> actionTypes, ExportFormat format, boolean gzip, OutputStream output)
+            throws IOException {
+        return write(UserActivityLogExportRepository.ACTIVITY_EXPORT_COLUMNS, format, gzip, output,
+                handler -> activityLogRepository.streamActivityLogs(from, to, categories, actionTypes,
+                        fetchSize, handler));
+    }
+
+    private long write(List<String> columns, ExportFormat format, boolean gzip, OutputStream output,
+            Function<ExportRowHandler, Long> query) throws IOException {
+        try {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, GZIP_BUFFER_SIZE) : null;
+            TabularExportWriter writer = format.newWriter(compressed != null ? compressed : output);
+            writer.writeHeader(columns);
+            Long rows = readOnlyTemplate.execute(status -> query.apply(writer::writeRow));
+            writer.finish();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            output.flush();
+
+            long count = rows != null ? rows : 0;
+            completedExports.increment();
+            exportedRows.add(count);
+            return count;
+        } catch (IOException | RuntimeException e) {
+            failedExports.increment();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("completedAdminExports", completedExports.sum());
+        stats.put("failedAdminExports", failedExports.sum());
+        stats.put("adminExportedRows", exportedRows.sum());
+        stats.put("adminFetchSize", fetchSize);
+        return stats;
+    }
+}
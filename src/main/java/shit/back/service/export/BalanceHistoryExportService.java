@@ -0,0 +1,192 @@
+package shit.back.service.export;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import shit.back.repository.BalanceHistoryExportRepository;
+import shit.back.repository.BalanceTransactionJpaRepository;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выгрузка истории баланса пользователя в CSV/XLSX
+ *
+ * Транзакции читаются курсором (BalanceHistoryExportRepository) и сразу
+ * пишутся в поток, поэтому память не зависит от длины истории. Чтение
+ * идет в read-only транзакции - без нее драйвер PostgreSQL не открывает
+ * курсор и загружает результат целиком. Число одновременных выгрузок
+ * ограничено ExportPermits.
+ *
+ * Для Telegram файл пишется во временный файл на диске и отправляется
+ * документом, после чего удаляется. Администраторы получают тот же поток
+ * напрямую в HTTP-ответ (AdminExportApiController).
+ */
+@Slf4j
+@Service
+public class BalanceHistoryExportService {
+
+    @Autowired
+    private BalanceTransactionJpaRepository balanceTransactionRepository;
+
+    @Autowired
+    private ExportPermits exportPermits;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Бот зависит от фасада, фасад - от этого сервиса, поэтому бот берется лениво
+    @Autowired
+    private ObjectProvider<AbsSender> telegramSender;
+
+    @Value("${app.export.balance-history.fetch-size:500}")
+    private int fetchSize;
+
+    private TransactionTemplate readOnlyTemplate;
+    private final ExecutorService exportExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // пользователи, для которых выгрузка в Telegram уже готовится
+    private final Set<Long> exportsInProgress = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder completedExports = new LongAdder();
+    private final LongAdder failedExports = new LongAdder();
+    private final LongAdder exportedRows = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        exportExecutor.shutdownNow();
+    }
+
+    /**
+     * Записать историю баланса пользователя в поток. Разрешение ExportPermits
+     * должен держать вызывающий код.
+     *
+     * @return количество выгруженных транзакций
+     */
+    public long writeHistory(Long userId, ExportFormat format, OutputStream output) throws IOException {
+        TabularExportWriter writer = format.newWriter(output);
+        writer.writeHeader(BalanceHistoryExportRepository.BALANCE_HISTORY_COLUMNS);
+        Long rows = readOnlyTemplate.execute(status ->
+                balanceTransactionRepository.streamUserHistory(userId, fetchSize, writer::writeRow));
+        writer.finish();
+        long count = rows != null ? rows : 0;
+        exportedRows.add(count);
+        return count;
+    }
+
+    /**
+     * Подготовить выгрузку в фоне и отправить ее пользователю документом
+     *
+     * @return false, если выгрузка для пользователя уже идет или достигнут
+     *         предел одновременных выгрузок
+     */
+    public boolean sendToTelegram(Long userId, Long chatId, ExportFormat format) {
+        if (!exportsInProgress.add(userId)) {
+            return false;
+        }
+        ExportPermits.Permit permit = exportPermits.tryAcquire();
+        if (permit == null) {
+            exportsInProgress.remove(userId);
+            return false;
+        }
+        exportExecutor.execute(() -> {
+            try (permit) {
+                deliver(userId, chatId, format);
+            } finally {
+                exportsInProgress.remove(userId);
+            }
+        });
+        return true;
+    }
+
+    private void deliver(Long userId, Long chatId, ExportFormat format) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("balance-history-" + userId + "-", "." + format.getExtension());
+            long rows;
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+                rows = writeHistory(userId, format, output);
+            }
+
+            AbsSender sender = requireSender();
+            SendDocument document = new SendDocument(chatId.toString(),
+                    new InputFile(file.toFile(), fileName(userId, format)));
+            document.setCaption("📄 История баланса: " + rows + " операций");
+            sender.execute(document);
+
+            completedExports.increment();
+            log.info("📤 EXPORT: История баланса пользователя {} отправлена ({} строк, {})",
+                    userId, rows, format);
+        } catch (Exception e) {
+            failedExports.increment();
+            log.error("❌ EXPORT: Ошибка выгрузки истории баланса пользователя {}: {}", userId, e.getMessage(), e);
+            notifyFailure(chatId);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("⚠️ EXPORT: Не удалось удалить временный файл {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void notifyFailure(Long chatId) {
+        try {
+            requireSender().execute(new SendMessage(chatId.toString(),
+                    "❌ Не удалось подготовить выгрузку истории. Попробуйте позже."));
+        } catch (Exception e) {
+            log.warn("⚠️ EXPORT: Не удалось сообщить об ошибке выгрузки в чат {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    private AbsSender requireSender() {
+        AbsSender sender = telegramSender.getIfAvailable();
+        if (sender == null) {
+            throw new IllegalStateException("Telegram бот недоступен");
+        }
+        return sender;
+    }
+
+    public static String fileName(Long userId, ExportFormat format) {
+        return "balance-history-" + userId + "-" + LocalDate.now() + "." + format.getExtension();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>(exportPermits.getStatistics());
+        stats.put("telegramExportsInProgress", exportsInProgress.size());
+        stats.put("completedTelegramExports", completedExports.sum());
+        stats.put("failedTelegramExports", failedExports.sum());
+        stats.put("exportedRows", exportedRows.sum());
+        stats.put("fetchSize", fetchSize);
+        return stats;
+    }
+}
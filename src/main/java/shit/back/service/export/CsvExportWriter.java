@@ -0,0 +1,72 @@
+package shit.back.service.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * CSV (RFC 4180) в UTF-8 с BOM, чтобы Excel правильно открывал кириллицу
+ *
+ * Текст, начинающийся с =, +, - или @, предваряется апострофом, чтобы
+ * табличный редактор не выполнил его как формулу.
+ */
+public class CsvExportWriter implements TabularExportWriter {
+
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        writer.write('\uFEFF');
+        writeRow(columns);
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(values.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number number) {
+            writer.write(number instanceof BigDecimal decimal ? decimal.toPlainString() : number.toString());
+            return;
+        }
+        String text = value instanceof LocalDateTime dateTime ? DATE_TIME.format(dateTime) : value.toString();
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
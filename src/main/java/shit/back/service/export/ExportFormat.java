@@ -0,0 +1,47 @@
+package shit.back.service.export;
+
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Формат файла выгрузки
+ */
+public enum ExportFormat {
+    CSV("csv", "text/csv; charset=UTF-8"),
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @throws IllegalArgumentException для неизвестного формата
+     */
+    public static ExportFormat parse(String value) {
+        if (value == null || value.isBlank()) {
+            return CSV;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public TabularExportWriter newWriter(OutputStream output) {
+        return switch (this) {
+            case CSV -> new CsvExportWriter(output);
+            case XLSX -> new XlsxExportWriter(output);
+            case NDJSON -> new NdjsonExportWriter(output);
+        };
+    }
+}
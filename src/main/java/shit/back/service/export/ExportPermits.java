@@ -0,0 +1,79 @@
+package shit.back.service.export;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение числа одновременных выгрузок
+ *
+ * Каждая выгрузка держит соединение из пула на все время чтения курсора,
+ * поэтому их количество ограничено app.export.max-concurrent. Ожидания
+ * нет: если свободного разрешения нет, выгрузка сразу отклоняется и
+ * пользователь получает "попробуйте позже", а пул остается доступен
+ * обычным запросам.
+ */
+@Slf4j
+@Component
+public class ExportPermits {
+
+    @Value("${app.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore semaphore;
+
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        semaphore = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * Разрешение на одну выгрузку, которое нужно закрыть по ее окончании
+     */
+    public final class Permit implements AutoCloseable {
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * @return разрешение или null, если все слоты заняты
+     */
+    public Permit tryAcquire() {
+        if (!semaphore.tryAcquire()) {
+            rejected.increment();
+            log.warn("⏳ EXPORT: Достигнут предел одновременных выгрузок ({})", maxConcurrent);
+            return null;
+        }
+        granted.increment();
+        return new Permit();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("activeExports", Math.max(1, maxConcurrent) - semaphore.availablePermits());
+        stats.put("grantedExports", granted.sum());
+        stats.put("rejectedExports", rejected.sum());
+        return stats;
+    }
+}
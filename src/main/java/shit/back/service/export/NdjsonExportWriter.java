@@ -0,0 +1,87 @@
+package shit.back.service.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NDJSON: один JSON-объект на строку, ключи - названия колонок
+ *
+ * Пишется Jackson streaming API без построения дерева и без ObjectMapper,
+ * имена полей сериализуются один раз. Даты - ISO-8601 без зоны.
+ */
+public class NdjsonExportWriter implements TabularExportWriter {
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final JsonGenerator generator;
+    private final List<SerializedString> fieldNames = new ArrayList<>();
+    private boolean hasRows;
+
+    public NdjsonExportWriter(OutputStream output) {
+        try {
+            this.generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось создать JSON генератор", e);
+        }
+        // разделитель между объектами верхнего уровня - перевод строки
+        generator.setRootValueSeparator(new SerializedString("\n"));
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) {
+        fieldNames.clear();
+        columns.forEach(column -> fieldNames.add(new SerializedString(column)));
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.size(); i++) {
+            generator.writeFieldName(i < fieldNames.size() ? fieldNames.get(i) : new SerializedString("c" + i));
+            writeValue(values.get(i));
+        }
+        generator.writeEndObject();
+        hasRows = true;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (hasRows) {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof BigDecimal decimal) {
+            generator.writeNumber(decimal);
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Number number) {
+            generator.writeNumber(number.toString());
+        } else if (value instanceof Boolean flag) {
+            generator.writeBoolean(flag);
+        } else if (value instanceof LocalDateTime dateTime) {
+            generator.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime));
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
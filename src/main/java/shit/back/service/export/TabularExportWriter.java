@@ -0,0 +1,22 @@
+package shit.back.service.export;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Построчная запись табличной выгрузки в поток
+ *
+ * Строки пишутся сразу в выходной поток и в памяти не накапливаются.
+ * finish() дописывает завершающую часть файла и сбрасывает буферы,
+ * но не закрывает сам поток - им управляет вызывающий.
+ *
+ * Значения: String, Number, Boolean, LocalDateTime или null.
+ */
+public interface TabularExportWriter {
+
+    void writeHeader(List<String> columns) throws IOException;
+
+    void writeRow(List<?> values) throws IOException;
+
+    void finish() throws IOException;
+}
@@ -0,0 +1,180 @@
+package shit.back.service.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Потоковая запись XLSX без сторонних библиотек
+ *
+ * XLSX - zip-архив с XML-частями. Служебные части пишутся сразу,
+ * лист (xl/worksheets/sheet1.xml) - последней записью архива строка
+ * за строкой, поэтому память не зависит от числа строк. Текст пишется
+ * inline-строками (без общей таблицы строк), числа - числовыми ячейками,
+ * даты - текстом в формате yyyy-MM-dd HH:mm:ss.
+ */
+public class XlsxExportWriter implements TabularExportWriter {
+
+    /**
+     * Предел строк листа Excel
+     */
+    public static final int MAX_ROWS = 1_048_576;
+
+    private static final String CONTENT_TYPES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+            <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+            <Default Extension="xml" ContentType="application/xml"/>\
+            <Override PartName="/xl/workbook.xml" \
+            ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+            <Override PartName="/xl/worksheets/sheet1.xml" \
+            ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+            <Override PartName="/xl/styles.xml" \
+            ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>\
+            </Types>""";
+
+    private static final String ROOT_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" \
+            Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" \
+            Target="xl/workbook.xml"/>\
+            </Relationships>""";
+
+    private static final String WORKBOOK = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+            xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">\
+            <sheets><sheet name="Export" sheetId="1" r:id="rId1"/></sheets>\
+            </workbook>""";
+
+    private static final String WORKBOOK_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" \
+            Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" \
+            Target="worksheets/sheet1.xml"/>\
+            <Relationship Id="rId2" \
+            Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" \
+            Target="styles.xml"/>\
+            </Relationships>""";
+
+    private static final String STYLES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+            <fonts count="2"><font><sz val="11"/><name val="Calibri"/></font>\
+            <font><b/><sz val="11"/><name val="Calibri"/></font></fonts>\
+            <fills count="1"><fill><patternFill patternType="none"/></fill></fills>\
+            <borders count="1"><border/></borders>\
+            <cellStyleXfs count="1"><xf/></cellStyleXfs>\
+            <cellXfs count="2"><xf/><xf fontId="1" applyFont="1"/></cellXfs>\
+            </styleSheet>""";
+
+    private static final String SHEET_START = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <worksheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main"><sheetData>""";
+
+    private static final String SHEET_END = "</sheetData></worksheet>";
+
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private boolean started;
+    private int rows;
+
+    public XlsxExportWriter(OutputStream output) {
+        this.zip = new ZipOutputStream(output, StandardCharsets.UTF_8);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        start();
+        writeRow(columns, " s=\"1\"");
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        start();
+        writeRow(values, "");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        start();
+        writer.write(SHEET_END);
+        writer.flush();
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    private void start() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+        writePart("[Content_Types].xml", CONTENT_TYPES);
+        writePart("_rels/.rels", ROOT_RELS);
+        writePart("xl/workbook.xml", WORKBOOK);
+        writePart("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+        writePart("xl/styles.xml", STYLES);
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        writer.write(SHEET_START);
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private void writeRow(List<?> values, String style) throws IOException {
+        if (++rows > MAX_ROWS) {
+            throw new IOException("Превышен предел строк листа XLSX (" + MAX_ROWS + ")");
+        }
+        writer.write("<row>");
+        for (Object value : values) {
+            if (value == null) {
+                writer.write("<c/>");
+            } else if (value instanceof Number number) {
+                writer.write("<c" + style + "><v>");
+                writer.write(number instanceof BigDecimal decimal ? decimal.toPlainString() : number.toString());
+                writer.write("</v></c>");
+            } else {
+                String text = value instanceof LocalDateTime dateTime
+                        ? CsvExportWriter.DATE_TIME.format(dateTime)
+                        : value.toString();
+                writer.write("<c t=\"inlineStr\"" + style + "><is><t xml:space=\"preserve\">");
+                writeEscaped(text);
+                writer.write("</t></is></c>");
+            }
+        }
+        writer.write("</row>");
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '&' -> writer.write("&amp;");
+                case '<' -> writer.write("&lt;");
+                case '>' -> writer.write("&gt;");
+                case '"' -> writer.write("&quot;");
+                default -> {
+                    // управляющие символы недопустимы в XML 1.0
+                    if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') {
+                        writer.write(ch);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package shit.back.service.maintenance;
+
+/**
+ * Размер порции и пауза между порциями по наблюдаемой нагрузке на БД
+ *
+ * AIMD: пока порция укладывается в половину целевого времени, размер растет
+ * на четверть, а пауза уменьшается вдвое. Порция дольше целевого времени или
+ * отставание реплики выше лимита - размер вдвое меньше, пауза вдвое больше
+ * (при отставании - не меньше самого отставания). Не потокобезопасен:
+ * один экземпляр на выполняющуюся операцию.
+ */
+public class AdaptiveThrottle {
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetLatencyMs;
+    private final long maxReplicationLagMs;
+    private final long minPauseMs;
+    private final long maxPauseMs;
+
+    private int chunkSize;
+    private long pauseMs;
+    private long throttledChunks;
+
+    public AdaptiveThrottle(int initialChunkSize, int minChunkSize, int maxChunkSize, long targetLatencyMs,
+            long maxReplicationLagMs, long minPauseMs, long maxPauseMs) {
+        if (minChunkSize <= 0 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException("Некорректные границы размера порции: " + minChunkSize + ".."
+                    + maxChunkSize);
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetLatencyMs = Math.max(1, targetLatencyMs);
+        this.maxReplicationLagMs = maxReplicationLagMs;
+        this.minPauseMs = Math.max(0, minPauseMs);
+        this.maxPauseMs = Math.max(this.minPauseMs, maxPauseMs);
+        this.chunkSize = clampChunk(initialChunkSize);
+        this.pauseMs = this.minPauseMs;
+    }
+
+    /**
+     * Учесть время выполнения порции и текущее отставание реплики
+     *
+     * @return пауза перед следующей порцией, мс
+     */
+    public long onChunk(long latencyMs, long replicationLagMs) {
+        if (replicationLagMs > maxReplicationLagMs) {
+            chunkSize = clampChunk(chunkSize / 2);
+            pauseMs = clampPause(Math.max(pauseMs * 2, replicationLagMs));
+            throttledChunks++;
+        } else if (latencyMs > targetLatencyMs) {
+            chunkSize = clampChunk(chunkSize / 2);
+            pauseMs = clampPause(Math.max(pauseMs * 2, latencyMs));
+            throttledChunks++;
+        } else {
+            if (latencyMs * 2 < targetLatencyMs) {
+                chunkSize = clampChunk(chunkSize + Math.max(1, chunkSize / 4));
+            }
+            pauseMs = clampPause(pauseMs / 2);
+        }
+        return pauseMs;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getPauseMs() {
+        return pauseMs;
+    }
+
+    public long getThrottledChunks() {
+        return throttledChunks;
+    }
+
+    private int clampChunk(int size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    private long clampPause(long pause) {
+        return Math.max(minPauseMs, Math.min(maxPauseMs, pause));
+    }
+}
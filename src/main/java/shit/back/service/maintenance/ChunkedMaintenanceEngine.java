@@ -0,0 +1,463 @@
+package shit.back.service.maintenance;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.MaintenanceJobEntity;
+import shit.back.entity.MaintenanceJobEntity.JobStatus;
+import shit.back.repository.ChunkedOperation;
+import shit.back.repository.ChunkedOperation.ChunkResult;
+import shit.back.repository.MaintenanceJobJpaRepository;
+import shit.back.service.monitoring.ReplicaLagMonitoringService;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Массовые операции обслуживания (очистка, деактивация) порциями
+ *
+ * Операция (ChunkedOperation) выполняется проходом по ключу: каждая порция
+ * из chunk-size строк - отдельная транзакция вместе с записью позиции в
+ * maintenance_jobs, поэтому блокировки держатся только на время порции, WAL
+ * растет равномерно, а прерванный проход (рестарт, лимит max-run-ms, другой
+ * инстанс) продолжается с последнего ключа. Аренда строки maintenance_jobs
+ * не дает двум инстансам выполнять одну операцию одновременно.
+ *
+ * Размер порции и паузы подбирает AdaptiveThrottle по времени порции и
+ * отставанию реплик (ReplicaLagMonitoringService и pg_stat_replication).
+ * Незавершенные проходы и операции с расписанием запускаются раз в tick-ms.
+ */
+@Slf4j
+@Service
+public class ChunkedMaintenanceEngine {
+
+    /**
+     * Итог одного запуска операции
+     *
+     * @param completed проход дошел до конца таблицы
+     * @param skipped операцию уже выполняет этот или другой инстанс
+     */
+    public record RunResult(String operation, long processed, int chunks, boolean completed, boolean skipped,
+            long durationMs) {
+
+        static RunResult skipped(String operation) {
+            return new RunResult(operation, 0, 0, false, true, 0);
+        }
+    }
+
+    @Autowired
+    private MaintenanceJobJpaRepository jobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private ReplicaLagMonitoringService replicaLagMonitoringService;
+
+    @Autowired
+    private List<ChunkedOperation> operationList;
+
+    @Value("${app.maintenance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.maintenance.chunk.initial-size:1000}")
+    private int initialChunkSize;
+
+    @Value("${app.maintenance.chunk.min-size:100}")
+    private int minChunkSize;
+
+    @Value("${app.maintenance.chunk.max-size:10000}")
+    private int maxChunkSize;
+
+    @Value("${app.maintenance.chunk.target-latency-ms:250}")
+    private long targetLatencyMs;
+
+    @Value("${app.maintenance.max-replication-lag-ms:5000}")
+    private long maxReplicationLagMs;
+
+    @Value("${app.maintenance.min-pause-ms:10}")
+    private long minPauseMs;
+
+    @Value("${app.maintenance.max-pause-ms:10000}")
+    private long maxPauseMs;
+
+    @Value("${app.maintenance.max-run-ms:60000}")
+    private long maxRunMs;
+
+    @Value("${app.maintenance.lease-ms:300000}")
+    private long leaseMs;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    private final Map<String, ChunkedOperation> operations = new LinkedHashMap<>();
+    private final Map<String, OperationStats> operationStats = new HashMap<>();
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        // порции коммитятся сами по себе, даже если вызывающий код в транзакции
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (ChunkedOperation operation : operationList) {
+            if (operations.putIfAbsent(operation.name(), operation) != null) {
+                throw new IllegalStateException("Операция обслуживания уже зарегистрирована: " + operation.name());
+            }
+            operationStats.put(operation.name(), new OperationStats(new AdaptiveThrottle(initialChunkSize,
+                    minChunkSize, maxChunkSize, targetLatencyMs, maxReplicationLagMs, minPauseMs, maxPauseMs)));
+        }
+        log.info("🧹 MAINTENANCE: зарегистрированы операции {}, узел {}", operations.keySet(), nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping.set(true);
+    }
+
+    /**
+     * Продолжить незавершенные проходы и запустить операции по расписанию
+     */
+    @Scheduled(fixedDelayString = "${app.maintenance.tick-ms:60000}",
+            initialDelayString = "${app.maintenance.initial-delay-ms:120000}")
+    public void scheduledTick() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (ChunkedOperation operation : operations.values()) {
+            try {
+                MaintenanceJobEntity job = transactionTemplate.execute(
+                        status -> jobRepository.findById(operation.name()).orElse(null));
+                boolean unfinished = job != null && job.getStatus() == JobStatus.RUNNING;
+                boolean due = operation.schedule() != null && (job == null || job.getLastCompletedAt() == null
+                        || job.getLastCompletedAt().plus(operation.schedule()).isBefore(now));
+                if (unfinished || due) {
+                    run(operation.name());
+                }
+            } catch (Exception e) {
+                log.error("❌ MAINTENANCE: ошибка планового запуска {}: {}", operation.name(), e.getMessage());
+            }
+        }
+    }
+
+    public boolean hasOperation(String name) {
+        return operations.containsKey(name);
+    }
+
+    /**
+     * Запустить операцию в фоне (ручной запуск из админки)
+     */
+    @Async("databaseOperationExecutor")
+    public CompletableFuture<RunResult> runAsync(String name) {
+        return CompletableFuture.completedFuture(run(name));
+    }
+
+    /**
+     * Выполнить операцию с параметрами по умолчанию
+     */
+    public RunResult run(String name) {
+        return run(name, (Object[]) null);
+    }
+
+    /**
+     * Выполнить операцию не дольше max-run-ms; незавершенный проход продолжит
+     * следующий запуск
+     *
+     * @param parameters значения для условия операции; null - параметры по умолчанию
+     */
+    public RunResult run(String name, Object... parameters) {
+        ChunkedOperation operation = operations.get(name);
+        if (operation == null) {
+            throw new IllegalArgumentException("Неизвестная операция обслуживания: " + name);
+        }
+        OperationStats stats = operationStats.get(name);
+        if (stopping.get() || !stats.running.compareAndSet(false, true)) {
+            stats.skippedRuns.increment();
+            return RunResult.skipped(name);
+        }
+
+        try {
+            ensureJob(name);
+            if (!acquireLease(name)) {
+                stats.skippedRuns.increment();
+                log.debug("Maintenance {} is leased by another node", name);
+                return RunResult.skipped(name);
+            }
+            return runLeased(operation, stats, parameters != null ? parameters : operation.parameters().get());
+        } finally {
+            stats.running.set(false);
+        }
+    }
+
+    private RunResult runLeased(ChunkedOperation operation, OperationStats stats, Object[] parameters) {
+        String name = operation.name();
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + maxRunMs * 1_000_000;
+        long processed = 0;
+        int chunks = 0;
+        boolean completed = false;
+
+        try {
+            MaintenanceJobEntity job = transactionTemplate.execute(status -> jobRepository.findById(name).orElseThrow());
+            long lastKey;
+            if (job.getStatus() == JobStatus.RUNNING) {
+                lastKey = job.getLastKey();
+                log.info("🧹 MAINTENANCE: {} продолжает проход с ключа {}", name, lastKey);
+            } else {
+                transactionTemplate.executeWithoutResult(status -> jobRepository.startPass(name, nodeId,
+                        JobStatus.RUNNING, LocalDateTime.now()));
+                lastKey = 0;
+            }
+
+            long afterKey = lastKey;
+            Long backlog = transactionTemplate.execute(
+                    status -> jobRepository.estimateBacklog(operation, afterKey, parameters));
+            stats.backlogAtRunStart.set(backlog != null ? backlog : 0);
+            stats.runStartedNanos.set(startNanos);
+            stats.runProcessed.set(0);
+            AdaptiveThrottle throttle = stats.throttle;
+
+            while (true) {
+                int limit = throttle.getChunkSize();
+                long cursor = lastKey;
+                long chunkStart = System.nanoTime();
+                ChunkResult result = transactionTemplate.execute(status -> executeChunk(operation, cursor, limit,
+                        parameters));
+                long latencyMs = (System.nanoTime() - chunkStart) / 1_000_000;
+
+                chunks++;
+                processed += result.processed();
+                lastKey = result.lastKey();
+                stats.recordChunk(result.processed(), latencyMs);
+
+                if (result.selected() < limit) {
+                    transactionTemplate.executeWithoutResult(status -> jobRepository.completePass(name, nodeId,
+                            JobStatus.IDLE, LocalDateTime.now()));
+                    completed = true;
+                    stats.completedPasses.increment();
+                    break;
+                }
+                if (stopping.get() || System.nanoTime() > deadlineNanos) {
+                    break;
+                }
+
+                long lagMs = replicationLagMs();
+                stats.lastReplicationLagMs.set(lagMs);
+                long pauseMs = throttle.onChunk(latencyMs, lagMs);
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.failedRuns.increment();
+            log.error("❌ MAINTENANCE: {} остановлена после {} строк: {}", name, processed, e.getMessage(), e);
+        } finally {
+            releaseLease(name);
+        }
+
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        stats.finishRun(processed, durationMs);
+        refreshBacklog(operation, stats, parameters);
+        if (processed > 0 || !completed) {
+            log.info("🧹 MAINTENANCE: {} - {} строк за {} мс ({} порций){}", name, processed, durationMs, chunks,
+                    completed ? "" : ", проход будет продолжен");
+        }
+        return new RunResult(name, processed, chunks, completed, false, durationMs);
+    }
+
+    private ChunkResult executeChunk(ChunkedOperation operation, long afterKey, int limit, Object[] parameters) {
+        ChunkResult result = jobRepository.executeChunk(operation, afterKey, limit, parameters);
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepository.saveCheckpoint(operation.name(), nodeId, result.lastKey(), result.processed(),
+                now.plus(leaseMs, ChronoUnit.MILLIS), now) == 0) {
+            // Аренду забрал другой инстанс - порция откатывается вместе с транзакцией
+            throw new IllegalStateException("Аренда операции " + operation.name() + " потеряна");
+        }
+        return result;
+    }
+
+    private void ensureJob(String name) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!jobRepository.existsById(name)) {
+                    jobRepository.saveAndFlush(new MaintenanceJobEntity(name));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // строку одновременно создал другой инстанс
+        }
+    }
+
+    private boolean acquireLease(String name) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer acquired = transactionTemplate.execute(status -> jobRepository.tryAcquireLease(name, nodeId,
+                now.plus(leaseMs, ChronoUnit.MILLIS), now));
+        return acquired != null && acquired > 0;
+    }
+
+    private void releaseLease(String name) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.releaseLease(name, nodeId));
+        } catch (Exception e) {
+            log.warn("⚠️ MAINTENANCE: не удалось освободить аренду {}: {}", name, e.getMessage());
+        }
+    }
+
+    private long replicationLagMs() {
+        long lag = replicaLagMonitoringService != null
+                ? Math.max(0, replicaLagMonitoringService.getLastReplicationLagMs())
+                : 0;
+        try {
+            Long primaryLag = transactionTemplate.execute(status -> jobRepository.currentReplicationLagMs());
+            return Math.max(lag, primaryLag != null ? primaryLag : 0);
+        } catch (Exception e) {
+            log.debug("Replication lag check failed: {}", e.getMessage());
+            return lag;
+        }
+    }
+
+    private void refreshBacklog(ChunkedOperation operation, OperationStats stats, Object[] parameters) {
+        try {
+            MaintenanceJobEntity job = transactionTemplate.execute(
+                    status -> jobRepository.findById(operation.name()).orElse(null));
+            long afterKey = job != null && job.getStatus() == JobStatus.RUNNING ? job.getLastKey() : 0;
+            Long backlog = transactionTemplate.execute(
+                    status -> jobRepository.estimateBacklog(operation, afterKey, parameters));
+            stats.backlogAtRunStart.set(backlog != null ? backlog : 0);
+        } catch (Exception e) {
+            log.warn("⚠️ MAINTENANCE: не удалось оценить очередь {}: {}", operation.name(), e.getMessage());
+        }
+    }
+
+    /**
+     * Метрики операций: скорость, размер порции, пауза, отставание реплики,
+     * оставшаяся очередь и состояние прохода в maintenance_jobs
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, MaintenanceJobEntity> jobs = new HashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findAll()
+                    .forEach(job -> jobs.put(job.getName(), job)));
+        } catch (Exception e) {
+            log.warn("⚠️ MAINTENANCE: не удалось прочитать состояние операций: {}", e.getMessage());
+        }
+
+        Map<String, Object> operationsStats = new LinkedHashMap<>();
+        for (ChunkedOperation operation : operations.values()) {
+            Map<String, Object> stats = operationStats.get(operation.name()).toMap();
+            stats.put("table", operation.table());
+            stats.put("action", operation.isDelete() ? "DELETE" : "UPDATE");
+            stats.put("scheduleMs", operation.schedule() != null ? operation.schedule().toMillis() : null);
+            MaintenanceJobEntity job = jobs.get(operation.name());
+            if (job != null) {
+                stats.put("status", job.getStatus().name());
+                stats.put("lastKey", job.getLastKey());
+                stats.put("passProcessed", job.getPassProcessed());
+                stats.put("totalProcessedAllNodes", job.getTotalProcessed());
+                stats.put("leaseOwner", job.getLeaseOwner());
+                stats.put("leaseUntil", job.getLeaseUntil());
+                stats.put("passStartedAt", job.getPassStartedAt());
+                stats.put("lastCompletedAt", job.getLastCompletedAt());
+            }
+            operationsStats.put(operation.name(), stats);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("nodeId", nodeId);
+        result.put("maxRunMs", maxRunMs);
+        result.put("targetChunkLatencyMs", targetLatencyMs);
+        result.put("maxReplicationLagMs", maxReplicationLagMs);
+        result.put("operations", operationsStats);
+        return result;
+    }
+
+    /**
+     * Метрики одной операции на этом инстансе
+     */
+    private static final class OperationStats {
+
+        private final AdaptiveThrottle throttle;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final LongAdder processedRows = new LongAdder();
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder completedPasses = new LongAdder();
+        private final LongAdder skippedRuns = new LongAdder();
+        private final LongAdder failedRuns = new LongAdder();
+        private final AtomicLong runProcessed = new AtomicLong();
+        private final AtomicLong runStartedNanos = new AtomicLong();
+        private final AtomicLong backlogAtRunStart = new AtomicLong();
+        private final AtomicLong lastChunkLatencyMs = new AtomicLong();
+        private final AtomicLong lastReplicationLagMs = new AtomicLong();
+        private final AtomicLong lastRunProcessed = new AtomicLong();
+        private final AtomicLong lastRunDurationMs = new AtomicLong();
+        private final AtomicReference<LocalDateTime> lastRunAt = new AtomicReference<>();
+
+        private OperationStats(AdaptiveThrottle throttle) {
+            this.throttle = throttle;
+        }
+
+        private void recordChunk(int processed, long latencyMs) {
+            processedRows.add(processed);
+            chunks.increment();
+            runProcessed.addAndGet(processed);
+            lastChunkLatencyMs.set(latencyMs);
+        }
+
+        private void finishRun(long processed, long durationMs) {
+            lastRunProcessed.set(processed);
+            lastRunDurationMs.set(durationMs);
+            lastRunAt.set(LocalDateTime.now());
+            runProcessed.set(0);
+        }
+
+        private Map<String, Object> toMap() {
+            boolean active = running.get();
+            long inRun = runProcessed.get();
+            double elapsedSeconds = (System.nanoTime() - runStartedNanos.get()) / 1_000_000_000.0;
+            long lastDuration = lastRunDurationMs.get();
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("running", active);
+            stats.put("rowsPerSecond", active && elapsedSeconds > 0 ? inRun / elapsedSeconds : 0.0);
+            stats.put("lastRunRowsPerSecond", lastDuration > 0 ? lastRunProcessed.get() * 1000.0 / lastDuration : 0.0);
+            stats.put("backlog", Math.max(0, backlogAtRunStart.get() - inRun));
+            stats.put("processedRows", processedRows.sum());
+            stats.put("chunks", chunks.sum());
+            stats.put("completedPasses", completedPasses.sum());
+            stats.put("skippedRuns", skippedRuns.sum());
+            stats.put("failedRuns", failedRuns.sum());
+            stats.put("chunkSize", throttle.getChunkSize());
+            stats.put("pauseMs", throttle.getPauseMs());
+            stats.put("throttledChunks", throttle.getThrottledChunks());
+            stats.put("lastChunkLatencyMs", lastChunkLatencyMs.get());
+            stats.put("replicationLagMs", lastReplicationLagMs.get());
+            stats.put("lastRunAt", lastRunAt.get());
+            stats.put("lastRunProcessed", lastRunProcessed.get());
+            stats.put("lastRunDurationMs", lastDuration);
+            return stats;
+        }
+    }
+}
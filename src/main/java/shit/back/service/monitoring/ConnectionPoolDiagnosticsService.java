@@ -5,6 +5,7 @@ import com.zaxxer.hikari.HikariPoolMXBean;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import shit.back.infrastructure.datasource.HikariPoolResolver;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -55,8 +56,8 @@ public class ConnectionPoolDiagnosticsService {
             detailedStats.put("timestamp", now);
             detailedStats.put("lastHealthCheck", lastHealthCheck.get());
 
-            if (dataSource instanceof HikariDataSource) {
-                HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+            HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+            if (hikariDataSource != null) {
 
                 // Основная информация о пуле
                 Map<String, Object> poolInfo = new HashMap<>();
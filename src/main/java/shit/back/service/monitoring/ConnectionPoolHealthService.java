@@ -9,6 +9,7 @@ import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.stereotype.Service;
+import shit.back.infrastructure.datasource.HikariPoolResolver;
 
 import javax.sql.DataSource;
 import java.util.HashMap;
@@ -43,8 +44,8 @@ public class ConnectionPoolHealthService implements HealthIndicator {
 
         try {
             // Проверка Database pool
-            if (dataSource instanceof HikariDataSource) {
-                HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+            HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+            if (hikariDataSource != null) {
                 HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
 
                 if (poolMXBean != null) {
@@ -124,8 +125,8 @@ public class ConnectionPoolHealthService implements HealthIndicator {
 
         try {
             // Database pool stats
-            if (dataSource instanceof HikariDataSource) {
-                HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+            HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+            if (hikariDataSource != null) {
                 HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
 
                 if (poolMXBean != null) {
@@ -183,8 +184,8 @@ public class ConnectionPoolHealthService implements HealthIndicator {
      */
     public boolean hasConnectionPoolIssues() {
         try {
-            if (dataSource instanceof HikariDataSource) {
-                HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+            HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+            if (hikariDataSource != null) {
                 HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
 
                 if (poolMXBean != null) {
@@ -8,6 +8,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import shit.back.infrastructure.datasource.HikariPoolResolver;
 
 import javax.sql.DataSource;
 
@@ -47,8 +48,8 @@ public class ConnectionPoolLoggingService {
      * Логирование состояния database connection pool
      */
     private void logDatabasePoolStatus() {
-        if (dataSource instanceof HikariDataSource) {
-            HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+        if (hikariDataSource != null) {
             HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
 
             if (poolMXBean != null) {
@@ -102,8 +103,8 @@ public class ConnectionPoolLoggingService {
      * Логирование критических проблем с пулом соединений
      */
     public void logCriticalIssues() {
-        if (dataSource instanceof HikariDataSource) {
-            HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+        if (hikariDataSource != null) {
             HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
 
             if (poolMXBean != null) {
@@ -135,8 +136,8 @@ public class ConnectionPoolLoggingService {
      * Логирование детальной информации для диагностики
      */
     public void logDetailedDiagnostics() {
-        if (dataSource instanceof HikariDataSource) {
-            HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+        if (hikariDataSource != null) {
 
             log.info("🔍 ДЕТАЛЬНАЯ ДИАГНОСТИКА CONNECTION POOL:");
             log.info("  📋 Pool Name: {}", hikariDataSource.getPoolName());
@@ -176,8 +177,9 @@ public class ConnectionPoolLoggingService {
     public void logStartupPoolStatus() {
         log.info("🚀 ПРОВЕРКА CONNECTION POOL ПРИ ЗАПУСКЕ:");
 
-        if (dataSource instanceof HikariDataSource) {
-            HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        HikariDataSource hikariDataSource = HikariPoolResolver.resolvePrimary(dataSource);
+
+        if (hikariDataSource != null) {
             log.info("✅ HikariCP DataSource обнаружен: {}", hikariDataSource.getPoolName());
 
             if (!hikariDataSource.isClosed()) {
@@ -4,7 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import shit.back.service.activity.HighPerformanceUserActivityService;
+import shit.back.service.activity.ActivityLogIngestionPipeline;
 import shit.back.service.OptimizedUserSessionService;
 import shit.back.application.balance.service.HighPerformanceBalanceService;
 
@@ -34,7 +34,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class DatabasePerformanceMonitoringService {
 
     @Autowired(required = false)
-    private HighPerformanceUserActivityService activityService;
+    private ActivityLogIngestionPipeline activityService;
 
     @Autowired(required = false)
     private OptimizedUserSessionService sessionService;
@@ -95,29 +95,23 @@ public class DatabasePerformanceMonitoringService {
      */
     private void monitorActivityServicePerformance() {
         try {
-            var metrics = activityService.getPerformanceMetrics();
+            var metrics = activityService.getStatistics();
 
-            log.info("📊 ACTIVITY SERVICE:");
-            log.info("   Обработано записей: {}", metrics.totalProcessed);
-            log.info("   Batch операций: {}", metrics.batchCount);
-            log.info("   Размер буфера: {}/{}", metrics.currentBufferSize, metrics.maxBufferSize);
-            log.info("   Порог производительности: {}ms", metrics.performanceThresholdMs);
+            log.info("📊 ACTIVITY INGEST:");
+            log.info("   Записано событий: {}", metrics.get("persistedEvents"));
+            log.info("   Batch операций: {}, средний размер {}", metrics.get("batches"), metrics.get("avgBatchSize"));
+            log.info("   Размер буфера: {}/{}", metrics.get("bufferSize"), metrics.get("bufferCapacity"));
+            log.info("   Время записи batch: {}ms", metrics.get("flushLatencyMs"));
 
             // Предупреждения
-            if (metrics.currentBufferSize > metrics.maxBufferSize * 0.8) {
-                log.warn("⚠️ ACTIVITY: Буфер заполнен на {}%",
-                        (double) metrics.currentBufferSize / metrics.maxBufferSize * 100);
+            double fillPercent = (double) metrics.get("bufferFillPercent");
+            if (fillPercent > 80) {
+                log.warn("⚠️ ACTIVITY: Буфер заполнен на {}%", fillPercent);
             }
 
-            // Расчет эффективности batch операций
-            if (metrics.batchCount > 0) {
-                double avgBatchSize = (double) metrics.totalProcessed / metrics.batchCount;
-                log.info("   Средний размер batch: {:.1f}", avgBatchSize);
-
-                if (avgBatchSize < metrics.optimalBatchSize * 0.5) {
-                    log.warn("⚠️ ACTIVITY: Низкая эффективность batch операций (avg={:.1f}, optimal={})",
-                            avgBatchSize, metrics.optimalBatchSize);
-                }
+            long dropped = (long) metrics.get("droppedFull") + (long) metrics.get("droppedShed");
+            if (dropped > 0) {
+                log.warn("⚠️ ACTIVITY: Отброшено событий при переполнении: {}", dropped);
             }
 
         } catch (Exception e) {
@@ -0,0 +1,120 @@
+package shit.back.service.monitoring;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import shit.back.config.DataSourceRoutingProperties;
+import shit.back.infrastructure.datasource.DataSourceRoute;
+import shit.back.infrastructure.datasource.ReadWriteRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Мониторинг отставания реплики и метрики пулов по маршрутам
+ *
+ * Периодически измеряет лаг репликации через пул реплики. Если лаг больше
+ * app.datasource.routing.lag-check.max-replication-lag или реплика не
+ * отвечает - read-only транзакции временно направляются в основной пул.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReplicaLagMonitoringService {
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private DataSourceRoutingProperties routingProperties;
+
+    // Последний измеренный лаг в мс (-1 если измерение не удалось)
+    private final AtomicLong lastReplicationLagMs = new AtomicLong(0);
+    private final AtomicLong failedLagChecks = new AtomicLong(0);
+    private final AtomicReference<LocalDateTime> lastLagCheck = new AtomicReference<>();
+
+    @Scheduled(fixedDelayString = "${app.datasource.routing.lag-check.interval-ms:5000}")
+    public void checkReplicationLag() {
+        DataSourceRoutingProperties.LagCheck lagCheck = routingProperties.getLagCheck();
+        if (!lagCheck.isEnabled()) {
+            return;
+        }
+
+        lastLagCheck.set(LocalDateTime.now());
+        try (Connection connection = routingDataSource.getReplicaPool().getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(lagCheck.getQuery())) {
+
+            double lagSeconds = resultSet.next() ? resultSet.getDouble(1) : 0;
+            long lagMs = Math.round(lagSeconds * 1000);
+            lastReplicationLagMs.set(lagMs);
+
+            boolean withinLimit = lagMs <= lagCheck.getMaxReplicationLag().toMillis();
+            routingDataSource.setReplicaAvailable(withinLimit);
+            if (!withinLimit) {
+                log.warn("⚠️ DB ROUTING: Лаг реплики {}ms превышает лимит {}ms",
+                        lagMs, lagCheck.getMaxReplicationLag().toMillis());
+            }
+        } catch (Exception e) {
+            failedLagChecks.incrementAndGet();
+            lastReplicationLagMs.set(-1);
+            routingDataSource.setReplicaAvailable(false);
+            log.warn("⚠️ DB ROUTING: Не удалось проверить лаг реплики: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Последний измеренный лаг реплики в мс (-1 если измерение не удалось)
+     */
+    public long getLastReplicationLagMs() {
+        return lastReplicationLagMs.get();
+    }
+
+    /**
+     * Статистика маршрутизации и пулов по каждому маршруту
+     */
+    public Map<String, Object> getRoutingStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("replicaAvailable", routingDataSource.isReplicaAvailable());
+        stats.put("replicationLagMs", lastReplicationLagMs.get());
+        stats.put("maxReplicationLagMs", routingProperties.getLagCheck().getMaxReplicationLag().toMillis());
+        stats.put("failedLagChecks", failedLagChecks.get());
+        stats.put("lastLagCheck", lastLagCheck.get());
+        stats.put("replicaFallbacks", routingDataSource.getReplicaFallbacks());
+
+        Map<String, Object> routes = new HashMap<>();
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            routes.put(route.name().toLowerCase(), collectPoolStats(route));
+        }
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private Map<String, Object> collectPoolStats(DataSourceRoute route) {
+        HikariDataSource pool = routingDataSource.getPool(route);
+        Map<String, Object> poolStats = new HashMap<>();
+        poolStats.put("poolName", pool.getPoolName());
+        poolStats.put("maximumPoolSize", pool.getMaximumPoolSize());
+        poolStats.put("minimumIdle", pool.getMinimumIdle());
+        poolStats.put("routedConnections", routingDataSource.getRoutedConnections(route));
+
+        HikariPoolMXBean poolMXBean = pool.getHikariPoolMXBean();
+        if (poolMXBean != null) {
+            poolStats.put("active", poolMXBean.getActiveConnections());
+            poolStats.put("idle", poolMXBean.getIdleConnections());
+            poolStats.put("total", poolMXBean.getTotalConnections());
+            poolStats.put("waiting", poolMXBean.getThreadsAwaitingConnection());
+        }
+        return poolStats;
+    }
+}
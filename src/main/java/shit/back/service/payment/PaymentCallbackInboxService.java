@@ -0,0 +1,398 @@
+package shit.back.service.payment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.PaymentCallbackEntity;
+import shit.back.entity.PaymentCallbackEntity.CallbackStatus;
+import shit.back.entity.PaymentEntity;
+import shit.back.entity.PaymentStatus;
+import shit.back.repository.PaymentCallbackJpaRepository;
+import shit.back.repository.PaymentJpaRepository;
+import shit.back.service.PaymentService;
+import shit.back.util.LatencyWindow;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inbox callback'ов платежных систем
+ *
+ * Контроллер после проверки подписи только сохраняет callback и сразу
+ * отвечает провайдеру. Обработка идет в фоне:
+ * - захват пачки PENDING через FOR UPDATE SKIP LOCKED (безопасно для нескольких инстансов)
+ * - callback'и одного paymentId обрабатываются одной задачей по порядку id,
+ *   а между инстансами сериализуются блокировкой строки платежа
+ * - одинаковые доставки отсекаются уникальным индексом (payment_id, payload_hash),
+ *   callback'и по уже завершенному платежу помечаются DUPLICATE
+ * - итоговые статусы callback'ов записываются пачкой, одним UPDATE на статус
+ */
+@Slf4j
+@Service
+public class PaymentCallbackInboxService {
+
+    private static final int LATENCY_WINDOW_SIZE = 1024;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private PaymentCallbackJpaRepository callbackRepository;
+
+    @Autowired
+    private PaymentJpaRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("paymentCallbackExecutor")
+    private Executor callbackExecutor;
+
+    @Value("${app.payment.callback-inbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.payment.callback-inbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.payment.callback-inbox.stale-claim-after-ms:300000}")
+    private long staleClaimAfterMs;
+
+    @Value("${app.payment.callback-inbox.retention-days:7}")
+    private int retentionDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    // paymentId, обработка которых идет на этом инстансе
+    private final Set<String> inFlightPayments = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<CallbackOutcome> outcomes = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder acceptedCallbacks = new LongAdder();
+    private final LongAdder duplicateDeliveries = new LongAdder();
+    private final LongAdder processedCallbacks = new LongAdder();
+    private final LongAdder alreadySettledCallbacks = new LongAdder();
+    private final LongAdder failedCallbacks = new LongAdder();
+    private final LongAdder retriedCallbacks = new LongAdder();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final LatencyWindow settleLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+
+    public enum EnqueueResult {
+        ACCEPTED, DUPLICATE
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Сохранить callback после проверки подписи
+     *
+     * Исключение означает, что callback не сохранен - провайдер должен
+     * получить ошибку и повторить доставку.
+     */
+    public EnqueueResult enqueue(String provider, String paymentId, Map<String, String> params) {
+        String canonical = canonicalize(provider, params);
+        String payloadHash = sha256(canonical);
+
+        if (callbackRepository.existsByPaymentIdAndPayloadHash(paymentId, payloadHash)) {
+            duplicateDeliveries.increment();
+            log.info("🔁 CALLBACK INBOX: Повторная доставка {} callback'а для платежа {} пропущена", provider, paymentId);
+            return EnqueueResult.DUPLICATE;
+        }
+
+        try {
+            callbackRepository.save(new PaymentCallbackEntity(provider, paymentId, payloadHash,
+                    objectMapper.writeValueAsString(new TreeMap<>(params))));
+        } catch (DataIntegrityViolationException e) {
+            // Та же доставка параллельно сохранена другим запросом
+            duplicateDeliveries.increment();
+            return EnqueueResult.DUPLICATE;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать callback", e);
+        }
+
+        acceptedCallbacks.increment();
+        queueDepth.incrementAndGet();
+        log.debug("📥 CALLBACK INBOX: {} callback для платежа {} принят", provider, paymentId);
+        return EnqueueResult.ACCEPTED;
+    }
+
+    /**
+     * Цикл опроса: запись результатов предыдущих задач и захват новой пачки
+     */
+    @Scheduled(fixedDelayString = "${app.payment.callback-inbox.poll-interval-ms:200}")
+    public void poll() {
+        try {
+            flushOutcomes();
+
+            List<PaymentCallbackEntity> claimed = claimBatch();
+            if (claimed.isEmpty()) {
+                return;
+            }
+
+            Map<String, List<PaymentCallbackEntity>> byPayment = new LinkedHashMap<>();
+            for (PaymentCallbackEntity callback : claimed) {
+                byPayment.computeIfAbsent(callback.getPaymentId(), id -> new ArrayList<>()).add(callback);
+            }
+
+            for (Map.Entry<String, List<PaymentCallbackEntity>> entry : byPayment.entrySet()) {
+                inFlightPayments.add(entry.getKey());
+                callbackExecutor.execute(() -> processPaymentCallbacks(entry.getValue()));
+            }
+        } catch (Exception e) {
+            log.error("❌ CALLBACK INBOX: Ошибка цикла опроса: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возврат зависших захватов и очистка обработанных callback'ов
+     */
+    @Scheduled(fixedDelayString = "${app.payment.callback-inbox.maintenance-interval-ms:60000}")
+    public void maintenance() {
+        try {
+            Integer released = transactionTemplate.execute(status -> callbackRepository.releaseStaleClaims(
+                    CallbackStatus.PENDING, CallbackStatus.PROCESSING,
+                    LocalDateTime.now().minus(Duration.ofMillis(staleClaimAfterMs))));
+            if (released != null && released > 0) {
+                log.warn("⚠️ CALLBACK INBOX: {} зависших callback'ов возвращено в очередь", released);
+            }
+
+            Integer deleted = transactionTemplate.execute(status -> callbackRepository.deleteCompletedBefore(
+                    EnumSet.of(CallbackStatus.PROCESSED, CallbackStatus.DUPLICATE, CallbackStatus.FAILED),
+                    LocalDateTime.now().minusDays(retentionDays)));
+            if (deleted != null && deleted > 0) {
+                log.info("🧹 CALLBACK INBOX: Удалено {} обработанных callback'ов", deleted);
+            }
+
+            queueDepth.set(callbackRepository.countByStatus(CallbackStatus.PENDING));
+        } catch (Exception e) {
+            log.warn("⚠️ CALLBACK INBOX: Ошибка обслуживания: {}", e.getMessage());
+        }
+    }
+
+    private List<PaymentCallbackEntity> claimBatch() {
+        List<PaymentCallbackEntity> claimed = transactionTemplate.execute(status -> {
+            List<PaymentCallbackEntity> pending = callbackRepository.findForUpdateByStatus(
+                    CallbackStatus.PENDING, PageRequest.of(0, batchSize));
+
+            // Платежи, которые еще обрабатываются, остаются в очереди целиком,
+            // чтобы не нарушить порядок их callback'ов
+            List<PaymentCallbackEntity> ready = pending.stream()
+                    .filter(callback -> !inFlightPayments.contains(callback.getPaymentId()))
+                    .toList();
+            if (!ready.isEmpty()) {
+                callbackRepository.markClaimed(ready.stream().map(PaymentCallbackEntity::getId).toList(),
+                        CallbackStatus.PROCESSING, LocalDateTime.now());
+            }
+            return ready;
+        });
+        if (claimed == null) {
+            return List.of();
+        }
+        queueDepth.updateAndGet(depth -> Math.max(0, depth - claimed.size()));
+        return claimed;
+    }
+
+    private void processPaymentCallbacks(List<PaymentCallbackEntity> callbacks) {
+        List<CallbackOutcome> results = new ArrayList<>(callbacks.size());
+        for (PaymentCallbackEntity callback : callbacks) {
+            results.add(processCallback(callback));
+        }
+        outcomes.addAll(results);
+        // Платеж освобождается только после записи статусов в flushOutcomes
+        outcomes.add(CallbackOutcome.release(callbacks.get(0).getPaymentId()));
+    }
+
+    private CallbackOutcome processCallback(PaymentCallbackEntity callback) {
+        int attempt = callback.getAttempts() + 1;
+        try {
+            Map<String, String> params = objectMapper.readValue(callback.getPayload(),
+                    new TypeReference<Map<String, String>>() {
+                    });
+
+            CallbackStatus result = transactionTemplate.execute(status -> {
+                Optional<PaymentEntity> payment = paymentRepository.findForUpdateByPaymentId(callback.getPaymentId());
+                if (payment.isEmpty()) {
+                    return CallbackStatus.FAILED;
+                }
+                if (payment.get().getStatus() == PaymentStatus.COMPLETED) {
+                    return CallbackStatus.DUPLICATE;
+                }
+                return paymentService.verifyPaymentCallback(callback.getPaymentId(), params)
+                        ? CallbackStatus.PROCESSED
+                        : CallbackStatus.FAILED;
+            });
+
+            String error = result == CallbackStatus.FAILED ? "Callback не прошел обработку" : null;
+            return CallbackOutcome.done(callback, result, error);
+
+        } catch (Exception e) {
+            log.warn("⚠️ CALLBACK INBOX: Ошибка обработки callback {} платежа {} (попытка {}/{}): {}",
+                    callback.getId(), callback.getPaymentId(), attempt, maxAttempts, e.getMessage());
+            return attempt < maxAttempts
+                    ? CallbackOutcome.retry(callback, e.getMessage())
+                    : CallbackOutcome.done(callback, CallbackStatus.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Пакетная запись статусов обработанных callback'ов
+     */
+    private void flushOutcomes() {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+
+        List<CallbackOutcome> drained = new ArrayList<>();
+        CallbackOutcome outcome;
+        while ((outcome = outcomes.poll()) != null) {
+            drained.add(outcome);
+        }
+
+        Map<List<Object>, List<Long>> groups = new LinkedHashMap<>();
+        List<String> released = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (CallbackOutcome item : drained) {
+            if (item.callbackId() == null) {
+                released.add(item.paymentId());
+                continue;
+            }
+            groups.computeIfAbsent(Arrays.asList(item.status(), truncate(item.error())), key -> new ArrayList<>())
+                    .add(item.callbackId());
+            recordOutcome(item, now);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> groups.forEach((key, ids) -> {
+                CallbackStatus callbackStatus = (CallbackStatus) key.get(0);
+                String error = (String) key.get(1);
+                if (callbackStatus == CallbackStatus.PENDING) {
+                    callbackRepository.markForRetry(ids, CallbackStatus.PENDING, error);
+                } else {
+                    callbackRepository.markCompleted(ids, callbackStatus, error, now);
+                }
+            }));
+        } catch (Exception e) {
+            // Строки останутся PROCESSING и вернутся в очередь через releaseStaleClaims
+            log.error("❌ CALLBACK INBOX: Не удалось записать статусы {} callback'ов: {}",
+                    drained.size(), e.getMessage(), e);
+        } finally {
+            released.forEach(inFlightPayments::remove);
+        }
+    }
+
+    private void recordOutcome(CallbackOutcome outcome, LocalDateTime now) {
+        switch (outcome.status()) {
+            case PROCESSED -> processedCallbacks.increment();
+            case DUPLICATE -> alreadySettledCallbacks.increment();
+            case FAILED -> failedCallbacks.increment();
+            case PENDING -> {
+                retriedCallbacks.increment();
+                queueDepth.incrementAndGet();
+                return;
+            }
+            default -> {
+                return;
+            }
+        }
+        settleLatency.record(Duration.between(outcome.receivedAt(), now).toMillis());
+    }
+
+    /**
+     * Статистика inbox: глубина очереди, исходы и задержка от приема до завершения
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", queueDepth.get());
+        stats.put("inFlightPayments", inFlightPayments.size());
+        stats.put("acceptedCallbacks", acceptedCallbacks.sum());
+        stats.put("duplicateDeliveries", duplicateDeliveries.sum());
+        stats.put("processedCallbacks", processedCallbacks.sum());
+        stats.put("alreadySettledCallbacks", alreadySettledCallbacks.sum());
+        stats.put("failedCallbacks", failedCallbacks.sum());
+        stats.put("retriedCallbacks", retriedCallbacks.sum());
+        stats.put("settleLatencyMs", settleLatency.snapshot());
+        return stats;
+    }
+
+    /**
+     * Каноническая строка callback'а: провайдер и параметры, отсортированные по ключу
+     */
+    static String canonicalize(String provider, Map<String, String> params) {
+        StringBuilder builder = new StringBuilder(provider);
+        new TreeMap<>(params).forEach((key, value) -> {
+            if (key != null && value != null) {
+                builder.append('&').append(key).append('=').append(value);
+            }
+        });
+        return builder.toString();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Результат обработки callback'а; callbackId == null - маркер освобождения платежа
+     */
+    private record CallbackOutcome(Long callbackId, String paymentId, CallbackStatus status, String error,
+            LocalDateTime receivedAt) {
+
+        static CallbackOutcome done(PaymentCallbackEntity callback, CallbackStatus status, String error) {
+            return new CallbackOutcome(callback.getId(), callback.getPaymentId(), status, error,
+                    callback.getReceivedAt());
+        }
+
+        static CallbackOutcome retry(PaymentCallbackEntity callback, String error) {
+            return done(callback, CallbackStatus.PENDING, error);
+        }
+
+        static CallbackOutcome release(String paymentId) {
+            return new CallbackOutcome(null, paymentId, null, null, null);
+        }
+    }
+}
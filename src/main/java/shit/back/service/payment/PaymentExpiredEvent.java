@@ -0,0 +1,19 @@
+package shit.back.service.payment;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Событие истечения срока платежа
+ * Публикуется после фиксации транзакции, в которой платеж переведен в EXPIRED
+ */
+public record PaymentExpiredEvent(
+        String paymentId,
+        Long userId,
+        String orderId,
+        BigDecimal amount,
+        String currency,
+        String paymentMethod,
+        LocalDateTime expiresAt,
+        LocalDateTime expiredAt) {
+}
@@ -0,0 +1,226 @@
+package shit.back.service.payment;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.dto.payment.ExpiredPayment;
+import shit.back.infrastructure.events.DomainEventPublisher;
+import shit.back.repository.PaymentExpiryRepositoryImpl;
+import shit.back.repository.PaymentJpaRepository;
+import shit.back.service.BalanceService;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Перевод просроченных платежей в EXPIRED
+ *
+ * Платежи обрабатываются пачками по batch-size, каждая пачка в своей
+ * транзакции: UPDATE статуса, вызов освобождения резерва баланса по заказу
+ * (пока заглушка BalanceServiceImpl, в статистике не учитывается) и
+ * публикация PaymentExpiredEvent после коммита. За один запуск обрабатывается
+ * не больше max-batches-per-run пачек, остаток забирает следующий запуск.
+ * Пачки берутся через FOR UPDATE SKIP LOCKED, поэтому очистку можно
+ * запускать на всех инстансах одновременно.
+ *
+ * Выборка идет по частичному индексу на expires_at для ожидающих оплаты
+ * платежей; индекс создается после старта (только PostgreSQL).
+ */
+@Slf4j
+@Service
+public class PaymentExpirySweeper {
+
+    public static final String EXPIRY_REASON = "Время платежа истекло";
+
+    private static final String PARTIAL_INDEX_SQL =
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_awaiting_expiry "
+                    + "ON payments (expires_at) WHERE " + PaymentExpiryRepositoryImpl.AWAITING_EXPIRY_PREDICATE;
+
+    @Autowired
+    private PaymentJpaRepository paymentRepository;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.payment.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.payment.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.payment.expiry.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTemplate;
+
+    private final LongAdder expiredPayments = new LongAdder();
+    private final LongAdder sweepRuns = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder sweepNanos = new LongAdder();
+    private final AtomicLong lastRunExpired = new AtomicLong();
+    private final AtomicLong lastRunDurationMs = new AtomicLong();
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicReference<LocalDateTime> oldestOverdueExpiry = new AtomicReference<>();
+    private final AtomicReference<LocalDateTime> lastRunAt = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Частичный индекс создается после старта, чтобы построение на большой
+     * таблице payments не задерживало инициализацию контекста
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createExpiryIndex() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (product == null || !product.toLowerCase().contains("postgresql")) {
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            connection.setAutoCommit(true);
+            statement.execute(PARTIAL_INDEX_SQL);
+            log.info("✅ PAYMENT EXPIRY: Индекс idx_payments_awaiting_expiry готов за {}ms",
+                    System.currentTimeMillis() - startTime);
+        } catch (SQLException e) {
+            log.warn("⚠️ PAYMENT EXPIRY: Не удалось создать индекс idx_payments_awaiting_expiry: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.payment.expiry.sweep-interval-ms:30000}",
+            initialDelayString = "${app.payment.expiry.initial-delay-ms:60000}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * Один проход очистки
+     *
+     * @return количество платежей, переведенных в EXPIRED
+     */
+    public int sweep() {
+        long startTime = System.nanoTime();
+        int expiredInRun = 0;
+
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer expired = transactionTemplate.execute(status -> expireBatch());
+                int count = expired == null ? 0 : expired;
+                expiredInRun += count;
+                if (count < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failedBatches.increment();
+            log.error("❌ PAYMENT EXPIRY: Ошибка обработки пачки просроченных платежей: {}", e.getMessage(), e);
+        }
+
+        long durationNanos = System.nanoTime() - startTime;
+        sweepRuns.increment();
+        sweepNanos.add(durationNanos);
+        expiredPayments.add(expiredInRun);
+        lastRunExpired.set(expiredInRun);
+        lastRunDurationMs.set(durationNanos / 1_000_000);
+        lastRunAt.set(LocalDateTime.now());
+        refreshBacklog();
+
+        if (expiredInRun > 0) {
+            log.info("⌛ PAYMENT EXPIRY: Истекло платежей: {} за {}ms, осталось просроченных: {}",
+                    expiredInRun, durationNanos / 1_000_000, backlog.get());
+        }
+        return expiredInRun;
+    }
+
+    private int expireBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ExpiredPayment> expired = paymentRepository.expireBatch(now, batchSize, EXPIRY_REASON);
+
+        for (ExpiredPayment payment : expired) {
+            if (payment.getOrderId() != null) {
+                balanceService.releaseReservedBalance(payment.getUserId(), payment.getOrderId());
+            }
+            eventPublisher.publishEventAfterTransaction(new PaymentExpiredEvent(
+                    payment.getPaymentId(), payment.getUserId(), payment.getOrderId(),
+                    payment.getAmount(), payment.getCurrency(), payment.getPaymentMethod(),
+                    payment.getExpiresAt(), now));
+        }
+        return expired.size();
+    }
+
+    private void refreshBacklog() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            readOnlyTemplate.executeWithoutResult(status -> {
+                backlog.set(paymentRepository.countExpiryBacklog(now));
+                oldestOverdueExpiry.set(paymentRepository.findOldestOverdueExpiry(now));
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ PAYMENT EXPIRY: Не удалось получить размер очереди просроченных платежей: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Метрики очистки: пропускная способность и очередь просроченных платежей
+     */
+    public Map<String, Object> getStatistics() {
+        long runs = sweepRuns.sum();
+        long totalExpired = expiredPayments.sum();
+        double totalSeconds = sweepNanos.sum() / 1_000_000_000.0;
+        long lastDuration = lastRunDurationMs.get();
+        LocalDateTime oldest = oldestOverdueExpiry.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batchSize", batchSize);
+        stats.put("maxBatchesPerRun", maxBatchesPerRun);
+        stats.put("sweepRuns", runs);
+        stats.put("expiredPayments", totalExpired);
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("lastRunAt", lastRunAt.get());
+        stats.put("lastRunExpired", lastRunExpired.get());
+        stats.put("lastRunDurationMs", lastDuration);
+        stats.put("lastRunThroughputPerSec",
+                lastDuration > 0 ? lastRunExpired.get() * 1000.0 / lastDuration : 0.0);
+        stats.put("avgThroughputPerSec", totalSeconds > 0 ? totalExpired / totalSeconds : 0.0);
+        stats.put("backlog", backlog.get());
+        stats.put("oldestOverdueSeconds",
+                oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toSeconds());
+        return stats;
+    }
+}
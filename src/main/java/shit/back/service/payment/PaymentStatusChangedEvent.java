@@ -0,0 +1,10 @@
+package shit.back.service.payment;
+
+import shit.back.dto.payment.PaymentStatusView;
+
+/**
+ * Событие изменения статуса платежа
+ * Публикуется после фиксации транзакции, в которой изменен статус
+ */
+public record PaymentStatusChangedEvent(PaymentStatusView status) {
+}
@@ -0,0 +1,343 @@
+package shit.back.service.payment;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.dto.payment.PaymentStatusView;
+import shit.back.entity.PaymentStatus;
+import shit.back.repository.PaymentJpaRepository;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Доставка статуса платежа клиентам без опроса БД
+ *
+ * Статус платежа хранится в памяти и обновляется событиями
+ * PaymentStatusChangedEvent / PaymentExpiredEvent после коммита, то есть
+ * из того же пути, где обрабатываются callback'и. Клиенты могут:
+ * - запрашивать статус как раньше (ответ из кэша)
+ * - ждать изменения через long-poll (DeferredResult, поток сервлета не занят)
+ * - подписаться на SSE поток статуса
+ *
+ * Ожидающие запросы не держат потоков: DeferredResult и SseEmitter
+ * завершаются асинхронно, отправка уведомлений идет на виртуальных потоках.
+ *
+ * Статус мог измениться на другом инстансе, поэтому незавершенный платеж
+ * перечитывается из БД не чаще раза в revalidate-after-ms независимо от
+ * числа клиентов, а ожидание по таймауту заканчивается такой же проверкой.
+ */
+@Slf4j
+@Service
+public class PaymentStatusHub {
+
+    @Autowired
+    private PaymentJpaRepository paymentRepository;
+
+    @Value("${app.payment.status-push.revalidate-after-ms:5000}")
+    private long revalidateAfterMs;
+
+    @Value("${app.payment.status-push.idle-ttl-ms:600000}")
+    private long idleTtlMs;
+
+    @Value("${app.payment.status-push.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${app.payment.status-push.sse-timeout-ms:300000}")
+    private long sseTimeoutMs;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService notifier = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder dbReads = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder longPollRequests = new LongAdder();
+    private final LongAdder longPollImmediate = new LongAdder();
+    private final LongAdder longPollNotified = new LongAdder();
+    private final LongAdder longPollTimeouts = new LongAdder();
+    private final LongAdder sseSubscriptions = new LongAdder();
+    private final LongAdder notificationsSent = new LongAdder();
+    private final LongAdder settledPayments = new LongAdder();
+    private final LongAdder evictedEntries = new LongAdder();
+
+    /**
+     * Текущий статус платежа: из кэша или, при промахе/устаревании, из БД
+     */
+    public Optional<PaymentStatusView> getStatus(String paymentId) {
+        Entry entry = entries.get(paymentId);
+        long now = System.nanoTime();
+        if (entry != null && entry.view != null && !entry.needsRevalidation(now, revalidateAfterMs)) {
+            entry.lastAccessNanos = now;
+            cacheHits.increment();
+            return Optional.of(entry.view);
+        }
+
+        dbReads.increment();
+        if (entry != null) {
+            revalidations.increment();
+        }
+        return paymentRepository.findByPaymentId(paymentId)
+                .map(PaymentStatusView::from)
+                .map(this::update);
+    }
+
+    /**
+     * Long-poll: ответ сразу, если статус уже отличается от known или
+     * платеж завершен, иначе после изменения статуса или по таймауту
+     */
+    public DeferredResult<ResponseEntity<Map<String, Object>>> awaitChange(String paymentId,
+            PaymentStatus knownStatus, long timeoutMs) {
+        longPollRequests.increment();
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>(timeoutMs);
+
+        Optional<PaymentStatusView> current = getStatus(paymentId);
+        if (current.isEmpty()) {
+            result.setResult(notFound());
+            return result;
+        }
+        PaymentStatusView view = current.get();
+        if (knownStatus == null || view.status() != knownStatus || view.isFinal()) {
+            longPollImmediate.increment();
+            result.setResult(ResponseEntity.ok(waitResponse(view, true)));
+            return result;
+        }
+
+        Waiter waiter = changed -> {
+            if (changed.status() != knownStatus && result.setResult(ResponseEntity.ok(waitResponse(changed, true)))) {
+                longPollNotified.increment();
+            }
+        };
+        Entry entry = register(view, waiter);
+        result.onCompletion(() -> entry.waiters.remove(waiter));
+        result.onTimeout(() -> {
+            longPollTimeouts.increment();
+            PaymentStatusView latest = getStatus(paymentId).orElse(view);
+            result.setResult(ResponseEntity.ok(waitResponse(latest, latest.status() != knownStatus)));
+        });
+
+        // Статус мог смениться между чтением и регистрацией
+        waiter.onChange(entry.view);
+        return result;
+    }
+
+    /**
+     * SSE поток статуса: текущий статус сразу, затем каждое изменение;
+     * поток закрывается после финального статуса
+     *
+     * @return empty, если платеж не найден
+     */
+    public Optional<SseEmitter> subscribe(String paymentId) {
+        Optional<PaymentStatusView> current = getStatus(paymentId);
+        if (current.isEmpty()) {
+            return Optional.empty();
+        }
+
+        sseSubscriptions.increment();
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        SseWaiter waiter = new SseWaiter(emitter);
+        Entry entry = register(current.get(), waiter);
+        emitter.onCompletion(() -> entry.waiters.remove(waiter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> entry.waiters.remove(waiter));
+
+        waiter.onChange(entry.view);
+        return Optional.of(emitter);
+    }
+
+    @EventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        update(event.status());
+    }
+
+    @EventListener
+    public void onPaymentExpired(PaymentExpiredEvent event) {
+        Entry entry = entries.get(event.paymentId());
+        PaymentStatusView view = entry == null ? null : entry.view;
+        if (view != null) {
+            update(view.withStatus(PaymentStatus.EXPIRED, PaymentExpirySweeper.EXPIRY_REASON, event.expiredAt()));
+        }
+    }
+
+    /**
+     * Удаление записей без ожидающих клиентов: простаивающих дольше idle-ttl-ms,
+     * а при превышении max-entries - всех завершенных платежей
+     */
+    @Scheduled(fixedDelayString = "${app.payment.status-push.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTtlMs);
+        boolean overCapacity = entries.size() > maxEntries;
+
+        for (String paymentId : entries.keySet()) {
+            entries.computeIfPresent(paymentId, (id, entry) -> {
+                boolean evictable = entry.waiters.isEmpty()
+                        && (now - entry.lastAccessNanos > idleNanos || (overCapacity && entry.view.isFinal()));
+                if (evictable) {
+                    evictedEntries.increment();
+                    return null;
+                }
+                return entry;
+            });
+        }
+    }
+
+    /**
+     * Метрики доставки статусов, в том числе сэкономленные чтения БД
+     */
+    public Map<String, Object> getStatistics() {
+        long settled = settledPayments.sum();
+        long parked = entries.values().stream().mapToLong(entry -> entry.waiters.size()).sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cachedPayments", entries.size());
+        stats.put("parkedWaiters", parked);
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("dbReads", dbReads.sum());
+        stats.put("revalidations", revalidations.sum());
+        stats.put("longPollRequests", longPollRequests.sum());
+        stats.put("longPollImmediate", longPollImmediate.sum());
+        stats.put("longPollNotified", longPollNotified.sum());
+        stats.put("longPollTimeouts", longPollTimeouts.sum());
+        stats.put("sseSubscriptions", sseSubscriptions.sum());
+        stats.put("notificationsSent", notificationsSent.sum());
+        stats.put("settledPayments", settled);
+        stats.put("evictedEntries", evictedEntries.sum());
+        // Каждое попадание в кэш раньше было чтением PaymentEntity из БД
+        stats.put("dbReadsSavedPerSettledPayment", settled > 0 ? (double) cacheHits.sum() / settled : 0.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notifier.shutdownNow();
+    }
+
+    /**
+     * Записать статус в кэш и уведомить ожидающих, если статус изменился.
+     * Финальный статус не заменяется незавершенным (устаревшее событие или чтение).
+     */
+    private PaymentStatusView update(PaymentStatusView view) {
+        AtomicBoolean changed = new AtomicBoolean();
+        Entry entry = entries.compute(view.paymentId(), (id, existing) -> {
+            Entry target = existing != null ? existing : new Entry();
+            PaymentStatusView current = target.view;
+            if (current == null || !(current.isFinal() && !view.isFinal())) {
+                changed.set(current != null && current.status() != view.status());
+                target.view = view;
+            }
+            target.refreshedAtNanos = System.nanoTime();
+            target.lastAccessNanos = target.refreshedAtNanos;
+            return target;
+        });
+
+        if (changed.get()) {
+            if (view.isFinal()) {
+                settledPayments.increment();
+            }
+            notifyWaiters(entry);
+        }
+        return entry.view;
+    }
+
+    private Entry register(PaymentStatusView view, Waiter waiter) {
+        return entries.compute(view.paymentId(), (id, existing) -> {
+            Entry target = existing != null ? existing : new Entry();
+            if (target.view == null) {
+                target.view = view;
+                target.refreshedAtNanos = System.nanoTime();
+            }
+            target.lastAccessNanos = System.nanoTime();
+            target.waiters.add(waiter);
+            return target;
+        });
+    }
+
+    private void notifyWaiters(Entry entry) {
+        for (Waiter waiter : entry.waiters) {
+            notifier.execute(() -> {
+                // Отправляется актуальный статус, а не тот, что вызвал уведомление,
+                // поэтому переупорядочивание задач не приводит к откату статуса у клиента
+                waiter.onChange(entry.view);
+                notificationsSent.increment();
+            });
+        }
+    }
+
+    private static Map<String, Object> waitResponse(PaymentStatusView view, boolean changed) {
+        Map<String, Object> response = view.toResponse();
+        response.put("changed", changed);
+        return response;
+    }
+
+    private static ResponseEntity<Map<String, Object>> notFound() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", "Платеж не найден");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @FunctionalInterface
+    private interface Waiter {
+        void onChange(PaymentStatusView view);
+    }
+
+    private static final class SseWaiter implements Waiter {
+        private final SseEmitter emitter;
+        private PaymentStatus lastSent;
+        private boolean completed;
+
+        SseWaiter(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public synchronized void onChange(PaymentStatusView view) {
+            if (completed || view.status() == lastSent) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("status")
+                        .id(view.status().name())
+                        .data(view.toResponse()));
+                lastSent = view.status();
+                if (view.isFinal()) {
+                    completed = true;
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                completed = true;
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private volatile PaymentStatusView view;
+        private volatile long refreshedAtNanos;
+        private volatile long lastAccessNanos;
+        private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+        boolean needsRevalidation(long now, long revalidateAfterMs) {
+            return !view.isFinal() && now - refreshedAtNanos > TimeUnit.MILLISECONDS.toNanos(revalidateAfterMs);
+        }
+    }
+}
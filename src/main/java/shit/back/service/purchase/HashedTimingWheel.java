@@ -0,0 +1,137 @@
+package shit.back.service.purchase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хешированное колесо таймеров
+ *
+ * Таймер попадает в слот (тик срабатывания mod wheelSize), поэтому
+ * планирование и отмена стоят O(1), а продвижение на один тик просматривает
+ * только один слот. Таймеры дальше одного оборота лежат в том же слоте
+ * и пропускаются, пока не наступит их тик. На каждый ключ хранится
+ * не больше одного таймера: повторное планирование заменяет предыдущий.
+ *
+ * Колесо не имеет своего потока: его продвигает вызывающий (advance),
+ * обычно из @Scheduled метода.
+ *
+ * @param <K> ключ таймера
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickMs;
+    private final int mask;
+    private final List<List<Timer<K>>> slots;
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param tickMs     длительность тика
+     * @param wheelSize  число слотов (округляется вверх до степени двойки)
+     * @param nowMillis  текущее время
+     */
+    public HashedTimingWheel(long tickMs, int wheelSize, long nowMillis) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Длительность тика должна быть положительной");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = Math.floorDiv(nowMillis, tickMs);
+    }
+
+    /**
+     * Запланировать (или перепланировать) таймер ключа
+     *
+     * Время в прошлом срабатывает на ближайшем тике.
+     */
+    public synchronized void schedule(K key, long dueAtMillis) {
+        Timer<K> previous = timers.remove(key);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        long tick = Math.max(Math.floorDiv(dueAtMillis + tickMs - 1, tickMs), currentTick + 1);
+        Timer<K> timer = new Timer<>(key, tick);
+        slots.get((int) (tick & mask)).add(timer);
+        timers.put(key, timer);
+    }
+
+    /**
+     * @return true, если таймер ключа был запланирован
+     */
+    public synchronized boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        timer.cancelled = true;
+        return true;
+    }
+
+    public synchronized boolean contains(K key) {
+        return timers.containsKey(key);
+    }
+
+    /**
+     * Продвинуть колесо до nowMillis и забрать наступившие таймеры
+     *
+     * Если с прошлого вызова прошло больше оборота, каждый слот
+     * просматривается один раз.
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMs);
+        List<K> due = new ArrayList<>();
+        long steps = Math.min(targetTick - currentTick, slots.size());
+        for (long tick = currentTick + 1; tick <= currentTick + steps; tick++) {
+            List<Timer<K>> slot = slots.get((int) (tick & mask));
+            if (slot.isEmpty()) {
+                continue;
+            }
+            List<Timer<K>> pending = new ArrayList<>(slot.size());
+            for (Timer<K> timer : slot) {
+                if (timer.cancelled) {
+                    continue;
+                }
+                if (timer.tick <= targetTick) {
+                    timers.remove(timer.key);
+                    due.add(timer.key);
+                } else {
+                    pending.add(timer);
+                }
+            }
+            slot.clear();
+            slot.addAll(pending);
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return due;
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    public int getWheelSize() {
+        return slots.size();
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long tick;
+        private boolean cancelled;
+
+        private Timer(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package shit.back.service.purchase;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.application.balance.common.Result;
+import shit.back.application.balance.dto.request.OperationRequest;
+import shit.back.application.balance.dto.response.BalanceResponse;
+import shit.back.application.balance.service.BalanceApplicationServiceV2;
+import shit.back.domain.balance.valueobjects.Currency;
+import shit.back.domain.balance.valueobjects.Money;
+import shit.back.domain.starPurchase.StarPurchaseAggregate;
+import shit.back.domain.starPurchase.valueobjects.FragmentTransactionId;
+import shit.back.domain.starPurchase.valueobjects.StarPurchaseId;
+import shit.back.entity.TransactionStatus;
+import shit.back.infrastructure.fragment.FragmentApiException;
+import shit.back.infrastructure.fragment.FragmentPurchaseClient;
+import shit.back.infrastructure.fragment.FragmentPurchaseResult;
+import shit.back.repository.StarPurchaseJpaRepository;
+import shit.back.service.FragmentIntegrationService;
+import shit.back.util.LatencyWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Saga покупки звезд через Fragment API
+ *
+ * Покупка сохраняется в star_purchases в транзакции списания баланса и после
+ * коммита отправляется в Fragment (ключ идемпотентности - starPurchaseId).
+ * Дальше покупкой управляет колесо таймеров: на каждом тике берутся только
+ * покупки, у которых наступило время проверки, и их статусы запрашиваются
+ * у Fragment одним пакетным запросом. Интервал проверок растет с возрастом
+ * покупки. Покупка, не завершенная за timeout-minutes, отменяется
+ * (timeoutCancel), и списанные средства возвращаются через
+ * BalanceApplicationServiceV2.processRefund пачками по refund-batch-size.
+ *
+ * Состояние saga хранится в самой покупке (статус, fragment_transaction_id,
+ * refund_required, refunded_at), поэтому при старте колесо восстанавливается
+ * из БД. Переходы выполняются под блокировкой строки, так что повторная
+ * проверка на другом инстансе не приводит к двойному возврату.
+ */
+@Slf4j
+@Service
+public class StarPurchaseSagaOrchestrator {
+
+    private static final int LATENCY_WINDOW_SIZE = 1024;
+    private static final Set<TransactionStatus> REFUNDABLE = EnumSet.of(TransactionStatus.FAILED,
+            TransactionStatus.CANCELLED);
+
+    @Autowired
+    private StarPurchaseJpaRepository purchaseRepository;
+
+    @Autowired
+    private FragmentIntegrationService fragmentIntegrationService;
+
+    @Autowired
+    private FragmentPurchaseClient purchaseClient;
+
+    @Autowired
+    private BalanceApplicationServiceV2 balanceService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.purchase.saga.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.purchase.saga.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${app.purchase.saga.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${app.purchase.saga.timeout-minutes:30}")
+    private int timeoutMinutes;
+
+    @Value("${app.purchase.saga.check-interval-ms:5000}")
+    private long checkIntervalMs;
+
+    @Value("${app.purchase.saga.max-check-interval-ms:60000}")
+    private long maxCheckIntervalMs;
+
+    @Value("${app.purchase.saga.check-batch-size:500}")
+    private int checkBatchSize;
+
+    @Value("${app.purchase.saga.refund-batch-size:50}")
+    private int refundBatchSize;
+
+    @Value("${app.purchase.saga.refund-retry-ms:60000}")
+    private long refundRetryMs;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTemplate;
+    private HashedTimingWheel<Long> wheel;
+    private volatile boolean recovered;
+
+    private final LongAdder sagasStarted = new LongAdder();
+    private final LongAdder submissions = new LongAdder();
+    private final LongAdder resubmissions = new LongAdder();
+    private final LongAdder statusChecks = new LongAdder();
+    private final LongAdder statusCheckErrors = new LongAdder();
+    private final LongAdder completions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder refunds = new LongAdder();
+    private final LongAdder refundFailures = new LongAdder();
+    private final LongAdder concurrentUpdates = new LongAdder();
+    private final LatencyWindow completionLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+
+    enum Outcome {
+        PENDING, COMPLETED, FAILED, FINAL, CONFLICT
+    }
+
+    private enum RefundOutcome {
+        REFUNDED, TIMEOUT_REFUNDED, NOT_DUE, SKIPPED, FAILED
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        wheel = new HashedTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Восстановление таймеров незавершенных покупок после рестарта
+     *
+     * Все восстановленные покупки проверяются на ближайших тиках: статус
+     * запрашивается пакетно, просроченные сразу уходят на возврат.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Long> ids = readOnlyTemplate.execute(
+                    status -> purchaseRepository.findSagaPurchaseIds(TransactionStatus.PENDING, REFUNDABLE));
+            long now = System.currentTimeMillis();
+            for (Long id : ids) {
+                wheel.schedule(id, now);
+            }
+            log.info("⏱️ PURCHASE SAGA: Восстановлено {} незавершенных покупок", ids.size());
+        } catch (Exception e) {
+            log.error("❌ PURCHASE SAGA: Не удалось восстановить покупки из БД: {}", e.getMessage(), e);
+        } finally {
+            recovered = true;
+        }
+    }
+
+    /**
+     * Старт saga в транзакции списания баланса
+     *
+     * Покупка сохраняется в текущей транзакции; отправка в Fragment
+     * и планирование таймера выполняются после коммита.
+     *
+     * @param debitTransactionId ID транзакции списания (для описания покупки)
+     */
+    public StarPurchaseId start(Long userId, Integer starCount, Money amount, Currency currency,
+            Money balanceBefore, String debitTransactionId) {
+        StarPurchaseAggregate purchase = new StarPurchaseAggregate(userId, null, amount, starCount, currency,
+                balanceBefore, String.format("Покупка %d звезд (списание %s)", starCount, debitTransactionId));
+        purchase.startSaga();
+        StarPurchaseAggregate saved = purchaseRepository.save(purchase);
+        sagasStarted.increment();
+
+        Long id = saved.getId();
+        afterCommit(() -> wheel.schedule(id, System.currentTimeMillis() + checkIntervalMs));
+        submit(saved);
+
+        log.info("🚀 PURCHASE SAGA: Покупка {} ({} звезд, userId={}) запущена",
+                saved.getStarPurchaseId().getValue(), starCount, userId);
+        return saved.getStarPurchaseId();
+    }
+
+    /**
+     * Продвижение колеса и обработка покупок, у которых наступило время проверки
+     */
+    @Scheduled(fixedDelayString = "${app.purchase.saga.tick-ms:1000}")
+    public void tick() {
+        if (!enabled || !recovered) {
+            return;
+        }
+        List<Long> due = wheel.advance(System.currentTimeMillis());
+        int batchSize = Math.max(1, checkBatchSize);
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                processDue(batch);
+            } catch (Exception e) {
+                log.error("❌ PURCHASE SAGA: Ошибка обработки {} покупок: {}", batch.size(), e.getMessage(), e);
+                long retryAt = System.currentTimeMillis() + checkIntervalMs;
+                batch.forEach(id -> wheel.schedule(id, retryAt));
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recovered", recovered);
+        stats.put("scheduledTimers", wheel.size());
+        stats.put("wheelSize", wheel.getWheelSize());
+        stats.put("tickMs", wheel.getTickMs());
+        stats.put("inFlight", purchaseRepository.countByStatus(TransactionStatus.PENDING));
+        stats.put("refundPending", purchaseRepository.countRefundPending(REFUNDABLE));
+        stats.put("sagasStarted", sagasStarted.sum());
+        stats.put("submissions", submissions.sum());
+        stats.put("resubmissions", resubmissions.sum());
+        stats.put("statusChecks", statusChecks.sum());
+        stats.put("statusCheckErrors", statusCheckErrors.sum());
+        stats.put("completions", completions.sum());
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("refunds", refunds.sum());
+        stats.put("refundFailures", refundFailures.sum());
+        stats.put("concurrentUpdates", concurrentUpdates.sum());
+        stats.put("completionLatencyMs", completionLatency.snapshot());
+        return stats;
+    }
+
+    private void processDue(List<Long> ids) {
+        List<StarPurchaseAggregate> purchases = readOnlyTemplate.execute(
+                status -> purchaseRepository.findAllById(ids));
+        long now = System.currentTimeMillis();
+        List<Long> refundQueue = new ArrayList<>();
+        Map<String, StarPurchaseAggregate> toCheck = new LinkedHashMap<>();
+
+        for (StarPurchaseAggregate purchase : purchases) {
+            if (purchase.isRefundPending()) {
+                refundQueue.add(purchase.getId());
+            } else if (!purchase.isPending() || !purchase.isRefundRequired()) {
+                continue; // покупка завершена, таймер больше не нужен
+            } else if (purchase.isInitiated()) {
+                toCheck.put(purchase.getFragmentTransactionId().getValue(), purchase);
+            } else if (purchase.isTimedOut(timeoutMinutes)) {
+                refundQueue.add(purchase.getId());
+            } else {
+                // Fragment не подтвердил создание покупки - повторяем с тем же ключом
+                resubmissions.increment();
+                submit(purchase);
+                scheduleNextCheck(purchase, now);
+            }
+        }
+
+        if (!toCheck.isEmpty()) {
+            Map<String, FragmentPurchaseResult> statuses = Map.of();
+            try {
+                statuses = purchaseClient.fetchStatuses(toCheck.keySet());
+                statusChecks.add(toCheck.size());
+            } catch (FragmentApiException e) {
+                statusCheckErrors.increment();
+                log.warn("⚠️ PURCHASE SAGA: Статусы {} покупок не получены: {}", toCheck.size(), e.getErrorCode());
+            }
+
+            for (Map.Entry<String, StarPurchaseAggregate> entry : toCheck.entrySet()) {
+                StarPurchaseAggregate purchase = entry.getValue();
+                FragmentPurchaseResult result = statuses.get(entry.getKey());
+                Outcome outcome = result != null && result.status().isFinal()
+                        ? applyResult(purchase.getId(), result)
+                        : Outcome.PENDING;
+                if (outcome == Outcome.FAILED) {
+                    refundQueue.add(purchase.getId());
+                } else if (outcome == Outcome.CONFLICT) {
+                    wheel.schedule(purchase.getId(), now + checkIntervalMs);
+                } else if (outcome == Outcome.PENDING) {
+                    if (purchase.isTimedOut(timeoutMinutes)) {
+                        refundQueue.add(purchase.getId());
+                    } else {
+                        scheduleNextCheck(purchase, now);
+                    }
+                }
+            }
+        }
+
+        processRefunds(refundQueue);
+    }
+
+    /**
+     * Возврат средств пачками: каждая покупка в своей транзакции вместе
+     * с отменой по таймауту, чтобы отмена и возврат фиксировались вместе
+     */
+    private void processRefunds(List<Long> ids) {
+        int batchSize = Math.max(1, refundBatchSize);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            int refunded = 0;
+            for (Long id : ids.subList(from, Math.min(from + batchSize, ids.size()))) {
+                RefundOutcome outcome;
+                try {
+                    outcome = transactionTemplate.execute(status -> refund(id, status));
+                } catch (Exception e) {
+                    log.error("❌ PURCHASE SAGA: Ошибка возврата по покупке {}: {}", id, e.getMessage());
+                    outcome = RefundOutcome.FAILED;
+                }
+                switch (outcome) {
+                    case TIMEOUT_REFUNDED -> {
+                        timeouts.increment();
+                        refunds.increment();
+                        refunded++;
+                    }
+                    case REFUNDED -> {
+                        refunds.increment();
+                        refunded++;
+                    }
+                    case NOT_DUE -> wheel.schedule(id, System.currentTimeMillis() + checkIntervalMs);
+                    case FAILED -> {
+                        refundFailures.increment();
+                        wheel.schedule(id, System.currentTimeMillis() + refundRetryMs);
+                    }
+                    case SKIPPED -> {
+                    }
+                }
+            }
+            if (refunded > 0) {
+                log.info("💸 PURCHASE SAGA: Выполнено {} возвратов", refunded);
+            }
+        }
+    }
+
+    private RefundOutcome refund(Long id, org.springframework.transaction.TransactionStatus txStatus) {
+        StarPurchaseAggregate purchase = purchaseRepository.findForUpdateById(id).orElse(null);
+        if (purchase == null || !purchase.isRefundRequired()) {
+            return RefundOutcome.SKIPPED;
+        }
+        boolean timedOut = false;
+        if (purchase.isPending()) {
+            if (!purchase.isTimedOut(timeoutMinutes)) {
+                return RefundOutcome.NOT_DUE;
+            }
+            purchase.timeoutCancel(timeoutMinutes);
+            timedOut = true;
+        }
+        if (!purchase.isRefundPending()) {
+            return RefundOutcome.SKIPPED;
+        }
+
+        OperationRequest request = new OperationRequest();
+        request.setUserId(purchase.getUserId());
+        request.setAmount(purchase.getPurchaseAmount().getAmount());
+        request.setCurrency(purchase.getCurrency().getCode());
+        request.setDescription(String.format("Возврат за покупку %d звезд", purchase.getRequestedStars()));
+        request.setIdempotencyKey("REFUND_" + purchase.getStarPurchaseId().getValue());
+        request.setOrderId(purchase.getStarPurchaseId().getValue());
+
+        Result<BalanceResponse> result = balanceService.processRefund(request);
+        if (result.isError()) {
+            txStatus.setRollbackOnly();
+            log.error("❌ PURCHASE SAGA: Возврат по покупке {} не выполнен: {}",
+                    purchase.getStarPurchaseId().getValue(), result.getError().getMessage());
+            return RefundOutcome.FAILED;
+        }
+
+        purchase.markRefunded();
+        purchaseRepository.save(purchase);
+        log.info("💸 PURCHASE SAGA: Возвращено {} пользователю {} за покупку {}{}",
+                purchase.getPurchaseAmount().getFormattedAmount(), purchase.getUserId(),
+                purchase.getStarPurchaseId().getValue(), timedOut ? " (отмена по таймауту)" : "");
+        return timedOut ? RefundOutcome.TIMEOUT_REFUNDED : RefundOutcome.REFUNDED;
+    }
+
+    private void submit(StarPurchaseAggregate purchase) {
+        Long id = purchase.getId();
+        submissions.increment();
+        fragmentIntegrationService.submitStarPurchase(purchase.getStarPurchaseId().getValue(),
+                purchase.getUserId(), purchase.getRequestedStars(), purchase.getPurchaseAmount())
+                .thenAccept(result -> onSubmitted(id, result))
+                .exceptionally(error -> {
+                    log.error("❌ PURCHASE SAGA: Ошибка отправки покупки {}: {}", id, error.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Ответ Fragment на создание покупки
+     *
+     * Без transactionId покупка остается PENDING и будет отправлена
+     * повторно на следующей проверке.
+     */
+    private void onSubmitted(Long id, FragmentPurchaseResult result) {
+        if (result.transactionId() == null) {
+            log.warn("⚠️ PURCHASE SAGA: Покупка {} не принята Fragment ({}), повтор по таймеру",
+                    id, result.errorCode());
+            return;
+        }
+        Outcome outcome = applyResult(id, result);
+        if (outcome == Outcome.FAILED) {
+            wheel.schedule(id, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Применение статуса Fragment к покупке под блокировкой строки
+     */
+    Outcome applyResult(Long id, FragmentPurchaseResult result) {
+        try {
+            Outcome outcome = transactionTemplate.execute(status -> {
+                StarPurchaseAggregate purchase = purchaseRepository.findForUpdateById(id).orElse(null);
+                if (purchase == null || !purchase.isPending()) {
+                    return Outcome.FINAL;
+                }
+                if (!purchase.isInitiated()) {
+                    purchase.initiate(FragmentTransactionId.of(result.transactionId()));
+                }
+                Outcome applied = Outcome.PENDING;
+                if (result.isCompleted()) {
+                    purchase.complete(result.starsDelivered() != null ? result.starsDelivered()
+                            : purchase.getRequestedStars(), null, "COMPLETED " + result.transactionId());
+                    completionLatency.record(Duration.between(purchase.getCreatedAt(),
+                            purchase.getCompletedAt()).toMillis());
+                    applied = Outcome.COMPLETED;
+                } else if (result.isFailed()) {
+                    purchase.fail("Fragment отклонил покупку", result.errorCode());
+                    applied = Outcome.FAILED;
+                }
+                purchaseRepository.save(purchase);
+                return applied;
+            });
+
+            if (outcome == Outcome.COMPLETED) {
+                completions.increment();
+                wheel.cancel(id);
+                log.info("✅ PURCHASE SAGA: Покупка {} завершена, транзакция {}", id, result.transactionId());
+            } else if (outcome == Outcome.FAILED) {
+                failures.increment();
+                log.warn("⚠️ PURCHASE SAGA: Покупка {} отклонена Fragment: {}", id, result.errorCode());
+            }
+            return outcome;
+        } catch (Exception e) {
+            concurrentUpdates.increment();
+            log.warn("⚠️ PURCHASE SAGA: Статус покупки {} не применен: {}", id, e.getMessage());
+            return Outcome.CONFLICT;
+        }
+    }
+
+    /**
+     * Следующая проверка: интервал растет с возрастом покупки
+     * (десятая часть возраста в пределах [check-interval, max-check-interval]),
+     * но не позже дедлайна
+     */
+    private void scheduleNextCheck(StarPurchaseAggregate purchase, long now) {
+        long createdAt = toMillis(purchase.getCreatedAt());
+        long interval = Math.min(Math.max((now - createdAt) / 10, checkIntervalMs), maxCheckIntervalMs);
+        long deadline = createdAt + Duration.ofMinutes(timeoutMinutes).toMillis() + 1;
+        wheel.schedule(purchase.getId(), Math.max(now, Math.min(now + interval, deadline)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,176 @@
+package shit.back.service.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trigram индекс - fallback для H2/тестовых профилей без pg_trgm
+ *
+ * Повторяет семантику SQL пути: документ найден, если хотя бы одно поле
+ * содержит строку поиска (как LIKE '%term%'), ранжирование - по trigram
+ * similarity (|A ∩ B| / |A ∪ B|), как similarity() в pg_trgm.
+ * Кандидаты отбираются пересечением posting lists, поэтому полный
+ * перебор нужен только для запросов короче 3 символов.
+ *
+ * @param <K> тип ключа документа
+ */
+public class NGramIndex<K> {
+
+    private static final int N = 3;
+
+    private final Map<String, Set<K>> postings = new ConcurrentHashMap<>();
+    private final Map<K, List<String>> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Добавить или заменить документ
+     */
+    public synchronized void put(K key, String... fields) {
+        remove(key);
+
+        List<String> normalized = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            if (field != null && !field.isBlank()) {
+                normalized.add(normalize(field));
+            }
+        }
+        documents.put(key, normalized);
+
+        for (String field : normalized) {
+            for (String gram : trigrams(field)) {
+                postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+    }
+
+    public synchronized void remove(K key) {
+        List<String> previous = documents.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (String field : previous) {
+            for (String gram : trigrams(field)) {
+                Set<K> keys = postings.get(gram);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documents.clear();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Поиск по подстроке с ранжированием по similarity
+     *
+     * @return ключи в порядке убывания релевантности, не более limit
+     */
+    public List<K> search(String term, int limit) {
+        String query = normalize(term);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Set<String> queryGrams = trigrams(query);
+        Collection<K> candidates = query.length() < N ? documents.keySet() : intersectPostings(queryGrams);
+
+        List<ScoredKey<K>> scored = new ArrayList<>();
+        for (K key : candidates) {
+            List<String> fields = documents.get(key);
+            if (fields == null) {
+                continue;
+            }
+            double best = -1;
+            for (String field : fields) {
+                if (field.contains(query)) {
+                    best = Math.max(best, similarity(queryGrams, trigrams(field)));
+                }
+            }
+            if (best >= 0) {
+                scored.add(new ScoredKey<>(key, best));
+            }
+        }
+
+        return scored.stream()
+                .sorted(Comparator.comparingDouble((ScoredKey<K> s) -> s.score()).reversed())
+                .limit(limit)
+                .map(ScoredKey::key)
+                .toList();
+    }
+
+    private Collection<K> intersectPostings(Set<String> queryGrams) {
+        Set<K> smallest = null;
+        for (String gram : queryGrams) {
+            Set<K> keys = postings.get(gram);
+            if (keys == null) {
+                return List.of();
+            }
+            if (smallest == null || keys.size() < smallest.size()) {
+                smallest = keys;
+            }
+        }
+        if (smallest == null) {
+            return List.of();
+        }
+
+        List<K> result = new ArrayList<>();
+        for (K key : smallest) {
+            boolean inAll = true;
+            for (String gram : queryGrams) {
+                Set<K> keys = postings.get(gram);
+                if (keys == null || !keys.contains(key)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (String gram : a) {
+            if (b.contains(gram)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    static Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + N <= value.length(); i++) {
+            grams.add(value.substring(i, i + N));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record ScoredKey<K>(K key, double score) {
+    }
+}
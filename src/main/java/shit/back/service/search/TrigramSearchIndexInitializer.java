@@ -0,0 +1,146 @@
+package shit.back.service.search;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Миграция поисковых индексов: расширение pg_trgm и GIN trigram индексы
+ *
+ * Индексы строятся на lower(...), потому что поиск регистронезависимый.
+ * Все шаги идемпотентны (IF NOT EXISTS) и выполняются CONCURRENTLY, чтобы
+ * не блокировать запись в orders и user_sessions на больших таблицах.
+ * Прерванный CREATE INDEX CONCURRENTLY оставляет INVALID индекс, который
+ * IF NOT EXISTS пропускал бы при каждом старте, поэтому такой индекс
+ * сначала удаляется и строится заново.
+ * На не-PostgreSQL БД миграция пропускается, и поиск использует NGramIndex.
+ */
+@Slf4j
+@Component
+public class TrigramSearchIndexInitializer {
+
+    private static final String[][] TRIGRAM_INDEXES = {
+            { "idx_orders_order_id_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_order_id_trgm "
+                            + "ON orders USING gin (lower(order_id) gin_trgm_ops)" },
+            { "idx_orders_username_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_username_trgm "
+                            + "ON orders USING gin (lower(username) gin_trgm_ops)" },
+            { "idx_orders_package_name_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_package_name_trgm "
+                            + "ON orders USING gin (lower(star_package_name) gin_trgm_ops)" },
+            { "idx_user_sessions_username_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_sessions_username_trgm "
+                            + "ON user_sessions USING gin (lower(username) gin_trgm_ops)" },
+            { "idx_user_sessions_first_name_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_sessions_first_name_trgm "
+                            + "ON user_sessions USING gin (lower(first_name) gin_trgm_ops)" },
+            { "idx_user_sessions_last_name_trgm",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_sessions_last_name_trgm "
+                            + "ON user_sessions USING gin (lower(last_name) gin_trgm_ops)" }
+    };
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.search.trigram.enabled:true}")
+    private boolean trigramEnabled;
+
+    private volatile boolean postgres;
+    private volatile boolean trigramReady;
+
+    @PostConstruct
+    public void detectDatabase() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            postgres = product != null && product.toLowerCase().contains("postgresql");
+            log.info("🔎 SEARCH: БД {}, режим поиска: {}", product,
+                    postgres ? "PostgreSQL (pg_trgm после миграции)" : "in-memory n-gram");
+        } catch (SQLException e) {
+            log.warn("⚠️ SEARCH: Не удалось определить тип БД: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Миграция выполняется после старта, чтобы построение индексов
+     * на больших таблицах не задерживало инициализацию контекста
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!postgres || !trigramEnabled) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+
+            for (String[] index : TRIGRAM_INDEXES) {
+                long startTime = System.currentTimeMillis();
+                try {
+                    dropIfInvalid(connection, statement, index[0]);
+                    statement.execute(index[1]);
+                    log.info("✅ SEARCH: Индекс {} готов за {}ms", index[0], System.currentTimeMillis() - startTime);
+                } catch (SQLException e) {
+                    log.warn("⚠️ SEARCH: Не удалось создать индекс {}: {}", index[0], e.getMessage());
+                    try {
+                        dropIfInvalid(connection, statement, index[0]);
+                    } catch (SQLException dropError) {
+                        log.warn("⚠️ SEARCH: Не удалось удалить недостроенный индекс {}: {}",
+                                index[0], dropError.getMessage());
+                    }
+                }
+            }
+
+            trigramReady = isExtensionInstalled(statement);
+            log.info("🔎 SEARCH: Ранжированный trigram поиск {}", trigramReady ? "включен" : "недоступен");
+        } catch (SQLException e) {
+            log.warn("⚠️ SEARCH: Миграция pg_trgm не выполнена, используется LIKE поиск: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет индекс, оставшийся INVALID после прерванного построения
+     */
+    private void dropIfInvalid(Connection connection, Statement statement, String indexName) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid "
+                        + "WHERE c.relname = ? AND pg_catalog.pg_table_is_visible(c.oid)")) {
+            query.setString(1, indexName);
+            try (ResultSet resultSet = query.executeQuery()) {
+                if (!resultSet.next() || resultSet.getBoolean(1)) {
+                    return;
+                }
+            }
+        }
+        log.warn("🔧 SEARCH: Индекс {} в состоянии INVALID, пересоздаем", indexName);
+        statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+    }
+
+    private boolean isExtensionInstalled(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm'")) {
+            return resultSet.next();
+        }
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+
+    public boolean isTrigramReady() {
+        return trigramReady;
+    }
+}
@@ -0,0 +1,156 @@
+package shit.back.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import shit.back.entity.OrderEntity;
+import shit.back.entity.UserSessionEntity;
+import shit.back.repository.OrderJpaRepository;
+import shit.back.repository.UserSessionJpaRepository;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Поиск заказов и пользователей для админки
+ *
+ * Режимы:
+ * - TRIGRAM: PostgreSQL с pg_trgm - LIKE по GIN индексам + ранжирование similarity()
+ * - LIKE: PostgreSQL без pg_trgm (или до завершения миграции) - прежние JPQL запросы
+ * - IN_MEMORY: H2/тестовые профили - NGramIndex, перестраиваемый по интервалу
+ *
+ * Ранжированные результаты ограничены app.search.max-results, поэтому
+ * total в возвращаемых Page не превышает этого лимита.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class TrigramSearchService {
+
+    public enum SearchMode {
+        TRIGRAM, LIKE, IN_MEMORY
+    }
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private UserSessionJpaRepository sessionRepository;
+
+    @Autowired
+    private TrigramSearchIndexInitializer indexInitializer;
+
+    @Value("${app.search.max-results:200}")
+    private int maxResults;
+
+    @Value("${app.search.fallback-refresh-interval-ms:60000}")
+    private long fallbackRefreshIntervalMs;
+
+    private final NGramIndex<String> orderIndex = new NGramIndex<>();
+    private final NGramIndex<Long> sessionIndex = new NGramIndex<>();
+    private volatile long fallbackBuiltAt;
+
+    public SearchMode getMode() {
+        if (!indexInitializer.isPostgres()) {
+            return SearchMode.IN_MEMORY;
+        }
+        return indexInitializer.isTrigramReady() ? SearchMode.TRIGRAM : SearchMode.LIKE;
+    }
+
+    /**
+     * Ранжированный поиск заказов по order id, username и названию пакета
+     */
+    public Page<OrderEntity> searchOrders(String searchTerm, Pageable pageable) {
+        String term = normalize(searchTerm);
+        if (term.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        return switch (getMode()) {
+            case TRIGRAM -> toPage(orderRepository.searchOrdersRanked(term, likePattern(term), maxResults), pageable);
+            case LIKE -> orderRepository.searchOrders(searchTerm.trim(), pageable);
+            case IN_MEMORY -> {
+                ensureFallbackIndex();
+                List<String> ids = orderIndex.search(term, maxResults);
+                yield toPage(loadInOrder(ids, orderRepository.findAllById(ids), OrderEntity::getOrderId), pageable);
+            }
+        };
+    }
+
+    /**
+     * Ранжированный поиск пользователей по username, имени и фамилии
+     */
+    public Page<UserSessionEntity> searchSessions(String searchTerm, Pageable pageable) {
+        String term = normalize(searchTerm);
+        if (term.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        return switch (getMode()) {
+            case TRIGRAM -> toPage(sessionRepository.searchUsersRanked(term, likePattern(term), maxResults), pageable);
+            case LIKE -> sessionRepository.searchUsers(searchTerm.trim(), pageable);
+            case IN_MEMORY -> {
+                ensureFallbackIndex();
+                List<Long> ids = sessionIndex.search(term, maxResults);
+                yield toPage(loadInOrder(ids, sessionRepository.findAllById(ids), UserSessionEntity::getId), pageable);
+            }
+        };
+    }
+
+    /**
+     * Принудительная перестройка in-memory индекса (H2/тестовые профили)
+     */
+    public synchronized void rebuildFallbackIndex() {
+        long startTime = System.currentTimeMillis();
+        orderIndex.clear();
+        sessionIndex.clear();
+
+        for (OrderEntity order : orderRepository.findAll()) {
+            orderIndex.put(order.getOrderId(), order.getOrderId(), order.getUsername(), order.getStarPackageName());
+        }
+        for (UserSessionEntity session : sessionRepository.findAll()) {
+            sessionIndex.put(session.getId(), session.getUsername(), session.getFirstName(), session.getLastName());
+        }
+
+        fallbackBuiltAt = System.currentTimeMillis();
+        log.debug("🔎 SEARCH: In-memory индекс перестроен за {}ms (orders={}, sessions={})",
+                fallbackBuiltAt - startTime, orderIndex.size(), sessionIndex.size());
+    }
+
+    private void ensureFallbackIndex() {
+        if (System.currentTimeMillis() - fallbackBuiltAt > fallbackRefreshIntervalMs) {
+            rebuildFallbackIndex();
+        }
+    }
+
+    private <T, K> List<T> loadInOrder(List<K> rankedIds, List<T> entities, Function<T, K> idExtractor) {
+        Map<K, Integer> rank = new HashMap<>();
+        for (int i = 0; i < rankedIds.size(); i++) {
+            rank.put(rankedIds.get(i), i);
+        }
+        return entities.stream()
+                .sorted(Comparator.comparingInt(entity -> rank.getOrDefault(idExtractor.apply(entity), Integer.MAX_VALUE)))
+                .toList();
+    }
+
+    private <T> Page<T> toPage(List<T> ranked, Pageable pageable) {
+        int start = (int) Math.min(pageable.getOffset(), ranked.size());
+        int end = Math.min(start + pageable.getPageSize(), ranked.size());
+        return new PageImpl<>(ranked.subList(start, end), pageable, ranked.size());
+    }
+
+    private String normalize(String term) {
+        return term == null ? "" : term.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private String likePattern(String term) {
+        return "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
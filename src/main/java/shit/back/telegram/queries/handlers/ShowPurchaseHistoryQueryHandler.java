@@ -77,6 +77,10 @@ public class ShowPurchaseHistoryQueryHandler implements TelegramQueryHandler<Sho
                 keyboardBuilder.addButton("❌ Неудачные", "history_filter_FAILED");
             }
 
+            keyboardBuilder.newRow()
+                    .addButton("📥 CSV", "export_balance_history_csv")
+                    .addButton("📥 Excel", "export_balance_history_xlsx");
+
             keyboardBuilder.newRow()
                     .addButton("🔄 Обновить", "refresh_history")
                     .addButton("🔙 Назад", "show_balance");
@@ -0,0 +1,44 @@
+package shit.back.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Скользящее окно последних задержек для перцентилей
+ *
+ * Хранит последние capacity замеров в кольцевом буфере; snapshot()
+ * возвращает p50/p95/p99 и максимум для getStatistics().
+ */
+public final class LatencyWindow {
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long max;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long latencyMs) {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        max = Math.max(max, latencyMs);
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("samples", size);
+        snapshot.put("max", max);
+        if (size == 0) {
+            return snapshot;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        snapshot.put("p50", sorted[(int) Math.min(size - 1, Math.round(size * 0.50))]);
+        snapshot.put("p95", sorted[(int) Math.min(size - 1, Math.round(size * 0.95))]);
+        snapshot.put("p99", sorted[(int) Math.min(size - 1, Math.round(size * 0.99))]);
+        return snapshot;
+    }
+}
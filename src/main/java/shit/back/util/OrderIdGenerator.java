@@ -0,0 +1,146 @@
+package shit.back.util;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Генератор коротких ID заказов без обращения к БД
+ *
+ * ID - 40-битное число: [секунды с 2025-01-01 : 29][узел : 3][счетчик : 8],
+ * записанное в 8 символов [A-Z0-9], то есть в существующие колонки
+ * order_id VARCHAR(8). Первый символ - буква из G-Z (без I и O), поэтому
+ * новые ID никогда не совпадают со старыми 8-символьными hex ID.
+ *
+ * Секунды и счетчик хранятся в одном AtomicLong как логические часы:
+ * каждый вызов берет max(предыдущее + 1, текущая секунда << 8) через CAS,
+ * поэтому ID на узле строго возрастают даже при переводе системных часов
+ * назад. Больше 256 ID в секунду берут секунды "в долг" - часы уходят
+ * вперед и догоняются, когда нагрузка спадает. Уникальность между узлами
+ * обеспечивает nodeId (0-7), который задается каждому инстансу отдельно.
+ * После рестарта логические часы продолжаются с последнего сохраненного
+ * ID ({@link #advancePast(String)}), а не с нуля, иначе узел после
+ * всплеска повторил бы ID из секунд, взятых "в долг".
+ * Время в 29 битах заканчивается в 2042 году.
+ */
+public final class OrderIdGenerator {
+
+    public static final int ID_LENGTH = 8;
+    public static final int MAX_NODE_ID = 7;
+
+    static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    static final int SEQUENCE_BITS = 8;
+    static final int NODE_BITS = 3;
+    static final int SECONDS_BITS = 29;
+
+    private static final String LEADING_ALPHABET = "GHJKLMNPQRSTUVWXYZ";
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final long TAIL_RADIX = 36L * 36 * 36 * 36 * 36 * 36 * 36;
+    private static final long MAX_SECONDS = (1L << SECONDS_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static volatile OrderIdGenerator defaultGenerator = new OrderIdGenerator(0);
+
+    private final int nodeId;
+    private final LongSupplier clockMillis;
+    // (секунды << SEQUENCE_BITS) | счетчик последнего выданного ID
+    private final AtomicLong lastTick = new AtomicLong();
+
+    public OrderIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    OrderIdGenerator(int nodeId, LongSupplier clockMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId должен быть в диапазоне 0-" + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clockMillis = clockMillis;
+    }
+
+    /**
+     * Генератор, которым пользуются модели (Order); узел задает OrderIdConfig
+     */
+    public static OrderIdGenerator getDefault() {
+        return defaultGenerator;
+    }
+
+    public static void setDefault(OrderIdGenerator generator) {
+        defaultGenerator = generator;
+    }
+
+    /**
+     * Следующий ID заказа (8 символов [A-Z0-9])
+     */
+    public String nextId() {
+        return encode(nextValue());
+    }
+
+    long nextValue() {
+        long now = currentSeconds() << SEQUENCE_BITS;
+        long tick = lastTick.updateAndGet(previous -> Math.max(previous + 1, now));
+        long seconds = tick >>> SEQUENCE_BITS;
+        if (seconds > MAX_SECONDS) {
+            throw new IllegalStateException("Диапазон времени ID заказов исчерпан");
+        }
+        return (seconds << (NODE_BITS + SEQUENCE_BITS))
+                | ((long) nodeId << SEQUENCE_BITS)
+                | (tick & SEQUENCE_MASK);
+    }
+
+    /**
+     * Продолжить после уже выданного ID (при старте - наибольший order_id из БД)
+     *
+     * Логические часы переводятся на начало следующей за ID секунды: внутри
+     * одной секунды счетчики разных узлов не сравнимы, а со следующей
+     * секунды повтор исключен для ID любого узла.
+     */
+    public void advancePast(String issuedId) {
+        long seconds = decode(issuedId) >>> (NODE_BITS + SEQUENCE_BITS);
+        long tick = ((seconds + 1) << SEQUENCE_BITS) - 1;
+        lastTick.accumulateAndGet(tick, Math::max);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * На сколько секунд логические часы ушли вперед системных
+     * (больше нуля только после всплеска свыше 256 ID в секунду)
+     */
+    public long getDriftSeconds() {
+        return Math.max(0, (lastTick.get() >>> SEQUENCE_BITS) - currentSeconds());
+    }
+
+    private long currentSeconds() {
+        return Math.max(0, (clockMillis.getAsLong() - EPOCH_MILLIS) / 1000);
+    }
+
+    static String encode(long value) {
+        char[] chars = new char[ID_LENGTH];
+        long tail = value % TAIL_RADIX;
+        chars[0] = LEADING_ALPHABET.charAt((int) (value / TAIL_RADIX));
+        for (int i = ID_LENGTH - 1; i > 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (tail % 36));
+            tail /= 36;
+        }
+        return new String(chars);
+    }
+
+    static long decode(String id) {
+        long value = id.length() == ID_LENGTH ? LEADING_ALPHABET.indexOf(id.charAt(0)) : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Некорректный ID заказа: " + id);
+        }
+        long tail = 0;
+        for (int i = 1; i < ID_LENGTH; i++) {
+            int digit = ALPHABET.indexOf(id.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Некорректный ID заказа: " + id);
+            }
+            tail = tail * 36 + digit;
+        }
+        return value * TAIL_RADIX + tail;
+    }
+}
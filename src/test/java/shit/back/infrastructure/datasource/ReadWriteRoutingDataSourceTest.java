@@ -0,0 +1,119 @@
+package shit.back.infrastructure.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.config.DataSourceRoutingProperties;
+import shit.back.service.monitoring.ReplicaLagMonitoringService;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read-only транзакции получают соединения из пула реплики, остальные - из
+ * основного; при отставании или недоступности реплики чтение уходит в primary
+ *
+ * Пулы указывают на разные H2 базы с таблицей-меткой, чтобы по результату
+ * запроса было видно, какой пул выдал соединение.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private HikariDataSource primaryPool;
+    private HikariDataSource replicaPool;
+    private ReadWriteRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    @BeforeEach
+    void setUp() {
+        primaryPool = pool("primary");
+        replicaPool = pool("replica");
+        routingDataSource = new ReadWriteRoutingDataSource(primaryPool, replicaPool);
+        routingDataSource.afterPropertiesSet();
+
+        // как в ReadWriteDataSourceConfig: маршрут выбирается при первом запросе
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (HikariDataSource pool : new HikariDataSource[] { primaryPool, replicaPool }) {
+            new JdbcTemplate(pool).execute("DROP ALL OBJECTS");
+            pool.close();
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicaPool() {
+        assertEquals("replica", readTransaction.execute(status -> marker()));
+        // первым соединением LazyConnectionDataSourceProxy читает настройки по умолчанию (вне транзакции)
+        long primaryBefore = routingDataSource.getRoutedConnections(DataSourceRoute.PRIMARY);
+        assertEquals("primary", writeTransaction.execute(status -> marker()));
+        // без транзакции - тоже основной пул
+        assertEquals("primary", marker());
+
+        assertEquals(1, routingDataSource.getRoutedConnections(DataSourceRoute.REPLICA));
+        assertEquals(primaryBefore + 2, routingDataSource.getRoutedConnections(DataSourceRoute.PRIMARY));
+        assertEquals(0, routingDataSource.getReplicaFallbacks());
+    }
+
+    @Test
+    void lagCheckMovesReadsToPrimaryAndBack() {
+        DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+        properties.getLagCheck().setMaxReplicationLag(Duration.ofSeconds(5));
+        ReplicaLagMonitoringService lagMonitor = new ReplicaLagMonitoringService();
+        ReflectionTestUtils.setField(lagMonitor, "routingDataSource", routingDataSource);
+        ReflectionTestUtils.setField(lagMonitor, "routingProperties", properties);
+
+        // реплика отстает на 10 секунд
+        properties.getLagCheck().setQuery("SELECT 10");
+        lagMonitor.checkReplicationLag();
+        assertFalse(routingDataSource.isReplicaAvailable());
+        assertEquals(10_000, lagMonitor.getLastReplicationLagMs());
+        assertEquals("primary", readTransaction.execute(status -> marker()));
+        assertEquals(1, routingDataSource.getReplicaFallbacks());
+
+        // реплика догнала
+        properties.getLagCheck().setQuery("SELECT 0.5");
+        lagMonitor.checkReplicationLag();
+        assertTrue(routingDataSource.isReplicaAvailable());
+        assertEquals("replica", readTransaction.execute(status -> marker()));
+
+        // запрос лага не выполнился - реплика считается недоступной
+        properties.getLagCheck().setQuery("SELECT pg_last_xact_replay_timestamp()");
+        lagMonitor.checkReplicationLag();
+        assertFalse(routingDataSource.isReplicaAvailable());
+        assertEquals(-1, lagMonitor.getLastReplicationLagMs());
+        assertEquals("primary", readTransaction.execute(status -> marker()));
+        assertEquals(2, routingDataSource.getReplicaFallbacks());
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("SELECT name FROM route_marker", String.class);
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name + "-pool");
+        pool.setJdbcUrl("jdbc:h2:mem:routing_" + name + ";DB_CLOSE_DELAY=-1");
+        pool.setMaximumPoolSize(2);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(pool);
+        jdbcTemplate.execute("CREATE TABLE route_marker (name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO route_marker VALUES (?)", name);
+        return pool;
+    }
+}
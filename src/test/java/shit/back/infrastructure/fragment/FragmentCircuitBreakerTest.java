@@ -0,0 +1,49 @@
+package shit.back.infrastructure.fragment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentCircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final FragmentCircuitBreaker breaker = new FragmentCircuitBreaker(3, 1_000, clock::get);
+
+    @Test
+    void opensAfterConsecutiveFailuresAndAllowsSingleProbe() {
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(FragmentCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(FragmentCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        clock.addAndGet(1_000_000_000L);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(FragmentCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess();
+        assertEquals(FragmentCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedProbeReopens() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        clock.addAndGet(1_000_000_000L);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(FragmentCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.getOpenings());
+    }
+}
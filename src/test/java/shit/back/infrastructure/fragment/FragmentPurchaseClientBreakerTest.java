@@ -0,0 +1,99 @@
+package shit.back.infrastructure.fragment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Circuit breaker клиента при ошибках RestTemplate, которые не являются
+ * ни HTTP статусом, ни ошибкой ввода-вывода
+ */
+@ExtendWith(MockitoExtension.class)
+class FragmentPurchaseClientBreakerTest {
+
+    private static final long OPEN_MS = 1_000;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private final AtomicLong clock = new AtomicLong();
+    private FragmentPurchaseClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new FragmentPurchaseClient();
+        ReflectionTestUtils.setField(client, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(client, "baseUrl", "http://fragment.test");
+        ReflectionTestUtils.setField(client, "maxInFlight", 4);
+        ReflectionTestUtils.setField(client, "maxAttempts", 1);
+        ReflectionTestUtils.setField(client, "breakerFailureThreshold", 1);
+        ReflectionTestUtils.setField(client, "breakerOpenMs", OPEN_MS);
+        client.init();
+        ReflectionTestUtils.setField(client, "circuitBreaker", new FragmentCircuitBreaker(1, OPEN_MS, clock::get));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void halfOpenProbeFailingWithNonHttpErrorReleasesBreaker() {
+        doThrow(new ResourceAccessException("connect timed out"))
+                .doThrow(new UnknownHttpStatusCodeException(599, "Unknown", new HttpHeaders(), new byte[0], null))
+                .doReturn(ResponseEntity.ok(Map.of("transactionId", "TX1", "status", "PENDING")))
+                .when(restTemplate).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(Map.class));
+
+        assertEquals("IO_ERROR", purchase("STAR_1").errorCode());
+        assertEquals(FragmentCircuitBreaker.State.OPEN, client.getCircuitState());
+
+        // пробный запрос падает с неизвестным статусом: результат FAILED, breaker снова OPEN
+        clock.addAndGet(OPEN_MS * 1_000_000L);
+        FragmentPurchaseResult probe = purchase("STAR_2");
+        assertTrue(probe.isFailed());
+        assertEquals("CLIENT_ERROR", probe.errorCode());
+        assertEquals(FragmentCircuitBreaker.State.OPEN, client.getCircuitState());
+
+        // следующий пробный запрос проходит и закрывает breaker
+        clock.addAndGet(OPEN_MS * 1_000_000L);
+        FragmentPurchaseResult recovered = purchase("STAR_3");
+        assertFalse(recovered.isFailed());
+        assertEquals("TX1", recovered.transactionId());
+        assertEquals(FragmentCircuitBreaker.State.CLOSED, client.getCircuitState());
+    }
+
+    @Test
+    void unexpectedRuntimeErrorIsReportedAsFailedPurchase() {
+        doThrow(new IllegalStateException("broken converter"))
+                .when(restTemplate).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(Map.class));
+
+        FragmentPurchaseResult result = purchase("STAR_4");
+
+        assertTrue(result.isFailed());
+        assertEquals("UNEXPECTED_ERROR", result.errorCode());
+        assertEquals(FragmentCircuitBreaker.State.OPEN, client.getCircuitState());
+    }
+
+    private FragmentPurchaseResult purchase(String requestId) {
+        return client.purchase(new FragmentPurchaseRequest(requestId, 1L, 100, new BigDecimal("1.00"), "USD")).join();
+    }
+}
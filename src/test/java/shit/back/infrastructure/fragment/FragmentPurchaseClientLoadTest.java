@@ -0,0 +1,138 @@
+package shit.back.infrastructure.fragment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import shit.back.config.HttpClientConfig;
+import shit.back.infrastructure.fragment.stub.FragmentStubServer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузка на клиент покупок через локальный stub Fragment API:
+ * параллельные покупки, повторы без дублей, пакетный опрос статусов
+ * и circuit breaker
+ */
+class FragmentPurchaseClientLoadTest {
+
+    private FragmentStubServer stubServer;
+    private FragmentPurchaseClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (stubServer != null) {
+            stubServer.stop();
+        }
+    }
+
+    @Test
+    void concurrentPurchasesWithInjectedFailuresCreateEachPurchaseOnce() throws Exception {
+        start(new FragmentStubServer.Settings(0, 5, 25, 0.10, 0.02, 1_000, 200), 500, 300);
+        int purchases = 500;
+
+        List<CompletableFuture<FragmentPurchaseResult>> futures = new ArrayList<>();
+        for (int i = 0; i < purchases; i++) {
+            futures.add(client.purchase(new FragmentPurchaseRequest(
+                    "STAR_LOAD_" + i, 1000L + i, 100, new BigDecimal("1.00"), "USD")));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        long accepted = futures.stream().map(CompletableFuture::join).filter(result -> !result.isFailed()).count();
+
+        assertEquals(purchases, accepted);
+        assertEquals(purchases, stubServer.getPurchasesCreated());
+        assertTrue((long) client.getStatistics().get("retries") > 0);
+
+        List<CompletableFuture<FragmentPurchaseResult>> completions = futures.stream()
+                .map(future -> client.awaitCompletion(future.join().transactionId()))
+                .toList();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (completions.stream().anyMatch(future -> !future.isDone()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            client.pollOutstanding();
+        }
+
+        assertTrue(completions.stream().allMatch(future -> future.join().isCompleted()));
+        assertEquals(0, client.getStatistics().get("outstandingTransactions"));
+        long batches = (long) client.getStatistics().get("statusBatches");
+        assertTrue(batches < purchases / 10, "status polled in batches: " + batches);
+    }
+
+    @Test
+    void transactionWithoutFinalStatusTimesOutAndLeavesPolling() throws Exception {
+        start(new FragmentStubServer.Settings(0, 0, 0, 0, 0, 0, 0), 1_000, 60_000);
+        ReflectionTestUtils.setField(client, "completionTimeoutMs", 300L);
+        ReflectionTestUtils.setField(client, "maxOutstanding", 2);
+
+        // stub не знает этих транзакций и отвечает UNKNOWN - финального статуса не будет
+        CompletableFuture<FragmentPurchaseResult> first = client.awaitCompletion("TX_LOST_1");
+        CompletableFuture<FragmentPurchaseResult> second = client.awaitCompletion("TX_LOST_2");
+        assertSame(first, client.awaitCompletion("TX_LOST_1"));
+
+        FragmentPurchaseResult rejected = client.awaitCompletion("TX_LOST_3").join();
+        assertEquals(FragmentPurchaseStatus.UNKNOWN, rejected.status());
+        assertEquals("TOO_MANY_OUTSTANDING", rejected.errorCode());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!(first.isDone() && second.isDone()) && System.currentTimeMillis() < deadline) {
+            client.pollOutstanding();
+            Thread.sleep(50);
+        }
+
+        assertEquals("STATUS_TIMEOUT", first.join().errorCode());
+        assertEquals(FragmentPurchaseStatus.UNKNOWN, second.join().status());
+        assertEquals(0, client.getStatistics().get("outstandingTransactions"));
+        assertEquals(2L, client.getStatistics().get("completionTimeouts"));
+        assertEquals(1L, client.getStatistics().get("outstandingRejections"));
+    }
+
+    @Test
+    void circuitOpensWhenFragmentKeepsFailing() {
+        start(new FragmentStubServer.Settings(0, 0, 0, 1.0, 0, 0, 0), 1_000, 60_000);
+
+        List<FragmentPurchaseResult> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(client.purchase(new FragmentPurchaseRequest(
+                    "STAR_DOWN_" + i, 1L, 100, new BigDecimal("1.00"), "USD")).join());
+        }
+
+        assertEquals(FragmentCircuitBreaker.State.OPEN, client.getCircuitState());
+        assertTrue(results.stream().allMatch(FragmentPurchaseResult::isFailed));
+        assertEquals("CIRCUIT_OPEN", results.get(results.size() - 1).errorCode());
+        assertEquals(0, stubServer.getPurchasesCreated());
+    }
+
+    private void start(FragmentStubServer.Settings settings, long responseTimeoutMs, long breakerOpenMs) {
+        stubServer = new FragmentStubServer(settings);
+        try {
+            stubServer.start();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        client = new FragmentPurchaseClient();
+        ReflectionTestUtils.setField(client, "restTemplate",
+                new HttpClientConfig().fragmentRestTemplate(32, 1_000, responseTimeoutMs));
+        ReflectionTestUtils.setField(client, "stubServer", stubServer);
+        ReflectionTestUtils.setField(client, "baseUrl", "");
+        ReflectionTestUtils.setField(client, "apiToken", "test-token");
+        ReflectionTestUtils.setField(client, "maxInFlight", 32);
+        ReflectionTestUtils.setField(client, "maxAttempts", 6);
+        ReflectionTestUtils.setField(client, "backoffBaseMs", 20L);
+        ReflectionTestUtils.setField(client, "backoffMaxMs", 200L);
+        ReflectionTestUtils.setField(client, "statusBatchSize", 100);
+        ReflectionTestUtils.setField(client, "completionTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(client, "maxOutstanding", 10_000);
+        ReflectionTestUtils.setField(client, "breakerFailureThreshold", 8);
+        ReflectionTestUtils.setField(client, "breakerOpenMs", breakerOpenMs);
+        client.init();
+    }
+}
@@ -0,0 +1,150 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.repository.UserActivityLogBatchRepository.CopyFormat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: запись пакета журнала активности через COPY (CSV и BINARY) против
+ * saveAll() с пакетными INSERT Hibernate (hibernate.jdbc.batch_size из
+ * application.properties)
+ *
+ * Нужен PostgreSQL: подключение берется из DATABASE_URL, DATABASE_USERNAME,
+ * DATABASE_PASSWORD, как у приложения. Строки бенчмарка помечены
+ * username 'jmh-%' и удаляются после каждой итерации.
+ *
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ActivityLogBulkWriteBenchmark {
+
+    @Param({ "100", "500", "5000" })
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private UserActivityLogJpaRepository activityLogRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private List<UserActivityLogEntity> batch;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        activityLogRepository = context.getBean(UserActivityLogJpaRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        transactionTemplate.executeWithoutResult(status -> activityLogRepository.alignIdSequence());
+    }
+
+    /**
+     * Новые объекты на каждый вызов: запись проставляет им id
+     */
+    @Setup(Level.Invocation)
+    public void prepareBatch() {
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            long n = sequence++;
+            batch.add(new UserActivityLogEntity(1000L + n % 1000, "jmh-" + n, "Bench", null,
+                    ActionType.ORDER_CREATED, "Заказ \"" + n + "\"")
+                    .withOrderInfo(String.format("J%07d", n % 10_000_000), new BigDecimal("4.50"),
+                            n % 2 == 0 ? 100 : null));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRows() {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM UserActivityLogEntity a WHERE a.username LIKE 'jmh-%'")
+                .executeUpdate());
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public int copyCsv() {
+        return transactionTemplate.execute(status -> activityLogRepository.insertBatch(batch, CopyFormat.CSV));
+    }
+
+    @Benchmark
+    public int copyBinary() {
+        return transactionTemplate.execute(status -> activityLogRepository.insertBatch(batch, CopyFormat.BINARY));
+    }
+
+    @Benchmark
+    public int saveAll() {
+        return transactionTemplate.execute(status -> {
+            int saved = activityLogRepository.saveAll(batch).size();
+            entityManager.flush();
+            entityManager.clear();
+            return saved;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ActivityLogBulkWriteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Только DataSource, JPA и журнал активности - без веба, Redis и бота
+     */
+    @Configuration
+    @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class })
+    @EntityScan(basePackageClasses = UserActivityLogEntity.class)
+    @EnableJpaRepositories(basePackageClasses = UserActivityLogJpaRepository.class,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+                    classes = UserActivityLogJpaRepository.class))
+    static class BenchmarkConfiguration {
+    }
+}
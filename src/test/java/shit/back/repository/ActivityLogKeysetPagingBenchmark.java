@@ -0,0 +1,144 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: первая страница журнала активности против страницы 10 000 при
+ * keyset пагинации по (timestamp, id) и та же глубокая страница через
+ * OFFSET, как выбиралась раньше
+ *
+ * Keyset страница - спуск по idx_activity_timestamp_id и limit + 1 строк,
+ * поэтому страница 10 000 должна стоить столько же, сколько первая; OFFSET
+ * читает и отбрасывает все строки до нее.
+ *
+ * Нужен PostgreSQL: подключение берется из DATABASE_URL, DATABASE_USERNAME,
+ * DATABASE_PASSWORD, как у приложения. Бенчмарк добавляет PAGES * PAGE_SIZE
+ * строк с username 'jmh-page-%' и удаляет их в конце.
+ *
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivityLogKeysetPagingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int PAGES = 10_000;
+    private static final int SEED_BATCH = 5_000;
+
+    private ConfigurableApplicationContext context;
+    private UserActivityLogJpaRepository activityLogRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private String deepPageCursor;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = new SpringApplicationBuilder(ActivityLogBulkWriteBenchmark.BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        activityLogRepository = context.getBean(UserActivityLogJpaRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        transactionTemplate.executeWithoutResult(status -> activityLogRepository.alignIdSequence());
+        LocalDateTime newest = LocalDateTime.now();
+        int rows = PAGES * PAGE_SIZE + PAGE_SIZE;
+        for (int written = 0; written < rows; written += SEED_BATCH) {
+            List<UserActivityLogEntity> batch = new ArrayList<>(SEED_BATCH);
+            for (int n = written; n < Math.min(rows, written + SEED_BATCH); n++) {
+                UserActivityLogEntity activity = new UserActivityLogEntity(1000L + n % 1000, "jmh-page-" + n,
+                        ActionType.ORDER_CREATED, "Заказ " + n);
+                // по два события на секунду: порядок внутри секунды решает id
+                activity.setTimestamp(newest.minusSeconds(n / 2));
+                batch.add(activity);
+            }
+            transactionTemplate.executeWithoutResult(status -> activityLogRepository.insertBatch(batch));
+        }
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("ANALYZE user_activity_logs")
+                .executeUpdate());
+
+        // курсор страницы PAGES - проходом по страницам, как это делал бы клиент
+        String cursor = null;
+        for (int page = 1; page < PAGES; page++) {
+            cursor = activityLogRepository.searchActivities(criteria(cursor)).getNextCursor();
+        }
+        deepPageCursor = cursor;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRows() {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM UserActivityLogEntity a WHERE a.username LIKE 'jmh-page-%'")
+                .executeUpdate());
+        context.close();
+    }
+
+    @Benchmark
+    public ActivityLogSearchResult keysetFirstPage() {
+        return activityLogRepository.searchActivities(criteria(null));
+    }
+
+    @Benchmark
+    public ActivityLogSearchResult keysetDeepPage() {
+        return activityLogRepository.searchActivities(criteria(deepPageCursor));
+    }
+
+    @Benchmark
+    public List<UserActivityLogEntity> offsetDeepPage() {
+        return entityManager.createQuery(
+                        "SELECT a FROM UserActivityLogEntity a ORDER BY a.timestamp DESC, a.id DESC",
+                        UserActivityLogEntity.class)
+                .setFirstResult((PAGES - 1) * PAGE_SIZE)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+    }
+
+    private static ActivityLogSearchCriteria criteria(String cursor) {
+        return ActivityLogSearchCriteria.builder()
+                .limit(PAGE_SIZE)
+                .cursor(cursor)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ActivityLogKeysetPagingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
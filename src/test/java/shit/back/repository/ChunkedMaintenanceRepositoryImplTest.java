@@ -0,0 +1,146 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.MaintenanceJobEntity;
+import shit.back.entity.MaintenanceJobEntity.JobStatus;
+import shit.back.entity.UserSessionEntity;
+import shit.back.repository.ChunkedOperation.ChunkResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Порции операций обслуживания по ключу, оценка очереди, аренда и
+ * контрольные точки maintenance_jobs
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ChunkedMaintenanceRepositoryImplTest {
+
+    private static final ChunkedOperation SESSION_EXPIRY = ChunkedOperation.update("session-expiry",
+            "user_sessions", "id", "is_active = false, state = 'EXPIRED'", "is_active = true AND last_activity < ?",
+            () -> new Object[] { LocalDateTime.now().minusHours(48) }, null);
+
+    private static final ChunkedOperation SESSION_DELETE = ChunkedOperation.delete("session-delete",
+            "user_sessions", "id", "is_active = false", () -> new Object[0], null);
+
+    @Autowired
+    private MaintenanceJobJpaRepository jobRepository;
+
+    @Autowired
+    private UserSessionJpaRepository sessionRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void updatesMatchingRowsInKeyOrderedChunks() {
+        List<Long> expiredIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expiredIds.add(persistSession(1000L + i, 72).getId());
+            persistSession(2000L + i, 1);
+        }
+        entityManager.flush();
+        Object[] parameters = SESSION_EXPIRY.parameters().get();
+
+        assertEquals(7, jobRepository.estimateBacklog(SESSION_EXPIRY, 0, parameters));
+
+        ChunkResult first = jobRepository.executeChunk(SESSION_EXPIRY, 0, 3, parameters);
+        assertEquals(3, first.selected());
+        assertEquals(3, first.processed());
+        assertEquals(expiredIds.get(2), first.lastKey());
+        assertEquals(4, jobRepository.estimateBacklog(SESSION_EXPIRY, first.lastKey(), parameters));
+
+        ChunkResult second = jobRepository.executeChunk(SESSION_EXPIRY, first.lastKey(), 3, parameters);
+        ChunkResult last = jobRepository.executeChunk(SESSION_EXPIRY, second.lastKey(), 3, parameters);
+        assertEquals(1, last.selected());
+        assertEquals(expiredIds.get(6), last.lastKey());
+
+        ChunkResult empty = jobRepository.executeChunk(SESSION_EXPIRY, last.lastKey(), 3, parameters);
+        assertEquals(0, empty.selected());
+        assertEquals(last.lastKey(), empty.lastKey());
+
+        assertEquals(7, sessionRepository.findAll().stream()
+                .filter(session -> session.getState() == UserSessionEntity.SessionState.EXPIRED
+                        && !session.getIsActive())
+                .count());
+        assertEquals(7, sessionRepository.countByIsActiveTrueAndLastActivityAfter(LocalDateTime.now().minusHours(2)));
+    }
+
+    @Test
+    void deletesRowsAfterCursorOnly() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            UserSessionEntity session = persistSession(3000L + i, 1);
+            session.setIsActive(false);
+            ids.add(session.getId());
+        }
+        entityManager.flush();
+
+        ChunkResult result = jobRepository.executeChunk(SESSION_DELETE, ids.get(1), 10, new Object[0]);
+        assertEquals(2, result.processed());
+        assertEquals(ids.get(3), result.lastKey());
+        assertEquals(List.of(ids.get(0), ids.get(1)),
+                sessionRepository.findAll().stream().map(UserSessionEntity::getId).sorted().toList());
+    }
+
+    @Test
+    void leaseIsExclusiveUntilReleasedOrExpired() {
+        jobRepository.saveAndFlush(new MaintenanceJobEntity("session-expiry"));
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(1, jobRepository.tryAcquireLease("session-expiry", "node-a", now.plusMinutes(5), now));
+        assertEquals(0, jobRepository.tryAcquireLease("session-expiry", "node-b", now.plusMinutes(5), now));
+        assertEquals(1, jobRepository.tryAcquireLease("session-expiry", "node-a", now.plusMinutes(5), now));
+
+        // аренда node-a истекла - node-b может забрать операцию, а node-a больше не пишет позицию
+        LocalDateTime later = now.plusMinutes(10);
+        assertEquals(1, jobRepository.tryAcquireLease("session-expiry", "node-b", later.plusMinutes(5), later));
+        assertEquals(0, jobRepository.saveCheckpoint("session-expiry", "node-a", 10, 5, later, later));
+
+        assertEquals(1, jobRepository.releaseLease("session-expiry", "node-b"));
+        assertEquals(1, jobRepository.tryAcquireLease("session-expiry", "node-a", later.plusMinutes(5), later));
+    }
+
+    @Test
+    void checkpointKeepsPositionUntilPassCompletes() {
+        jobRepository.saveAndFlush(new MaintenanceJobEntity("session-expiry"));
+        LocalDateTime now = LocalDateTime.now();
+        jobRepository.tryAcquireLease("session-expiry", "node-a", now.plusMinutes(5), now);
+
+        assertEquals(1, jobRepository.startPass("session-expiry", "node-a", JobStatus.RUNNING, now));
+        assertEquals(1, jobRepository.saveCheckpoint("session-expiry", "node-a", 500, 300, now.plusMinutes(5), now));
+        assertEquals(1, jobRepository.saveCheckpoint("session-expiry", "node-a", 900, 200, now.plusMinutes(5), now));
+        entityManager.clear();
+
+        MaintenanceJobEntity running = jobRepository.findById("session-expiry").orElseThrow();
+        assertEquals(JobStatus.RUNNING, running.getStatus());
+        assertEquals(900L, running.getLastKey());
+        assertEquals(500L, running.getPassProcessed());
+
+        assertEquals(1, jobRepository.completePass("session-expiry", "node-a", JobStatus.IDLE, now));
+        entityManager.clear();
+
+        MaintenanceJobEntity completed = jobRepository.findById("session-expiry").orElseThrow();
+        assertEquals(JobStatus.IDLE, completed.getStatus());
+        assertEquals(0L, completed.getLastKey());
+        assertEquals(500L, completed.getTotalProcessed());
+        assertNotNull(completed.getLastCompletedAt());
+    }
+
+    private UserSessionEntity persistSession(long userId, int idleHours) {
+        UserSessionEntity session = new UserSessionEntity(userId, "user" + userId, "User", null);
+        session.setLastActivity(LocalDateTime.now().minusHours(idleHours));
+        return entityManager.persist(session);
+    }
+}
@@ -0,0 +1,168 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.OrderEntity.OrderStatus;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.service.export.ExportFormat;
+import shit.back.service.export.TabularExportWriter;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Потоковые выгрузки: фильтры по датам и статусам и постоянный объем
+ * памяти при выгрузке миллиона строк
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ExportRepositoryTest {
+
+    private static final int LARGE_EXPORT_ROWS = 1_000_000;
+    private static final int HEAP_CHECK_INTERVAL = 200_000;
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void ordersAreFilteredByHalfOpenDateRangeAndStatus() {
+        List<Object[]> batch = new ArrayList<>();
+        OrderStatus[] statuses = { OrderStatus.COMPLETED, OrderStatus.FAILED, OrderStatus.CREATED };
+        for (int i = 0; i < 30; i++) {
+            Timestamp createdAt = Timestamp.valueOf(START.plusDays(i));
+            batch.add(new Object[] { String.format("EXP%05d", i), 1000L + i, "user" + i, "100 Stars", 100,
+                    BigDecimal.TEN, BigDecimal.TEN, statuses[i % 3].name(), createdAt, createdAt });
+        }
+        new JdbcTemplate(dataSource).batchUpdate("""
+                INSERT INTO orders (order_id, user_id, username, star_package_name, star_count,
+                    original_price, final_amount, status, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+
+        List<String> ids = new ArrayList<>();
+        long count = orderRepository.streamOrders(START.plusDays(3), START.plusDays(15),
+                EnumSet.of(OrderStatus.COMPLETED, OrderStatus.FAILED), 5, row -> {
+                    assertEquals(OrderExportRepository.ORDER_EXPORT_COLUMNS.size(), row.size());
+                    assertInstanceOf(LocalDateTime.class, row.get(13));
+                    ids.add((String) row.get(0));
+                });
+
+        assertEquals(8, count);
+        assertEquals(List.of("EXP00003", "EXP00004", "EXP00006", "EXP00007",
+                "EXP00009", "EXP00010", "EXP00012", "EXP00013"), ids);
+        assertEquals(30, orderRepository.streamOrders(null, null, Set.of(), 10, row -> { }));
+    }
+
+    @Test
+    void activityLogsAreFilteredByCategoryAndActionType() {
+        List<Object[]> batch = new ArrayList<>();
+        ActionType[] types = { ActionType.ORDER_CREATED, ActionType.PAYMENT_COMPLETED, ActionType.SYSTEM_INFO };
+        LogCategory[] categories = { LogCategory.TELEGRAM_BOT, LogCategory.TELEGRAM_BOT, LogCategory.SYSTEM };
+        for (int i = 0; i < 30; i++) {
+            batch.add(new Object[] { i + 1L, 1000L + i, "user" + i, types[i % 3].name(), categories[i % 3].name(),
+                    "Событие " + i, i % 2 == 0, Timestamp.valueOf(START.plusHours(i)) });
+        }
+        new JdbcTemplate(dataSource).batchUpdate("""
+                INSERT INTO user_activity_logs (id, user_id, username, action_type, log_category,
+                    action_description, is_key_action, timestamp)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+
+        List<Object> actions = new ArrayList<>();
+        long count = activityLogRepository.streamActivityLogs(START, START.plusHours(12),
+                Set.of(LogCategory.TELEGRAM_BOT), Set.of(ActionType.PAYMENT_COMPLETED), 3,
+                row -> actions.add(row.get(4)));
+
+        assertEquals(4, count);
+        assertTrue(actions.stream().allMatch("PAYMENT_COMPLETED"::equals));
+    }
+
+    /**
+     * Миллион заказов через NDJSON + gzip в никуда. Память замеряется после
+     * первой порции строк, чтобы не учитывать буфер результата H2; дальше
+     * рост кучи не должен зависеть от числа выгруженных строк.
+     */
+    @Test
+    void exportingMillionOrdersKeepsHeapFlat() throws Exception {
+        new JdbcTemplate(dataSource).update("""
+                INSERT INTO orders (order_id, user_id, username, star_package_name, star_count,
+                    original_price, final_amount, status, payment_method, created_at, updated_at)
+                SELECT 'M' || LPAD(CAST(X AS VARCHAR), 7, '0'), 1000 + MOD(X, 5000), 'user' || MOD(X, 5000),
+                    '100 Stars', 100, 4.50, 4.50, 'COMPLETED', 'TON',
+                    DATEADD('SECOND', X, TIMESTAMP '2025-01-01 00:00:00'),
+                    DATEADD('SECOND', X, TIMESTAMP '2025-01-01 00:00:00')
+                FROM SYSTEM_RANGE(1, %d)
+                """.formatted(LARGE_EXPORT_ROWS));
+
+        CountingOutputStream sink = new CountingOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(sink, 64 * 1024);
+        TabularExportWriter writer = ExportFormat.NDJSON.newWriter(gzip);
+        writer.writeHeader(OrderExportRepository.ORDER_EXPORT_COLUMNS);
+
+        long[] heap = { -1, 0 };
+        long count = orderRepository.streamOrders(null, null, Set.of(OrderStatus.COMPLETED), 1000, row -> {
+            writer.writeRow(row);
+            if (++heap[1] % HEAP_CHECK_INTERVAL == 0) {
+                long used = usedHeapAfterGc();
+                if (heap[0] < 0) {
+                    heap[0] = used;
+                } else {
+                    assertTrue(used - heap[0] < MAX_HEAP_GROWTH_BYTES,
+                            "Куча выросла на " + (used - heap[0]) / 1024 / 1024 + " МБ после " + heap[1] + " строк");
+                }
+            }
+        });
+        writer.finish();
+        gzip.finish();
+
+        assertEquals(LARGE_EXPORT_ROWS, count);
+        assertTrue(sink.bytes > 0);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.dto.order.OrderStatusTransition;
+import shit.back.entity.OrderEntity;
+import shit.back.entity.OrderEntity.OrderStatus;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Массовое изменение статуса: корректность отбора по допустимым статусам
+ * и эквивалентность прежнему поштучному обновлению
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class OrderBulkStatusRepositoryImplTest {
+
+    private static final int BENCHMARK_SIZE = 5000;
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void updatesOnlyOrdersInAllowedStatuses() {
+        persistOrders("BLK", 9, new OrderStatus[] { OrderStatus.CREATED, OrderStatus.PAYMENT_RECEIVED,
+                OrderStatus.COMPLETED });
+        List<String> ids = new ArrayList<>(ids("BLK", 9));
+        ids.add("MISSING1");
+
+        List<OrderStatusTransition> updated = orderRepository.updateStatusWhereAllowed(ids,
+                EnumSet.of(OrderStatus.CREATED, OrderStatus.PAYMENT_RECEIVED), OrderStatus.CANCELLED);
+
+        assertEquals(6, updated.size());
+        assertTrue(updated.stream().noneMatch(t -> t.getPreviousStatus() == OrderStatus.COMPLETED));
+        assertTrue(updated.stream().allMatch(t -> t.getUserId() != null && t.getFinalAmount() != null));
+
+        Set<String> updatedIds = updated.stream().map(OrderStatusTransition::getOrderId).collect(Collectors.toSet());
+        for (OrderEntity order : orderRepository.findAllById(ids)) {
+            if (updatedIds.contains(order.getOrderId())) {
+                assertEquals(OrderStatus.CANCELLED, order.getStatus());
+            } else {
+                assertEquals(OrderStatus.COMPLETED, order.getStatus());
+            }
+        }
+
+        List<Object[]> statuses = orderRepository.findStatusesByOrderIds(List.of("BLK00002", "MISSING1"));
+        assertEquals(1, statuses.size());
+        assertEquals(OrderStatus.COMPLETED, statuses.get(0)[1]);
+    }
+
+    @Test
+    void setsCompletedAtOnlyWhenCompleting() {
+        persistOrders("CMP", 2, new OrderStatus[] { OrderStatus.PROCESSING });
+
+        orderRepository.updateStatusWhereAllowed(List.of("CMP00000"), EnumSet.of(OrderStatus.PROCESSING),
+                OrderStatus.COMPLETED);
+        orderRepository.updateStatusWhereAllowed(List.of("CMP00001"), EnumSet.of(OrderStatus.PROCESSING),
+                OrderStatus.FAILED);
+
+        assertNotNull(orderRepository.findById("CMP00000").orElseThrow().getCompletedAt());
+        assertNull(orderRepository.findById("CMP00001").orElseThrow().getCompletedAt());
+    }
+
+    @Test
+    void batchInsertWritesAllActivityLogs() {
+        List<UserActivityLogEntity> activities = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            activities.add(new UserActivityLogEntity(1000L + i, "user" + i, null, null,
+                    ActionType.ORDER_CANCELLED, "Batch status update")
+                    .withOrderInfo(String.format("LOG%05d", i), BigDecimal.TEN, i % 2 == 0 ? null : 100));
+        }
+
+        assertEquals(250, activityLogRepository.insertBatch(activities));
+        assertEquals(250, activityLogRepository.count());
+    }
+
+    /**
+     * Set-based обновление на BENCHMARK_SIZE заказах дает тот же результат,
+     * что и прежнее поштучное: все заказы отменены, по каждому одна запись
+     * в журнале с данными заказа
+     */
+    @Test
+    void setBasedUpdateMatchesPerOrderUpdate() {
+        persistOrders("SET", BENCHMARK_SIZE, new OrderStatus[] { OrderStatus.CREATED });
+        persistOrders("ONE", BENCHMARK_SIZE, new OrderStatus[] { OrderStatus.CREATED });
+
+        List<OrderStatusTransition> updated = orderRepository.updateStatusWhereAllowed(
+                ids("SET", BENCHMARK_SIZE), EnumSet.of(OrderStatus.CREATED), OrderStatus.CANCELLED);
+        List<UserActivityLogEntity> activities = updated.stream()
+                .map(t -> new UserActivityLogEntity(t.getUserId(), t.getUsername(), null, null,
+                        ActionType.ORDER_CANCELLED, "Batch status update")
+                        .withOrderInfo(t.getOrderId(), t.getFinalAmount(), t.getStarCount()))
+                .toList();
+        assertEquals(BENCHMARK_SIZE, activityLogRepository.insertBatch(activities));
+
+        for (String orderId : ids("ONE", BENCHMARK_SIZE)) {
+            OrderEntity order = orderRepository.findById(orderId).orElseThrow();
+            order.updateStatus(OrderStatus.CANCELLED);
+            orderRepository.save(order);
+            activityLogRepository.save(new UserActivityLogEntity(order.getUserId(), order.getUsername(),
+                    null, null, ActionType.ORDER_CANCELLED, "Batch status update")
+                    .withOrderInfo(orderId, order.getFinalAmount(), order.getStarCount()));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(BENCHMARK_SIZE, updated.size());
+        assertTrue(updated.stream().allMatch(t -> t.getPreviousStatus() == OrderStatus.CREATED));
+        assertTrue(orderRepository.findAll().stream().allMatch(order -> order.getStatus() == OrderStatus.CANCELLED));
+        assertEquals(2L * BENCHMARK_SIZE, activityLogRepository.count());
+
+        for (int i = 0; i < BENCHMARK_SIZE; i += 997) {
+            UserActivityLogEntity setBased = single(activityLogRepository
+                    .findByOrderIdOrderByTimestampDesc(String.format("SET%05d", i)));
+            UserActivityLogEntity perOrder = single(activityLogRepository
+                    .findByOrderIdOrderByTimestampDesc(String.format("ONE%05d", i)));
+            assertEquals(perOrder.getUserId(), setBased.getUserId());
+            assertEquals(perOrder.getActionType(), setBased.getActionType());
+            assertEquals(0, perOrder.getOrderAmount().compareTo(setBased.getOrderAmount()));
+            assertEquals(perOrder.getStarCount(), setBased.getStarCount());
+        }
+    }
+
+    private static UserActivityLogEntity single(List<UserActivityLogEntity> activities) {
+        assertEquals(1, activities.size());
+        return activities.get(0);
+    }
+
+    private void persistOrders(String prefix, int count, OrderStatus[] statuses) {
+        for (int i = 0; i < count; i++) {
+            OrderEntity order = new OrderEntity(String.format("%s%05d", prefix, i), 1000L + (i % 7),
+                    "user" + i, "100 Stars", 100, BigDecimal.TEN, 0, BigDecimal.TEN);
+            order.setStatus(statuses[i % statuses.length]);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private List<String> ids(String prefix, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(String.format("%s%05d", prefix, i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,169 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.OrderEntity;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Агрегаты заказов после пересчета совпадают с запросами по orders и
+ * читаются быстрее них
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class OrderRollupRepositoryTest {
+
+    private static final int ORDER_COUNT = 100_000;
+    private static final int CUSTOMER_COUNT = 2_000;
+    private static final String[] PACKAGES = { "100 Stars", "250 Stars", "500 Stars", "1000 Stars" };
+    private static final String[] METHODS = { "TON", "YOOKASSA", "UZS_PAYMENT", null };
+    private static final OrderEntity.OrderStatus[] STATUSES = {
+            OrderEntity.OrderStatus.COMPLETED, OrderEntity.OrderStatus.COMPLETED, OrderEntity.OrderStatus.COMPLETED,
+            OrderEntity.OrderStatus.CREATED, OrderEntity.OrderStatus.AWAITING_PAYMENT,
+            OrderEntity.OrderStatus.FAILED, OrderEntity.OrderStatus.CANCELLED };
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private OrderRollupJpaRepository rollupRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void seedOrders() {
+        LocalDateTime start = LocalDateTime.now().minusDays(90);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            long userId = 1000L + i % CUSTOMER_COUNT;
+            BigDecimal amount = BigDecimal.valueOf(100 + i % 900, 2);
+            LocalDateTime createdAt = start.plusMinutes(i);
+            batch.add(new Object[] {
+                    String.format("R%07d", i), userId, "user" + userId, PACKAGES[i % PACKAGES.length], 100,
+                    amount, amount, STATUSES[i % STATUSES.length].name(), METHODS[i % METHODS.length],
+                    Timestamp.valueOf(createdAt), Timestamp.valueOf(createdAt) });
+        }
+        new JdbcTemplate(dataSource).batchUpdate("""
+                INSERT INTO orders (order_id, user_id, username, star_package_name, star_count,
+                    original_price, final_amount, status, payment_method, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+    }
+
+    @Test
+    void rebuiltRollupsMatchOrderAggregates() {
+        Map<String, Integer> rows = rollupRepository.rebuildRollups();
+        assertEquals(CUSTOMER_COUNT, rows.get("order_customer_totals"));
+        assertTrue(rows.get("order_rollup_daily") < ORDER_COUNT / 10);
+
+        assertEquals(
+                toTotals(orderRepository.getPackageStatistics()),
+                toTotals(rollupRepository.getPackageStatistics()));
+
+        assertEquals(
+                toCustomerTotals(orderRepository.getTopCustomers(PageRequest.of(0, CUSTOMER_COUNT))),
+                toCustomerTotals(rollupRepository.getTopCustomers(CUSTOMER_COUNT)));
+
+        Map<String, Long> statusCounts = new HashMap<>();
+        for (Object[] row : rollupRepository.getStatusCounts()) {
+            statusCounts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        for (OrderEntity.OrderStatus status : OrderEntity.OrderStatus.values()) {
+            assertEquals(orderRepository.countByStatus(status), statusCounts.getOrDefault(status.name(), 0L),
+                    status.name());
+        }
+    }
+
+    @Test
+    void orderStatisticsFromRollupsMatchOrders() {
+        rollupRepository.rebuildRollups();
+        LocalDate today = LocalDate.now();
+
+        Object[] fromRollups = rollupRepository.getOrderStatistics(today, today.withDayOfMonth(1)).get(0);
+
+        long completed = orderRepository.countByStatus(OrderEntity.OrderStatus.COMPLETED);
+        long pending = orderRepository.countByStatus(OrderEntity.OrderStatus.CREATED)
+                + orderRepository.countByStatus(OrderEntity.OrderStatus.AWAITING_PAYMENT);
+
+        assertEquals(ORDER_COUNT, ((Number) fromRollups[0]).longValue());
+        assertEquals(completed, ((Number) fromRollups[1]).longValue());
+        assertEquals(pending, ((Number) fromRollups[2]).longValue());
+        assertEquals(orderRepository.countByStatus(OrderEntity.OrderStatus.FAILED),
+                ((Number) fromRollups[3]).longValue());
+        assertEquals(0, orderRepository.getTotalRevenue().compareTo((BigDecimal) fromRollups[4]));
+    }
+
+    /**
+     * Сравнивается лучший из нескольких прогонов каждого запроса, чтобы
+     * прогрев и GC не решали исход
+     */
+    @Test
+    void rollupQueriesAreFasterThanLiveAggregates() {
+        rollupRepository.rebuildRollups();
+
+        long livePackages = bestOf(orderRepository::getPackageStatistics);
+        long rollupPackages = bestOf(rollupRepository::getPackageStatistics);
+        assertTrue(rollupPackages < livePackages,
+                "package statistics: rollups " + rollupPackages + " ns, orders " + livePackages + " ns");
+
+        long liveCustomers = bestOf(() -> orderRepository.getTopCustomers(PageRequest.of(0, CUSTOMER_COUNT)));
+        long rollupCustomers = bestOf(() -> rollupRepository.getTopCustomers(CUSTOMER_COUNT));
+        assertTrue(rollupCustomers < liveCustomers,
+                "top customers: rollups " + rollupCustomers + " ns, orders " + liveCustomers + " ns");
+    }
+
+    @Test
+    void pruneRemovesOnlyZeroedRows() {
+        rollupRepository.rebuildRollups();
+        assertEquals(0, rollupRepository.pruneEmptyRollupRows());
+    }
+
+    private static Map<String, String> toTotals(List<Object[]> rows) {
+        Map<String, String> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put((String) row[0], ((Number) row[1]).longValue() + "/"
+                    + ((BigDecimal) row[2]).stripTrailingZeros().toPlainString());
+        }
+        return totals;
+    }
+
+    private static Map<Long, String> toCustomerTotals(List<Object[]> rows) {
+        Map<Long, String> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put(((Number) row[0]).longValue(), row[1] + "/" + ((Number) row[2]).longValue() + "/"
+                    + ((BigDecimal) row[3]).stripTrailingZeros().toPlainString());
+        }
+        return totals;
+    }
+
+    private static long bestOf(Supplier<List<Object[]>> query) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long started = System.nanoTime();
+            assertFalse(query.get().isEmpty());
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        return best;
+    }
+}
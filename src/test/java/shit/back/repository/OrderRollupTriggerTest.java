@@ -0,0 +1,164 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.OrderEntity;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Агрегаты, которые ведут триггеры на orders, совпадают с запросами по
+ * orders после вставок, смены статуса, суммы и имени пользователя и удалений
+ *
+ * Триггеры и функции есть только в PostgreSQL: тест выполняется, если в
+ * TEST_POSTGRES_URL указана отдельная тестовая БД (схема создается и
+ * удаляется тестом).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = "jdbc:postgresql:.+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${TEST_POSTGRES_URL}",
+        "spring.datasource.username=${TEST_POSTGRES_USERNAME:postgres}",
+        "spring.datasource.password=${TEST_POSTGRES_PASSWORD:postgres}",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class OrderRollupTriggerTest {
+
+    private static final int ORDER_COUNT = 2_000;
+    private static final int CUSTOMER_COUNT = 50;
+    private static final String[] PACKAGES = { "100 Stars", "250 Stars", "500 Stars" };
+    private static final String[] METHODS = { "TON", "YOOKASSA", null };
+    private static final OrderEntity.OrderStatus[] STATUSES = {
+            OrderEntity.OrderStatus.COMPLETED, OrderEntity.OrderStatus.COMPLETED,
+            OrderEntity.OrderStatus.CREATED, OrderEntity.OrderStatus.FAILED };
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private OrderRollupJpaRepository rollupRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedOrdersAndInstallTriggers() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        insertOrders(0, ORDER_COUNT);
+        rollupRepository.installRollupFunctions();
+        assertTrue(rollupRepository.installTriggersAndBackfill());
+    }
+
+    @Test
+    void triggersKeepRollupsEqualToOrderAggregates() {
+        insertOrders(ORDER_COUNT, 300);
+        jdbcTemplate.update("UPDATE orders SET status = 'COMPLETED' WHERE status = 'CREATED' AND user_id % 3 = 0");
+        jdbcTemplate.update("UPDATE orders SET final_amount = final_amount + 1 WHERE user_id % 5 = 0");
+        jdbcTemplate.update("UPDATE orders SET star_package_name = '1000 Stars', payment_method = NULL "
+                + "WHERE user_id % 7 = 0");
+        jdbcTemplate.update("UPDATE orders SET created_at = created_at - INTERVAL '3 days' WHERE user_id % 11 = 0");
+        jdbcTemplate.update("DELETE FROM orders WHERE user_id % 13 = 0");
+
+        assertRollupsMatchOrders();
+    }
+
+    @Test
+    void usernameChangeReachesCustomerTotals() {
+        jdbcTemplate.update("UPDATE orders SET username = 'renamed' WHERE user_id = 1000");
+
+        assertRollupsMatchOrders();
+        assertTrue(rollupRepository.getTopCustomers(CUSTOMER_COUNT).stream()
+                .anyMatch(row -> ((Number) row[0]).longValue() == 1000L && "renamed".equals(row[1])));
+    }
+
+    @Test
+    void triggerWithoutUsernameIsReplacedOnStartup() {
+        assertFalse(rollupRepository.installTriggersAndBackfill());
+
+        // триггер UPDATE прежней версии: смена username его не вызывает
+        jdbcTemplate.execute("DROP TRIGGER trg_orders_rollup_update ON orders");
+        jdbcTemplate.execute("""
+                CREATE TRIGGER trg_orders_rollup_update AFTER UPDATE ON orders FOR EACH ROW
+                WHEN (OLD.status IS DISTINCT FROM NEW.status) EXECUTE FUNCTION order_rollup_trigger()
+                """);
+        jdbcTemplate.update("UPDATE orders SET username = 'stale' WHERE user_id = 1001");
+
+        assertTrue(rollupRepository.installTriggersAndBackfill());
+        assertRollupsMatchOrders();
+    }
+
+    private void assertRollupsMatchOrders() {
+        assertEquals(
+                toTotals(orderRepository.getPackageStatistics()),
+                toTotals(rollupRepository.getPackageStatistics()));
+        assertEquals(
+                toCustomerTotals(orderRepository.getTopCustomers(PageRequest.of(0, CUSTOMER_COUNT))),
+                toCustomerTotals(rollupRepository.getTopCustomers(CUSTOMER_COUNT)));
+
+        Map<String, Long> statusCounts = new HashMap<>();
+        for (Object[] row : rollupRepository.getStatusCounts()) {
+            statusCounts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        for (OrderEntity.OrderStatus status : OrderEntity.OrderStatus.values()) {
+            assertEquals(orderRepository.countByStatus(status), statusCounts.getOrDefault(status.name(), 0L),
+                    status.name());
+        }
+    }
+
+    private void insertOrders(int from, int count) {
+        LocalDateTime start = LocalDateTime.now().minusDays(10);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            long userId = 1000L + i % CUSTOMER_COUNT;
+            BigDecimal amount = BigDecimal.valueOf(100 + i % 900, 2);
+            LocalDateTime createdAt = start.plusMinutes(i * 7L);
+            batch.add(new Object[] {
+                    String.format("T%07d", i), userId, "user" + userId, PACKAGES[i % PACKAGES.length], 100,
+                    amount, amount, STATUSES[i % STATUSES.length].name(), METHODS[i % METHODS.length],
+                    Timestamp.valueOf(createdAt), Timestamp.valueOf(createdAt) });
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO orders (order_id, user_id, username, star_package_name, star_count,
+                    original_price, final_amount, status, payment_method, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+    }
+
+    private static Map<String, String> toTotals(List<Object[]> rows) {
+        Map<String, String> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put((String) row[0], ((Number) row[1]).longValue() + "/"
+                    + ((BigDecimal) row[2]).stripTrailingZeros().toPlainString());
+        }
+        return totals;
+    }
+
+    private static Map<Long, String> toCustomerTotals(List<Object[]> rows) {
+        Map<Long, String> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put(((Number) row[0]).longValue(), row[1] + "/" + ((Number) row[2]).longValue() + "/"
+                    + ((BigDecimal) row[3]).stripTrailingZeros().toPlainString());
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,174 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.dto.order.OrderSearchCriteria;
+import shit.back.dto.order.OrderSearchResult;
+import shit.back.dto.order.OrderSummary;
+import shit.back.entity.OrderEntity;
+import shit.back.entity.OrderEntity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка эквивалентности SQL поиска заказов прежней фильтрации в памяти
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class OrderSearchRepositoryImplTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 12, 0);
+    private static final String[] USERNAMES = { "alice", "Bob_Star", "charlie", null };
+    private static final String[] PACKAGES = { "100 Stars", "500 Stars", "1000 Stars" };
+
+    @Autowired
+    private OrderJpaRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private List<OrderEntity> allOrders;
+
+    @BeforeEach
+    void setUp() {
+        OrderStatus[] statuses = OrderStatus.values();
+        for (int i = 0; i < 60; i++) {
+            OrderEntity order = new OrderEntity(String.format("ORD%05d", i), 1000L + (i % 7),
+                    USERNAMES[i % USERNAMES.length], PACKAGES[i % PACKAGES.length], 100,
+                    BigDecimal.valueOf(10 + (i % 5)), 0, BigDecimal.valueOf(10 + (i % 5)));
+            order.setStatus(statuses[i % 3]);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+
+        // @CreationTimestamp перезаписывает created_at при вставке, поэтому задаем время
+        // отдельно; каждые 3 заказа делят одно время, чтобы проверить tie-break по order_id
+        for (int i = 0; i < 60; i++) {
+            entityManager.getEntityManager()
+                    .createNativeQuery("UPDATE orders SET created_at = ?1 WHERE order_id = ?2")
+                    .setParameter(1, BASE_TIME.plusHours(i / 3))
+                    .setParameter(2, String.format("ORD%05d", i))
+                    .executeUpdate();
+        }
+        entityManager.clear();
+        allOrders = orderRepository.findAll();
+    }
+
+    @Test
+    void keysetPagesMatchInMemoryFiltering() {
+        assertKeysetMatchesReference(null, null, null, null);
+        assertKeysetMatchesReference("stars", OrderStatus.AWAITING_PAYMENT, null, null);
+        assertKeysetMatchesReference("BOB", null, BASE_TIME.plusHours(3), BASE_TIME.plusHours(15));
+        assertKeysetMatchesReference(null, OrderStatus.CREATED, BASE_TIME.plusHours(5), null);
+        assertKeysetMatchesReference("ord0001", null, null, null);
+    }
+
+    @Test
+    void pagedSearchMatchesInMemoryFiltering() {
+        PageRequest pageable = PageRequest.of(1, 5, Sort.by(Sort.Direction.DESC, "createdAt", "orderId"));
+
+        Page<OrderEntity> page = orderRepository.searchWithFilters("STARS", OrderStatus.CREATED,
+                BASE_TIME, BASE_TIME.plusHours(19), pageable);
+
+        List<String> expected = reference("STARS", OrderStatus.CREATED, BASE_TIME, BASE_TIME.plusHours(19));
+        assertEquals(expected.size(), page.getTotalElements());
+        assertEquals(expected.subList(5, Math.min(10, expected.size())),
+                page.getContent().stream().map(OrderEntity::getOrderId).toList());
+    }
+
+    @Test
+    void likeWildcardsInSearchTextAreEscaped() {
+        OrderSearchResult result = orderRepository.searchSummaries(OrderSearchCriteria.builder()
+                .searchText("%")
+                .build());
+
+        assertTrue(result.getOrders().isEmpty());
+        assertFalse(result.isHasNext());
+    }
+
+    @Test
+    void tamperedCursorIsRejectedAsIllegalArgument() {
+        String badDate = encode("CREATED_AT|yesterday|ORD00001");
+        String badAmount = encode("FINAL_AMOUNT|ten|ORD00001");
+        String otherField = encode("UPDATED_AT|2025-01-01T12:00|ORD00001");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> OrderSearchRepositoryImpl.Cursor.decode(badDate, OrderSearchRepositoryImpl.SortKey.CREATED_AT));
+        assertThrows(IllegalArgumentException.class,
+                () -> OrderSearchRepositoryImpl.Cursor.decode(badAmount, OrderSearchRepositoryImpl.SortKey.FINAL_AMOUNT));
+        assertThrows(IllegalArgumentException.class,
+                () -> OrderSearchRepositoryImpl.Cursor.decode(otherField, OrderSearchRepositoryImpl.SortKey.CREATED_AT));
+        assertThrows(IllegalArgumentException.class,
+                () -> OrderSearchRepositoryImpl.Cursor.decode("not a cursor", OrderSearchRepositoryImpl.SortKey.CREATED_AT));
+
+        // через репозиторий - IllegalArgumentException или ее перевод Spring Data
+        RuntimeException e = assertThrows(RuntimeException.class, () -> orderRepository.searchSummaries(
+                OrderSearchCriteria.builder().cursor(badDate).build()));
+        assertTrue(e instanceof IllegalArgumentException || e.getCause() instanceof IllegalArgumentException);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertKeysetMatchesReference(String text, OrderStatus status,
+            LocalDateTime from, LocalDateTime to) {
+        List<String> collected = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderSearchResult result = orderRepository.searchSummaries(OrderSearchCriteria.builder()
+                    .searchText(text)
+                    .status(status)
+                    .fromDate(from)
+                    .toDate(to)
+                    .limit(7)
+                    .cursor(cursor)
+                    .build());
+            result.getOrders().stream().map(OrderSummary::getOrderId).forEach(collected::add);
+            assertEquals(result.isHasNext(), result.getNextCursor() != null);
+            cursor = result.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(reference(text, status, from, to), collected);
+    }
+
+    /**
+     * Прежняя логика OrderQueryService: фильтрация списка заказов в памяти
+     */
+    private List<String> reference(String text, OrderStatus status, LocalDateTime from, LocalDateTime to) {
+        return allOrders.stream()
+                .filter(order -> status == null || order.getStatus() == status)
+                .filter(order -> from == null || !order.getCreatedAt().isBefore(from))
+                .filter(order -> to == null || !order.getCreatedAt().isAfter(to))
+                .filter(order -> text == null || matchesSearchText(order, text.toLowerCase()))
+                .sorted(Comparator.comparing(OrderEntity::getCreatedAt)
+                        .thenComparing(OrderEntity::getOrderId)
+                        .reversed())
+                .map(OrderEntity::getOrderId)
+                .toList();
+    }
+
+    private boolean matchesSearchText(OrderEntity order, String lowerSearchText) {
+        return order.getOrderId().toLowerCase().contains(lowerSearchText) ||
+                (order.getUsername() != null && order.getUsername().toLowerCase().contains(lowerSearchText)) ||
+                order.getStarPackageName().toLowerCase().contains(lowerSearchText);
+    }
+}
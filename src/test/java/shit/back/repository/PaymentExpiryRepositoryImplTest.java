@@ -0,0 +1,92 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.dto.payment.ExpiredPayment;
+import shit.back.entity.PaymentEntity;
+import shit.back.entity.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пакетный перевод просроченных платежей в EXPIRED: размер пачки,
+ * порядок по сроку, отбор по статусу и размер очереди
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class PaymentExpiryRepositoryImplTest {
+
+    private static final String REASON = "Время платежа истекло";
+
+    @Autowired
+    private PaymentJpaRepository paymentRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void expiresOldestOverduePaymentsInBoundedBatches() {
+        for (int i = 0; i < 5; i++) {
+            persistPayment("PAY_OVERDUE_" + i, "ORD0000" + i, PaymentStatus.PENDING, -60 + i);
+        }
+        persistPayment("PAY_ACTIVE", null, PaymentStatus.PENDING, 30);
+        persistPayment("PAY_DONE", null, PaymentStatus.COMPLETED, -120);
+        entityManager.flush();
+
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(5, paymentRepository.countExpiryBacklog(now));
+
+        List<ExpiredPayment> first = paymentRepository.expireBatch(now, 3, REASON);
+        assertEquals(List.of("PAY_OVERDUE_0", "PAY_OVERDUE_1", "PAY_OVERDUE_2"),
+                first.stream().map(ExpiredPayment::getPaymentId).toList());
+        assertEquals("ORD00000", first.get(0).getOrderId());
+        assertEquals(2, paymentRepository.countExpiryBacklog(now));
+
+        List<ExpiredPayment> second = paymentRepository.expireBatch(now, 3, REASON);
+        assertEquals(2, second.size());
+        assertTrue(paymentRepository.expireBatch(now, 3, REASON).isEmpty());
+        assertEquals(0, paymentRepository.countExpiryBacklog(now));
+        assertNull(paymentRepository.findOldestOverdueExpiry(now));
+
+        PaymentEntity expired = paymentRepository.findByPaymentId("PAY_OVERDUE_4").orElseThrow();
+        assertEquals(PaymentStatus.EXPIRED, expired.getStatus());
+        assertEquals(REASON, expired.getErrorMessage());
+        assertNotNull(expired.getCompletedAt());
+        assertEquals(PaymentStatus.PENDING, paymentRepository.findByPaymentId("PAY_ACTIVE").orElseThrow().getStatus());
+        assertEquals(PaymentStatus.COMPLETED, paymentRepository.findByPaymentId("PAY_DONE").orElseThrow().getStatus());
+    }
+
+    @Test
+    void expiresProcessingAndVerificationPayments() {
+        persistPayment("PAY_PROCESSING", null, PaymentStatus.PROCESSING, -10);
+        persistPayment("PAY_VERIFY", null, PaymentStatus.VERIFICATION_REQUIRED, -5);
+        persistPayment("PAY_FAILED", null, PaymentStatus.FAILED, -5);
+        entityManager.flush();
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = paymentRepository.findOldestOverdueExpiry(now);
+        assertNotNull(oldest);
+        assertTrue(oldest.isBefore(now.minusMinutes(9)));
+
+        assertEquals(2, paymentRepository.expireBatch(now, 100, REASON).size());
+        assertEquals(PaymentStatus.FAILED, paymentRepository.findByPaymentId("PAY_FAILED").orElseThrow().getStatus());
+    }
+
+    private void persistPayment(String paymentId, String orderId, PaymentStatus status, int expiresInMinutes) {
+        PaymentEntity payment = new PaymentEntity(paymentId, 1000L, orderId, new BigDecimal("10.00"),
+                "USD", "TON", null);
+        payment.setExpiresAt(expiresInMinutes);
+        payment.updateStatus(status);
+        entityManager.persist(payment);
+    }
+}
@@ -0,0 +1,101 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кодирование строк COPY: экранирование CSV и двоичный формат PGCOPY
+ */
+class PgCopyWriterTest {
+
+    @Test
+    void csvQuotesTextAndLeavesNullsEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgCopyWriter writer = new PgCopyWriter(false, out);
+        writer.startRow(7);
+        writer.writeLong(42L);
+        writer.writeText("Заказ \"A,1\"");
+        writer.writeText("");
+        writer.writeText(null);
+        writer.writeNumeric(new BigDecimal("4.50"));
+        writer.writeBoolean(true);
+        writer.writeTimestamp(LocalDateTime.of(2025, 3, 1, 12, 30, 5, 123_000_000));
+        writer.endRow();
+        writer.finish();
+
+        assertEquals("42,\"Заказ \"\"A,1\"\"\",\"\",,4.50,t,2025-03-01 12:30:05.123000\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void binaryWritesHeaderFieldsAndTrailer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgCopyWriter writer = new PgCopyWriter(true, out);
+        writer.startRow(5);
+        writer.writeLong(7L);
+        writer.writeInt(null);
+        writer.writeBoolean(false);
+        writer.writeText("ok");
+        writer.writeTimestamp(LocalDateTime.of(2000, 1, 2, 0, 0));
+        writer.endRow();
+        writer.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertEquals("PGCOPY\n", new String(signature, 0, 7, StandardCharsets.US_ASCII));
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(5, in.readShort());
+        assertEquals(8, in.readInt());
+        assertEquals(7L, in.readLong());
+        assertEquals(-1, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(0, in.readByte());
+        assertEquals(2, in.readInt());
+        assertEquals("ok", new String(in.readNBytes(2), StandardCharsets.UTF_8));
+        assertEquals(8, in.readInt());
+        assertEquals(86_400_000_000L, in.readLong());
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void binaryNumericUsesBase10000Groups() throws IOException {
+        assertArrayEquals(new short[] { 2, 0, 0, 2, 1234, 5000 }, numeric("1234.50"));
+        assertArrayEquals(new short[] { 1, -1, 0, 2, 500 }, numeric("0.05"));
+        assertArrayEquals(new short[] { 1, 1, 0, 0, 1 }, numeric("10000"));
+        assertArrayEquals(new short[] { 1, 0, 0x4000, 0, 7 }, numeric("-7"));
+        assertArrayEquals(new short[] { 0, 0, 0, 2 }, numeric("0.00"));
+    }
+
+    /**
+     * ndigits, weight, sign, dscale и группы цифр одного поля numeric
+     */
+    private static short[] numeric(String value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgCopyWriter writer = new PgCopyWriter(true, out);
+        writer.startRow(1);
+        writer.writeNumeric(new BigDecimal(value));
+        writer.endRow();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        in.skipNBytes(11 + 4 + 4 + 2);
+        int length = in.readInt();
+        short[] fields = new short[length / 2];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = in.readShort();
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,129 @@
+package shit.back.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Массовая запись журнала активности: id из общей последовательности и
+ * те же строки, что сохраняет saveAll()
+ *
+ * На H2 проверяется запасной путь (многострочный INSERT); COPY работает
+ * только на PostgreSQL.
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class UserActivityLogBulkWriterTest {
+
+    private static final int ROWS = 20_000;
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void bulkWriterAndSaveAllShareIdSequenceWithoutCollisions() {
+        List<UserActivityLogEntity> first = activities("bulk", 120);
+        assertEquals(120, activityLogRepository.insertBatch(first));
+
+        List<UserActivityLogEntity> viaJpa = activityLogRepository.saveAll(activities("jpa", 60));
+        entityManager.flush();
+
+        List<UserActivityLogEntity> second = activities("bulk2", 10);
+        assertEquals(10, activityLogRepository.insertBatch(second));
+
+        Set<Long> ids = new HashSet<>();
+        for (List<UserActivityLogEntity> group : List.of(first, viaJpa, second)) {
+            for (UserActivityLogEntity activity : group) {
+                assertNotNull(activity.getId());
+                assertTrue(activity.getId() > 0);
+                assertTrue(ids.add(activity.getId()), "Повторный id " + activity.getId());
+            }
+        }
+        assertEquals(190, activityLogRepository.count());
+
+        entityManager.clear();
+        UserActivityLogEntity stored = activityLogRepository.findById(first.get(1).getId()).orElseThrow();
+        assertEquals("bulk1", stored.getUsername());
+        assertNull(stored.getStarCount());
+        assertEquals(0, new BigDecimal("4.50").compareTo(stored.getOrderAmount()));
+        assertNotNull(stored.getTimestamp());
+    }
+
+    /**
+     * Пакетная запись и saveAll() сохраняют одинаковые строки: те же
+     * значения полей и NULL в тех же местах
+     */
+    @Test
+    void bulkWriterStoresTheSameRowsAsSaveAll() {
+        for (int written = 0; written < ROWS; written += BATCH_SIZE) {
+            activityLogRepository.insertBatch(activities("bulk" + written + "-", BATCH_SIZE));
+        }
+        for (int written = 0; written < ROWS; written += BATCH_SIZE) {
+            activityLogRepository.saveAll(activities("jpa" + written + "-", BATCH_SIZE));
+            entityManager.flush();
+            entityManager.clear();
+        }
+
+        assertEquals(2L * ROWS, activityLogRepository.count());
+        assertArrayEquals(aggregates("jpa%"), aggregates("bulk%"));
+        for (int sample = 0; sample < ROWS; sample += 4_999) {
+            String suffix = (sample / BATCH_SIZE * BATCH_SIZE) + "-" + sample % BATCH_SIZE;
+            UserActivityLogEntity bulk = byUsername("bulk" + suffix);
+            UserActivityLogEntity jpa = byUsername("jpa" + suffix);
+            assertEquals(jpa.getUserId(), bulk.getUserId());
+            assertEquals(jpa.getActionType(), bulk.getActionType());
+            assertEquals(jpa.getActionDescription(), bulk.getActionDescription());
+            assertEquals(jpa.getOrderId(), bulk.getOrderId());
+            assertEquals(0, jpa.getOrderAmount().compareTo(bulk.getOrderAmount()));
+            assertEquals(jpa.getStarCount(), bulk.getStarCount());
+            assertEquals(jpa.getIsKeyAction(), bulk.getIsKeyAction());
+        }
+    }
+
+    private Object[] aggregates(String usernamePattern) {
+        Object[] row = entityManager.createQuery("""
+                SELECT COUNT(a), COUNT(a.starCount), SUM(a.starCount), SUM(a.orderAmount), COUNT(DISTINCT a.orderId)
+                FROM UserActivityLogEntity a WHERE a.username LIKE :pattern
+                """, Object[].class)
+                .setParameter("pattern", usernamePattern)
+                .getSingleResult();
+        row[3] = ((BigDecimal) row[3]).stripTrailingZeros();
+        return row;
+    }
+
+    private UserActivityLogEntity byUsername(String username) {
+        return entityManager.createQuery("SELECT a FROM UserActivityLogEntity a WHERE a.username = :username",
+                        UserActivityLogEntity.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+
+    private static List<UserActivityLogEntity> activities(String prefix, int count) {
+        List<UserActivityLogEntity> activities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            activities.add(new UserActivityLogEntity(1000L + i, prefix + i, null, null,
+                    ActionType.ORDER_CREATED, "Заказ \"" + i + "\"")
+                    .withOrderInfo(String.format("B%07d", i), new BigDecimal("4.50"), i % 2 == 0 ? 100 : null));
+        }
+        return activities;
+    }
+}
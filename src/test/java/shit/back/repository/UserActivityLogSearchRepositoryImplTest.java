@@ -0,0 +1,178 @@
+package shit.back.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.dto.activity.ActivityLogSearchCriteria;
+import shit.back.dto.activity.ActivityLogSearchResult;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset пагинация журнала активности: обход страниц по курсору совпадает
+ * с сортировкой в памяти, а глубокая страница начинается сразу за курсором
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class UserActivityLogSearchRepositoryImplTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+    private static final ActionType[] TYPES = { ActionType.ORDER_CREATED, ActionType.PAYMENT_COMPLETED,
+            ActionType.SYSTEM_INFO, ActionType.BOT_MESSAGE_SENT };
+    private static final LogCategory[] CATEGORIES = { LogCategory.TELEGRAM_BOT, LogCategory.APPLICATION,
+            LogCategory.SYSTEM };
+
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 10_000;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void keysetPagesMatchInMemoryOrdering() {
+        List<Row> rows = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            // по три записи на одну минуту, id не совпадают с порядком вставки - проверка tie-break по id
+            Row row = new Row((i * 37) % 90 + 1L, 1000L + i % 4, TYPES[i % TYPES.length],
+                    CATEGORIES[i % CATEGORIES.length], i % 2 == 0, START.plusMinutes(i / 3));
+            rows.add(row);
+            batch.add(new Object[] { row.id(), row.userId(), "user" + row.userId(), row.actionType().name(),
+                    row.logCategory().name(), "Событие " + i, row.keyAction(), Timestamp.valueOf(row.timestamp()) });
+        }
+        insert(batch);
+
+        assertKeysetMatchesReference(rows, ActivityLogSearchCriteria.builder(), row -> true);
+        assertKeysetMatchesReference(rows, ActivityLogSearchCriteria.builder().keyOnly(true), Row::keyAction);
+        assertKeysetMatchesReference(rows, ActivityLogSearchCriteria.builder().userId(1002L),
+                row -> row.userId() == 1002L);
+        assertKeysetMatchesReference(rows,
+                ActivityLogSearchCriteria.builder().logCategories(List.of(LogCategory.TELEGRAM_BOT)),
+                row -> row.logCategory() == LogCategory.TELEGRAM_BOT);
+        assertKeysetMatchesReference(rows,
+                ActivityLogSearchCriteria.builder()
+                        .actionTypes(List.of(ActionType.ORDER_CREATED, ActionType.PAYMENT_COMPLETED))
+                        .keyOnly(true),
+                row -> row.keyAction() && (row.actionType() == ActionType.ORDER_CREATED
+                        || row.actionType() == ActionType.PAYMENT_COMPLETED));
+        assertKeysetMatchesReference(rows,
+                ActivityLogSearchCriteria.builder().fromTime(START.plusMinutes(5)).toTime(START.plusMinutes(17)),
+                row -> !row.timestamp().isBefore(START.plusMinutes(5)) && !row.timestamp().isAfter(START.plusMinutes(17)));
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThrows(RuntimeException.class, () -> activityLogRepository.searchActivities(
+                ActivityLogSearchCriteria.builder().cursor("not a cursor").build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> UserActivityLogSearchRepositoryImpl.Cursor.decode(encode("2025-03-01T00:00", "x")));
+    }
+
+    @Test
+    void approximateCountIsOnlyAvailableOnPostgres() {
+        assertTrue(activityLogRepository.estimateActivityCount(ActivityLogSearchCriteria.builder().build()).isEmpty());
+
+        assertEquals(1234, UserActivityLogSearchRepositoryImpl.parsePlanRows(
+                "[{\"Plan\": {\"Node Type\": \"Seq Scan\", \"Plan Rows\": 1234, \"Plan Width\": 0}}]").getAsLong());
+        assertTrue(UserActivityLogSearchRepositoryImpl.parsePlanRows("[]").isEmpty());
+    }
+
+    /**
+     * Страница 10 000 по курсору. Курсор глубокой страницы собирается по
+     * формуле вставки (запись X - X секунд от START), как если бы до нее
+     * дошли по nextCursor; страница - ровно следующие PAGE_SIZE записей, и
+     * ее nextCursor продолжает обход без пропусков до последней записи.
+     */
+    @Test
+    void deepPageStartsRightAfterCursor() {
+        int total = DEEP_PAGE * PAGE_SIZE + 30;
+        new JdbcTemplate(dataSource).update("""
+                INSERT INTO user_activity_logs (id, user_id, username, action_type, log_category,
+                    action_description, is_key_action, timestamp)
+                SELECT X, 1000 + MOD(X, 500), 'user' || MOD(X, 500), 'ORDER_CREATED', 'TELEGRAM_BOT',
+                    'Событие', MOD(X, 2) = 0, DATEADD('SECOND', X, TIMESTAMP '2025-03-01 00:00:00')
+                FROM SYSTEM_RANGE(1, %d)
+                """.formatted(total));
+
+        // последняя запись страницы DEEP_PAGE - 1 (счет с нуля): DEEP_PAGE * PAGE_SIZE новейших до нее
+        long lastId = total - (long) DEEP_PAGE * PAGE_SIZE + 1;
+        String deepCursor = encode(START.plusSeconds(lastId).toString(), String.valueOf(lastId));
+
+        ActivityLogSearchResult deep = activityLogRepository.searchActivities(
+                ActivityLogSearchCriteria.builder().limit(PAGE_SIZE).cursor(deepCursor).build());
+        assertEquals(LongStream.rangeClosed(1, PAGE_SIZE).map(offset -> lastId - offset).boxed().toList(), ids(deep));
+        assertTrue(deep.isHasNext());
+
+        ActivityLogSearchResult tail = activityLogRepository.searchActivities(
+                ActivityLogSearchCriteria.builder().limit(PAGE_SIZE).cursor(deep.getNextCursor()).build());
+        assertEquals(lastId - PAGE_SIZE - 1, tail.getActivities().size());
+        assertEquals(lastId - PAGE_SIZE - 1, ids(tail).get(0));
+        assertEquals(1L, ids(tail).get(ids(tail).size() - 1));
+        assertFalse(tail.isHasNext());
+        assertNull(tail.getNextCursor());
+    }
+
+    private void assertKeysetMatchesReference(List<Row> rows,
+            ActivityLogSearchCriteria.ActivityLogSearchCriteriaBuilder criteria, Predicate<Row> filter) {
+        List<Long> collected = new ArrayList<>();
+        String cursor = null;
+        do {
+            ActivityLogSearchResult result = activityLogRepository.searchActivities(
+                    criteria.limit(7).cursor(cursor).build());
+            result.getActivities().stream().map(UserActivityLogEntity::getId).forEach(collected::add);
+            assertEquals(result.isHasNext(), result.getNextCursor() != null);
+            cursor = result.getNextCursor();
+        } while (cursor != null);
+
+        List<Long> expected = rows.stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(Row::timestamp).thenComparing(Row::id).reversed())
+                .map(Row::id)
+                .toList();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, collected);
+    }
+
+    private static List<Long> ids(ActivityLogSearchResult result) {
+        return result.getActivities().stream().map(UserActivityLogEntity::getId).toList();
+    }
+
+    private void insert(List<Object[]> batch) {
+        new JdbcTemplate(dataSource).batchUpdate("""
+                INSERT INTO user_activity_logs (id, user_id, username, action_type, log_category,
+                    action_description, is_key_action, timestamp)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+    }
+
+    private static String encode(String timestamp, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Row(long id, long userId, ActionType actionType, LogCategory logCategory,
+            boolean keyAction, LocalDateTime timestamp) {
+    }
+}
@@ -0,0 +1,119 @@
+package shit.back.security.signature;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * JMH: проверка подписи callback'а прежним способом (Mac.getInstance на каждый
+ * вызов, hex через Integer.toHexString, посимвольное сравнение строк) против
+ * HmacKeyRing с одним и двумя активными ключами
+ *
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CallbackSignatureBenchmark {
+
+    private static final String SECRET = "ton-webhook-secret-0123456789abcdef";
+    private static final String PREVIOUS_SECRET = "ton-webhook-secret-previous-fedcba98";
+
+    private Map<String, String> params;
+    private String signatureHex;
+    private SignatureCanonicalizer canonicalizer;
+    private HmacKeyRing singleKey;
+    private HmacKeyRing rotatingKeys;
+
+    @Setup
+    public void setUp() throws Exception {
+        params = Map.of("payment_id", "PAY_1718000000_ABCD1234", "status", "completed", "amount", "149.99");
+        canonicalizer = SignatureCanonicalizer.sortedQueryString();
+        singleKey = new HmacKeyRing("HmacSHA256", List.of(SECRET.getBytes(StandardCharsets.UTF_8)));
+        // Подпись предыдущим ключом - худший случай во время ротации
+        rotatingKeys = new HmacKeyRing("HmacSHA256", List.of(
+                SECRET.getBytes(StandardCharsets.UTF_8), PREVIOUS_SECRET.getBytes(StandardCharsets.UTF_8)));
+        signatureHex = legacyHmacHex(legacySignatureString(params), SECRET);
+    }
+
+    @Benchmark
+    public boolean legacyVerification() throws Exception {
+        String computed = legacyHmacHex(legacySignatureString(params), SECRET);
+        return legacyConstantTimeEquals(signatureHex, computed);
+    }
+
+    @Benchmark
+    public boolean keyRingSingleKey() {
+        return singleKey.match(canonicalizer.canonicalize(params), HexFormat.of().parseHex(signatureHex)) >= 0;
+    }
+
+    @Benchmark
+    public boolean keyRingTwoKeys() {
+        return rotatingKeys.match(canonicalizer.canonicalize(params), HexFormat.of().parseHex(signatureHex)) >= 0;
+    }
+
+    private static String legacySignatureString(Map<String, String> params) {
+        return params.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey() != null && entry.getValue() != null)
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String legacyHmacHex(String data, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] hmacBytes = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hmacBytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    private static boolean legacyConstantTimeEquals(String a, String b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        int result = 0;
+        for (int i = 0; i < a.length(); i++) {
+            result |= a.charAt(i) ^ b.charAt(i);
+        }
+        return result == 0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CallbackSignatureBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package shit.back.security.signature;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка HMAC ключей: совместимость с прежним форматом подписи, ротация и потокобезопасность
+ */
+class HmacKeyRingTest {
+
+    private static final byte[] CURRENT = "current-secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PREVIOUS = "previous-secret".getBytes(StandardCharsets.UTF_8);
+
+    private final SignatureCanonicalizer canonicalizer = SignatureCanonicalizer.sortedQueryString();
+
+    @Test
+    void canonicalStringMatchesPreviousFormat() {
+        Map<String, String> params = new HashMap<>();
+        params.put("status", "completed");
+        params.put("payment_id", "PAY_1");
+        params.put("amount", "10.00");
+        params.put("ignored", null);
+
+        assertEquals("amount=10.00&payment_id=PAY_1&status=completed",
+                new String(canonicalizer.canonicalize(params), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void acceptsCurrentAndPreviousKeyDuringRotation() {
+        HmacKeyRing current = new HmacKeyRing("HmacSHA256", List.of(CURRENT));
+        HmacKeyRing previous = new HmacKeyRing("HmacSHA256", List.of(PREVIOUS));
+        HmacKeyRing rotating = new HmacKeyRing("HmacSHA256", List.of(CURRENT, PREVIOUS));
+        byte[] data = canonicalizer.canonicalize(Map.of("payment_id", "PAY_1", "status", "completed"));
+
+        assertEquals(0, rotating.match(data, current.sign(data)));
+        assertEquals(1, rotating.match(data, previous.sign(data)));
+        assertEquals(-1, current.match(data, previous.sign(data)));
+
+        byte[] tampered = current.sign(data);
+        tampered[0] ^= 1;
+        assertEquals(-1, rotating.match(data, tampered));
+        assertEquals(-1, rotating.match(data, new byte[0]));
+    }
+
+    @Test
+    void rejectsMoreThanTwoActiveKeys() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HmacKeyRing("HmacSHA256", List.of(CURRENT, PREVIOUS, "third".getBytes())));
+        assertThrows(IllegalArgumentException.class, () -> new HmacKeyRing("HmacSHA256", List.of()));
+    }
+
+    @Test
+    void threadLocalMacsProduceSameSignature() throws Exception {
+        HmacKeyRing keyRing = new HmacKeyRing("HmacSHA256", List.of(CURRENT));
+        byte[] data = canonicalizer.canonicalize(Map.of("payment_id", "PAY_1"));
+        String expected = HexFormat.of().formatHex(keyRing.sign(data));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> HexFormat.of().formatHex(keyRing.sign(data))));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package shit.back.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.config.MetricsConfigurationProperties;
+import shit.back.service.activity.ActivityStreamEvent;
+import shit.back.service.activity.ActivityStreamLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Переподключение к потоку метрик по Last-Event-ID: номер из этого запуска
+ * продолжает поток, номер от прошлого запуска дает последний снимок
+ */
+class BackgroundMetricsServiceReplayTest {
+
+    private BackgroundMetricsService metricsService;
+    private final List<ActivityStreamEvent> snapshots = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        metricsService = new BackgroundMetricsService();
+        ReflectionTestUtils.setField(metricsService, "metricsConfig", new MetricsConfigurationProperties());
+        metricsService.initReplayLog();
+
+        ActivityStreamLog metricsLog = (ActivityStreamLog) ReflectionTestUtils.getField(metricsService, "metricsLog");
+        for (int i = 0; i < 3; i++) {
+            snapshots.add(metricsLog.append("performance-metrics", ActivityStreamEvent.ALL_CATEGORIES,
+                    ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void idFromPreviousRunGetsLatestSnapshotOnly() {
+        // номера снимков начинаются с времени запуска: прошлый запуск выдавал меньшие
+        long previousRunId = snapshots.get(0).id() - 60_000;
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        metricsService.addSSEConnection(emitter, previousRunId);
+
+        assertEquals(List.of(snapshots.get(2).id()), emitter.ids);
+    }
+
+    @Test
+    void idFromThisRunResumesAfterIt() {
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        metricsService.addSSEConnection(emitter, snapshots.get(0).id());
+
+        assertEquals(List.of(snapshots.get(1).id(), snapshots.get(2).id()), emitter.ids);
+    }
+
+    @Test
+    void newClientGetsLatestSnapshot() {
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        metricsService.addSSEConnection(emitter);
+
+        assertEquals(List.of(snapshots.get(2).id()), emitter.ids);
+    }
+
+    /**
+     * Запоминает номера отправленных событий
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private static final Pattern ID = Pattern.compile("(?m)^id:(\\d+)$");
+
+        private final List<Long> ids = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            for (DataWithMediaType part : builder.build()) {
+                Matcher matcher = ID.matcher(String.valueOf(part.getData()));
+                if (matcher.find()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+    }
+}
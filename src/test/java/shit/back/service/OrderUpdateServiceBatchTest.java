@@ -0,0 +1,69 @@
+package shit.back.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import shit.back.config.SystemConfigurationProperties;
+import shit.back.dto.order.BatchUpdateResult;
+import shit.back.dto.order.OrderStatusTransition;
+import shit.back.entity.OrderEntity.OrderStatus;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.repository.OrderJpaRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Массовая смена статуса пишет журнал тем же путем, что и остальные
+ * изменения заказов: через UserActivityLogService, по записи на заказ
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderUpdateServiceBatchTest {
+
+    @Mock
+    private OrderJpaRepository orderRepository;
+
+    @Mock
+    private UserActivityLogService activityLogService;
+
+    @Mock
+    private OrderValidationService orderValidationService;
+
+    @Spy
+    private SystemConfigurationProperties systemConfig = new SystemConfigurationProperties();
+
+    @InjectMocks
+    private OrderUpdateService orderUpdateService;
+
+    @Test
+    void batchStatusUpdateLogsEachTransitionThroughActivityService() {
+        when(orderRepository.updateStatusWhereAllowed(anyCollection(), anySet(), eq(OrderStatus.COMPLETED)))
+                .thenReturn(List.of(
+                        new OrderStatusTransition("A1", OrderStatus.AWAITING_PAYMENT, 1L, "alice",
+                                new BigDecimal("1.50"), 100, "TON"),
+                        new OrderStatusTransition("A2", OrderStatus.PAYMENT_RECEIVED, 2L, "bob",
+                                new BigDecimal("3.00"), 250, null)));
+        when(orderRepository.findStatusesByOrderIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[] { "A3", OrderStatus.CANCELLED }));
+
+        BatchUpdateResult result = orderUpdateService.batchUpdateStatus(List.of("A1", "A2", "A3"),
+                OrderStatus.COMPLETED, "admin");
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(List.of("A3 (invalid transition from CANCELLED to COMPLETED)"), result.getFailureReasons());
+        verify(activityLogService).logOrderActivity(eq(1L), eq("alice"), isNull(), isNull(),
+                eq(ActionType.PAYMENT_COMPLETED), contains("from AWAITING_PAYMENT to COMPLETED"),
+                eq("A1"), eq(new BigDecimal("1.50")), eq(100), eq("TON"));
+        verify(activityLogService).logOrderActivity(eq(2L), eq("bob"), isNull(), isNull(),
+                eq(ActionType.PAYMENT_COMPLETED), contains("from PAYMENT_RECEIVED to COMPLETED"),
+                eq("A2"), eq(new BigDecimal("3.00")), eq(250), isNull());
+        verifyNoMoreInteractions(activityLogService);
+    }
+}
@@ -0,0 +1,47 @@
+package shit.back.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import shit.back.repository.PaymentJpaRepository;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Верификация callback'а: false только для окончательного отказа,
+ * временные ошибки пробрасываются для повтора в inbox
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceCallbackTest {
+
+    private static final String PAYMENT_ID = "PAY_1718000000_ABCD1234";
+
+    @Mock
+    private PaymentJpaRepository paymentRepository;
+
+    @InjectMocks
+    private PaymentService paymentService;
+
+    @Test
+    void unknownPaymentIsRejected() {
+        when(paymentRepository.findByPaymentId(PAYMENT_ID)).thenReturn(Optional.empty());
+
+        assertFalse(paymentService.verifyPaymentCallback(PAYMENT_ID, Map.of()));
+    }
+
+    @Test
+    void repositoryFailurePropagates() {
+        when(paymentRepository.findByPaymentId(PAYMENT_ID))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+
+        assertThrows(QueryTimeoutException.class,
+                () -> paymentService.verifyPaymentCallback(PAYMENT_ID, Map.of()));
+    }
+}
@@ -0,0 +1,64 @@
+package shit.back.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import shit.back.model.UserCountsBatchResult;
+import shit.back.repository.UserSessionJpaRepository;
+import shit.back.service.analytics.DistinctUserSketchService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Счетчики пользователей: при загруженных скетчах активные за сутки берутся
+ * из объединения вчера и сегодня, и SQL их не считает
+ */
+@ExtendWith(MockitoExtension.class)
+class UserSessionUnifiedServiceCountsTest {
+
+    @Mock
+    private UserSessionJpaRepository sessionRepository;
+
+    @Mock
+    private DistinctUserSketchService distinctUserSketchService;
+
+    @InjectMocks
+    private UserSessionUnifiedService sessionService;
+
+    @Test
+    void sketchesReplaceSqlActiveCountWithTwoDayUnion() {
+        LocalDate today = LocalDate.now();
+        when(distinctUserSketchService.countActiveUsers(today.minusDays(1), today)).thenReturn(OptionalLong.of(420));
+        when(sessionRepository.getTotalAndOnlineCounts(any())).thenReturn(List.<Object[]>of(new Object[] { 1000L, 7L }));
+
+        UserCountsBatchResult counts = sessionService.getUserCountsBatch();
+
+        assertEquals(new UserCountsBatchResult(1000, 420, 7), counts);
+        verify(sessionRepository, never()).getUserCountsBatch(any(), any());
+    }
+
+    @Test
+    void estimateNeverExceedsTotalUsers() {
+        when(distinctUserSketchService.countActiveUsers(any(), any())).thenReturn(OptionalLong.of(1003));
+        when(sessionRepository.getTotalAndOnlineCounts(any())).thenReturn(List.<Object[]>of(new Object[] { 1000L, 7L }));
+
+        assertEquals(1000, sessionService.getUserCountsBatch().activeUsers());
+    }
+
+    @Test
+    void fallsBackToSessionCountsUntilSketchesLoad() {
+        when(distinctUserSketchService.countActiveUsers(any(), any())).thenReturn(OptionalLong.empty());
+        when(sessionRepository.getUserCountsBatch(any(), any())).thenReturn(new UserCountsBatchResult(1000, 300, 7));
+
+        assertEquals(new UserCountsBatchResult(1000, 300, 7), sessionService.getUserCountsBatch());
+        verify(sessionRepository, never()).getTotalAndOnlineCounts(any());
+    }
+}
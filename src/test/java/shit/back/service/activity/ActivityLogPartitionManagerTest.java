@@ -0,0 +1,48 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+import shit.back.repository.UserActivityLogPartitionRepository.ActivityLogPartition;
+import shit.back.service.activity.ActivityLogPartitionManager.Interval;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Границы и имена секций журнала активности
+ */
+class ActivityLogPartitionManagerTest {
+
+    private static final LocalDateTime WEDNESDAY_NOON = LocalDateTime.of(2025, 3, 5, 12, 30);
+
+    @Test
+    void dailyAndWeeklyPeriodsStartAtMidnightAndMonday() {
+        assertEquals(LocalDateTime.of(2025, 3, 5, 0, 0),
+                ActivityLogPartitionManager.periodStart(WEDNESDAY_NOON, Interval.DAY));
+        assertEquals(LocalDateTime.of(2025, 3, 3, 0, 0),
+                ActivityLogPartitionManager.periodStart(WEDNESDAY_NOON, Interval.WEEK));
+        assertEquals(LocalDateTime.of(2025, 3, 10, 0, 0),
+                ActivityLogPartitionManager.nextPeriod(LocalDateTime.of(2025, 3, 3, 0, 0), Interval.WEEK));
+        assertEquals("user_activity_logs_p20250303",
+                ActivityLogPartitionManager.partitionName(LocalDateTime.of(2025, 3, 3, 0, 0)));
+    }
+
+    @Test
+    void overlapSkipsPeriodsCoveredByLegacyOrExistingPartitions() {
+        LocalDateTime march5 = LocalDateTime.of(2025, 3, 5, 0, 0);
+        LocalDateTime march6 = march5.plusDays(1);
+        LocalDateTime march7 = march6.plusDays(1);
+        List<ActivityLogPartition> partitions = List.of(
+                new ActivityLogPartition("user_activity_logs_legacy", null, march6, 1000),
+                new ActivityLogPartition("user_activity_logs_p20250306", march6, march7, 10),
+                new ActivityLogPartition("user_activity_logs_default", null, null, 0));
+
+        assertTrue(ActivityLogPartitionManager.overlaps(partitions, march5, march6));
+        assertTrue(ActivityLogPartitionManager.overlaps(partitions, march6, march7));
+        assertFalse(ActivityLogPartitionManager.overlaps(partitions, march7, march7.plusDays(1)));
+        // DEFAULT не мешает создавать секции
+        assertFalse(ActivityLogPartitionManager.overlaps(
+                List.of(new ActivityLogPartition("user_activity_logs_default", null, null, 0)), march5, march6));
+    }
+}
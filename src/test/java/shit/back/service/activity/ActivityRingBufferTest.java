@@ -0,0 +1,106 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кольцевой буфер журнала активности: емкость, порядок, переполнение и
+ * отсутствие потерь при нескольких производителях
+ */
+class ActivityRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new ActivityRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new ActivityRingBuffer<Integer>(8).capacity());
+        assertEquals(1024, new ActivityRingBuffer<Integer>(1000).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new ActivityRingBuffer<Integer>(1));
+    }
+
+    @Test
+    void offerFailsWhenFullAndSucceedsAfterDrain() {
+        ActivityRingBuffer<Integer> buffer = new ActivityRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(List.of(0, 1, 2), drained);
+
+        // позиции переиспользуются по кругу
+        for (int i = 4; i < 7; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(7));
+        drained.clear();
+        assertEquals(4, buffer.drainTo(drained, 100));
+        assertEquals(List.of(3, 4, 5, 6), drained);
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        ActivityRingBuffer<Integer> buffer = new ActivityRingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        BitSet seen = new BitSet(producers * perProducer);
+        int[] lastByProducer = new int[producers];
+        Arrays.fill(lastByProducer, -1);
+        List<Integer> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            batch.clear();
+            if (buffer.drainTo(batch, 256) == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            for (int value : batch) {
+                assertFalse(seen.get(value), "Дубликат " + value);
+                seen.set(value);
+                // порядок внутри одного производителя сохраняется
+                int producer = value / perProducer;
+                assertTrue(value > lastByProducer[producer]);
+                lastByProducer[producer] = value;
+            }
+            received += batch.size();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(producers * perProducer, seen.cardinality());
+        assertNull(buffer.poll());
+    }
+}
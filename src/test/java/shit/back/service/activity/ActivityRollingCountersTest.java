@@ -0,0 +1,84 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.service.activity.ActivityRollingCounters.ActivityCounts;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поминутные счетчики активности: суммы по срезам, сдвиг окна и замена
+ * минут значениями из БД
+ */
+class ActivityRollingCountersTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2025, 3, 5, 12, 0, 30);
+
+    @Test
+    void sumsByCategoryActionAndKeyFlag() {
+        ActivityRollingCounters counters = new ActivityRollingCounters(60);
+        counters.record(LogCategory.APPLICATION, ActionType.ORDER_CREATED, true, NOON);
+        counters.record(LogCategory.APPLICATION, ActionType.ORDER_CREATED, true, NOON.plusMinutes(1));
+        counters.record(LogCategory.APPLICATION, ActionType.ORDER_CREATED, false, NOON.plusMinutes(2));
+        counters.record(LogCategory.TELEGRAM_BOT, ActionType.BOT_MESSAGE_SENT, false, NOON.plusMinutes(2));
+        counters.record(LogCategory.SYSTEM, ActionType.ORDER_CREATED, true, NOON.plusMinutes(3));
+
+        ActivityCounts counts = counters.sum(NOON, NOON.plusMinutes(3));
+        assertEquals(5, counts.total());
+        assertEquals(3, counts.keyTotal());
+        assertEquals(3, counts.category(LogCategory.APPLICATION));
+        assertEquals(2, counts.categoryKey(LogCategory.APPLICATION));
+        assertEquals(1, counts.category(LogCategory.TELEGRAM_BOT));
+        assertEquals(0, counts.categoryKey(LogCategory.TELEGRAM_BOT));
+        assertEquals(4, counts.action(ActionType.ORDER_CREATED));
+        assertEquals(3, counts.keyAction(ActionType.ORDER_CREATED));
+        assertEquals(1, counts.categoryAction(LogCategory.SYSTEM, ActionType.ORDER_CREATED));
+
+        // минута начала периода учитывается целиком
+        assertEquals(3, counters.sum(NOON.plusMinutes(2).plusSeconds(29), NOON.plusMinutes(3)).total());
+        assertEquals(2, counters.sum(NOON, NOON.plusMinutes(1)).total());
+    }
+
+    @Test
+    void reusesSlotsAsWindowMovesAndRejectsExpiredEvents() {
+        ActivityRollingCounters counters = new ActivityRollingCounters(10);
+        for (int minute = 0; minute < 10; minute++) {
+            assertTrue(counters.record(LogCategory.APPLICATION, ActionType.SESSION_START, true,
+                    NOON.plusMinutes(minute)));
+        }
+        assertEquals(10, counters.sum(NOON.minusHours(1), NOON.plusMinutes(9)).total());
+
+        // минута 12 занимает слот минуты 2 и сдвигает окно: минуты 0..2 больше не учитываются
+        assertTrue(counters.record(LogCategory.APPLICATION, ActionType.SESSION_START, true, NOON.plusMinutes(12)));
+        assertFalse(counters.record(LogCategory.APPLICATION, ActionType.SESSION_START, true, NOON.plusMinutes(2)));
+        assertEquals(8, counters.sum(NOON.minusHours(1), NOON.plusMinutes(12)).total());
+        assertEquals(0, counters.sum(NOON, NOON.plusMinutes(2)).total());
+
+        // после долгого простоя старые слоты не попадают в сумму
+        counters.record(LogCategory.APPLICATION, ActionType.SESSION_START, true, NOON.plusHours(5));
+        assertEquals(1, counters.sum(NOON.minusHours(1), NOON.plusHours(5)).total());
+    }
+
+    @Test
+    void replaceMinuteOverridesLiveCounts() {
+        ActivityRollingCounters counters = new ActivityRollingCounters(60);
+        counters.record(LogCategory.APPLICATION, ActionType.ORDER_CREATED, true, NOON);
+        counters.record(LogCategory.APPLICATION, ActionType.ORDER_CREATED, true, NOON.plusMinutes(1));
+
+        int[] fromDatabase = new int[ActivityRollingCounters.CELLS];
+        fromDatabase[ActivityRollingCounters.cell(LogCategory.APPLICATION, ActionType.ORDER_CREATED, true)] = 4;
+        fromDatabase[ActivityRollingCounters.cell(LogCategory.TELEGRAM_BOT, ActionType.BOT_MESSAGE_SENT, false)] = 2;
+        counters.replaceMinute(ActivityRollingCounters.epochMinute(NOON), fromDatabase);
+        counters.replaceMinute(ActivityRollingCounters.epochMinute(NOON.plusMinutes(1)),
+                new int[ActivityRollingCounters.CELLS]);
+
+        ActivityCounts counts = counters.sum(NOON, NOON.plusMinutes(1));
+        assertEquals(6, counts.total());
+        assertEquals(4, counts.keyAction(ActionType.ORDER_CREATED));
+        assertEquals(2, counts.category(LogCategory.TELEGRAM_BOT));
+        assertThrows(IllegalArgumentException.class, () -> counters.replaceMinute(0, new int[3]));
+    }
+}
@@ -0,0 +1,101 @@
+package shit.back.service.activity;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.ActivityRollingCounters.ActivityCounts;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Счетчики, заполненные из БД, совпадают с GROUP BY запросами, которые
+ * они заменяют в UserActivityStatisticsService
+ *
+ * Метки времени не ближе минуты к границам периода, поэтому поминутная
+ * точность счетчиков не влияет на сравнение.
+ */
+@DataJpaTest
+@Import(ActivityRollupService.class)
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.activity.rollups.window-hours=48"
+})
+class ActivityRollupServiceTest {
+
+    private static final ActionType[] SEEDED_ACTIONS = {
+            ActionType.SESSION_START, ActionType.ORDER_CREATED, ActionType.PAYMENT_COMPLETED,
+            ActionType.BOT_MESSAGE_SENT, ActionType.ORDER_CANCELLED
+    };
+
+    @Autowired
+    private ActivityRollupService rollupService;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void countsRebuiltFromDatabaseMatchSqlStatistics() {
+        LocalDateTime now = LocalDateTime.now();
+        List<UserActivityLogEntity> activities = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            ActionType actionType = SEEDED_ACTIONS[i % SEEDED_ACTIONS.length];
+            LogCategory category = LogCategory.values()[i % 7 % LogCategory.values().length];
+            UserActivityLogEntity activity = new UserActivityLogEntity(1000L + i % 13, "user" + i, null, null,
+                    actionType, "Rollup " + i, category);
+            activity.setIsKeyAction(i % 3 != 0);
+            // от 5 минут до 30 часов назад; часть строк старше суточного периода
+            activity.setTimestamp(now.minusMinutes(5 + i * 4L).minusSeconds(i % 50));
+            activities.add(activity);
+        }
+        activityLogRepository.insertBatch(activities);
+        entityManager.flush();
+
+        rollupService.rebuild();
+
+        for (int hours : new int[] { 1, 6, 24 }) {
+            LocalDateTime fromTime = now.minusHours(hours).plusSeconds(30);
+            ActivityCounts counts = rollupService.getCounts(hours).orElseThrow();
+
+            assertEquals(activityLogRepository.countByTimestampAfter(fromTime), counts.total(), "total " + hours);
+            assertEquals(activityLogRepository.countByIsKeyActionTrueAndTimestampAfter(fromTime), counts.keyTotal());
+            for (LogCategory category : LogCategory.values()) {
+                assertEquals(activityLogRepository.countByLogCategoryAndIsKeyActionTrueAndTimestampAfter(
+                        category, fromTime), counts.categoryKey(category));
+            }
+            for (Object[] row : activityLogRepository.getLogCategoryStatistics(fromTime)) {
+                assertEquals((Long) row[1], counts.category((LogCategory) row[0]));
+            }
+            for (Object[] row : activityLogRepository.getCategoryActionTypeStatistics(fromTime)) {
+                assertEquals((Long) row[2], counts.categoryAction((LogCategory) row[0], (ActionType) row[1]));
+            }
+            for (Object[] row : activityLogRepository.getKeyActionTypeStatistics(fromTime)) {
+                assertEquals((Long) row[1], counts.keyAction((ActionType) row[0]));
+            }
+        }
+    }
+
+    @Test
+    void periodLongerThanWindowFallsBackToSql() {
+        rollupService.rebuild();
+        long fallbackReads = (Long) rollupService.getStatistics().get("fallbackReads");
+
+        assertTrue(rollupService.getCounts(24).isPresent());
+        assertTrue(rollupService.getCounts(72).isEmpty());
+        assertEquals(fallbackReads + 1, rollupService.getStatistics().get("fallbackReads"));
+    }
+}
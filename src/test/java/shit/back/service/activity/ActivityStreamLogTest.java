@@ -0,0 +1,97 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кольцо последних событий ленты, досылка по Last-Event-ID и маски категорий
+ */
+class ActivityStreamLogTest {
+
+    @Test
+    void ringKeepsNewestEventsInOrder() {
+        ActivityStreamLog log = new ActivityStreamLog(4);
+        assertTrue(log.recent(10).isEmpty());
+
+        for (int i = 1; i <= 6; i++) {
+            ActivityStreamEvent event = log.append("activity", ActivityStreamEvent.ALL_CATEGORIES,
+                    new byte[] { (byte) i });
+            assertEquals(i, event.id());
+        }
+
+        assertEquals(6, log.getLastId());
+        List<ActivityStreamEvent> recent = log.recent(10);
+        assertEquals(List.of(3L, 4L, 5L, 6L), recent.stream().map(ActivityStreamEvent::id).toList());
+        assertEquals(List.of(5L, 6L), log.recent(2).stream().map(ActivityStreamEvent::id).toList());
+        // данные не копируются: в кольце те же байты, что отданы подписчикам
+        assertEquals(6, recent.get(3).data()[0]);
+    }
+
+    @Test
+    void sinceReplaysOnlyWhatTheRingStillCovers() {
+        // id записей журнала: все до 100 записано до запуска
+        ActivityStreamLog log = new ActivityStreamLog(4, Duration.ofMinutes(10), 100);
+        assertEquals(List.of(), log.since(100).orElseThrow());
+        assertTrue(log.since(99).isEmpty());
+
+        for (long id = 101; id <= 106; id++) {
+            assertEquals(id, log.append(id, "activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]).id());
+        }
+
+        // 101 и 102 вытеснены: после 100 и 101 без БД не догнать
+        assertEquals(102, log.getCoveredAfterId());
+        assertTrue(log.since(100).isEmpty());
+        assertTrue(log.since(101).isEmpty());
+        assertEquals(List.of(103L, 104L, 105L, 106L), ids(log.since(102)));
+        assertEquals(List.of(106L), ids(log.since(105)));
+        assertEquals(List.of(), ids(log.since(106)));
+        // номер от другого запуска или другого сервера
+        assertTrue(log.since(500).isEmpty());
+
+        // внешний номер не растет - берется следующий номер журнала
+        assertEquals(107, log.append(50, "activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]).id());
+        assertEquals(108, log.append(0, "activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]).id());
+    }
+
+    @Test
+    void expiredEventsAreNotReplayed() throws InterruptedException {
+        ActivityStreamLog log = new ActivityStreamLog(16, Duration.ofMillis(50), 0);
+        log.append("activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]);
+        log.append("activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]);
+        assertEquals(List.of(2L), ids(log.since(1)));
+
+        Thread.sleep(150);
+        log.append("activity", ActivityStreamEvent.ALL_CATEGORIES, new byte[0]);
+
+        assertTrue(log.since(1).isEmpty());
+        assertEquals(List.of(3L), ids(log.since(2)));
+        assertEquals(2, log.getCoveredAfterId());
+        assertEquals(List.of(3L), log.recent(10).stream().map(ActivityStreamEvent::id).toList());
+    }
+
+    @Test
+    void categoryMasksMatchOnlySubscribedCategory() {
+        long telegram = ActivityStreamEvent.categoryBit(LogCategory.TELEGRAM_BOT);
+        long system = ActivityStreamEvent.categoryBit(LogCategory.SYSTEM);
+        long uncategorized = ActivityStreamEvent.categoryBit(null);
+
+        long all = ActivityStreamEvent.subscriptionMask(null);
+        long onlyTelegram = ActivityStreamEvent.subscriptionMask(LogCategory.TELEGRAM_BOT);
+
+        assertNotEquals(0, all & telegram);
+        assertNotEquals(0, all & uncategorized);
+        assertNotEquals(0, onlyTelegram & telegram);
+        assertEquals(0, onlyTelegram & system);
+        assertEquals(0, onlyTelegram & uncategorized);
+    }
+
+    private static List<Long> ids(Optional<List<ActivityStreamEvent>> events) {
+        return events.orElseThrow().stream().map(ActivityStreamEvent::id).toList();
+    }
+}
@@ -0,0 +1,171 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.service.activity.ActivityStreamSubscriber.SlowConsumerPolicy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Медленный подписчик не задерживает публикацию: его очередь сворачивается
+ * в resync или соединение закрывается
+ */
+class ActivityStreamSubscriberTest {
+
+    private final ActivityStreamLog streamLog = new ActivityStreamLog(64);
+
+    @Test
+    void slowConsumerIsCoalescedIntoResync() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(release);
+        ActivityStreamSubscriber subscriber = new ActivityStreamSubscriber("slow", emitter,
+                ActivityStreamEvent.ALL_CATEGORIES, 4, SlowConsumerPolicy.COALESCE, s -> {
+                });
+        Thread sender = Thread.ofVirtual().start(subscriber);
+
+        // первое событие забрано потоком отправки, который висит на клиенте
+        assertTrue(subscriber.offer(event()));
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        long started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(subscriber.offer(event()));
+        }
+        // публикация не ждала клиента
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1000);
+
+        Map<String, Object> stats = subscriber.getStatistics();
+        assertTrue((Long) stats.get("overflows") > 0);
+        long skipped = (Long) stats.get("skippedEvents");
+        assertTrue(skipped >= 16, "skipped " + skipped);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!emitter.names.contains("resync") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(emitter.names.contains("resync"), emitter.names.toString());
+        assertEquals("activity", emitter.names.get(0));
+        subscriber.close(true);
+        sender.join(5000);
+        assertFalse(sender.isAlive());
+    }
+
+    @Test
+    void dropPolicyDisconnectsSlowConsumer() {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        AtomicBoolean removed = new AtomicBoolean();
+        ActivityStreamSubscriber subscriber = new ActivityStreamSubscriber("dropped", emitter,
+                ActivityStreamEvent.ALL_CATEGORIES, 2, SlowConsumerPolicy.DROP, s -> removed.set(true));
+
+        assertTrue(subscriber.offer(event()));
+        assertTrue(subscriber.offer(event()));
+        assertFalse(subscriber.offer(event()));
+        assertTrue(removed.get());
+        assertFalse(subscriber.offer(event()));
+    }
+
+    @Test
+    void eventsCarryIdsAndReplayOverlapIsSentOnce() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        ActivityStreamSubscriber subscriber = new ActivityStreamSubscriber("resumed", emitter,
+                ActivityStreamEvent.ALL_CATEGORIES, 16, SlowConsumerPolicy.COALESCE, s -> {
+                });
+
+        ActivityStreamEvent first = event();
+        ActivityStreamEvent second = event();
+        // опубликовано во время повтора: уже в очереди и еще раз в журнале
+        subscriber.offer(second);
+        ActivityStreamEvent third = event();
+        subscriber.offer(third);
+
+        subscriber.sendPosition("connected", 0, "{}".getBytes());
+        for (ActivityStreamEvent replayed : streamLog.since(first.id() - 1).orElseThrow()) {
+            subscriber.send(replayed);
+        }
+        Thread sender = Thread.ofVirtual().start(subscriber);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subscriber.getStatistics().get("queued") instanceof Integer queued
+                && queued > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        subscriber.close(true);
+        sender.join(5000);
+
+        assertEquals(List.of("connected", "activity", "activity", "activity"), emitter.names);
+        assertEquals(List.of(first.id(), second.id(), third.id()), emitter.ids);
+        assertEquals(third.id(), subscriber.getLastSentId());
+    }
+
+    @Test
+    void lagCountsOnlyAcceptedEvents() {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        ActivityStreamSubscriber subscriber = new ActivityStreamSubscriber("bot-only", emitter,
+                ActivityStreamEvent.categoryBit(LogCategory.TELEGRAM_BOT), 16, SlowConsumerPolicy.COALESCE, s -> {
+                });
+
+        for (int i = 0; i < 10; i++) {
+            ActivityStreamEvent other = streamLog.append("activity",
+                    ActivityStreamEvent.categoryBit(LogCategory.APPLICATION), "{}".getBytes());
+            assertFalse(subscriber.accepts(other));
+        }
+        for (int i = 0; i < 2; i++) {
+            ActivityStreamEvent own = streamLog.append("activity",
+                    ActivityStreamEvent.categoryBit(LogCategory.TELEGRAM_BOT), "{}".getBytes());
+            assertTrue(subscriber.accepts(own));
+            assertTrue(subscriber.offer(own));
+        }
+
+        Map<String, Object> stats = subscriber.getStatistics();
+        assertEquals(2L, stats.get("eventsBehind"));
+        assertTrue((Long) stats.get("oldestQueuedMs") >= 0);
+    }
+
+    private ActivityStreamEvent event() {
+        return streamLog.append("activity", ActivityStreamEvent.ALL_CATEGORIES, "{}".getBytes());
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> names = new CopyOnWriteArrayList<>();
+        private final List<Long> ids = new CopyOnWriteArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        private RecordingEmitter(CountDownLatch release) {
+            super(0L);
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            // первая часть события - "id:<id>\nevent:<name>\ndata:", id только у событий ленты
+            String text = builder.build().stream()
+                    .map(part -> part.getData() instanceof String s ? s : "")
+                    .collect(Collectors.joining());
+            int name = text.indexOf("event:") + 6;
+            names.add(text.substring(name, text.indexOf('\n', name)));
+            if (text.startsWith("id:")) {
+                ids.add(Long.parseLong(text.substring(3, text.indexOf('\n'))));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package shit.back.service.activity;
+
+import org.junit.jupiter.api.Test;
+import shit.back.service.activity.SlidingTopK.HeavyHitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Space-Saving и top-K за скользящее окно: точный ответ при малом числе
+ * ключей, границы погрешности на скошенном потоке и ротация интервалов
+ */
+class SlidingTopKTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 5, 12, 0);
+
+    @Test
+    void sketchIsExactWhileKeysFitIntoCapacity() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(4);
+        sketch.offer("a", 5, null);
+        sketch.offer("b", 1, "B");
+        sketch.offer("a", 2, "A");
+        sketch.offer("c", 3, null);
+
+        Map<String, Long> counts = new HashMap<>();
+        sketch.forEach(counter -> {
+            counts.put(counter.getKey(), counter.getCount());
+            assertEquals(0, counter.getError());
+        });
+        assertEquals(Map.of("a", 7L, "b", 1L, "c", 3L), counts);
+        assertEquals(0, sketch.minCount());
+        assertEquals(11, sketch.getTotal());
+
+        // новый ключ вытесняет минимальный (b) и наследует его значение как погрешность
+        sketch.offer("d", 2, null);
+        sketch.offer("e", 4, null);
+        Map<String, long[]> after = new HashMap<>();
+        sketch.forEach(counter -> after.put(counter.getKey(), new long[] { counter.getCount(), counter.getError() }));
+        assertFalse(after.containsKey("b"));
+        assertArrayEquals(new long[] { 5, 1 }, after.get("e"));
+    }
+
+    @Test
+    void skewedStreamStaysWithinErrorBound() {
+        int capacity = 64;
+        SlidingTopK<Long> topK = new SlidingTopK<>(Duration.ofMinutes(5), 12, capacity);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 50_000; i++) {
+            // Zipf-подобное распределение: немного очень активных пользователей и длинный хвост
+            long userId = (long) Math.floor(Math.pow(random.nextDouble(), 3) * 5_000);
+            topK.offer(userId, 1, "user" + userId, START.plusSeconds(i % 3_000));
+            exact.merge(userId, 1L, Long::sum);
+            total++;
+        }
+
+        List<HeavyHitter<Long>> top = topK.top(10, START.plusMinutes(50));
+        assertEquals(10, top.size());
+        assertEquals(total, topK.total(START.plusMinutes(50)));
+        long bound = total / capacity;
+        for (HeavyHitter<Long> hitter : top) {
+            long actual = exact.get(hitter.key());
+            assertTrue(hitter.maxError() <= bound, "maxError " + hitter.maxError() + " > " + bound);
+            assertTrue(Math.abs(hitter.count() - actual) <= hitter.maxError(),
+                    "user " + hitter.key() + ": " + hitter.count() + " vs " + actual);
+            assertEquals("user" + hitter.key(), hitter.label());
+        }
+
+        // настоящие лидеры с запасом больше погрешности обязательно в ответе
+        List<Long> exactTop = exact.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(3)
+                .map(Map.Entry::getKey)
+                .toList();
+        List<Long> reported = top.stream().map(HeavyHitter::key).toList();
+        assertTrue(reported.containsAll(exactTop), reported + " vs " + exactTop);
+    }
+
+    @Test
+    void expiredBucketsLeaveTheWindow() {
+        SlidingTopK<Long> topK = new SlidingTopK<>(Duration.ofMinutes(5), 12, 16);
+        topK.offer(1L, 100, "old", START);
+        topK.offer(2L, 10, "recent", START.plusMinutes(40));
+
+        assertEquals(1L, (long) topK.top(1, START.plusMinutes(40)).get(0).key());
+
+        // через час интервал с пользователем 1 выпадает из окна
+        List<HeavyHitter<Long>> later = topK.top(5, START.plusMinutes(61));
+        assertEquals(List.of(2L), later.stream().map(HeavyHitter::key).toList());
+        assertEquals(10, topK.total(START.plusMinutes(61)));
+
+        // слот переиспользован новым интервалом - старый счетчик очищен
+        topK.offer(3L, 1, "new", START.plusMinutes(60));
+        assertFalse(topK.offer(1L, 1, "late", START));
+        assertEquals(List.of(2L, 3L), topK.top(5, START.plusMinutes(61)).stream().map(HeavyHitter::key).toList());
+    }
+}
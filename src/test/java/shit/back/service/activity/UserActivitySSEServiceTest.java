@@ -0,0 +1,144 @@
+package shit.back.service.activity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.service.activity.ActivityStreamSubscriber.SlowConsumerPolicy;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Продолжение потока по Last-Event-ID: из журнала повтора без обращения к
+ * БД, из БД по возрастанию id, при большом разрыве - resync
+ */
+@ExtendWith(MockitoExtension.class)
+class UserActivitySSEServiceTest {
+
+    private static final int RECENT_CAPACITY = 4;
+
+    @Mock
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    private UserActivitySSEService sseService;
+
+    @BeforeEach
+    void setUp() {
+        sseService = new UserActivitySSEService();
+        ReflectionTestUtils.setField(sseService, "activityLogRepository", activityLogRepository);
+        ReflectionTestUtils.setField(sseService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(sseService, "recentCapacity", RECENT_CAPACITY);
+        ReflectionTestUtils.setField(sseService, "replayMaxAgeMs", 600_000L);
+        ReflectionTestUtils.setField(sseService, "queueCapacity", 16);
+        ReflectionTestUtils.setField(sseService, "slowConsumerPolicy", SlowConsumerPolicy.COALESCE);
+        ReflectionTestUtils.setField(sseService, "timeoutMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sseService.shutdown();
+    }
+
+    @Test
+    void resumesFromReplayLogWithoutDatabase() {
+        when(activityLogRepository.findMaxId()).thenReturn(100L);
+        sseService.init();
+        for (long id = 101; id <= 103; id++) {
+            sseService.broadcastActivity(activity(id));
+        }
+
+        sseService.createSseConnection("c1", null, 101L);
+
+        Map<String, Object> stats = sseService.getStatistics();
+        assertEquals(1L, stats.get("resumedFromReplayLog"));
+        assertEquals(2L, stats.get("replayedEvents"));
+        assertEquals(103L, subscriberStats("c1").get("lastSentId"));
+        verify(activityLogRepository, never()).findActivitiesAfterId(any(), any(), any());
+    }
+
+    @Test
+    void resumesFromDatabaseInIdOrderWhenIdIsOlderThanReplayLog() {
+        when(activityLogRepository.findMaxId()).thenReturn(5000L);
+        when(activityLogRepository.findActivitiesAfterId(10L, null, PageRequest.of(0, RECENT_CAPACITY + 1)))
+                .thenReturn(List.of(activity(11), activity(12), activity(13)));
+        sseService.init();
+
+        sseService.createSseConnection("c1", null, 10L);
+
+        Map<String, Object> stats = sseService.getStatistics();
+        assertEquals(1L, stats.get("resumedFromDatabase"));
+        assertEquals(3L, stats.get("replayedEvents"));
+        assertEquals(0L, stats.get("resumeResyncs"));
+        assertEquals(13L, subscriberStats("c1").get("lastSentId"));
+    }
+
+    @Test
+    void truncatedDatabaseResumeSendsResyncAtStreamPosition() {
+        when(activityLogRepository.findMaxId()).thenReturn(5000L);
+        List<UserActivityLogEntity> missed = new ArrayList<>();
+        for (long id = 11; id <= 11 + RECENT_CAPACITY; id++) {
+            missed.add(activity(id));
+        }
+        when(activityLogRepository.findActivitiesAfterId(10L, null, PageRequest.of(0, RECENT_CAPACITY + 1)))
+                .thenReturn(missed);
+        sseService.init();
+
+        sseService.createSseConnection("c1", null, 10L);
+
+        Map<String, Object> stats = sseService.getStatistics();
+        assertEquals(1L, stats.get("resumeResyncs"));
+        assertEquals(0L, stats.get("resumedFromDatabase"));
+        assertEquals(0L, stats.get("replayedEvents"));
+        // клиент продолжает с позиции потока, а не с последней из усеченной выборки
+        assertEquals(5000L, subscriberStats("c1").get("lastSentId"));
+    }
+
+    @Test
+    void eventPublishedWhileConnectingIsDelivered() throws Exception {
+        when(activityLogRepository.findMaxId()).thenReturn(100L);
+        sseService.init();
+        // событие публикуется, пока новому клиенту отправляются последние активности
+        when(activityLogRepository.findRecentKeyActivities(any())).thenAnswer(invocation -> {
+            sseService.broadcastActivity(activity(101));
+            return List.of();
+        });
+
+        sseService.createSseConnection("c1", null, null);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(101L).equals(subscriberStats("c1").get("lastSentId"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(101L, subscriberStats("c1").get("lastSentId"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> subscriberStats(String clientId) {
+        Map<String, Object> subscribers = (Map<String, Object>) sseService.getStatistics().get("subscribers");
+        return (Map<String, Object>) subscribers.get(clientId);
+    }
+
+    private static UserActivityLogEntity activity(long id) {
+        UserActivityLogEntity activity = new UserActivityLogEntity(1000L + id, "user" + id, null, null,
+                ActionType.ORDER_CREATED, "Заказ " + id);
+        activity.setId(id);
+        activity.setTimestamp(LocalDateTime.now());
+        return activity;
+    }
+}
@@ -0,0 +1,175 @@
+package shit.back.service.analytics;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.UserActivityLogEntity;
+import shit.back.entity.UserActivityLogEntity.ActionType;
+import shit.back.entity.UserActivityLogEntity.LogCategory;
+import shit.back.entity.UserSessionEntity;
+import shit.back.repository.DailyUserSketchJpaRepository;
+import shit.back.repository.UserActivityLogJpaRepository;
+import shit.back.repository.UserSessionJpaRepository;
+import shit.back.service.analytics.DistinctUserSketchService.DailyCount;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Скетчи, пересчитанные из БД, против точных COUNT(DISTINCT) на тех же данных
+ *
+ * День d назад - пользователи [d * 300, d * 300 + 1200), первые 50 из них
+ * созданы в этот день. Допуск - три стандартные ошибки HyperLogLog.
+ */
+@DataJpaTest
+@Import(DistinctUserSketchService.class)
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.analytics.distinct-users.precision=14",
+        "app.analytics.distinct-users.memory-days=21"
+})
+class DistinctUserSketchServiceTest {
+
+    private static final int SEEDED_DAYS = 14;
+    private static final double TOLERANCE = 3 * HyperLogLog.standardError(14);
+
+    @Autowired
+    private DistinctUserSketchService sketchService;
+
+    @Autowired
+    private UserActivityLogJpaRepository activityLogRepository;
+
+    @Autowired
+    private UserSessionJpaRepository sessionRepository;
+
+    @Autowired
+    private DailyUserSketchJpaRepository sketchRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void seed() {
+        List<UserActivityLogEntity> activities = new ArrayList<>();
+        for (int d = 0; d < SEEDED_DAYS; d++) {
+            LocalDateTime dayStart = today.minusDays(d).atStartOfDay();
+            for (long userId = d * 300L; userId < d * 300L + 1200; userId++) {
+                for (int event = 0; event < (userId % 5 == 0 ? 2 : 1); event++) {
+                    UserActivityLogEntity activity = new UserActivityLogEntity(userId, "user" + userId, null, null,
+                            ActionType.BOT_MESSAGE_SENT, "Sketch " + d, LogCategory.TELEGRAM_BOT);
+                    activity.setTimestamp(dayStart.plusMinutes(userId % 600 + event));
+                    activities.add(activity);
+                }
+            }
+
+            List<UserSessionEntity> sessions = new ArrayList<>();
+            for (long userId = d * 300L; userId < d * 300L + 50; userId++) {
+                sessions.add(new UserSessionEntity(userId, "user" + userId, null, null));
+            }
+            sessionRepository.saveAll(sessions);
+            entityManager.flush();
+            entityManager.createNativeQuery(
+                    "UPDATE user_sessions SET created_at = ?1 WHERE user_id >= ?2 AND user_id < ?3")
+                    .setParameter(1, dayStart.plusHours(9))
+                    .setParameter(2, d * 300L)
+                    .setParameter(3, d * 300L + 50)
+                    .executeUpdate();
+        }
+        activityLogRepository.insertBatch(activities);
+        entityManager.flush();
+        entityManager.clear();
+
+        sketchService.load();
+    }
+
+    @Test
+    void activeUsersMatchExactDistinctCounts() {
+        assertTrue(sketchService.isReady());
+        assertWithinTolerance(exactActive(today, today), sketchService.getDailyActiveUsers().orElseThrow());
+        assertWithinTolerance(exactActive(today.minusDays(6), today),
+                sketchService.getWeeklyActiveUsers().orElseThrow());
+        assertWithinTolerance(exactActive(today.minusDays(13), today),
+                sketchService.getMonthlyActiveUsers().orElseThrow());
+        assertWithinTolerance(exactActive(today.minusDays(10), today.minusDays(3)),
+                sketchService.countActiveUsers(today.minusDays(10), today.minusDays(3)).orElseThrow());
+
+        List<DailyCount> daily = sketchService.getDailyCounts(SEEDED_DAYS);
+        assertEquals(SEEDED_DAYS, daily.size());
+        for (DailyCount day : daily) {
+            assertWithinTolerance(exactActive(day.date(), day.date()), day.activeUsers());
+            assertEquals(50, day.newUsers(), 1, day.date().toString());
+        }
+    }
+
+    @Test
+    void newAndRetainedUsersMatchExactSql() {
+        long exactNew = sessionRepository.countByCreatedAtAfter(today.minusDays(6).atStartOfDay().minusSeconds(1));
+        assertWithinTolerance(exactNew, sketchService.countNewUsers(7).orElseThrow());
+
+        LocalDate cohortFrom = today.minusDays(13);
+        LocalDate cohortTo = today.minusDays(7);
+        LocalDate returnFrom = today.minusDays(6);
+        Long exactRetained = entityManager.createQuery(
+                "SELECT COUNT(DISTINCT a.userId) FROM UserActivityLogEntity a "
+                        + "WHERE a.timestamp >= :fromTime AND a.timestamp < :toTime AND a.userId IN ("
+                        + "SELECT b.userId FROM UserActivityLogEntity b "
+                        + "WHERE b.timestamp >= :returnFrom AND b.timestamp < :returnTo)", Long.class)
+                .setParameter("fromTime", cohortFrom.atStartOfDay())
+                .setParameter("toTime", cohortTo.plusDays(1).atStartOfDay())
+                .setParameter("returnFrom", returnFrom.atStartOfDay())
+                .setParameter("returnTo", today.plusDays(1).atStartOfDay())
+                .getSingleResult();
+        long retained = sketchService.countRetainedUsers(cohortFrom, cohortTo, returnFrom, today).orElseThrow();
+
+        // ошибка пересечения порядка ошибки объединения обоих периодов
+        long union = exactActive(cohortFrom, today);
+        assertTrue(Math.abs(retained - exactRetained) <= union * TOLERANCE,
+                "retained " + retained + " vs " + exactRetained);
+    }
+
+    @Test
+    @DirtiesContext // живые обновления остаются в скетчах сервиса из общего контекста
+    void closedDaysArePersistedAndMergedWithLiveUpdates() {
+        // пересчитанные закрытые дни окна сохранены, текущий - нет
+        assertEquals(2L * (21 - 1), sketchRepository.count());
+
+        long before = sketchService.getDailyActiveUsers().orElseThrow();
+        for (long userId = 1_000_000; userId < 1_000_200; userId++) {
+            sketchService.recordActive(userId, LocalDateTime.now());
+            // повторная активность того же пользователя не меняет оценку
+            sketchService.recordActive(userId, LocalDateTime.now());
+        }
+        sketchService.recordNewUser(2_000_000L, LocalDateTime.now());
+        assertWithinTolerance(before + 201, sketchService.getDailyActiveUsers().orElseThrow());
+
+        // события старше окна не учитываются
+        sketchService.recordActive(3_000_000L, LocalDateTime.now().minusDays(40));
+        assertEquals(1L, sketchService.getStatistics().get("outOfWindowIds"));
+    }
+
+    private long exactActive(LocalDate fromDay, LocalDate toDay) {
+        return entityManager.createQuery(
+                "SELECT COUNT(DISTINCT a.userId) FROM UserActivityLogEntity a "
+                        + "WHERE a.timestamp >= :fromTime AND a.timestamp < :toTime", Long.class)
+                .setParameter("fromTime", fromDay.atStartOfDay())
+                .setParameter("toTime", toDay.plusDays(1).atStartOfDay())
+                .getSingleResult();
+    }
+
+    private static void assertWithinTolerance(long exact, long estimate) {
+        assertTrue(Math.abs(estimate - exact) <= Math.max(1, exact * TOLERANCE),
+                "estimate " + estimate + " vs exact " + exact);
+    }
+}
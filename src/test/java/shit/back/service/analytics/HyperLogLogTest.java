@@ -0,0 +1,66 @@
+package shit.back.service.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HyperLogLog: ошибка оценки в пределах нескольких стандартных ошибок,
+ * объединение равно скетчу объединения, сжатие без потерь
+ */
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinErrorBound() {
+        for (int size : new int[] { 100, 5_000, 100_000, 500_000 }) {
+            HyperLogLog sketch = new HyperLogLog(14);
+            for (long id = 0; id < size; id++) {
+                sketch.add(1_000_000_000L + id);
+                // повторы не меняют оценку
+                sketch.add(1_000_000_000L + id / 2);
+            }
+            double error = Math.abs(sketch.estimate() - size) / (double) size;
+            assertTrue(error < 3 * HyperLogLog.standardError(14), size + ": ошибка " + error);
+        }
+        assertEquals(0, new HyperLogLog(14).estimate());
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog monday = new HyperLogLog(12);
+        HyperLogLog tuesday = new HyperLogLog(12);
+        HyperLogLog both = new HyperLogLog(12);
+        for (long id = 0; id < 30_000; id++) {
+            monday.add(id);
+            both.add(id);
+        }
+        for (long id = 20_000; id < 50_000; id++) {
+            tuesday.add(id);
+            both.add(id);
+        }
+
+        HyperLogLog union = monday.copy();
+        union.merge(tuesday);
+        union.merge(tuesday);
+        assertEquals(both.estimate(), union.estimate());
+        assertTrue(Math.abs(union.estimate() - 50_000) < 50_000 * 3 * HyperLogLog.standardError(12));
+        assertThrows(IllegalArgumentException.class, () -> union.merge(new HyperLogLog(14)));
+    }
+
+    @Test
+    void compressedBytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (long id = 0; id < 200; id++) {
+            sketch.add(id * 7919);
+        }
+        byte[] compressed = sketch.toCompressedBytes();
+        // почти пустой день занимает малую часть 16 КБ регистров
+        assertTrue(compressed.length < 2_048, "размер " + compressed.length);
+
+        HyperLogLog restored = HyperLogLog.fromCompressedBytes(14, compressed);
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertFalse(restored.add(7919));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromCompressedBytes(12, compressed));
+        assertTrue(new HyperLogLog(10).isEmpty());
+    }
+}
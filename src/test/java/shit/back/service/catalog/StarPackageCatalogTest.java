@@ -0,0 +1,107 @@
+package shit.back.service.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import shit.back.entity.StarPackageEntity;
+import shit.back.model.StarPackage;
+import shit.back.repository.StarPackageJpaRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Снимок каталога: поиск без БД, готовые отсортированные списки и строки цен,
+ * замена снимка при обновлении
+ */
+@ExtendWith(MockitoExtension.class)
+class StarPackageCatalogTest {
+
+    @Mock
+    private StarPackageJpaRepository packageRepository;
+
+    @InjectMocks
+    private StarPackageCatalog catalog;
+
+    @Test
+    void repeatedReadsUseOneSnapshot() {
+        when(packageRepository.findAll()).thenReturn(List.of(
+                entity(1L, "STARS_100", 100, "2.00", 30, true, false),
+                entity(2L, "STARS_1000", 1000, "10.00", 10, true, true),
+                entity(3L, "STARS_500", 500, "9.00", 20, false, true)));
+
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        for (int i = 0; i < 100; i++) {
+            assertSame(snapshot, catalog.getSnapshot());
+        }
+        verify(packageRepository, times(1)).findAll();
+
+        assertEquals(List.of("STARS_1000", "STARS_100"), names(snapshot.activePackages()));
+        assertEquals(List.of("STARS_1000"), names(snapshot.popularPackages()));
+        assertEquals(List.of("STARS_1000", "STARS_100"), names(snapshot.bestValuePackages()));
+        assertEquals("STARS_500", snapshot.packagesById().get(3L).getName());
+        assertEquals(3L, snapshot.packagesByName().get("STARS_500").getId());
+    }
+
+    @Test
+    void botPackagesHavePreRenderedPrices() {
+        when(packageRepository.findAll()).thenReturn(List.of());
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+
+        StarPackage pkg = snapshot.botPackagesByStars().get(500);
+        assertSame(pkg, snapshot.botPackagesById().get("STARS_500"));
+        assertEquals(StarPackageCatalog.formatShortPrice(pkg), snapshot.shortPriceOf(pkg));
+        assertEquals(StarPackageCatalog.formatPriceComparison(pkg), snapshot.priceComparisonOf(pkg));
+
+        StarPackage foreign = StarPackage.createPackage(500, new BigDecimal("1.00"), 0);
+        assertNull(snapshot.shortPriceOf(foreign));
+    }
+
+    @Test
+    void refreshSwapsSnapshotAndKeepsPreviousOnFailure() {
+        when(packageRepository.findAll())
+                .thenReturn(List.of(entity(1L, "STARS_100", 100, "2.00", 1, true, false)))
+                .thenReturn(List.of(entity(1L, "STARS_100", 100, "2.00", 1, false, false)))
+                .thenThrow(new IllegalStateException("db down"));
+
+        CatalogSnapshot first = catalog.getSnapshot();
+        CatalogSnapshot second = catalog.refresh();
+
+        assertTrue(second.version() > first.version());
+        assertEquals(1, first.activePackages().size());
+        assertTrue(second.activePackages().isEmpty());
+
+        assertSame(second, catalog.refresh());
+        assertEquals(1L, catalog.getStatistics().get("refreshFailures"));
+    }
+
+    @Test
+    void firstLoadFailurePublishesBotPackagesOnly() {
+        when(packageRepository.findAll()).thenThrow(new IllegalStateException("db down"));
+
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+
+        assertFalse(snapshot.packagesLoaded());
+        assertEquals(6, snapshot.botPackages().size());
+        assertTrue(snapshot.allPackages().isEmpty());
+    }
+
+    private static StarPackageEntity entity(Long id, String name, int stars, String price, int sortOrder,
+            boolean enabled, boolean popular) {
+        StarPackageEntity entity = new StarPackageEntity(name, name, stars, new BigDecimal(price), 0);
+        entity.setId(id);
+        entity.setSortOrder(sortOrder);
+        entity.setIsEnabled(enabled);
+        entity.setIsPopular(popular);
+        return entity;
+    }
+
+    private static List<String> names(List<StarPackageEntity> packages) {
+        return packages.stream().map(StarPackageEntity::getName).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package shit.back.service.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import shit.back.repository.StarPackageJpaRepository;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Продажи накапливаются в памяти и записываются одним UPDATE на пакет
+ */
+@ExtendWith(MockitoExtension.class)
+class StarPackageSalesCounterTest {
+
+    @Mock
+    private StarPackageJpaRepository packageRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private StarPackageSalesCounter salesCounter;
+
+    @BeforeEach
+    void setUp() {
+        salesCounter.init();
+    }
+
+    @Test
+    void flushWritesOneUpdatePerPackage() {
+        when(packageRepository.addSalesStatistics(anyString(), anyLong(), any())).thenReturn(1);
+
+        for (int i = 0; i < 1000; i++) {
+            salesCounter.record("STARS_100", new BigDecimal("1.00"));
+        }
+        salesCounter.record("STARS_500", new BigDecimal("4.50"));
+
+        assertEquals(1001, salesCounter.flush());
+        verify(packageRepository).addSalesStatistics("STARS_100", 1000L, new BigDecimal("1000.00"));
+        verify(packageRepository).addSalesStatistics("STARS_500", 1L, new BigDecimal("4.50"));
+        verifyNoMoreInteractions(packageRepository);
+
+        assertEquals(0, salesCounter.flush());
+        assertEquals(0L, salesCounter.getPendingSales());
+    }
+
+    @Test
+    void failedFlushKeepsSalesForNextAttempt() {
+        when(packageRepository.addSalesStatistics(anyString(), anyLong(), any()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(1);
+
+        salesCounter.record("STARS_100", new BigDecimal("1.00"));
+        salesCounter.record("STARS_100", new BigDecimal("1.00"));
+
+        assertEquals(0, salesCounter.flush());
+        assertEquals(2L, salesCounter.getPendingSales());
+
+        assertEquals(2, salesCounter.flush());
+        verify(packageRepository, times(2)).addSalesStatistics("STARS_100", 2L, new BigDecimal("2.00"));
+    }
+}
@@ -0,0 +1,104 @@
+package shit.back.service.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TabularExportWriterTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2025, 3, 1, 12, 30, 5);
+
+    @Test
+    void csvQuotesSpecialValuesAndNeutralizesFormulas() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TabularExportWriter writer = ExportFormat.CSV.newWriter(output);
+        writer.writeHeader(List.of("Дата", "Сумма", "Описание"));
+        writer.writeRow(Arrays.asList(CREATED, new BigDecimal("1E+2"), "Пополнение, \"бонус\""));
+        writer.writeRow(Arrays.asList(null, -5, "=HYPERLINK(\"x\")"));
+        writer.finish();
+
+        String csv = output.toString(StandardCharsets.UTF_8);
+        assertEquals("\uFEFFДата,Сумма,Описание\r\n"
+                + "2025-03-01 12:30:05,100,\"Пополнение, \"\"бонус\"\"\"\r\n"
+                + ",-5,\"'=HYPERLINK(\"\"x\"\")\"\r\n", csv);
+    }
+
+    @Test
+    void xlsxContainsWorkbookPartsAndEscapedSheetRows() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TabularExportWriter writer = ExportFormat.XLSX.newWriter(output);
+        writer.writeHeader(List.of("Дата", "Сумма", "Описание"));
+        for (int i = 0; i < 10_000; i++) {
+            writer.writeRow(Arrays.asList(CREATED, new BigDecimal("10.50"), "<b>&\u0001" + i));
+        }
+        writer.finish();
+
+        Map<String, String> entries = unzip(output.toByteArray());
+        assertEquals(List.of("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/styles.xml", "xl/worksheets/sheet1.xml"),
+                List.copyOf(entries.keySet()));
+
+        String sheet = entries.get("xl/worksheets/sheet1.xml");
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+        assertEquals(10_001, sheet.split("<row>", -1).length - 1);
+        assertTrue(sheet.contains("<c t=\"inlineStr\" s=\"1\"><is><t xml:space=\"preserve\">Дата</t></is></c>"));
+        assertTrue(sheet.contains("<c><v>10.50</v></c>"));
+        assertTrue(sheet.contains("<t xml:space=\"preserve\">&lt;b&gt;&amp;9999</t>"));
+        assertFalse(sheet.contains("\u0001"));
+    }
+
+    @Test
+    void emptyXlsxIsStillAValidWorkbook() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ExportFormat.XLSX.newWriter(output).finish();
+
+        Map<String, String> entries = unzip(output.toByteArray());
+        assertEquals(6, entries.size());
+        assertTrue(entries.get("xl/worksheets/sheet1.xml").contains("<sheetData></sheetData>"));
+    }
+
+    @Test
+    void ndjsonWritesOneTypedObjectPerLine() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TabularExportWriter writer = ExportFormat.NDJSON.newWriter(output);
+        writer.writeHeader(List.of("created_at", "amount", "key", "note"));
+        writer.writeRow(Arrays.asList(CREATED, new BigDecimal("10.50"), true, "строка \"1\"\n"));
+        writer.writeRow(Arrays.asList(null, 7L, false, null));
+        writer.finish();
+
+        assertEquals("{\"created_at\":\"2025-03-01T12:30:05\",\"amount\":10.50,\"key\":true,"
+                + "\"note\":\"строка \\\"1\\\"\\n\"}\n"
+                + "{\"created_at\":null,\"amount\":7,\"key\":false,\"note\":null}\n",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parsesFormatCaseInsensitivelyWithCsvDefault() {
+        assertEquals(ExportFormat.CSV, ExportFormat.parse(null));
+        assertEquals(ExportFormat.XLSX, ExportFormat.parse(" xlsx "));
+        assertThrows(IllegalArgumentException.class, () -> ExportFormat.parse("pdf"));
+    }
+
+    private static Map<String, String> unzip(byte[] bytes) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,72 @@
+package shit.back.service.maintenance;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Подстройка размера порции и паузы под время порции и отставание реплики
+ */
+class AdaptiveThrottleTest {
+
+    private AdaptiveThrottle throttle() {
+        return new AdaptiveThrottle(1000, 100, 4000, 200, 5000, 10, 10_000);
+    }
+
+    @Test
+    void growsChunkWhileLatencyIsWellBelowTarget() {
+        AdaptiveThrottle throttle = throttle();
+
+        assertEquals(10, throttle.onChunk(50, 0));
+        assertEquals(1250, throttle.getChunkSize());
+        for (int i = 0; i < 20; i++) {
+            throttle.onChunk(50, 0);
+        }
+        assertEquals(4000, throttle.getChunkSize());
+        assertEquals(0, throttle.getThrottledChunks());
+    }
+
+    @Test
+    void keepsChunkNearTargetLatency() {
+        AdaptiveThrottle throttle = throttle();
+
+        throttle.onChunk(150, 0);
+        assertEquals(1000, throttle.getChunkSize());
+        assertEquals(10, throttle.getPauseMs());
+    }
+
+    @Test
+    void halvesChunkAndBacksOffWhenChunkIsSlow() {
+        AdaptiveThrottle throttle = throttle();
+
+        assertEquals(800, throttle.onChunk(800, 0));
+        assertEquals(500, throttle.getChunkSize());
+        assertEquals(1600, throttle.onChunk(900, 0));
+        assertEquals(250, throttle.getChunkSize());
+        assertEquals(2, throttle.getThrottledChunks());
+
+        // нагрузка спала - пауза уменьшается вдвое за каждую быструю порцию
+        assertEquals(800, throttle.onChunk(50, 0));
+        assertEquals(312, throttle.getChunkSize());
+    }
+
+    @Test
+    void waitsAtLeastReplicationLagWhenReplicaFallsBehind() {
+        AdaptiveThrottle throttle = throttle();
+
+        assertEquals(7000, throttle.onChunk(50, 7000));
+        assertEquals(500, throttle.getChunkSize());
+        assertEquals(10_000, throttle.onChunk(50, 60_000));
+        for (int i = 0; i < 10; i++) {
+            throttle.onChunk(50, 60_000);
+        }
+        assertEquals(100, throttle.getChunkSize());
+        assertEquals(10_000, throttle.getPauseMs());
+    }
+
+    @Test
+    void rejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveThrottle(10, 0, 100, 200, 5000, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveThrottle(10, 50, 20, 200, 5000, 0, 100));
+    }
+}
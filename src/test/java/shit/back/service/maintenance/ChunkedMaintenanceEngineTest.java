@@ -0,0 +1,177 @@
+package shit.back.service.maintenance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import shit.back.entity.MaintenanceJobEntity;
+import shit.back.entity.MaintenanceJobEntity.JobStatus;
+import shit.back.entity.UserSessionEntity;
+import shit.back.repository.ChunkedOperation;
+import shit.back.repository.MaintenanceJobJpaRepository;
+import shit.back.repository.UserSessionJpaRepository;
+import shit.back.service.maintenance.ChunkedMaintenanceEngine.RunResult;
+import shit.back.service.monitoring.ReplicaLagMonitoringService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Проход ChunkedMaintenanceEngine по порциям: потеря аренды откатывает
+ * порцию, прерванный проход продолжается с позиции в maintenance_jobs
+ *
+ * Порции коммитятся в собственных транзакциях, поэтому тест работает без
+ * транзакции и сам удаляет данные.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ChunkedMaintenanceEngineTest {
+
+    private static final String OPERATION = "session-expiry";
+    private static final int CHUNK_SIZE = 3;
+
+    private static final ChunkedOperation SESSION_EXPIRY = ChunkedOperation.update(OPERATION,
+            "user_sessions", "id", "is_active = false, state = 'EXPIRED'", "is_active = true AND last_activity < ?",
+            () -> new Object[] { LocalDateTime.now().minusHours(48) }, null);
+
+    @Autowired
+    private MaintenanceJobJpaRepository jobRepository;
+
+    @Autowired
+    private UserSessionJpaRepository sessionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> expiredIds = new ArrayList<>();
+
+    @BeforeEach
+    void seedSessions() {
+        for (int i = 0; i < 7; i++) {
+            expiredIds.add(saveSession(1000L + i, 72).getId());
+            saveSession(2000L + i, 1);
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        sessionRepository.deleteAll();
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void lostLeaseRollsBackChunkAndKeepsLastCheckpoint() {
+        // между порциями аренду забирает другой инстанс (его аренда действует и "через час")
+        ReplicaLagMonitoringService lagMonitor = mock(ReplicaLagMonitoringService.class);
+        TransactionTemplate otherNode = new TransactionTemplate(transactionManager);
+        when(lagMonitor.getLastReplicationLagMs()).thenAnswer(invocation -> {
+            LocalDateTime later = LocalDateTime.now().plusHours(1);
+            otherNode.executeWithoutResult(status -> jobRepository.tryAcquireLease(OPERATION, "other-node",
+                    later.plusHours(1), later));
+            return 0L;
+        });
+        ChunkedMaintenanceEngine engine = engine(60_000, lagMonitor);
+
+        RunResult result = engine.run(OPERATION);
+
+        assertFalse(result.completed());
+        assertFalse(result.skipped());
+        assertEquals(CHUNK_SIZE, result.processed());
+        // вторая порция откатилась: истекли только сессии первой
+        assertEquals(expiredIds.subList(0, CHUNK_SIZE), expiredSessionIds());
+
+        MaintenanceJobEntity job = jobRepository.findById(OPERATION).orElseThrow();
+        assertEquals(JobStatus.RUNNING, job.getStatus());
+        assertEquals(expiredIds.get(CHUNK_SIZE - 1), job.getLastKey());
+        assertEquals((long) CHUNK_SIZE, job.getPassProcessed());
+        assertEquals("other-node", job.getLeaseOwner());
+        assertEquals(1L, operationStats(engine).get("failedRuns"));
+    }
+
+    @Test
+    void interruptedPassResumesFromCheckpoint() {
+        // max-run-ms = 0: запуск останавливается после первой порции
+        RunResult first = engine(0, null).run(OPERATION);
+        assertFalse(first.completed());
+        assertEquals(CHUNK_SIZE, first.processed());
+        MaintenanceJobEntity job = jobRepository.findById(OPERATION).orElseThrow();
+        assertEquals(JobStatus.RUNNING, job.getStatus());
+        assertEquals(expiredIds.get(CHUNK_SIZE - 1), job.getLastKey());
+        assertNull(job.getLeaseOwner());
+
+        // снова подходит под условие, но лежит до позиции прохода - не должна обрабатываться
+        UserSessionEntity reactivated = sessionRepository.findById(expiredIds.get(0)).orElseThrow();
+        reactivated.setIsActive(true);
+        reactivated.setState(UserSessionEntity.SessionState.IDLE);
+        sessionRepository.save(reactivated);
+
+        RunResult resumed = engine(60_000, null).run(OPERATION);
+
+        assertTrue(resumed.completed());
+        assertEquals(expiredIds.size() - CHUNK_SIZE, resumed.processed());
+        assertEquals(expiredIds.subList(1, expiredIds.size()), expiredSessionIds());
+        assertTrue(sessionRepository.findById(expiredIds.get(0)).orElseThrow().getIsActive());
+
+        MaintenanceJobEntity completed = jobRepository.findById(OPERATION).orElseThrow();
+        assertEquals(JobStatus.IDLE, completed.getStatus());
+        assertEquals(0L, completed.getLastKey());
+        assertEquals((long) expiredIds.size(), completed.getTotalProcessed());
+        assertNotNull(completed.getLastCompletedAt());
+    }
+
+    private ChunkedMaintenanceEngine engine(long maxRunMs, ReplicaLagMonitoringService lagMonitor) {
+        ChunkedMaintenanceEngine engine = new ChunkedMaintenanceEngine();
+        ReflectionTestUtils.setField(engine, "jobRepository", jobRepository);
+        ReflectionTestUtils.setField(engine, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(engine, "replicaLagMonitoringService", lagMonitor);
+        ReflectionTestUtils.setField(engine, "operationList", List.of(SESSION_EXPIRY));
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "initialChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(engine, "minChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(engine, "maxChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(engine, "targetLatencyMs", 10_000L);
+        ReflectionTestUtils.setField(engine, "maxReplicationLagMs", 5_000L);
+        ReflectionTestUtils.setField(engine, "minPauseMs", 0L);
+        ReflectionTestUtils.setField(engine, "maxPauseMs", 0L);
+        ReflectionTestUtils.setField(engine, "maxRunMs", maxRunMs);
+        ReflectionTestUtils.setField(engine, "leaseMs", 300_000L);
+        engine.init();
+        return engine;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> operationStats(ChunkedMaintenanceEngine engine) {
+        Map<String, Object> operations = (Map<String, Object>) engine.getStatistics().get("operations");
+        return (Map<String, Object>) operations.get(OPERATION);
+    }
+
+    private List<Long> expiredSessionIds() {
+        return sessionRepository.findAll().stream()
+                .filter(session -> session.getState() == UserSessionEntity.SessionState.EXPIRED)
+                .map(UserSessionEntity::getId)
+                .sorted()
+                .toList();
+    }
+
+    private UserSessionEntity saveSession(long userId, int idleHours) {
+        UserSessionEntity session = new UserSessionEntity(userId, "user" + userId, "User", null);
+        session.setLastActivity(LocalDateTime.now().minusHours(idleHours));
+        return sessionRepository.save(session);
+    }
+}
@@ -0,0 +1,100 @@
+package shit.back.service.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import shit.back.entity.PaymentCallbackEntity;
+import shit.back.entity.PaymentCallbackEntity.CallbackStatus;
+import shit.back.entity.PaymentEntity;
+import shit.back.repository.PaymentCallbackJpaRepository;
+import shit.back.repository.PaymentJpaRepository;
+import shit.back.service.PaymentService;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Исходы обработки callback'ов: временная ошибка возвращает callback в
+ * очередь, окончательный отказ верификации завершает его как FAILED
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentCallbackInboxServiceTest {
+
+    private static final String PAYMENT_ID = "PAY_1718000000_ABCD1234";
+    private static final long CALLBACK_ID = 42L;
+
+    @Mock
+    private PaymentCallbackJpaRepository callbackRepository;
+
+    @Mock
+    private PaymentJpaRepository paymentRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private PaymentCallbackInboxService inboxService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(inboxService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(inboxService, "callbackExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(inboxService, "batchSize", 100);
+        ReflectionTestUtils.setField(inboxService, "maxAttempts", 5);
+        inboxService.init();
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        PaymentCallbackEntity callback = new PaymentCallbackEntity("TON", PAYMENT_ID, "hash", "{\"sign\":\"ok\"}");
+        ReflectionTestUtils.setField(callback, "id", CALLBACK_ID);
+        when(callbackRepository.findForUpdateByStatus(eq(CallbackStatus.PENDING), any()))
+                .thenReturn(List.of(callback), List.of());
+        when(paymentRepository.findForUpdateByPaymentId(PAYMENT_ID)).thenReturn(Optional.of(
+                new PaymentEntity(PAYMENT_ID, 1000L, new BigDecimal("10.00"), "USD", "TON")));
+    }
+
+    @Test
+    void transientFailureIsRetriedInsteadOfFailed() {
+        when(paymentService.verifyPaymentCallback(eq(PAYMENT_ID), anyMap()))
+                .thenThrow(new QueryTimeoutException("canceling statement due to lock timeout"));
+
+        inboxService.poll();
+        inboxService.poll();
+
+        verify(callbackRepository).markForRetry(eq(List.of(CALLBACK_ID)), eq(CallbackStatus.PENDING),
+                contains("lock timeout"));
+        verify(callbackRepository, never()).markCompleted(any(), eq(CallbackStatus.FAILED), any(), any());
+        assertEquals(1L, inboxService.getStatistics().get("retriedCallbacks"));
+        assertEquals(0L, inboxService.getStatistics().get("failedCallbacks"));
+    }
+
+    @Test
+    void rejectedSignatureFailsCallback() {
+        when(paymentService.verifyPaymentCallback(eq(PAYMENT_ID), anyMap())).thenReturn(false);
+
+        inboxService.poll();
+        inboxService.poll();
+
+        verify(callbackRepository).markCompleted(eq(List.of(CALLBACK_ID)), eq(CallbackStatus.FAILED),
+                anyString(), any());
+        verify(callbackRepository, never()).markForRetry(any(), any(), any());
+        assertEquals(1L, inboxService.getStatistics().get("failedCallbacks"));
+    }
+}
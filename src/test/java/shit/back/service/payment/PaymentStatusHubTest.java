@@ -0,0 +1,117 @@
+package shit.back.service.payment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import shit.back.dto.payment.PaymentStatusView;
+import shit.back.entity.PaymentEntity;
+import shit.back.entity.PaymentStatus;
+import shit.back.repository.PaymentJpaRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Кэш статусов платежей: чтения БД при опросе и пробуждение long-poll
+ * ожиданий событием изменения статуса
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentStatusHubTest {
+
+    private static final String PAYMENT_ID = "PAY_1718000000_ABCD1234";
+
+    @Mock
+    private PaymentJpaRepository paymentRepository;
+
+    @InjectMocks
+    private PaymentStatusHub statusHub;
+
+    private PaymentEntity payment;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(statusHub, "revalidateAfterMs", 60_000L);
+        ReflectionTestUtils.setField(statusHub, "idleTtlMs", 600_000L);
+        ReflectionTestUtils.setField(statusHub, "maxEntries", 1000);
+        ReflectionTestUtils.setField(statusHub, "sseTimeoutMs", 60_000L);
+
+        payment = new PaymentEntity(PAYMENT_ID, 1000L, new BigDecimal("10.00"), "USD", "TON");
+        lenient().when(paymentRepository.findByPaymentId(PAYMENT_ID)).thenReturn(Optional.of(payment));
+    }
+
+    @AfterEach
+    void tearDown() {
+        statusHub.shutdown();
+    }
+
+    @Test
+    void repeatedStatusPollsReadDatabaseOnce() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(PaymentStatus.PENDING, statusHub.getStatus(PAYMENT_ID).orElseThrow().status());
+        }
+
+        verify(paymentRepository, times(1)).findByPaymentId(PAYMENT_ID);
+        assertEquals(99L, statusHub.getStatistics().get("cacheHits"));
+    }
+
+    @Test
+    void longPollAnswersImmediatelyWhenStatusAlreadyDiffers() {
+        DeferredResult<ResponseEntity<Map<String, Object>>> result =
+                statusHub.awaitChange(PAYMENT_ID, PaymentStatus.PROCESSING, 10_000);
+
+        assertTrue(result.hasResult());
+        assertEquals("PENDING", body(result).get("status"));
+    }
+
+    @Test
+    void parkedLongPollIsCompletedByStatusChangeWithoutDatabaseRead() throws Exception {
+        DeferredResult<ResponseEntity<Map<String, Object>>> result =
+                statusHub.awaitChange(PAYMENT_ID, PaymentStatus.PENDING, 10_000);
+        assertFalse(result.hasResult());
+        assertEquals(1L, statusHub.getStatistics().get("parkedWaiters"));
+
+        payment.updateStatus(PaymentStatus.COMPLETED);
+        statusHub.onStatusChanged(new PaymentStatusChangedEvent(PaymentStatusView.from(payment)));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(result.hasResult());
+        assertEquals("COMPLETED", body(result).get("status"));
+        assertEquals(true, body(result).get("changed"));
+
+        assertEquals(PaymentStatus.COMPLETED, statusHub.getStatus(PAYMENT_ID).orElseThrow().status());
+        verify(paymentRepository, times(1)).findByPaymentId(PAYMENT_ID);
+        assertEquals(1L, statusHub.getStatistics().get("settledPayments"));
+    }
+
+    @Test
+    void staleEventDoesNotOverrideFinalStatus() {
+        statusHub.getStatus(PAYMENT_ID);
+        PaymentStatusView pending = PaymentStatusView.from(payment);
+
+        statusHub.onStatusChanged(new PaymentStatusChangedEvent(
+                pending.withStatus(PaymentStatus.EXPIRED, "Время платежа истекло", LocalDateTime.now())));
+        statusHub.onStatusChanged(new PaymentStatusChangedEvent(pending));
+
+        assertEquals(PaymentStatus.EXPIRED, statusHub.getStatus(PAYMENT_ID).orElseThrow().status());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(DeferredResult<ResponseEntity<Map<String, Object>>> result) {
+        return ((ResponseEntity<Map<String, Object>>) result.getResult()).getBody();
+    }
+}
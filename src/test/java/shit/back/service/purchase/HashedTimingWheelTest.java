@@ -0,0 +1,68 @@
+package shit.back.service.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private final HashedTimingWheel<Long> wheel = new HashedTimingWheel<>(100, 8, 0);
+
+    @Test
+    void firesTimersOnlyWhenDue() {
+        wheel.schedule(1L, 250);
+        wheel.schedule(2L, 500);
+
+        assertTrue(wheel.advance(200).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(300));
+        assertTrue(wheel.advance(400).isEmpty());
+        assertEquals(List.of(2L), wheel.advance(500));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void keepsTimersBeyondOneRevolutionInTheirSlot() {
+        // 8 слотов по 100 мс: 1300 мс попадает в тот же слот, что и 500 мс
+        wheel.schedule(1L, 500);
+        wheel.schedule(2L, 1_300);
+
+        assertEquals(List.of(1L), wheel.advance(500));
+        assertTrue(wheel.advance(1_200).isEmpty());
+        assertTrue(wheel.contains(2L));
+        assertEquals(List.of(2L), wheel.advance(1_300));
+    }
+
+    @Test
+    void rescheduleReplacesPreviousTimerAndCancelRemovesIt() {
+        wheel.schedule(1L, 200);
+        wheel.schedule(1L, 600);
+        wheel.schedule(2L, 300);
+        assertTrue(wheel.cancel(2L));
+        assertFalse(wheel.cancel(2L));
+
+        assertTrue(wheel.advance(500).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(600));
+    }
+
+    @Test
+    void pastDueTimersFireOnNextTickAndLongPauseDrainsEverything() {
+        wheel.schedule(1L, -1_000);
+        assertEquals(List.of(1L), wheel.advance(100));
+
+        for (long id = 0; id < 100; id++) {
+            wheel.schedule(id, 200 + id * 37);
+        }
+        List<Long> due = wheel.advance(100_000);
+        assertEquals(100, due.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void roundsWheelSizeUpToPowerOfTwo() {
+        assertEquals(8, wheel.getWheelSize());
+        assertEquals(512, new HashedTimingWheel<Long>(1_000, 500, 0).getWheelSize());
+        assertEquals(512, new HashedTimingWheel<Long>(1_000, 512, 0).getWheelSize());
+    }
+}
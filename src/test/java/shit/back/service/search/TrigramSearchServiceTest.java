@@ -0,0 +1,93 @@
+package shit.back.service.search;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import shit.back.entity.OrderEntity;
+import shit.back.entity.UserSessionEntity;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поиск заказов и пользователей на H2 (режим IN_MEMORY): подстрока без
+ * учета регистра, точное совпадение выше частичного, лимит max-results
+ */
+@DataJpaTest
+@Import({ TrigramSearchService.class, TrigramSearchIndexInitializer.class })
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.search.max-results=5",
+        "app.search.fallback-refresh-interval-ms=0"
+})
+class TrigramSearchServiceTest {
+
+    @Autowired
+    private TrigramSearchService searchService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void seed() {
+        String[] usernames = { "alice", "alice_star_buyer", "malice", "bob", "charlie" };
+        for (int i = 0; i < usernames.length; i++) {
+            entityManager.persist(new UserSessionEntity(1000L + i, usernames[i], "Имя" + i, null));
+        }
+        String[] packages = { "100 Stars", "500 Stars", "1000 Stars" };
+        for (int i = 0; i < 12; i++) {
+            entityManager.persist(new OrderEntity(String.format("ORD%05d", i), 1000L + i % 5,
+                    usernames[i % usernames.length], packages[i % packages.length], 100,
+                    BigDecimal.TEN, 0, BigDecimal.TEN));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void usesInMemoryModeOutsidePostgres() {
+        assertEquals(TrigramSearchService.SearchMode.IN_MEMORY, searchService.getMode());
+    }
+
+    @Test
+    void sessionsMatchSubstringCaseInsensitiveWithExactMatchFirst() {
+        Page<UserSessionEntity> page = searchService.searchSessions("  ALICE ", PageRequest.of(0, 10));
+
+        List<String> usernames = page.getContent().stream().map(UserSessionEntity::getUsername).toList();
+        assertEquals(3, page.getTotalElements());
+        assertEquals("alice", usernames.get(0));
+        assertTrue(usernames.containsAll(List.of("alice_star_buyer", "malice")));
+        assertFalse(usernames.contains("bob"));
+    }
+
+    @Test
+    void ordersMatchAnyFieldAndAreCappedByMaxResults() {
+        Page<OrderEntity> byPackage = searchService.searchOrders("500 stars", PageRequest.of(0, 10));
+        assertEquals(4, byPackage.getTotalElements());
+        assertTrue(byPackage.getContent().stream().allMatch(order -> "500 Stars".equals(order.getStarPackageName())));
+
+        Page<OrderEntity> byOrderId = searchService.searchOrders("ord0001", PageRequest.of(0, 10));
+        assertEquals(List.of("ORD00010", "ORD00011"),
+                byOrderId.getContent().stream().map(OrderEntity::getOrderId).sorted().toList());
+
+        // "stars" есть у всех 12 заказов, ранжированный результат ограничен max-results
+        Page<OrderEntity> capped = searchService.searchOrders("stars", PageRequest.of(1, 3));
+        assertEquals(5, capped.getTotalElements());
+        assertEquals(2, capped.getContent().size());
+    }
+
+    @Test
+    void blankTermReturnsEmptyPage() {
+        assertTrue(searchService.searchOrders("   ", PageRequest.of(0, 10)).isEmpty());
+        assertTrue(searchService.searchSessions(null, PageRequest.of(0, 10)).isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+package shit.back.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderIdGeneratorTest {
+
+    private static final Pattern ORDER_ID_PATTERN = Pattern.compile("^[A-Z0-9]{8}$");
+    private static final Pattern LEGACY_HEX_PATTERN = Pattern.compile("^[0-9A-F]{8}$");
+
+    @Test
+    void tenMillionConcurrentIdsAreUnique() throws Exception {
+        int threads = 8;
+        int perThread = 1_250_000;
+        OrderIdGenerator generator = new OrderIdGenerator(3);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                long[] values = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    values[i] = generator.nextValue();
+                }
+                return values;
+            }));
+        }
+        long[] all = new long[threads * perThread];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] values = future.get();
+            System.arraycopy(values, 0, all, offset, values.length);
+            offset += values.length;
+        }
+        executor.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "Повторяющийся ID заказа");
+        }
+        for (int i = 0; i < all.length; i += 9_973) {
+            String id = OrderIdGenerator.encode(all[i]);
+            assertTrue(ORDER_ID_PATTERN.matcher(id).matches(), id);
+            assertFalse(LEGACY_HEX_PATTERN.matcher(id).matches(), id);
+            assertEquals(all[i], OrderIdGenerator.decode(id));
+        }
+    }
+
+    @Test
+    void idsAreMonotonicOnNodeEvenWhenClockGoesBack() {
+        AtomicLong clock = new AtomicLong(OrderIdGenerator.EPOCH_MILLIS + 1_000_000);
+        OrderIdGenerator generator = new OrderIdGenerator(0, clock::get);
+
+        long previous = generator.nextValue();
+        for (int i = 0; i < 1_000; i++) {
+            if (i == 500) {
+                clock.addAndGet(-60_000);
+            }
+            long next = generator.nextValue();
+            assertTrue(next > previous);
+            previous = next;
+        }
+        assertTrue(OrderIdGenerator.encode(previous).compareTo(OrderIdGenerator.encode(previous - 1)) > 0);
+    }
+
+    @Test
+    void burstBorrowsFutureSecondsAndReportsDrift() {
+        AtomicLong clock = new AtomicLong(OrderIdGenerator.EPOCH_MILLIS);
+        OrderIdGenerator generator = new OrderIdGenerator(0, clock::get);
+
+        for (int i = 0; i < 256 * 10; i++) {
+            generator.nextValue();
+        }
+        assertEquals(10, generator.getDriftSeconds());
+
+        clock.addAndGet(10_000);
+        assertEquals(0, generator.getDriftSeconds());
+    }
+
+    @Test
+    void restartAfterBurstContinuesPastLastStoredId() {
+        AtomicLong clock = new AtomicLong(OrderIdGenerator.EPOCH_MILLIS + 1_000_000);
+        OrderIdGenerator beforeRestart = new OrderIdGenerator(2, clock::get);
+        long lastIssued = 0;
+        for (int i = 0; i < 256 * 10; i++) {
+            lastIssued = beforeRestart.nextValue();
+        }
+
+        // рестарт раньше, чем системные часы догнали логические
+        assertTrue(new OrderIdGenerator(2, clock::get).nextValue() <= lastIssued, "без сдвига ID повторились бы");
+
+        OrderIdGenerator afterRestart = new OrderIdGenerator(2, clock::get);
+        afterRestart.advancePast(OrderIdGenerator.encode(lastIssued));
+        assertTrue(afterRestart.nextValue() > lastIssued);
+        assertEquals(10, afterRestart.getDriftSeconds());
+
+        // наибольший ID в БД может оказаться ID другого узла с меньшим счетчиком в той же секунде
+        clock.addAndGet(9_000);
+        String otherNodeMax = new OrderIdGenerator(5, clock::get).nextId();
+        clock.addAndGet(-9_000);
+        assertTrue(otherNodeMax.compareTo(OrderIdGenerator.encode(lastIssued)) > 0);
+
+        OrderIdGenerator seededByOtherNode = new OrderIdGenerator(2, clock::get);
+        seededByOtherNode.advancePast(otherNodeMax);
+        assertTrue(seededByOtherNode.nextValue() > lastIssued);
+
+        // более старый ID часы назад не отводит
+        long beforeOld = afterRestart.nextValue();
+        afterRestart.advancePast(new OrderIdGenerator(0, clock::get).nextId());
+        assertTrue(afterRestart.nextValue() > beforeOld);
+    }
+
+    @Test
+    void nodesNeverShareIds() {
+        AtomicLong clock = new AtomicLong(OrderIdGenerator.EPOCH_MILLIS + 5_000);
+        OrderIdGenerator first = new OrderIdGenerator(0, clock::get);
+        OrderIdGenerator second = new OrderIdGenerator(1, clock::get);
+
+        long[] values = new long[20_000];
+        for (int i = 0; i < 10_000; i++) {
+            values[2 * i] = first.nextValue();
+            values[2 * i + 1] = second.nextValue();
+        }
+        assertEquals(values.length, Arrays.stream(values).distinct().count());
+    }
+
+    @Test
+    void rejectsInvalidNodeAndMalformedIds() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderIdGenerator(OrderIdGenerator.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> OrderIdGenerator.decode("ABCDEF12"));
+        assertThrows(IllegalArgumentException.class, () -> OrderIdGenerator.decode("H12"));
+    }
+}